@@ -0,0 +1,35 @@
+plugins {
+    id("me.champeau.gradle.jmh") version "0.5.0"
+}
+
+/*
+ * Properties:
+ * Set <code>./gradlew -PjmhInclude=<regex> :saros.benchmarks:jmh</code> to only run the
+ * benchmarks matching the given regular expression.
+ *
+ * The results are written as JSON to build/reports/jmh/results.json. Store this file
+ * for a release in order to compare later results against it.
+ */
+val jmhInclude: String? by project
+
+dependencies {
+    jmh(project(":saros.core"))
+    jmh("org.easymock:easymock:4.0.1")
+}
+
+sourceSets {
+    named("jmh") {
+        java.setSrcDirs(listOf("src"))
+    }
+}
+
+jmh {
+    jmhVersion = "1.23"
+    if (!jmhInclude.isNullOrBlank()) {
+        include = listOf(jmhInclude)
+    }
+    resultFormat = "JSON"
+    resultsFile = file("$buildDir/reports/jmh/results.json")
+    humanOutputFile = file("$buildDir/reports/jmh/human.txt")
+    duplicateClassesStrategy = DuplicatesStrategy.EXCLUDE
+}
@@ -0,0 +1,85 @@
+package saros.activities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextSelection;
+import saros.filesystem.IFile;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+/**
+ * Measures {@link ActivityOptimizer#optimize(java.util.Collection)} for large batches of text edit,
+ * selection and viewport activities spread over a number of files.
+ *
+ * <p>The batches are generated with a fixed seed, so every run optimizes the same activities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ActivityOptimizerBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int batchSize;
+
+  @Param({"1", "16"})
+  public int files;
+
+  private List<IActivity> activities;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+
+    User user = new User(new JID("alice@saros-con.imp.fu-berlin.de"), false, true, null);
+
+    IFile[] fileMocks = new IFile[files];
+
+    for (int i = 0; i < files; i++) {
+      fileMocks[i] = EasyMock.createNiceMock(IFile.class);
+      EasyMock.replay(fileMocks[i]);
+    }
+
+    activities = new ArrayList<>(batchSize);
+
+    for (int i = 0; i < batchSize; i++) {
+      IFile file = fileMocks[random.nextInt(files)];
+      TextPosition position = new TextPosition(random.nextInt(1000), random.nextInt(80));
+
+      switch (random.nextInt(3)) {
+        case 0:
+          activities.add(new TextEditActivity(user, position, 0, 1, "a", 0, 0, "", file));
+          break;
+        case 1:
+          activities.add(
+              new TextSelectionActivity(user, new TextSelection(position, position), file));
+          break;
+        default:
+          activities.add(new ViewportActivity(user, position.getLineNumber(), 50, file));
+          break;
+      }
+    }
+  }
+
+  @Benchmark
+  public List<IActivity> optimize() {
+    return ActivityOptimizer.optimize(activities);
+  }
+}
@@ -0,0 +1,98 @@
+package saros.concurrent.jupiter.internal;
+
+import java.util.concurrent.TimeUnit;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.JupiterActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.editor.text.TextPosition;
+import saros.filesystem.IFile;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+/**
+ * Measures how the client side {@link Jupiter} algorithm scales with the number of local operations
+ * that are not yet acknowledged by the server (the <code>ackJupiterActivityList</code>).
+ *
+ * <p>Every invocation of {@link #receive()} generates one local operation and receives one remote
+ * operation acknowledging all but the last <code>backlog</code> local operations, so the backlog
+ * stays constant during the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class JupiterBenchmark {
+
+  @Param({"1", "10", "100", "1000"})
+  public int backlog;
+
+  private final User local =
+      new User(new JID("alice@saros-con.imp.fu-berlin.de"), false, true, null);
+  private final User remote =
+      new User(new JID("bob@saros-con.imp.fu-berlin.de"), true, false, null);
+
+  private final Operation localOperation = new InsertOperation(new TextPosition(0, 0), 0, 1, "a");
+  private final Operation remoteOperation = new InsertOperation(new TextPosition(0, 5), 0, 1, "b");
+
+  private final TextPosition[] positions = {
+    new TextPosition(0, 0), new TextPosition(0, 10), new TextPosition(5, 0)
+  };
+
+  private IFile file;
+
+  private Jupiter jupiter;
+
+  private int generated;
+  private int received;
+
+  @Setup
+  public void setup() {
+    file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.replay(file);
+
+    jupiter = new Jupiter(true);
+
+    generated = 0;
+    received = 0;
+
+    for (int i = 0; i < backlog; i++) generate();
+  }
+
+  @Benchmark
+  public Operation receive() throws TransformationException {
+    generate();
+
+    JupiterVectorTime timestamp = new JupiterVectorTime(received, generated - backlog);
+
+    received++;
+
+    return jupiter.receiveJupiterActivity(
+        new JupiterActivity(timestamp, remoteOperation, remote, file));
+  }
+
+  @Benchmark
+  public TextPosition[] transformIndices() throws TransformationException {
+    return jupiter.transformIndices(
+        new JupiterVectorTime(received, generated - backlog), positions);
+  }
+
+  private void generate() {
+    jupiter.generateJupiterActivity(localOperation, local, file);
+    generated++;
+  }
+}
@@ -0,0 +1,96 @@
+package saros.concurrent.jupiter.internal;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.JupiterActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.editor.text.TextPosition;
+import saros.filesystem.IFile;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+/**
+ * Measures the fan-out of a {@link JupiterDocumentServer} that forwards the operations of one
+ * document to a number of clients.
+ *
+ * <p>The clients send their operations in turns. Every invocation transforms the operation of the
+ * next client on the server and delivers the results to the other clients. Receiving the results on
+ * the clients is included in the measurement as it acknowledges the operations of the server and so
+ * keeps the backlogs of the server proxies bounded, like in a real session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class JupiterDocumentServerBenchmark {
+
+  @Param({"2", "4", "8", "16"})
+  public int clients;
+
+  private final Operation operation = new InsertOperation(new TextPosition(0, 0), 0, 1, "a");
+
+  private IFile file;
+
+  private JupiterDocumentServer server;
+
+  private User[] users;
+  private Jupiter[] jupiters;
+
+  private int next;
+
+  @Setup
+  public void setup() {
+    file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.replay(file);
+
+    server = new JupiterDocumentServer(file);
+
+    users = new User[clients];
+    jupiters = new Jupiter[clients];
+
+    for (int i = 0; i < clients; i++) {
+      users[i] =
+          new User(new JID("client" + i + "@saros-con.imp.fu-berlin.de"), i == 0, false, null);
+      jupiters[i] = new Jupiter(true);
+      server.addProxyClient(users[i]);
+    }
+
+    next = 0;
+  }
+
+  @Benchmark
+  public Map<User, JupiterActivity> transform() throws TransformationException {
+    int sender = next;
+
+    next = (next + 1) % clients;
+
+    JupiterActivity activity =
+        jupiters[sender].generateJupiterActivity(operation, users[sender], file);
+
+    Map<User, JupiterActivity> outgoing = server.transformJupiterActivity(activity);
+
+    for (int i = 0; i < clients; i++) {
+      if (i == sender) continue;
+
+      jupiters[i].receiveJupiterActivity(outgoing.get(users[i]));
+    }
+
+    return outgoing;
+  }
+}
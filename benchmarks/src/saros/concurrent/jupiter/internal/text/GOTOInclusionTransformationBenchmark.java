@@ -0,0 +1,108 @@
+package saros.concurrent.jupiter.internal.text;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.concurrent.jupiter.Operation;
+import saros.editor.text.TextPosition;
+
+/**
+ * Measures the transformation of a single pair of operations by the {@link
+ * GOTOInclusionTransformation}.
+ *
+ * <p>The operations of every pair overlap, so the transformation has to split or shorten them
+ * instead of just shifting their positions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GOTOInclusionTransformationBenchmark {
+
+  @Param({
+    "insert-insert",
+    "insert-delete",
+    "delete-insert",
+    "delete-delete",
+    "split-insert",
+    "insert-split",
+    "split-split"
+  })
+  public String pair;
+
+  private final GOTOInclusionTransformation inclusion = new GOTOInclusionTransformation();
+
+  private Operation op1;
+  private Operation op2;
+
+  private TextPosition position;
+
+  @Setup
+  public void setup() {
+    switch (pair) {
+      case "insert-insert":
+        op1 = insert(2, 4);
+        op2 = new InsertOperation(new TextPosition(2, 4), 1, 3, "foo\nbar");
+        break;
+      case "insert-delete":
+        op1 = insert(2, 4);
+        op2 = delete(1, 2);
+        break;
+      case "delete-insert":
+        op1 = delete(1, 2);
+        op2 = insert(2, 4);
+        break;
+      case "delete-delete":
+        op1 = delete(1, 2);
+        op2 = delete(2, 0);
+        break;
+      case "split-insert":
+        op1 = new SplitOperation(delete(1, 2), insert(4, 1));
+        op2 = insert(2, 4);
+        break;
+      case "insert-split":
+        op1 = insert(2, 4);
+        op2 = new SplitOperation(delete(1, 2), insert(4, 1));
+        break;
+      case "split-split":
+        op1 = new SplitOperation(delete(1, 2), insert(4, 1));
+        op2 = new SplitOperation(insert(2, 4), delete(3, 1));
+        break;
+      default:
+        throw new IllegalArgumentException("unknown operation pair: " + pair);
+    }
+
+    position = new TextPosition(2, 6);
+  }
+
+  @Benchmark
+  public Operation transform() {
+    return inclusion.transform(op1, op2, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public TextPosition transformIndex() {
+    return inclusion.transformIndex(position, op2, Boolean.TRUE);
+  }
+
+  private static InsertOperation insert(int line, int inLineOffset) {
+    return new InsertOperation(new TextPosition(line, inLineOffset), 0, 3, "abc");
+  }
+
+  /** Returns a delete operation removing text from the given position over the next two lines. */
+  private static DeleteOperation delete(int line, int inLineOffset) {
+    return new DeleteOperation(
+        new TextPosition(line, inLineOffset), 2, 5, "0123456789\n0123456789\n01234");
+  }
+}
@@ -5,11 +5,19 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import org.apache.commons.lang3.tuple.Pair;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextPositionUtils;
 import saros.filesystem.IFile;
+import saros.util.LineSeparatorNormalizationUtil;
 
 /** Optimizer for activities. */
 public class ActivityOptimizer {
 
+  private static final String LINE_SEPARATOR =
+      LineSeparatorNormalizationUtil.NORMALIZED_LINE_SEPARATOR;
+
   /**
    * Tries to reduce the number of {@link IActivity activities} so that:
    *
@@ -72,4 +80,91 @@ public class ActivityOptimizer {
 
     return result;
   }
+
+  /**
+   * Tries to combine two consecutive text edits into a single text edit, so that executing the
+   * combined text edit produces the same document content as executing the first and then the
+   * second text edit.
+   *
+   * <p>Text edits can only be combined if they were made by the same user in the same file and if
+   * the second text edit only changes the text inserted by the first one or is located directly
+   * before or after it, e.g. when typing, deleting with backspace or deleting forward.
+   *
+   * @param first the text edit that was executed first
+   * @param second the text edit that was executed after the first one
+   * @return the combined text edit or <code>null</code> if the text edits cannot be combined
+   */
+  public static TextEditActivity combine(TextEditActivity first, TextEditActivity second) {
+
+    if (!Objects.equals(first.getSource(), second.getSource())
+        || !Objects.equals(first.getResource(), second.getResource())) return null;
+
+    final TextPosition firstStart = first.getStartPosition();
+    final TextPosition firstNewEnd = first.getNewEndPosition();
+
+    final TextPosition secondStart = second.getStartPosition();
+    final TextPosition secondReplacedEnd = getEndPosition(secondStart, second.getReplacedText());
+
+    final TextPosition start;
+    final String newText;
+    final String replacedText;
+
+    if (secondStart.compareTo(firstStart) >= 0 && secondReplacedEnd.compareTo(firstNewEnd) <= 0) {
+      // the second text edit only changes the text inserted by the first one
+      final String firstNewText = first.getNewText();
+
+      final int replacedStart =
+          TextPositionUtils.calculateOffset(
+              firstNewText, getRelativePosition(firstStart, secondStart), LINE_SEPARATOR);
+
+      final int replacedEnd = replacedStart + second.getReplacedText().length();
+
+      if (!firstNewText.substring(replacedStart, replacedEnd).equals(second.getReplacedText()))
+        return null;
+
+      start = firstStart;
+      newText =
+          firstNewText.substring(0, replacedStart)
+              + second.getNewText()
+              + firstNewText.substring(replacedEnd);
+      replacedText = first.getReplacedText();
+
+    } else if (secondStart.equals(firstNewEnd)) {
+      // the second text edit is located directly after the first one
+      start = firstStart;
+      newText = first.getNewText() + second.getNewText();
+      replacedText = first.getReplacedText() + second.getReplacedText();
+
+    } else if (secondReplacedEnd.equals(firstStart)) {
+      // the second text edit is located directly before the first one
+      start = secondStart;
+      newText = second.getNewText() + first.getNewText();
+      replacedText = second.getReplacedText() + first.getReplacedText();
+
+    } else {
+      return null;
+    }
+
+    return TextEditActivity.buildTextEditActivity(
+        first.getSource(), start, newText, replacedText, first.getResource());
+  }
+
+  /** Returns the position at which the given text ends if it starts at the given position. */
+  private static TextPosition getEndPosition(TextPosition start, String text) {
+    Pair<Integer, Integer> deltas = TextPositionUtils.calculateDeltas(text, LINE_SEPARATOR);
+
+    if (deltas.getLeft() == 0)
+      return new TextPosition(start.getLineNumber(), start.getInLineOffset() + deltas.getRight());
+
+    return new TextPosition(start.getLineNumber() + deltas.getLeft(), deltas.getRight());
+  }
+
+  /** Returns the given position relative to the given start position. */
+  private static TextPosition getRelativePosition(TextPosition start, TextPosition position) {
+    if (position.getLineNumber() == start.getLineNumber())
+      return new TextPosition(0, position.getInLineOffset() - start.getInLineOffset());
+
+    return new TextPosition(
+        position.getLineNumber() - start.getLineNumber(), position.getInLineOffset());
+  }
 }
@@ -5,13 +5,14 @@ import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import java.util.Objects;
 import saros.concurrent.jupiter.Timestamp;
 import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
 import saros.session.User;
 
 /**
  * A ChecksumActivity is used to communicate checksums from the host to the clients.
  *
  * <p>A ChecksumActivity always relates to a certain file and contains the hash and length of the
- * file.
+ * file as well as the {@link ChecksumAlgorithm} the hash was calculated with.
  *
  * <p>To indicate that a file is missing on the host NON_EXISTING_DOC is used.
  *
@@ -30,6 +31,11 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
 
   @XStreamAsAttribute protected final long length;
 
+  /** the id of the checksum algorithm, absent (<code>0</code>) for the legacy algorithm */
+  @XStreamAlias("alg")
+  @XStreamAsAttribute
+  protected final int algorithm;
+
   @XStreamAsAttribute protected final Timestamp jupiterTimestamp;
 
   /**
@@ -48,16 +54,46 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
   public ChecksumActivity(
       User source, IFile file, long hash, long length, Timestamp jupiterTimestamp) {
 
+    this(source, file, hash, length, ChecksumAlgorithm.LEGACY, jupiterTimestamp);
+  }
+
+  /**
+   * Constructor for ChecksumActivities with a hash calculated by the given algorithm.
+   *
+   * @param source The User that created this activity
+   * @param file The file represented by the document
+   * @param hash The hash of the document
+   * @param length The length of the document
+   * @param algorithm The algorithm used to calculate the hash
+   * @param jupiterTimestamp The current jupiterTimestamp for this document, may be <code>null
+   *     </code>
+   */
+  public ChecksumActivity(
+      User source,
+      IFile file,
+      long hash,
+      long length,
+      ChecksumAlgorithm algorithm,
+      Timestamp jupiterTimestamp) {
+
+    this(source, file, hash, length, algorithm.getId(), jupiterTimestamp);
+  }
+
+  private ChecksumActivity(
+      User source, IFile file, long hash, long length, int algorithm, Timestamp jupiterTimestamp) {
+
     super(source, file);
 
     this.hash = hash;
     this.length = length;
+    this.algorithm = algorithm;
     this.jupiterTimestamp = jupiterTimestamp;
   }
 
   /** Returns a copy of the ChecksumActivity with a new {@link Timestamp}. */
   public ChecksumActivity withTimestamp(Timestamp jupiterTimestamp) {
-    return new ChecksumActivity(getSource(), getResource(), hash, length, jupiterTimestamp);
+    return new ChecksumActivity(
+        getSource(), getResource(), hash, length, algorithm, jupiterTimestamp);
   }
 
   @Override
@@ -68,6 +104,8 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
         + hash
         + ", length: "
         + length
+        + ", algorithm: "
+        + algorithm
         + ", jupiterTimestamp: "
         + jupiterTimestamp
         + ")";
@@ -84,6 +122,7 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
     int result = super.hashCode();
     result = prime * result + (int) (hash ^ (hash >>> 32));
     result = prime * result + (int) (length ^ (length >>> 32));
+    result = prime * result + algorithm;
     result = prime * result + Objects.hashCode(jupiterTimestamp);
     return result;
   }
@@ -98,6 +137,7 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
 
     if (this.hash != other.hash) return false;
     if (this.length != other.length) return false;
+    if (this.algorithm != other.algorithm) return false;
     if (!Objects.equals(this.jupiterTimestamp, other.jupiterTimestamp)) return false;
 
     return true;
@@ -115,6 +155,15 @@ public class ChecksumActivity extends AbstractResourceActivity<IFile> {
     return hash;
   }
 
+  /**
+   * Returns the algorithm the hash was calculated with.
+   *
+   * @return the algorithm or <code>null</code> if the algorithm is not known locally
+   */
+  public ChecksumAlgorithm getAlgorithm() {
+    return ChecksumAlgorithm.forId(algorithm);
+  }
+
   public boolean existsFile() {
     return !(this.length == NON_EXISTING_DOC && this.hash == NON_EXISTING_DOC);
   }
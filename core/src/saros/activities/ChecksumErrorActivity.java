@@ -6,6 +6,7 @@ import com.thoughtworks.xstream.annotations.XStreamImplicit;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import saros.concurrent.watchdog.DocumentSignature;
 import saros.filesystem.IFile;
 import saros.session.User;
 
@@ -15,6 +16,10 @@ import saros.session.User;
  *
  * <p>The host will reply with a ChecksumError of the same recoveryID after having sent the last
  * FileActivity (with {@link FileActivity#isRecovery()} being set related to this checksum recovery.
+ *
+ * <p>The user may add the {@linkplain DocumentSignature signatures} of its documents, so the host
+ * can repair only the differing lines with a {@link TextRecoveryActivity} instead of sending the
+ * whole files.
  */
 @XStreamAlias("checksumErrorActivity")
 public class ChecksumErrorActivity extends AbstractActivity implements ITargetedActivity {
@@ -25,10 +30,33 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
 
   @XStreamImplicit protected List<ResourceTransportWrapper<IFile>> files;
 
+  /** the signatures of the files, an entry is <code>null</code> if the file has no signature */
+  protected List<DocumentSignature> signatures;
+
   public ChecksumErrorActivity(User source, User target, List<IFile> files, String recoveryID) {
+    this(source, target, files, null, recoveryID);
+  }
+
+  /**
+   * @param source the user that created this activity
+   * @param target the user to receive this activity
+   * @param files the inconsistent files, may be <code>null</code>
+   * @param signatures the signatures of the files in the same order, may be <code>null</code> or
+   *     contain <code>null</code> for files without signature
+   * @param recoveryID the id of the recovery
+   */
+  public ChecksumErrorActivity(
+      User source,
+      User target,
+      List<IFile> files,
+      List<DocumentSignature> signatures,
+      String recoveryID) {
 
     super(source);
 
+    if (signatures != null && (files == null || files.size() != signatures.size()))
+      throw new IllegalArgumentException("every file must have a signature entry");
+
     if (target == null) throw new IllegalArgumentException("target must not be null");
 
     this.target = target;
@@ -36,6 +64,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
         files == null
             ? null
             : files.stream().map(ResourceTransportWrapper::new).collect(Collectors.toList());
+    this.signatures = signatures;
     this.recoveryID = recoveryID;
   }
 
@@ -50,6 +79,31 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
         : files.stream().map(ResourceTransportWrapper::getResource).collect(Collectors.toList());
   }
 
+  /**
+   * Returns the signatures of the files in the same order as {@link #getFiles()}.
+   *
+   * @return the signatures or <code>null</code> if the user did not add any signatures
+   */
+  public List<DocumentSignature> getSignatures() {
+    return signatures;
+  }
+
+  /**
+   * Returns the signature of the given file.
+   *
+   * @param file one of the files of this activity
+   * @return the signature or <code>null</code> if the user did not add a signature for the file
+   */
+  public DocumentSignature getSignature(IFile file) {
+    if (signatures == null) return null;
+
+    final List<IFile> files = getFiles();
+
+    final int index = files.indexOf(file);
+
+    return index == -1 ? null : signatures.get(index);
+  }
+
   /** Each ChecksumError has a unique ID, which should be used to identify a recovery session */
   public String getRecoveryID() {
     return recoveryID;
@@ -65,6 +119,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
     final int prime = 31;
     int result = super.hashCode();
     result = prime * result + Objects.hashCode(files);
+    result = prime * result + Objects.hashCode(signatures);
     result = prime * result + Objects.hashCode(recoveryID);
     result = prime * result + Objects.hashCode(target);
     return result;
@@ -80,6 +135,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
 
     if (!Objects.equals(this.recoveryID, other.recoveryID)) return false;
     if (!Objects.equals(this.files, other.files)) return false;
+    if (!Objects.equals(this.signatures, other.signatures)) return false;
     if (!Objects.equals(this.target, other.target)) return false;
 
     return true;
@@ -2,6 +2,12 @@ package saros.activities;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Objects;
 import saros.filesystem.IFile;
@@ -39,6 +45,12 @@ public class FileActivity extends AbstractResourceActivity<IFile>
 
   protected final byte[] content;
 
+  /**
+   * Temporary file containing the content of the file if it was received separately from this
+   * activity. Such activities are never marshalled to XML.
+   */
+  protected final transient Path contentFile;
+
   /**
    * Generic constructor for {@link FileActivity}s
    *
@@ -60,25 +72,59 @@ public class FileActivity extends AbstractResourceActivity<IFile>
       byte[] content,
       String encoding) {
 
+    this(source, type, purpose, newFile, oldFile, content, null, encoding);
+  }
+
+  /**
+   * Constructor for {@link FileActivity}s whose content may be stored in a temporary file instead
+   * of the heap. At most one of <code>content</code> and <code>contentFile</code> may be given.
+   *
+   * @param source the user who is the source (originator) of this Activity
+   * @param newFile where to save the data (if {@link Type#CREATED}), destination of a move (if
+   *     {@link Type#MOVED}), file to remove (if {@link Type#REMOVED}); never <code>null</code>
+   * @param oldFile if type is {@link Type#MOVED}, the file handle representing from where the file
+   *     was moved (<code>null</code> otherwise)
+   * @param content content of the file (only valid for {@link Type#CREATED} and {@link Type#MOVED})
+   * @param contentFile temporary file containing the content of the file (only valid for {@link
+   *     Type#CREATED} and {@link Type#MOVED}), it <b>must not</b> be changed or deleted while this
+   *     activity is in use
+   * @param encoding the encoding for the file or <code>null</code> if (and only if) the type is
+   *     {@link Type#MOVED} and there is no content or the type is {@link Type#REMOVED}
+   */
+  public FileActivity(
+      User source,
+      Type type,
+      Purpose purpose,
+      IFile newFile,
+      IFile oldFile,
+      byte[] content,
+      Path contentFile,
+      String encoding) {
+
     super(source, newFile);
 
+    if (content != null && contentFile != null)
+      throw new IllegalArgumentException("content and contentFile must not be both given");
+
+    final boolean hasContent = content != null || contentFile != null;
+
     if (type == null) throw new IllegalArgumentException("type must not be null");
     if (purpose == null) throw new IllegalArgumentException("purpose must not be null");
     if (newFile == null) throw new IllegalArgumentException("newFile must not be null");
 
     switch (type) {
       case CREATED:
-        if (content == null || oldFile != null) throw new IllegalArgumentException();
+        if (!hasContent || oldFile != null) throw new IllegalArgumentException();
         break;
       case REMOVED:
-        if (content != null || oldFile != null) throw new IllegalArgumentException();
+        if (hasContent || oldFile != null) throw new IllegalArgumentException();
         break;
       case MOVED:
         if (oldFile == null) throw new IllegalArgumentException();
         break;
     }
 
-    if (encoding == null && (type == Type.CREATED || (type == Type.MOVED && content != null))) {
+    if (encoding == null && (type == Type.CREATED || (type == Type.MOVED && hasContent))) {
       throw new IllegalArgumentException(
           "Encoding must be passed if type is created and/or binary content is passed");
     }
@@ -86,6 +132,7 @@ public class FileActivity extends AbstractResourceActivity<IFile>
     this.type = type;
     this.oldFileWrapper = oldFile != null ? new ResourceTransportWrapper<>(oldFile) : null;
     this.content = content;
+    this.contentFile = contentFile;
     this.encoding = encoding;
     this.purpose = purpose;
   }
@@ -112,12 +159,69 @@ public class FileActivity extends AbstractResourceActivity<IFile>
     return type;
   }
 
+  public Purpose getPurpose() {
+    return purpose;
+  }
+
   /**
+   * Returns the content of the file. If the content is stored in a temporary file, it is read into
+   * memory on every call. Use {@link #getContentStream()} to avoid this.
+   *
    * @return the content of this file or <code>null</code> if not available
    *     <p><b>Important:</b> the content of the array must <b>not</b> be changed
+   * @throws UncheckedIOException if the temporary file containing the content cannot be read
    */
   public byte[] getContent() {
-    return content;
+    if (contentFile == null) return content;
+
+    try {
+      return Files.readAllBytes(contentFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns whether this activity carries the content of the file.
+   *
+   * @return <code>true</code> if the content is available, <code>false</code> otherwise
+   */
+  public boolean hasContent() {
+    return content != null || contentFile != null;
+  }
+
+  /**
+   * Returns the length of the content of the file.
+   *
+   * @return the length of the content in bytes or <code>-1</code> if the content is not available
+   */
+  public long getContentLength() {
+    if (content != null) return content.length;
+
+    return contentFile != null ? contentFile.toFile().length() : -1;
+  }
+
+  /**
+   * Returns the temporary file containing the content of the file.
+   *
+   * @return the temporary file or <code>null</code> if the content is held in memory or not
+   *     available
+   */
+  public Path getContentFile() {
+    return contentFile;
+  }
+
+  /**
+   * Returns a stream to read the content of the file. The caller is responsible for closing the
+   * stream.
+   *
+   * @return a stream to read the content or <code>null</code> if the content is not available
+   * @throws IOException if the temporary file containing the content cannot be opened
+   */
+  public InputStream getContentStream() throws IOException {
+    if (contentFile != null) return Files.newInputStream(contentFile);
+
+    return content != null ? new ByteArrayInputStream(content) : null;
   }
 
   /**
@@ -140,7 +244,7 @@ public class FileActivity extends AbstractResourceActivity<IFile>
         + ", encoding="
         + (encoding == null ? "N/A" : encoding)
         + ", content="
-        + (content == null ? "0" : content.length)
+        + Math.max(getContentLength(), 0)
         + " byte(s)]";
   }
 
@@ -149,6 +253,7 @@ public class FileActivity extends AbstractResourceActivity<IFile>
     final int prime = 31;
     int result = super.hashCode();
     result = prime * result + Arrays.hashCode(content);
+    result = prime * result + Objects.hashCode(contentFile);
     result = prime * result + Objects.hashCode(oldFileWrapper);
     result = prime * result + Objects.hashCode(type);
     result = prime * result + Objects.hashCode(purpose);
@@ -173,6 +278,8 @@ public class FileActivity extends AbstractResourceActivity<IFile>
 
     if (!Arrays.equals(content, other.content)) return false;
 
+    if (!Objects.equals(contentFile, other.contentFile)) return false;
+
     return Objects.equals(encoding, other.encoding);
   }
 
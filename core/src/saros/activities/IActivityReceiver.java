@@ -83,6 +83,10 @@ public interface IActivityReceiver {
     /*NOP*/
   }
 
+  default void receive(TextRecoveryActivity textRecoveryActivity) {
+    /*NOP*/
+  }
+
   default void receive(TextSelectionActivity textSelectionActivity) {
     /*NOP*/
   }
@@ -2,6 +2,7 @@ package saros.activities;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.nio.file.Path;
 import saros.filesystem.IFile;
 import saros.session.User;
 
@@ -36,7 +37,27 @@ public class TargetedFileActivity extends FileActivity implements ITargetedActiv
       String encoding,
       Purpose purpose) {
 
-    super(source, type, purpose, newFile, oldFile, content, encoding);
+    this(source, target, type, newFile, oldFile, content, null, encoding, purpose);
+  }
+
+  /**
+   * Constructor for {@link TargetedFileActivity}s whose content may be stored in a temporary file
+   * instead of the heap.
+   *
+   * @see FileActivity#FileActivity(User, Type, Purpose, IFile, IFile, byte[], Path, String)
+   */
+  public TargetedFileActivity(
+      User source,
+      User target,
+      Type type,
+      IFile newFile,
+      IFile oldFile,
+      byte[] content,
+      Path contentFile,
+      String encoding,
+      Purpose purpose) {
+
+    super(source, type, purpose, newFile, oldFile, content, contentFile, encoding);
 
     if (target == null) throw new IllegalArgumentException("target must not be null");
 
@@ -68,7 +89,7 @@ public class TargetedFileActivity extends FileActivity implements ITargetedActiv
         + ", encoding="
         + (encoding == null ? "N/A" : encoding)
         + ", content="
-        + (content == null ? "0" : content.length)
+        + Math.max(getContentLength(), 0)
         + " byte(s)]";
   }
 }
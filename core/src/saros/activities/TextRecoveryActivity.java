@@ -0,0 +1,136 @@
+package saros.activities;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.util.Arrays;
+import java.util.Objects;
+import saros.filesystem.IFile;
+import saros.session.User;
+
+/**
+ * A TextRecoveryActivity is sent by the host during a consistency recovery to repair the lines of a
+ * document that differ between the host and the target instead of sending the whole file.
+ *
+ * <p>It contains ranges of lines of the target's document and the text replacing each range. The
+ * ranges are ordered from the end of the document to its start, so replacing them one after the
+ * other does not shift the lines of the ranges that are still to be replaced. A recovery without
+ * ranges is sent if no lines differ, as the target resets its Jupiter state for the document when
+ * receiving the recovery.
+ *
+ * @see ChecksumErrorActivity#getSignature(IFile)
+ */
+@XStreamAlias("textRecoveryActivity")
+public class TextRecoveryActivity extends AbstractResourceActivity<IFile>
+    implements ITargetedActivity {
+
+  @XStreamAsAttribute private final User target;
+
+  @XStreamAlias("s")
+  protected final int[] startLines;
+
+  @XStreamAlias("l")
+  protected final int[] lineCounts;
+
+  @XStreamAlias("t")
+  protected final String[] texts;
+
+  /**
+   * @param source the host
+   * @param target the user whose document is repaired
+   * @param file the file of the document
+   * @param startLines the first line of every replaced range in descending order
+   * @param lineCounts the number of lines of every replaced range
+   * @param texts the text replacing every range
+   */
+  public TextRecoveryActivity(
+      User source, User target, IFile file, int[] startLines, int[] lineCounts, String[] texts) {
+
+    super(source, file);
+
+    if (target == null) throw new IllegalArgumentException("target must not be null");
+    if (file == null) throw new IllegalArgumentException("file must not be null");
+
+    if (startLines.length != lineCounts.length || startLines.length != texts.length)
+      throw new IllegalArgumentException("every range must have a start line, count and text");
+
+    this.target = target;
+    this.startLines = startLines;
+    this.lineCounts = lineCounts;
+    this.texts = texts;
+  }
+
+  @Override
+  public boolean isValid() {
+    return super.isValid() && (target != null) && (getResource() != null);
+  }
+
+  @Override
+  public User getTarget() {
+    return target;
+  }
+
+  /** Returns the number of replaced ranges. */
+  public int getRangeCount() {
+    return startLines.length;
+  }
+
+  /** Returns the first line of the given range. */
+  public int getStartLine(int range) {
+    return startLines[range];
+  }
+
+  /** Returns the number of lines of the given range. */
+  public int getLineCount(int range) {
+    return lineCounts[range];
+  }
+
+  /** Returns the text replacing the given range. */
+  public String getText(int range) {
+    return texts[range];
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + Objects.hashCode(target);
+    result = prime * result + Arrays.hashCode(startLines);
+    result = prime * result + Arrays.hashCode(lineCounts);
+    result = prime * result + Arrays.hashCode(texts);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!super.equals(obj)) return false;
+    if (!(obj instanceof TextRecoveryActivity)) return false;
+
+    TextRecoveryActivity other = (TextRecoveryActivity) obj;
+
+    if (!Objects.equals(this.target, other.target)) return false;
+    if (!Arrays.equals(this.startLines, other.startLines)) return false;
+    if (!Arrays.equals(this.lineCounts, other.lineCounts)) return false;
+    if (!Arrays.equals(this.texts, other.texts)) return false;
+
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "TextRecoveryActivity(src: "
+        + getSource()
+        + ", target: "
+        + target
+        + ", file: "
+        + getResource()
+        + ", ranges: "
+        + startLines.length
+        + ")";
+  }
+
+  @Override
+  public void dispatch(IActivityReceiver receiver) {
+    receiver.receive(this);
+  }
+}
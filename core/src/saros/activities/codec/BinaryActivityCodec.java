@@ -0,0 +1,1057 @@
+package saros.activities.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.log4j.Logger;
+import saros.activities.ChangeColorActivity;
+import saros.activities.ChecksumActivity;
+import saros.activities.ChecksumErrorActivity;
+import saros.activities.DeletionAcknowledgmentActivity;
+import saros.activities.EditorActivity;
+import saros.activities.FileActivity;
+import saros.activities.FolderCreatedActivity;
+import saros.activities.FolderDeletedActivity;
+import saros.activities.IActivity;
+import saros.activities.JupiterActivity;
+import saros.activities.NOPActivity;
+import saros.activities.PermissionActivity;
+import saros.activities.ProgressActivity;
+import saros.activities.StartFollowingActivity;
+import saros.activities.StopActivity;
+import saros.activities.StopFollowingActivity;
+import saros.activities.TargetedFileActivity;
+import saros.activities.TextEditActivity;
+import saros.activities.TextRecoveryActivity;
+import saros.activities.TextSelectionActivity;
+import saros.activities.ViewportActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.Timestamp;
+import saros.concurrent.jupiter.internal.JupiterVectorTime;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.NoOperation;
+import saros.concurrent.jupiter.internal.text.SplitOperation;
+import saros.concurrent.jupiter.internal.text.TimestampOperation;
+import saros.concurrent.watchdog.DocumentSignature;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextSelection;
+import saros.filesystem.IFile;
+import saros.filesystem.IFolder;
+import saros.filesystem.IReferencePoint;
+import saros.filesystem.IResource;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.net.xmpp.JID;
+import saros.session.ISarosSession;
+import saros.session.User;
+import saros.util.PathUtils;
+
+/**
+ * Compact binary encoding for {@linkplain IActivity activities}. This is the counterpart of the
+ * XStream based marshalling done by the {@link
+ * saros.communication.extensions.ActivitiesExtension.Provider provider} of the activities extension
+ * and is only used if both peers negotiated it during the session negotiation.
+ *
+ * <p>Integer fields are written as varints. {@linkplain User users} and {@linkplain IResource
+ * resources} are interned per encoded batch, i.e. only their first occurrence carries the JID or
+ * the reference point id and path, all further occurrences are written as a table index.
+ *
+ * <p>Like the XStream converters, instances are bound to a session as users and resources can only
+ * be resolved in the context of the session they belong to. Instances are stateless between calls
+ * and may be used by multiple threads concurrently.
+ */
+public final class BinaryActivityCodec {
+
+  private static final Logger log = Logger.getLogger(BinaryActivityCodec.class);
+
+  /**
+   * The version of the encoding. It <b>must</b> be incremented on every incompatible change of the
+   * format, including the reordering of the enum constants that are transferred and the framing of
+   * the {@link saros.communication.extensions.BinaryActivitiesExtension}.
+   */
+  public static final int VERSION = 5;
+
+  private static final int CHANGE_COLOR = 1;
+  private static final int CHECKSUM = 2;
+  private static final int CHECKSUM_ERROR = 3;
+  private static final int DELETION_ACKNOWLEDGMENT = 4;
+  private static final int EDITOR = 5;
+  private static final int FILE = 6;
+  private static final int FOLDER_CREATED = 7;
+  private static final int FOLDER_DELETED = 8;
+  private static final int JUPITER = 9;
+  private static final int NOP = 10;
+  private static final int PERMISSION = 11;
+  private static final int PROGRESS = 12;
+  private static final int START_FOLLOWING = 13;
+  private static final int STOP = 14;
+  private static final int STOP_FOLLOWING = 15;
+  private static final int TARGETED_FILE = 16;
+  private static final int TEXT_EDIT = 17;
+  private static final int TEXT_SELECTION = 18;
+  private static final int VIEWPORT = 19;
+  private static final int TEXT_RECOVERY = 20;
+
+  private static final int OP_NOP = 0;
+  private static final int OP_TIMESTAMP = 1;
+  private static final int OP_INSERT = 2;
+  private static final int OP_DELETE = 3;
+  private static final int OP_SPLIT = 4;
+
+  private static final int RESOURCE_FILE = 0;
+  private static final int RESOURCE_FOLDER = 1;
+
+  private static final int CONTENT_NONE = 0;
+  private static final int CONTENT_INLINE = 1;
+  private static final int CONTENT_DETACHED = 2;
+
+  /**
+   * Provides the contents of {@linkplain FileActivity file activities} that were transferred
+   * separately from the encoded activities.
+   */
+  public interface DetachedContentResolver {
+
+    /**
+     * Returns the file containing the next detached content in the order the contents were
+     * {@linkplain BinaryActivityCodec#encode(List, long, List) detached}.
+     *
+     * @param length the length of the content in bytes
+     * @param checksum the CRC-32 checksum of the content
+     * @return the file containing the content
+     * @throws IOException if the content is not available or does not match
+     */
+    public Path resolve(long length, int checksum) throws IOException;
+  }
+
+  private final ISarosSession session;
+
+  public BinaryActivityCodec(ISarosSession session) {
+    this.session = session;
+  }
+
+  /**
+   * Encodes the given activities.
+   *
+   * @param activities the activities to encode
+   * @return the encoded activities
+   * @throws IOException if one of the activities is not supported by this codec or refers to a
+   *     resource that is not shared in the session
+   */
+  public byte[] encode(List<IActivity> activities) throws IOException {
+    return encode(activities, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Encodes the given activities. File contents exceeding the given length are not encoded, only
+   * their length and checksum is. These contents must be transferred separately in the order they
+   * were added to the given list and must be provided by a {@link DetachedContentResolver} when
+   * decoding.
+   *
+   * @param activities the activities to encode
+   * @param maxInlineContentLength the maximum length of a file content that is encoded
+   * @param detachedContents list the file activities are added to whose content was not encoded,
+   *     may be <code>null</code> if <code>maxInlineContentLength</code> is {@link Long#MAX_VALUE}
+   * @return the encoded activities
+   * @throws IOException if one of the activities is not supported by this codec or refers to a
+   *     resource that is not shared in the session
+   */
+  public byte[] encode(
+      List<IActivity> activities, long maxInlineContentLength, List<FileActivity> detachedContents)
+      throws IOException {
+
+    Encoder encoder = new Encoder(maxInlineContentLength, detachedContents);
+    encoder.out.writeByte(VERSION);
+
+    for (IActivity activity : activities) encoder.writeActivity(activity);
+
+    return encoder.out.toByteArray();
+  }
+
+  /**
+   * Decodes the given data. Activities whose users or resources are no longer part of the session
+   * are dropped.
+   *
+   * @param data the data returned by {@link #encode(List)}
+   * @return the decoded activities
+   * @throws IOException if the data is malformed or was encoded by an unsupported version
+   */
+  public List<IActivity> decode(byte[] data) throws IOException {
+    return decode(data, null);
+  }
+
+  /**
+   * Decodes the given data. Activities whose users or resources are no longer part of the session
+   * are dropped.
+   *
+   * @param data the data returned by {@link #encode(List, long, List)}
+   * @param resolver the resolver for the detached file contents, may be <code>null</code> if no
+   *     contents were detached
+   * @return the decoded activities
+   * @throws IOException if the data is malformed or was encoded by an unsupported version or a
+   *     detached content cannot be resolved
+   */
+  public List<IActivity> decode(byte[] data, DetachedContentResolver resolver) throws IOException {
+    return decode(new BinaryDataInput(data), resolver);
+  }
+
+  /**
+   * Decodes the data of the given input until its end, see {@link #decode(byte[],
+   * DetachedContentResolver)}.
+   */
+  public List<IActivity> decode(BinaryDataInput in, DetachedContentResolver resolver)
+      throws IOException {
+    Decoder decoder = new Decoder(in, resolver);
+
+    int version = decoder.in.readByte();
+
+    if (version != VERSION)
+      throw new ProtocolException("unsupported activity codec version: " + version);
+
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    while (decoder.in.available() > 0) {
+      IActivity activity;
+
+      try {
+        activity = decoder.readActivity();
+      } catch (UnresolvableReferenceException e) {
+        log.warn("dropping activity: " + e.getMessage());
+        continue;
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        throw new ProtocolException("decoded activity is malformed: " + e.getMessage());
+      }
+
+      activities.add(activity);
+    }
+
+    return activities;
+  }
+
+  /**
+   * Returns the CRC-32 checksum of the content of the given file activity.
+   *
+   * @param activity a file activity with content
+   * @return the checksum of the content
+   * @throws IOException if the content cannot be read
+   */
+  public static int getContentChecksum(FileActivity activity) throws IOException {
+    CRC32 checksum = new CRC32();
+
+    try (InputStream in = activity.getContentStream()) {
+      byte[] buffer = new byte[8192];
+
+      int read;
+
+      while ((read = in.read(buffer)) != -1) checksum.update(buffer, 0, read);
+    }
+
+    return (int) checksum.getValue();
+  }
+
+  private final class Encoder {
+    private final BinaryDataOutput out = new BinaryDataOutput(256);
+
+    private final long maxInlineContentLength;
+    private final List<FileActivity> detachedContents;
+
+    private final Map<User, Integer> users = new HashMap<User, Integer>();
+    private final Map<IResource, Integer> resources = new HashMap<IResource, Integer>();
+
+    private Encoder(long maxInlineContentLength, List<FileActivity> detachedContents) {
+      this.maxInlineContentLength = maxInlineContentLength;
+      this.detachedContents = detachedContents;
+    }
+
+    private void writeActivity(IActivity activity) throws IOException {
+
+      /*
+       * Match the exact classes, subclasses may carry additional state that
+       * this codec does not know about
+       */
+      final Class<?> clazz = activity.getClass();
+
+      if (clazz == TargetedFileActivity.class) {
+        TargetedFileActivity a = (TargetedFileActivity) activity;
+        writeHeader(TARGETED_FILE, a);
+        writeUser(a.getTarget());
+        writeFileActivity(a);
+
+      } else if (clazz == FileActivity.class) {
+        FileActivity a = (FileActivity) activity;
+        writeHeader(FILE, a);
+        writeFileActivity(a);
+
+      } else if (clazz == JupiterActivity.class) {
+        JupiterActivity a = (JupiterActivity) activity;
+        writeHeader(JUPITER, a);
+        writeResource(a.getResource());
+        writeTimestamp(a.getTimestamp());
+        writeOperation(a.getOperation());
+
+      } else if (clazz == TextSelectionActivity.class) {
+        TextSelectionActivity a = (TextSelectionActivity) activity;
+        writeHeader(TEXT_SELECTION, a);
+        writeResource(a.getResource());
+
+        TextSelection selection = a.getSelection();
+        out.writeBoolean(selection.isEmpty());
+
+        if (!selection.isEmpty()) {
+          writePosition(selection.getStartPosition());
+          writePosition(selection.getEndPosition());
+          out.writeBoolean(selection.isBackwardsSelection());
+        }
+
+      } else if (clazz == ViewportActivity.class) {
+        ViewportActivity a = (ViewportActivity) activity;
+        writeHeader(VIEWPORT, a);
+        writeResource(a.getResource());
+        out.writeUnsignedInt(a.getStartLine());
+        out.writeUnsignedInt(a.getNumberOfLines());
+
+      } else if (clazz == TextEditActivity.class) {
+        TextEditActivity a = (TextEditActivity) activity;
+        writeHeader(TEXT_EDIT, a);
+        writeResource(a.getResource());
+        writePosition(a.getStartPosition());
+        out.writeString(a.getNewText());
+        out.writeString(a.getReplacedText());
+
+      } else if (clazz == EditorActivity.class) {
+        EditorActivity a = (EditorActivity) activity;
+        writeHeader(EDITOR, a);
+        out.writeEnum(a.getType());
+        writeResource(a.getResource());
+
+      } else if (clazz == ChecksumActivity.class) {
+        ChecksumActivity a = (ChecksumActivity) activity;
+        writeHeader(CHECKSUM, a);
+        writeResource(a.getResource());
+        out.writeLong(a.getHash());
+        out.writeLong(a.getLength());
+        out.writeUnsignedInt(a.getAlgorithm().getId());
+        writeTimestamp(a.getTimestamp());
+
+      } else if (clazz == ChecksumErrorActivity.class) {
+        ChecksumErrorActivity a = (ChecksumErrorActivity) activity;
+        writeHeader(CHECKSUM_ERROR, a);
+        writeUser(a.getTarget());
+        out.writeNullableString(a.getRecoveryID());
+
+        List<IFile> files = a.getFiles();
+        out.writeUnsignedInt(files == null ? 0 : files.size() + 1);
+
+        if (files != null) for (IFile file : files) writeResource(file);
+
+        List<DocumentSignature> signatures = a.getSignatures();
+        out.writeBoolean(signatures != null);
+
+        if (signatures != null)
+          for (DocumentSignature signature : signatures) writeSignature(signature);
+
+      } else if (clazz == TextRecoveryActivity.class) {
+        TextRecoveryActivity a = (TextRecoveryActivity) activity;
+        writeHeader(TEXT_RECOVERY, a);
+        writeUser(a.getTarget());
+        writeResource(a.getResource());
+        out.writeUnsignedInt(a.getRangeCount());
+
+        for (int i = 0; i < a.getRangeCount(); i++) {
+          out.writeUnsignedInt(a.getStartLine(i));
+          out.writeUnsignedInt(a.getLineCount(i));
+          out.writeString(a.getText(i));
+        }
+
+      } else if (clazz == ChangeColorActivity.class) {
+        ChangeColorActivity a = (ChangeColorActivity) activity;
+        writeHeader(CHANGE_COLOR, a);
+        writeUser(a.getTarget());
+        writeUser(a.getAffected());
+        out.writeInt(a.getColorID());
+
+      } else if (clazz == DeletionAcknowledgmentActivity.class) {
+        DeletionAcknowledgmentActivity a = (DeletionAcknowledgmentActivity) activity;
+        writeHeader(DELETION_ACKNOWLEDGMENT, a);
+        writeResource(a.getResource());
+
+      } else if (clazz == FolderCreatedActivity.class) {
+        FolderCreatedActivity a = (FolderCreatedActivity) activity;
+        writeHeader(FOLDER_CREATED, a);
+        writeResource(a.getResource());
+
+      } else if (clazz == FolderDeletedActivity.class) {
+        FolderDeletedActivity a = (FolderDeletedActivity) activity;
+        writeHeader(FOLDER_DELETED, a);
+        writeResource(a.getResource());
+
+      } else if (clazz == NOPActivity.class) {
+        NOPActivity a = (NOPActivity) activity;
+        writeHeader(NOP, a);
+        writeUser(a.getTarget());
+        out.writeInt(a.getID());
+
+      } else if (clazz == PermissionActivity.class) {
+        PermissionActivity a = (PermissionActivity) activity;
+        writeHeader(PERMISSION, a);
+        writeUser(a.getAffectedUser());
+        out.writeEnum(a.getPermission());
+
+      } else if (clazz == ProgressActivity.class) {
+        ProgressActivity a = (ProgressActivity) activity;
+        writeHeader(PROGRESS, a);
+        writeUser(a.getTarget());
+        out.writeNullableString(a.getProgressID());
+        out.writeInt(a.getWorkCurrent());
+        out.writeInt(a.getWorkTotal());
+        out.writeNullableString(a.getTaskName());
+        out.writeEnum(a.getAction());
+
+      } else if (clazz == StartFollowingActivity.class) {
+        StartFollowingActivity a = (StartFollowingActivity) activity;
+        writeHeader(START_FOLLOWING, a);
+        writeUser(a.getFollowedUser());
+
+      } else if (clazz == StopActivity.class) {
+        StopActivity a = (StopActivity) activity;
+        writeHeader(STOP, a);
+        writeUser(a.getInitiator());
+        writeUser(a.getAffected());
+        out.writeEnum(a.getType());
+        out.writeEnum(a.getState());
+        out.writeNullableString(a.getActivityID());
+
+      } else if (clazz == StopFollowingActivity.class) {
+        writeHeader(STOP_FOLLOWING, activity);
+
+      } else {
+        throw new IOException("unsupported activity type: " + activity.getClass().getName());
+      }
+    }
+
+    private void writeHeader(int type, IActivity activity) {
+      out.writeByte(type);
+      writeUser(activity.getSource());
+    }
+
+    private void writeFileActivity(FileActivity a) throws IOException {
+      out.writeEnum(a.getType());
+      out.writeEnum(a.getPurpose());
+      writeResource(a.getResource());
+      writeResource(a.getOldResource());
+      writeContent(a);
+      out.writeNullableString(a.getEncoding());
+    }
+
+    private void writeContent(FileActivity a) throws IOException {
+      if (!a.hasContent()) {
+        out.writeByte(CONTENT_NONE);
+
+      } else if (a.getContentLength() <= maxInlineContentLength) {
+        out.writeByte(CONTENT_INLINE);
+        out.writeBytes(a.getContent());
+
+      } else {
+        out.writeByte(CONTENT_DETACHED);
+        out.writeLong(a.getContentLength());
+        out.writeInt(getContentChecksum(a));
+        detachedContents.add(a);
+      }
+    }
+
+    private void writeSignature(DocumentSignature signature) {
+      out.writeBoolean(signature != null);
+
+      if (signature == null) return;
+
+      out.writeUnsignedInt(signature.getBlockCount());
+
+      for (int i = 0; i < signature.getBlockCount(); i++) {
+        out.writeUnsignedInt(signature.getLineCount(i));
+        out.writeLong(signature.getHash(i));
+      }
+    }
+
+    private void writeUser(User user) {
+      Integer index = users.get(user);
+
+      if (index != null) {
+        out.writeUnsignedInt(index);
+        return;
+      }
+
+      index = users.size();
+      users.put(user, index);
+
+      out.writeUnsignedInt(index);
+      out.writeString(user.getJID().toString());
+    }
+
+    /* 0 = null, otherwise table index + 1 */
+    private void writeResource(IResource resource) throws IOException {
+      if (resource == null) {
+        out.writeUnsignedInt(0);
+        return;
+      }
+
+      Integer index = resources.get(resource);
+
+      if (index != null) {
+        out.writeUnsignedInt(index + 1);
+        return;
+      }
+
+      IResource.Type type = resource.getType();
+
+      if (type != IResource.Type.FILE && type != IResource.Type.FOLDER)
+        throw new IllegalStateException(
+            "Illegal resource type " + type + " for resource " + resource);
+
+      String referencePointId = session.getReferencePointId(resource.getReferencePoint());
+
+      if (referencePointId == null)
+        throw new IOException(
+            "could not retrieve reference point id for resource "
+                + resource
+                + ", make sure you don't create activities for non-shared resources");
+
+      index = resources.size();
+      resources.put(resource, index);
+
+      out.writeUnsignedInt(index + 1);
+      out.writeByte(type == IResource.Type.FILE ? RESOURCE_FILE : RESOURCE_FOLDER);
+      out.writeString(referencePointId);
+      out.writeString(PathUtils.toPortableString(resource.getReferencePointRelativePath()));
+    }
+
+    private void writePosition(TextPosition position) {
+      out.writeUnsignedInt(position.getLineNumber());
+      out.writeUnsignedInt(position.getInLineOffset());
+    }
+
+    private void writeTimestamp(Timestamp timestamp) throws IOException {
+      if (timestamp == null) {
+        out.writeBoolean(false);
+        return;
+      }
+
+      if (!(timestamp instanceof JupiterVectorTime))
+        throw new IOException("unsupported timestamp type: " + timestamp.getClass().getName());
+
+      JupiterVectorTime vectorTime = (JupiterVectorTime) timestamp;
+
+      out.writeBoolean(true);
+      out.writeUnsignedInt(vectorTime.getLocalOperationCount());
+      out.writeUnsignedInt(vectorTime.getRemoteOperationCount());
+    }
+
+    private void writeOperation(Operation operation) throws IOException {
+      if (operation instanceof InsertOperation) {
+        InsertOperation op = (InsertOperation) operation;
+        out.writeByte(OP_INSERT);
+        writePosition(op.getStartPosition());
+        out.writeUnsignedInt(op.getLineDelta());
+        out.writeUnsignedInt(op.getOffsetDelta());
+        writePosition(op.getOriginStartPosition());
+        out.writeString(op.getText());
+
+      } else if (operation instanceof DeleteOperation) {
+        DeleteOperation op = (DeleteOperation) operation;
+        out.writeByte(OP_DELETE);
+        writePosition(op.getStartPosition());
+        out.writeUnsignedInt(op.getLineDelta());
+        out.writeUnsignedInt(op.getOffsetDelta());
+        out.writeString(op.getText());
+
+      } else if (operation instanceof SplitOperation) {
+        SplitOperation op = (SplitOperation) operation;
+        out.writeByte(OP_SPLIT);
+        writeOperation(op.getFirst());
+        writeOperation(op.getSecond());
+
+      } else if (operation instanceof NoOperation) {
+        out.writeByte(OP_NOP);
+
+      } else if (operation instanceof TimestampOperation) {
+        out.writeByte(OP_TIMESTAMP);
+
+      } else {
+        throw new IOException(
+            "unsupported operation type: "
+                + (operation == null ? "null" : operation.getClass().getName()));
+      }
+    }
+  }
+
+  private final class Decoder {
+    private final BinaryDataInput in;
+    private final DetachedContentResolver resolver;
+
+    private final List<User> users = new ArrayList<User>();
+    private final List<IResource> resources = new ArrayList<IResource>();
+
+    private Decoder(BinaryDataInput in, DetachedContentResolver resolver) {
+      this.in = in;
+      this.resolver = resolver;
+    }
+
+    /*
+     * All references of an activity must be read even if one of them cannot
+     * be resolved, otherwise the intern tables and the read position would
+     * get out of sync.
+     */
+    private IActivity readActivity() throws IOException {
+      final int type = in.readByte();
+      final User source = readUser();
+
+      final IActivity activity;
+
+      switch (type) {
+        case CHANGE_COLOR:
+          {
+            User target = readUser();
+            User affected = readUser();
+            int colorID = in.readInt();
+            activity =
+                new ChangeColorActivity(
+                    require(source), require(target), require(affected), colorID);
+            break;
+          }
+
+        case CHECKSUM:
+          {
+            IFile file = (IFile) readResource();
+            long hash = in.readLong();
+            long length = in.readLong();
+            ChecksumAlgorithm algorithm = ChecksumAlgorithm.forId(in.readUnsignedInt());
+            Timestamp timestamp = readTimestamp();
+
+            if (algorithm == null) throw new ProtocolException("unknown checksum algorithm");
+
+            activity =
+                new ChecksumActivity(
+                    require(source), require(file), hash, length, algorithm, timestamp);
+            break;
+          }
+
+        case CHECKSUM_ERROR:
+          {
+            User target = readUser();
+            String recoveryID = in.readNullableString();
+
+            int size = in.readUnsignedInt();
+            List<IFile> files = null;
+
+            if (size > 0) {
+              files = new ArrayList<IFile>(size - 1);
+              for (int i = 0; i < size - 1; i++) files.add((IFile) readResource());
+            }
+
+            List<DocumentSignature> signatures = null;
+
+            if (in.readBoolean()) {
+              signatures = new ArrayList<DocumentSignature>();
+              for (int i = 0; i < size - 1; i++) signatures.add(readSignature());
+            }
+
+            if (files != null) for (IFile file : files) require(file);
+
+            activity =
+                new ChecksumErrorActivity(
+                    require(source), require(target), files, signatures, recoveryID);
+            break;
+          }
+
+        case TEXT_RECOVERY:
+          {
+            User target = readUser();
+            IFile file = (IFile) readResource();
+
+            int ranges = readCount();
+
+            int[] startLines = new int[ranges];
+            int[] lineCounts = new int[ranges];
+            String[] texts = new String[ranges];
+
+            for (int i = 0; i < ranges; i++) {
+              startLines[i] = in.readUnsignedInt();
+              lineCounts[i] = in.readUnsignedInt();
+              texts[i] = in.readString();
+            }
+
+            activity =
+                new TextRecoveryActivity(
+                    require(source), require(target), require(file), startLines, lineCounts, texts);
+            break;
+          }
+
+        case DELETION_ACKNOWLEDGMENT:
+          {
+            IFile file = (IFile) readResource();
+            activity = new DeletionAcknowledgmentActivity(require(source), require(file));
+            break;
+          }
+
+        case EDITOR:
+          {
+            EditorActivity.Type editorType = in.readEnum(EditorActivity.Type.class);
+            IFile file = (IFile) readResource();
+
+            if (file == null && editorType != EditorActivity.Type.ACTIVATED)
+              throw new UnresolvableReferenceException("file of editor activity is not shared");
+
+            activity = new EditorActivity(require(source), editorType, file);
+            break;
+          }
+
+        case FILE:
+        case TARGETED_FILE:
+          {
+            User target = type == TARGETED_FILE ? readUser() : null;
+
+            FileActivity.Type fileType = in.readEnum(FileActivity.Type.class);
+            FileActivity.Purpose purpose = in.readEnum(FileActivity.Purpose.class);
+            IFile newFile = (IFile) readResource();
+            IFile oldFile = (IFile) readResource();
+
+            byte[] content = null;
+            Path contentFile = null;
+
+            switch (in.readByte()) {
+              case CONTENT_NONE:
+                break;
+              case CONTENT_INLINE:
+                content = in.readBytes();
+                break;
+              case CONTENT_DETACHED:
+                contentFile = readDetachedContent();
+                break;
+              default:
+                throw new ProtocolException("unknown file content type");
+            }
+
+            String encoding = in.readNullableString();
+
+            if (oldFile == null && fileType == FileActivity.Type.MOVED)
+              throw new UnresolvableReferenceException("old file of move is not shared");
+
+            if (type == TARGETED_FILE)
+              activity =
+                  new TargetedFileActivity(
+                      require(source),
+                      require(target),
+                      fileType,
+                      require(newFile),
+                      oldFile,
+                      content,
+                      contentFile,
+                      encoding,
+                      purpose);
+            else
+              activity =
+                  new FileActivity(
+                      require(source),
+                      fileType,
+                      purpose,
+                      require(newFile),
+                      oldFile,
+                      content,
+                      contentFile,
+                      encoding);
+            break;
+          }
+
+        case FOLDER_CREATED:
+          {
+            IFolder folder = (IFolder) readResource();
+            activity = new FolderCreatedActivity(require(source), require(folder));
+            break;
+          }
+
+        case FOLDER_DELETED:
+          {
+            IFolder folder = (IFolder) readResource();
+            activity = new FolderDeletedActivity(require(source), require(folder));
+            break;
+          }
+
+        case JUPITER:
+          {
+            IFile file = (IFile) readResource();
+            Timestamp timestamp = readTimestamp();
+            Operation operation = readOperation();
+            activity = new JupiterActivity(timestamp, operation, require(source), require(file));
+            break;
+          }
+
+        case NOP:
+          {
+            User target = readUser();
+            int id = in.readInt();
+            activity = new NOPActivity(require(source), require(target), id);
+            break;
+          }
+
+        case PERMISSION:
+          {
+            User affected = readUser();
+            User.Permission permission = in.readEnum(User.Permission.class);
+            activity = new PermissionActivity(require(source), require(affected), permission);
+            break;
+          }
+
+        case PROGRESS:
+          {
+            User target = readUser();
+            String progressID = in.readNullableString();
+            int workCurrent = in.readInt();
+            int workTotal = in.readInt();
+            String taskName = in.readNullableString();
+            ProgressActivity.ProgressAction action =
+                in.readEnum(ProgressActivity.ProgressAction.class);
+            activity =
+                new ProgressActivity(
+                    require(source),
+                    require(target),
+                    progressID,
+                    workCurrent,
+                    workTotal,
+                    taskName,
+                    action);
+            break;
+          }
+
+        case START_FOLLOWING:
+          {
+            User followed = readUser();
+            activity = new StartFollowingActivity(require(source), require(followed));
+            break;
+          }
+
+        case STOP:
+          {
+            User initiator = readUser();
+            User affected = readUser();
+            StopActivity.Type stopType = in.readEnum(StopActivity.Type.class);
+            StopActivity.State state = in.readEnum(StopActivity.State.class);
+            String id = in.readNullableString();
+            activity =
+                new StopActivity(
+                    require(source), require(initiator), require(affected), stopType, state, id);
+            break;
+          }
+
+        case STOP_FOLLOWING:
+          activity = new StopFollowingActivity(require(source));
+          break;
+
+        case TEXT_EDIT:
+          {
+            IFile file = (IFile) readResource();
+            TextPosition start = readPosition();
+            String newText = in.readString();
+            String replacedText = in.readString();
+            activity =
+                TextEditActivity.buildTextEditActivity(
+                    require(source), start, newText, replacedText, require(file));
+            break;
+          }
+
+        case TEXT_SELECTION:
+          {
+            IFile file = (IFile) readResource();
+            TextSelection selection;
+
+            if (in.readBoolean()) {
+              selection = TextSelection.EMPTY_SELECTION;
+            } else {
+              TextPosition start = readPosition();
+              TextPosition end = readPosition();
+              selection = new TextSelection(start, end, in.readBoolean());
+            }
+
+            activity = new TextSelectionActivity(require(source), selection, require(file));
+            break;
+          }
+
+        case VIEWPORT:
+          {
+            IFile file = (IFile) readResource();
+            int startLine = in.readUnsignedInt();
+            int numberOfLines = in.readUnsignedInt();
+            activity =
+                new ViewportActivity(require(source), startLine, numberOfLines, require(file));
+            break;
+          }
+
+        default:
+          throw new ProtocolException("unknown activity type: " + type);
+      }
+
+      return activity;
+    }
+
+    private Path readDetachedContent() throws IOException {
+      long length = in.readLong();
+      int checksum = in.readInt();
+
+      if (resolver == null) throw new ProtocolException("detached file content cannot be resolved");
+
+      return resolver.resolve(length, checksum);
+    }
+
+    private DocumentSignature readSignature() throws IOException {
+      if (!in.readBoolean()) return null;
+
+      int blocks = readCount();
+
+      int[] lineCounts = new int[blocks];
+      long[] hashes = new long[blocks];
+
+      for (int i = 0; i < blocks; i++) {
+        lineCounts[i] = in.readUnsignedInt();
+        hashes[i] = in.readLong();
+      }
+
+      return new DocumentSignature(lineCounts, hashes);
+    }
+
+    /* every counted element is encoded with at least one byte */
+    private int readCount() throws IOException {
+      int count = in.readUnsignedInt();
+
+      if (count > in.available())
+        throw new ProtocolException("element count exceeds the remaining data: " + count);
+
+      return count;
+    }
+
+    private User readUser() throws IOException {
+      int index = in.readUnsignedInt();
+
+      if (index < users.size()) return users.get(index);
+
+      if (index != users.size()) throw new ProtocolException("invalid user reference: " + index);
+
+      User user = session.getUser(JID.valueOf(in.readString()));
+      users.add(user);
+
+      return user;
+    }
+
+    private IResource readResource() throws IOException {
+      int index = in.readUnsignedInt();
+
+      if (index == 0) return null;
+
+      index--;
+
+      if (index < resources.size()) return resources.get(index);
+
+      if (index != resources.size())
+        throw new ProtocolException("invalid resource reference: " + index);
+
+      int type = in.readByte();
+      String referencePointId = in.readString();
+      Path path = PathUtils.fromPortableString(in.readString());
+
+      if (type != RESOURCE_FILE && type != RESOURCE_FOLDER)
+        throw new ProtocolException("unknown resource type: " + type);
+
+      IReferencePoint referencePoint = session.getReferencePoint(referencePointId);
+
+      IResource resource = null;
+
+      if (referencePoint == null) {
+        log.error(
+            "Could not create resource because there is no shared reference point for id '"
+                + referencePointId
+                + "'");
+      } else if (type == RESOURCE_FILE) {
+        resource = referencePoint.getFile(path);
+      } else {
+        resource = referencePoint.getFolder(path);
+      }
+
+      resources.add(resource);
+
+      return resource;
+    }
+
+    private TextPosition readPosition() throws IOException {
+      int line = in.readUnsignedInt();
+      int offset = in.readUnsignedInt();
+      return new TextPosition(line, offset);
+    }
+
+    private Timestamp readTimestamp() throws IOException {
+      if (!in.readBoolean()) return null;
+
+      int local = in.readUnsignedInt();
+      int remote = in.readUnsignedInt();
+      return new JupiterVectorTime(local, remote);
+    }
+
+    private Operation readOperation() throws IOException {
+      final int type = in.readByte();
+
+      switch (type) {
+        case OP_INSERT:
+          {
+            TextPosition start = readPosition();
+            int lineDelta = in.readUnsignedInt();
+            int offsetDelta = in.readUnsignedInt();
+            TextPosition origin = readPosition();
+            String text = in.readString();
+            return new InsertOperation(start, lineDelta, offsetDelta, text, origin);
+          }
+
+        case OP_DELETE:
+          {
+            TextPosition start = readPosition();
+            int lineDelta = in.readUnsignedInt();
+            int offsetDelta = in.readUnsignedInt();
+            String text = in.readString();
+            return new DeleteOperation(start, lineDelta, offsetDelta, text);
+          }
+
+        case OP_SPLIT:
+          {
+            Operation first = readOperation();
+            Operation second = readOperation();
+            return new SplitOperation(first, second);
+          }
+
+        case OP_NOP:
+          return new NoOperation();
+
+        case OP_TIMESTAMP:
+          return new TimestampOperation();
+
+        default:
+          throw new ProtocolException("unknown operation type: " + type);
+      }
+    }
+
+    private <T> T require(T reference) throws UnresolvableReferenceException {
+      if (reference == null)
+        throw new UnresolvableReferenceException(
+            "activity refers to a user or resource that is not part of the session");
+
+      return reference;
+    }
+  }
+
+  private static class UnresolvableReferenceException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private UnresolvableReferenceException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package saros.activities.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads data that was written by a {@link BinaryDataOutput}. All read methods throw an {@link
+ * IOException} if the data is truncated or malformed.
+ *
+ * <p>This class is <b>not</b> thread safe.
+ */
+public final class BinaryDataInput {
+
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  public BinaryDataInput(byte[] data) {
+    this(data, 0, data.length);
+  }
+
+  public BinaryDataInput(byte[] data, int offset, int length) {
+    this.buffer = data;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  public int readByte() throws IOException {
+    if (position >= limit) throw new EOFException("no more data available");
+
+    return buffer[position++] & 0xFF;
+  }
+
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  public int readUnsignedInt() throws IOException {
+    long value = readVarLong();
+
+    if (value < 0 || value > Integer.MAX_VALUE)
+      throw new ProtocolException("varint exceeds integer range: " + value);
+
+    return (int) value;
+  }
+
+  public int readInt() throws IOException {
+    long value = readVarLong();
+
+    if ((value & ~0xFFFFFFFFL) != 0)
+      throw new ProtocolException("varint exceeds integer range: " + value);
+
+    int v = (int) value;
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  public long readLong() throws IOException {
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public String readString() throws IOException {
+    int length = readUnsignedInt();
+    return readUTF8(length);
+  }
+
+  public String readNullableString() throws IOException {
+    int length = readUnsignedInt();
+    return length == 0 ? null : readUTF8(length - 1);
+  }
+
+  public byte[] readBytes() throws IOException {
+    return readRaw(readUnsignedInt());
+  }
+
+  public byte[] readNullableBytes() throws IOException {
+    int length = readUnsignedInt();
+    return length == 0 ? null : readRaw(length - 1);
+  }
+
+  /**
+   * Reads an enum constant that was written with {@link BinaryDataOutput#writeEnum(Enum)}.
+   *
+   * @return the constant or <code>null</code>
+   */
+  public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+    int ordinal = readUnsignedInt();
+
+    if (ordinal == 0) return null;
+
+    E[] constants = type.getEnumConstants();
+
+    if (ordinal > constants.length)
+      throw new ProtocolException("unknown constant " + (ordinal - 1) + " for " + type.getName());
+
+    return constants[ordinal - 1];
+  }
+
+  public byte[] readRaw(int length) throws IOException {
+    ensureAvailable(length);
+
+    byte[] result = new byte[length];
+    System.arraycopy(buffer, position, result, 0, length);
+    position += length;
+    return result;
+  }
+
+  /** Returns the number of bytes that were not read yet. */
+  public int available() {
+    return limit - position;
+  }
+
+  /** Returns the current read position in the underlying array. */
+  public int position() {
+    return position;
+  }
+
+  private String readUTF8(int length) throws IOException {
+    ensureAvailable(length);
+
+    String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return result;
+  }
+
+  private long readVarLong() throws IOException {
+    long result = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      result |= (long) (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) return result;
+    }
+
+    throw new ProtocolException("malformed varint");
+  }
+
+  private void ensureAvailable(int length) throws IOException {
+    if (length < 0 || length > limit - position)
+      throw new EOFException(
+          "cannot read " + length + " byte(s), only " + (limit - position) + " available");
+  }
+}
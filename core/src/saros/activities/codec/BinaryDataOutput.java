@@ -0,0 +1,122 @@
+package saros.activities.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer offering compact variable length encodings for primitive values.
+ *
+ * <p>Unsigned values are written as base 128 varints, signed values are zig-zag encoded first so
+ * that small negative numbers also only occupy a single byte. Strings and byte arrays are prefixed
+ * with their length. Nullable values are prefixed with their length plus one, leaving zero for
+ * <code>null</code>.
+ *
+ * <p>This class is <b>not</b> thread safe.
+ *
+ * @see BinaryDataInput
+ */
+public final class BinaryDataOutput {
+
+  private byte[] buffer;
+  private int count;
+
+  public BinaryDataOutput() {
+    this(64);
+  }
+
+  public BinaryDataOutput(int initialCapacity) {
+    buffer = new byte[Math.max(16, initialCapacity)];
+  }
+
+  public void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[count++] = (byte) value;
+  }
+
+  public void writeBoolean(boolean value) {
+    writeByte(value ? 1 : 0);
+  }
+
+  /** Writes the given value which must not be negative as a varint. */
+  public void writeUnsignedInt(int value) {
+    if (value < 0) throw new IllegalArgumentException("value must not be negative: " + value);
+
+    writeVarLong(value);
+  }
+
+  /** Writes the given value as a zig-zag encoded varint. */
+  public void writeInt(int value) {
+    writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+  }
+
+  /** Writes the given value as a zig-zag encoded varint. */
+  public void writeLong(long value) {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  public void writeString(String value) {
+    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void writeNullableString(String value) {
+    writeNullableBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void writeBytes(byte[] value) {
+    writeUnsignedInt(value.length);
+    writeRaw(value, 0, value.length);
+  }
+
+  public void writeNullableBytes(byte[] value) {
+    if (value == null) {
+      writeByte(0);
+      return;
+    }
+
+    writeVarLong(value.length + 1L);
+    writeRaw(value, 0, value.length);
+  }
+
+  /** Writes the ordinal of the given constant or a marker if the constant is <code>null</code>. */
+  public void writeEnum(Enum<?> value) {
+    writeUnsignedInt(value == null ? 0 : value.ordinal() + 1);
+  }
+
+  public void writeRaw(byte[] data, int offset, int length) {
+    ensureCapacity(length);
+    System.arraycopy(data, offset, buffer, count, length);
+    count += length;
+  }
+
+  /** Returns the number of bytes written so far. */
+  public int size() {
+    return count;
+  }
+
+  /** Discards all written data. The allocated buffer is kept for reuse. */
+  public void reset() {
+    count = 0;
+  }
+
+  /** Returns a copy of the written data. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, count);
+  }
+
+  private void writeVarLong(long value) {
+    ensureCapacity(10);
+
+    while ((value & ~0x7FL) != 0) {
+      buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    buffer[count++] = (byte) value;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (count + additional <= buffer.length) return;
+
+    buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + additional));
+  }
+}
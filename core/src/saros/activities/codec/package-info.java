@@ -0,0 +1,5 @@
+/**
+ * Binary encoding of {@linkplain saros.activities.IActivity activities} that is used instead of the
+ * XStream XML representation if both peers support it.
+ */
+package saros.activities.codec;
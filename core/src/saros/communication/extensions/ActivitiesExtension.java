@@ -23,6 +23,7 @@ import saros.activities.StartFollowingActivity;
 import saros.activities.StopActivity;
 import saros.activities.StopFollowingActivity;
 import saros.activities.TargetedFileActivity;
+import saros.activities.TextRecoveryActivity;
 import saros.activities.TextSelectionActivity;
 import saros.activities.ViewportActivity;
 import saros.concurrent.jupiter.internal.JupiterVectorTime;
@@ -31,6 +32,7 @@ import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.internal.text.NoOperation;
 import saros.concurrent.jupiter.internal.text.SplitOperation;
 import saros.concurrent.jupiter.internal.text.TimestampOperation;
+import saros.concurrent.watchdog.DocumentSignature;
 import saros.net.xmpp.JID;
 import saros.session.User;
 
@@ -120,6 +122,9 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
           // Resource transport wrapper
           ResourceTransportWrapper.class,
 
+          // Consistency recovery
+          DocumentSignature.class,
+
           // Activities
           ChangeColorActivity.class,
           ChecksumActivity.class,
@@ -137,6 +142,7 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
           StartFollowingActivity.class,
           StopActivity.class,
           StopFollowingActivity.class,
+          TextRecoveryActivity.class,
           TextSelectionActivity.class,
           ViewportActivity.class);
     }
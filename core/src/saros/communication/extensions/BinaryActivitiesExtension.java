@@ -0,0 +1,411 @@
+package saros.communication.extensions;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.packet.PacketExtension;
+import org.jivesoftware.smack.provider.ProviderManager;
+import org.xmlpull.v1.XmlPullParser;
+import saros.activities.IActivity;
+import saros.activities.codec.BinaryActivityCodec;
+import saros.activities.codec.BinaryDataInput;
+import saros.activities.codec.BinaryDataOutput;
+import saros.net.ExtensionPacketFilter;
+import saros.net.IBinaryPacketExtension;
+import saros.net.IBinaryPacketExtensionProvider;
+
+/**
+ * Binary counterpart of the {@link ActivitiesExtension}. The activities are carried as data that
+ * was encoded by a {@link BinaryActivityCodec}, the decoding is left to the session as users and
+ * resources can only be resolved there.
+ *
+ * <p>The extension is only sent to peers that negotiated the binary codec during the session
+ * negotiation. When transferred over a stream connection no XML is involved at all.
+ *
+ * <p>The encoded activities are carried as a {@link Payload} that is compressed by the extension
+ * itself, so the same payload can be shared by the extensions that are sent to several recipients.
+ * Only the small header containing the sequence number is created for each recipient.
+ */
+public class BinaryActivitiesExtension implements IBinaryPacketExtension {
+
+  public static final Provider PROVIDER = new Provider();
+
+  public static final String ELEMENT_NAME = "bados";
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int FLAG_COMPRESSED = 1;
+
+  /** size in bytes that the encoded activities must exceed to be compressed */
+  private static final int COMPRESS_THRESHOLD = 128;
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  /** Buffers larger than this are not kept for the next payload of a thread. */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  /*
+   * The native state of the codecs is expensive to create, so every thread keeps its own codecs and
+   * buffers. Payloads are compressed by the sending threads and decompressed by the dispatch
+   * threads, so only a few threads ever hold them.
+   */
+  private static final ThreadLocal<Deflater> deflater =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+
+  private static final ThreadLocal<Inflater> inflater =
+      ThreadLocal.withInitial(() -> new Inflater());
+
+  private static final ThreadLocal<byte[]> deflateBuffer =
+      ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+  private static final ThreadLocal<byte[]> inflateBuffer =
+      ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+  /**
+   * Activities encoded by a {@link BinaryActivityCodec} in the form they are transferred. A payload
+   * is immutable and may be shared by any number of extensions.
+   *
+   * <p>A received payload refers to the range of the received packet data that contains the
+   * activities, so it is neither copied nor decompressed before the activities are decoded.
+   */
+  public static final class Payload {
+
+    private final byte[] data;
+
+    private final int offset;
+
+    private final int length;
+
+    private final int activityCount;
+
+    private final int detachedContentCount;
+
+    private final boolean compressed;
+
+    private Payload(byte[] data, int activityCount, int detachedContentCount, boolean compressed) {
+      this(data, 0, data.length, activityCount, detachedContentCount, compressed);
+    }
+
+    private Payload(
+        byte[] data,
+        int offset,
+        int length,
+        int activityCount,
+        int detachedContentCount,
+        boolean compressed) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+      this.activityCount = activityCount;
+      this.detachedContentCount = detachedContentCount;
+      this.compressed = compressed;
+    }
+
+    /**
+     * Creates a payload for the given encoded activities. The data is compressed if this reduces
+     * its size.
+     *
+     * @param activityData the activities as encoded by {@link BinaryActivityCodec#encode}
+     * @param activityCount the number of activities contained in the data
+     * @param detachedContentCount the number of file contents that were detached from the data and
+     *     are transferred separately
+     * @return the payload
+     */
+    public static Payload create(byte[] activityData, int activityCount, int detachedContentCount) {
+      if (activityData.length > COMPRESS_THRESHOLD) {
+        byte[] compressedData = deflate(activityData);
+
+        if (compressedData.length < activityData.length)
+          return new Payload(compressedData, activityCount, detachedContentCount, true);
+      }
+
+      return new Payload(activityData, activityCount, detachedContentCount, false);
+    }
+
+    /** Returns the number of activities contained in this payload. */
+    public int getActivityCount() {
+      return activityCount;
+    }
+  }
+
+  private final String sessionID;
+
+  private final int sequenceNumber;
+
+  private final Payload payload;
+
+  /**
+   * Creates a new extension. All object parameters <b>must not be <code>null</code></b>.
+   *
+   * @param sessionID the session id the activities belong to
+   * @param activityData the activities as encoded by {@link BinaryActivityCodec#encode}
+   * @param activityCount the number of activities contained in the data
+   * @param sequenceNumber the sequence number of the <b>first</b> {@linkplain IActivity activity}
+   */
+  public BinaryActivitiesExtension(
+      String sessionID, byte[] activityData, int activityCount, int sequenceNumber) {
+    this(sessionID, new Payload(activityData, activityCount, 0, false), sequenceNumber);
+  }
+
+  /**
+   * Creates a new extension for a payload that may be shared with other extensions. All object
+   * parameters <b>must not be <code>null</code></b>.
+   *
+   * @param sessionID the session id the activities belong to
+   * @param payload the encoded activities
+   * @param sequenceNumber the sequence number of the <b>first</b> {@linkplain IActivity activity}
+   */
+  public BinaryActivitiesExtension(String sessionID, Payload payload, int sequenceNumber) {
+    this.sessionID = sessionID;
+    this.payload = payload;
+    this.sequenceNumber = sequenceNumber;
+  }
+
+  public String getSessionID() {
+    return sessionID;
+  }
+
+  /**
+   * Returns the sequence number of the first activity.
+   *
+   * @see ActivitiesExtension#getSequenceNumber()
+   */
+  public int getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  /**
+   * Returns the number of activities that were encoded by the sender. This number may differ from
+   * the number of decoded activities if some of them could not be resolved by the receiver.
+   */
+  public int getActivityCount() {
+    return payload.activityCount;
+  }
+
+  /**
+   * Returns the number of file contents that were detached from the encoded activities and are
+   * transferred separately.
+   */
+  public int getDetachedContentCount() {
+    return payload.detachedContentCount;
+  }
+
+  /**
+   * Returns the encoded activities. The returned array <b>must not</b> be modified.
+   *
+   * @throws IOException if the compressed activities are malformed
+   * @see #getActivityDataInput()
+   */
+  public byte[] getActivityData() throws IOException {
+    BinaryDataInput in = getActivityDataInput();
+    return in.readRaw(in.available());
+  }
+
+  /**
+   * Returns an input for reading the encoded activities without copying them first.
+   *
+   * <p>Compressed activities are inflated into a buffer of the calling thread that is reused by the
+   * next call of this method on the same thread. So the returned input must be read completely
+   * before this method is called again by the same thread.
+   *
+   * @throws IOException if the compressed activities are malformed
+   */
+  public BinaryDataInput getActivityDataInput() throws IOException {
+    return payload.compressed
+        ? inflate(payload.data, payload.offset, payload.length)
+        : new BinaryDataInput(payload.data, payload.offset, payload.length);
+  }
+
+  /** Returns the payload of this extension. */
+  public Payload getPayload() {
+    return payload;
+  }
+
+  @Override
+  public String getElementName() {
+    return ELEMENT_NAME;
+  }
+
+  @Override
+  public String getNamespace() {
+    return SarosPacketExtension.EXTENSION_NAMESPACE;
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    BinaryDataOutput out = new BinaryDataOutput(payload.length + 32);
+    out.writeByte(FORMAT_VERSION);
+    out.writeString(sessionID);
+    out.writeUnsignedInt(sequenceNumber);
+    out.writeUnsignedInt(payload.activityCount);
+    out.writeUnsignedInt(payload.detachedContentCount);
+    out.writeByte(payload.compressed ? FLAG_COMPRESSED : 0);
+    out.writeRaw(payload.data, payload.offset, payload.length);
+    return out.toByteArray();
+  }
+
+  /** The payload is compressed once for all recipients if worthwhile. */
+  @Override
+  public boolean isCompressible() {
+    return false;
+  }
+
+  @Override
+  public String toXML() {
+    return "<"
+        + ELEMENT_NAME
+        + " xmlns=\""
+        + getNamespace()
+        + "\">"
+        + new String(Base64.encodeBase64(toByteArray()), StandardCharsets.US_ASCII)
+        + "</"
+        + ELEMENT_NAME
+        + ">";
+  }
+
+  public static class Provider implements IBinaryPacketExtensionProvider {
+
+    private static final Logger log = Logger.getLogger(Provider.class);
+
+    private Provider() {
+      ProviderManager.getInstance()
+          .addExtensionProvider(ELEMENT_NAME, SarosPacketExtension.EXTENSION_NAMESPACE, this);
+    }
+
+    @Override
+    public PacketExtension parseExtension(byte[] data) throws IOException {
+      return parseExtension(data, 0, data.length);
+    }
+
+    /** The returned extension refers to the given data instead of copying the activities. */
+    @Override
+    public PacketExtension parseExtension(byte[] data, int offset, int length) throws IOException {
+      BinaryDataInput in = new BinaryDataInput(data, offset, length);
+
+      int version = in.readByte();
+
+      if (version != FORMAT_VERSION)
+        throw new ProtocolException("unsupported binary activities format: " + version);
+
+      String sessionID = in.readString();
+      int sequenceNumber = in.readUnsignedInt();
+      int activityCount = in.readUnsignedInt();
+      int detachedContentCount = in.readUnsignedInt();
+      int flags = in.readByte();
+
+      return new BinaryActivitiesExtension(
+          sessionID,
+          new Payload(
+              data,
+              in.position(),
+              in.available(),
+              activityCount,
+              detachedContentCount,
+              (flags & FLAG_COMPRESSED) != 0),
+          sequenceNumber);
+    }
+
+    @Override
+    public PacketExtension parseExtension(XmlPullParser parser) throws Exception {
+      String encoded = parser.nextText();
+
+      try {
+        return parseExtension(Base64.decodeBase64(encoded.getBytes(StandardCharsets.US_ASCII)));
+      } catch (IOException e) {
+        log.error("unmarshalling data failed", e);
+        throw e;
+      }
+    }
+
+    /**
+     * Returns the extension contained in the given packet.
+     *
+     * @return the extension or <code>null</code> if the packet does not contain it
+     */
+    public BinaryActivitiesExtension getPayload(Packet packet) {
+      if (packet == null) return null;
+
+      PacketExtension extension =
+          packet.getExtension(ELEMENT_NAME, SarosPacketExtension.EXTENSION_NAMESPACE);
+
+      return extension instanceof BinaryActivitiesExtension
+          ? (BinaryActivitiesExtension) extension
+          : null;
+    }
+
+    public ExtensionPacketFilter getPacketFilter(final String sessionID) {
+      return new ExtensionPacketFilter(ELEMENT_NAME, SarosPacketExtension.EXTENSION_NAMESPACE)
+          .forSession(
+              sessionID,
+              (packet) -> {
+                BinaryActivitiesExtension extension = getPayload(packet);
+
+                return extension != null ? extension.getSessionID() : null;
+              });
+    }
+  }
+
+  private static byte[] deflate(byte[] input) {
+    final Deflater compressor = deflater.get();
+
+    byte[] buf = deflateBuffer.get();
+
+    try {
+      compressor.setInput(input);
+      compressor.finish();
+
+      int size = 0;
+
+      while (!compressor.finished()) {
+        if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+        size += compressor.deflate(buf, size, buf.length - size);
+      }
+
+      return Arrays.copyOf(buf, size);
+    } finally {
+      compressor.reset();
+
+      if (buf.length <= MAX_RETAINED_BUFFER_SIZE) deflateBuffer.set(buf);
+    }
+  }
+
+  /* inflates directly into the buffer of the calling thread which is not trimmed */
+  private static BinaryDataInput inflate(byte[] input, int offset, int length) throws IOException {
+    final Inflater decompressor = inflater.get();
+
+    byte[] buf = inflateBuffer.get();
+
+    try {
+      decompressor.setInput(input, offset, length);
+
+      int size = 0;
+
+      while (!decompressor.finished()) {
+        if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+        int count = decompressor.inflate(buf, size, buf.length - size);
+
+        if (count == 0 && (decompressor.needsInput() || decompressor.needsDictionary()))
+          throw new ProtocolException("compressed activities are truncated");
+
+        size += count;
+      }
+
+      return new BinaryDataInput(buf, 0, size);
+    } catch (DataFormatException e) {
+      throw new ProtocolException("compressed activities are malformed: " + e.getMessage());
+    } finally {
+      decompressor.reset();
+
+      if (buf.length <= MAX_RETAINED_BUFFER_SIZE) inflateBuffer.set(buf);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package saros.communication.extensions;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.util.List;
+
+/**
+ * Requests the content of folders whose content was omitted in the partial file list offered for a
+ * reference point.
+ */
+@XStreamAlias(/* ResourceNegotiationFileListRequest */ "RNFLRQ")
+public class ResourceNegotiationFileListRequest extends ResourceNegotiationExtension {
+
+  public static final Provider PROVIDER = new Provider();
+
+  @XStreamAlias("rpid")
+  @XStreamAsAttribute
+  private final String referencePointID;
+
+  private final List<String> folders;
+
+  public ResourceNegotiationFileListRequest(
+      String sessionID, String negotiationID, String referencePointID, List<String> folders) {
+    super(sessionID, negotiationID);
+    this.referencePointID = referencePointID;
+    this.folders = folders;
+  }
+
+  public String getReferencePointID() {
+    return referencePointID;
+  }
+
+  public List<String> getFolders() {
+    return folders;
+  }
+
+  public static class Provider
+      extends ResourceNegotiationExtension.Provider<ResourceNegotiationFileListRequest> {
+
+    private Provider() {
+      super("rnflrq", ResourceNegotiationFileListRequest.class);
+    }
+  }
+}
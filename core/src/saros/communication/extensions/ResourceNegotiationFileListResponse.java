@@ -0,0 +1,34 @@
+package saros.communication.extensions;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import saros.negotiation.FileList;
+
+/**
+ * Contains a partial file list with the content of the folders requested by a {@link
+ * ResourceNegotiationFileListRequest}.
+ */
+@XStreamAlias(/* ResourceNegotiationFileListResponse */ "RNFLRS")
+public class ResourceNegotiationFileListResponse extends ResourceNegotiationExtension {
+
+  public static final Provider PROVIDER = new Provider();
+
+  private final FileList fileList;
+
+  public ResourceNegotiationFileListResponse(
+      String sessionID, String negotiationID, FileList fileList) {
+    super(sessionID, negotiationID);
+    this.fileList = fileList;
+  }
+
+  public FileList getFileList() {
+    return fileList;
+  }
+
+  public static class Provider
+      extends ResourceNegotiationExtension.Provider<ResourceNegotiationFileListResponse> {
+
+    private Provider() {
+      super("rnflrs", ResourceNegotiationFileListResponse.class, FileList.class);
+    }
+  }
+}
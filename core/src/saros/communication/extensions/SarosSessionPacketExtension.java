@@ -2,9 +2,7 @@ package saros.communication.extensions;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
-import org.jivesoftware.smack.filter.AndFilter;
-import org.jivesoftware.smack.filter.PacketFilter;
-import org.jivesoftware.smack.packet.Packet;
+import saros.net.ExtensionPacketFilter;
 
 /**
  * @JTourBusStop 2, Creating custom network messages, Session Packet Extensions:
@@ -33,20 +31,16 @@ public abstract class SarosSessionPacketExtension extends SarosPacketExtension {
       super(elementName, classes);
     }
 
-    public PacketFilter getPacketFilter(final String sessionID) {
+    public ExtensionPacketFilter getPacketFilter(final String sessionID) {
 
-      return new AndFilter(
-          super.getPacketFilter(),
-          new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-              SarosSessionPacketExtension extension = getPayload(packet);
+      return super.getPacketFilter()
+          .forSession(
+              sessionID,
+              (packet) -> {
+                SarosSessionPacketExtension extension = getPayload(packet);
 
-              if (extension == null) return false;
-
-              return sessionID.equals(extension.getSessionID());
-            }
-          });
+                return extension != null ? extension.getSessionID() : null;
+              });
     }
   }
 }
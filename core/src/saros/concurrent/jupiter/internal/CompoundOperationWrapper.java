@@ -0,0 +1,301 @@
+package saros.concurrent.jupiter.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.Jupiter.OperationWrapper;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.ITextOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.NoOperation;
+import saros.editor.text.TextPosition;
+import saros.util.LineSeparatorNormalizationUtil;
+
+/**
+ * Entry of the outgoing queue of the {@link Jupiter} algorithm that combines a run of consecutive
+ * local operations into a single operation, e.g. the characters of a word that was typed or
+ * deleted.
+ *
+ * <p>A run either consists of insert operations that each start at the end of the text inserted by
+ * the previous ones, or of delete operations that each start at (forward delete) or end at
+ * (backspace) the start of the text deleted by the previous ones.
+ *
+ * <p>Transforming an operation against the compound operation only yields the same result as
+ * transforming it against the single operations in turn if the operation does not touch the range
+ * of the compound operation. In this case both operations are just shifted and the single
+ * operations keep their position relative to the start of the compound operation. All other cases
+ * must be handled by {@linkplain #decompose() decomposing} the compound operation first.
+ */
+class CompoundOperationWrapper extends OperationWrapper {
+
+  /** Maximum number of operations combined into a single compound operation. */
+  static final int MAX_SIZE = 1024;
+
+  private static final String LINE_SEPARATOR =
+      LineSeparatorNormalizationUtil.NORMALIZED_LINE_SEPARATOR;
+
+  /** A single operation of the run as it was generated. */
+  private static final class Component {
+    private final ITextOperation op;
+    private final int count;
+
+    /** whether the deleted text is located before the text deleted by the previous operations */
+    private final boolean prepended;
+
+    private Component(ITextOperation op, int count, boolean prepended) {
+      this.op = op;
+      this.count = count;
+      this.prepended = prepended;
+    }
+  }
+
+  /** the operations of the run in the order they were generated */
+  private final List<Component> components;
+
+  private CompoundOperationWrapper(ITextOperation op, List<Component> components) {
+    super(op, components.get(0).count);
+    this.components = components;
+  }
+
+  @Override
+  int getLastLocalOperationCount() {
+    return components.get(components.size() - 1).count;
+  }
+
+  /**
+   * Returns the number of operations combined by this entry.
+   *
+   * @return the number of combined operations
+   */
+  int size() {
+    return components.size();
+  }
+
+  @Override
+  OperationWrapper withOperation(Operation op) {
+    assert op.getClass() == this.op.getClass()
+            && ((ITextOperation) op).getText().equals(((ITextOperation) this.op).getText())
+        : "compound operation was not only shifted: " + this.op + " -> " + op;
+
+    return new CompoundOperationWrapper((ITextOperation) op, components);
+  }
+
+  /**
+   * Returns whether the given operation does not touch the range of this compound operation. Both
+   * operations must be based on the same document state.
+   *
+   * @param op the operation to check
+   * @return <code>true</code> if the operation can be transformed against this compound operation
+   *     instead of against the single operations, <code>false</code> otherwise
+   */
+  boolean isSeparatedFrom(Operation op) {
+    if (op instanceof NoOperation) return true;
+
+    if (!(op instanceof InsertOperation || op instanceof DeleteOperation)) return false;
+
+    ITextOperation textOp = (ITextOperation) op;
+
+    TextPosition end =
+        textOp instanceof InsertOperation ? textOp.getStartPosition() : textOp.getEndPosition();
+
+    return end.compareTo(getRangeStart()) < 0
+        || textOp.getStartPosition().compareTo(getRangeEnd()) > 0;
+  }
+
+  /**
+   * Returns whether the given text position is not located in the range of this compound operation.
+   *
+   * @param position the text position to check
+   * @return <code>true</code> if the text position can be transformed against this compound
+   *     operation instead of against the single operations, <code>false</code> otherwise
+   */
+  boolean isSeparatedFrom(TextPosition position) {
+    return position.compareTo(getRangeStart()) < 0 || position.compareTo(getRangeEnd()) > 0;
+  }
+
+  /**
+   * Returns the single operations combined by this entry, transformed in the same way as this
+   * compound operation was transformed.
+   *
+   * @return the single operations in the order they were generated
+   */
+  List<OperationWrapper> decompose() {
+    final ITextOperation compound = (ITextOperation) op;
+    final String text = compound.getText();
+    final int size = components.size();
+
+    /*
+     * For every operation, calculate the length of the text of the compound operation that is
+     * located before the text of the operation and not yet inserted or still not deleted when
+     * the operation is applied.
+     */
+    final int[] offsets = new int[size];
+
+    if (compound instanceof InsertOperation) {
+      int inserted = 0;
+
+      for (int i = 0; i < size; i++) {
+        offsets[i] = inserted;
+        inserted += components.get(i).op.getText().length();
+      }
+    } else {
+      int prependedLater = 0;
+
+      for (int i = size - 1; i >= 0; i--) {
+        offsets[i] = prependedLater;
+
+        Component component = components.get(i);
+
+        if (component.prepended) prependedLater += component.op.getText().length();
+      }
+    }
+
+    final List<OperationWrapper> result = new ArrayList<OperationWrapper>(size);
+
+    for (int i = 0; i < size; i++) {
+      Component component = components.get(i);
+
+      TextPosition start = advance(compound.getStartPosition(), text.substring(0, offsets[i]));
+
+      result.add(new OperationWrapper(move(component.op, start), component.count));
+    }
+
+    return result;
+  }
+
+  /**
+   * Combines the given entries of the outgoing queue if possible.
+   *
+   * @param last the last entry of the outgoing queue
+   * @param next the entry for the next local operation
+   * @return the combined entry or <code>null</code> if the entries cannot be combined
+   */
+  static OperationWrapper merge(OperationWrapper last, OperationWrapper next) {
+    if (!(next.getOperation() instanceof InsertOperation
+        || next.getOperation() instanceof DeleteOperation)) return null;
+
+    if (last.getOperation().getClass() != next.getOperation().getClass()) return null;
+
+    if (last.getLastLocalOperationCount() + 1 != next.getLocalOperationCount()) return null;
+
+    final List<Component> components;
+
+    if (last instanceof CompoundOperationWrapper) {
+      components = ((CompoundOperationWrapper) last).components;
+
+      if (components.size() >= MAX_SIZE) return null;
+
+    } else {
+      components =
+          Collections.singletonList(
+              new Component(
+                  (ITextOperation) last.getOperation(), last.getLocalOperationCount(), false));
+    }
+
+    final ITextOperation compound = (ITextOperation) last.getOperation();
+    final ITextOperation op = (ITextOperation) next.getOperation();
+
+    final ITextOperation merged;
+    final boolean prepended;
+
+    if (op instanceof InsertOperation) {
+      if (!op.getStartPosition().equals(compound.getEndPosition())) return null;
+
+      merged =
+          new InsertOperation(
+              compound.getStartPosition(),
+              compound.getLineDelta() + op.getLineDelta(),
+              op.getLineDelta() == 0
+                  ? compound.getOffsetDelta() + op.getOffsetDelta()
+                  : op.getOffsetDelta(),
+              compound.getText() + op.getText(),
+              ((InsertOperation) compound).getOriginStartPosition());
+
+      prepended = false;
+
+    } else if (op.getStartPosition().equals(compound.getStartPosition())) {
+      // forward delete, the text is located after the previously deleted text
+      merged =
+          new DeleteOperation(
+              compound.getStartPosition(),
+              compound.getLineDelta() + op.getLineDelta(),
+              op.getLineDelta() == 0
+                  ? compound.getOffsetDelta() + op.getOffsetDelta()
+                  : op.getOffsetDelta(),
+              compound.getText() + op.getText());
+
+      prepended = false;
+
+    } else if (op.getEndPosition().equals(compound.getStartPosition())) {
+      // backspace, the text is located before the previously deleted text
+      merged =
+          new DeleteOperation(
+              op.getStartPosition(),
+              op.getLineDelta() + compound.getLineDelta(),
+              compound.getLineDelta() == 0
+                  ? op.getOffsetDelta() + compound.getOffsetDelta()
+                  : compound.getOffsetDelta(),
+              op.getText() + compound.getText());
+
+      prepended = true;
+
+    } else {
+      return null;
+    }
+
+    final List<Component> mergedComponents = new ArrayList<Component>(components.size() + 1);
+
+    mergedComponents.addAll(components);
+    mergedComponents.add(new Component(op, next.getLocalOperationCount(), prepended));
+
+    return new CompoundOperationWrapper(merged, mergedComponents);
+  }
+
+  /**
+   * Returns the start of the range of this compound operation in the document it is based on.
+   *
+   * <p>The text of an insert operation is not contained in this document, so the range of an insert
+   * operation consists only of its start position.
+   */
+  private TextPosition getRangeStart() {
+    return ((ITextOperation) op).getStartPosition();
+  }
+
+  /** Returns the end of the range of this compound operation in the document it is based on. */
+  private TextPosition getRangeEnd() {
+    ITextOperation textOp = (ITextOperation) op;
+
+    return textOp instanceof InsertOperation ? textOp.getStartPosition() : textOp.getEndPosition();
+  }
+
+  private static ITextOperation move(ITextOperation op, TextPosition start) {
+    if (op instanceof InsertOperation) {
+      return new InsertOperation(
+          start,
+          op.getLineDelta(),
+          op.getOffsetDelta(),
+          op.getText(),
+          ((InsertOperation) op).getOriginStartPosition());
+    }
+
+    return new DeleteOperation(start, op.getLineDelta(), op.getOffsetDelta(), op.getText());
+  }
+
+  /** Returns the position after the given text if it starts at the given position. */
+  private static TextPosition advance(TextPosition position, String text) {
+    int lastLineStart = text.lastIndexOf(LINE_SEPARATOR);
+
+    if (lastLineStart == -1)
+      return new TextPosition(position.getLineNumber(), position.getInLineOffset() + text.length());
+
+    int lines = 0;
+
+    for (int index = text.indexOf(LINE_SEPARATOR);
+        index != -1;
+        index = text.indexOf(LINE_SEPARATOR, index + LINE_SEPARATOR.length())) lines++;
+
+    return new TextPosition(
+        position.getLineNumber() + lines, text.length() - lastLineStart - LINE_SEPARATOR.length());
+  }
+}
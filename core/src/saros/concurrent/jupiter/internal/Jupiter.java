@@ -61,6 +61,10 @@ public class Jupiter implements Algorithm {
    * A list that contains the JupiterActivities sent to the server which are to be acknowledged by
    * the server before they can be removed. This list corresponds to the 'outgoing' list in the
    * Jupiter pseudo code description.
+   *
+   * <p>Runs of adjacent insert or delete operations are combined into a single {@linkplain
+   * CompoundOperationWrapper compound} entry, so incoming operations and text positions are not
+   * transformed against every single typed character.
    */
   protected final List<OperationWrapper> ackJupiterActivityList;
 
@@ -83,8 +87,7 @@ public class Jupiter implements Algorithm {
     JupiterActivity jupiterActivity = new JupiterActivity(this.vectorTime, op, source, file);
 
     // add(op, myMsgs) to outgoing;
-    this.ackJupiterActivityList.add(
-        new OperationWrapper(op, this.vectorTime.getLocalOperationCount()));
+    addUnacknowledged(new OperationWrapper(op, this.vectorTime.getLocalOperationCount()));
 
     // myMsgs = myMsgs + 1;
     this.vectorTime = this.vectorTime.incrementLocalOperationCount();
@@ -180,8 +183,19 @@ public class Jupiter implements Algorithm {
     for (int i = 0; i < this.ackJupiterActivityList.size(); i++) {
       OperationWrapper wrap = this.ackJupiterActivityList.get(i);
       Operation ack = wrap.getOperation();
+      List<OperationWrapper> components = null;
       for (int k = 0; k < textPositions.length; k++) {
-        result[k] = transformIndex(result[k], ack);
+        if (!(wrap instanceof CompoundOperationWrapper)
+            || ((CompoundOperationWrapper) wrap).isSeparatedFrom(result[k])) {
+          result[k] = transformIndex(result[k], ack);
+          continue;
+        }
+
+        // the position is located in the range of the compound operation
+        if (components == null) components = ((CompoundOperationWrapper) wrap).decompose();
+
+        for (OperationWrapper component : components)
+          result[k] = transformIndex(result[k], component.getOperation());
       }
     }
     return result;
@@ -211,10 +225,35 @@ public class Jupiter implements Algorithm {
     Iterator<OperationWrapper> iter = this.ackJupiterActivityList.iterator();
     while (iter.hasNext()) {
       OperationWrapper wrap = iter.next();
-      if (wrap.getLocalOperationCount() < time.getRemoteOperationCount()) {
+      if (wrap.getLastLocalOperationCount() < time.getRemoteOperationCount()) {
         iter.remove();
       }
     }
+
+    /*
+     * A compound entry may only be acknowledged partially. In this case
+     * keep the unacknowledged operations and combine them again.
+     */
+    if (!this.ackJupiterActivityList.isEmpty()
+        && this.ackJupiterActivityList.get(0).getLocalOperationCount()
+            < time.getRemoteOperationCount()) {
+
+      List<OperationWrapper> components =
+          ((CompoundOperationWrapper) this.ackJupiterActivityList.get(0)).decompose();
+
+      List<OperationWrapper> remaining =
+          new ArrayList<OperationWrapper>(this.ackJupiterActivityList);
+      remaining.remove(0);
+
+      this.ackJupiterActivityList.clear();
+
+      for (OperationWrapper component : components) {
+        if (component.getLocalOperationCount() >= time.getRemoteOperationCount())
+          addUnacknowledged(component);
+      }
+
+      this.ackJupiterActivityList.addAll(remaining);
+    }
     // ASSERT msg.myMsgs == otherMsgs
     assert time.getLocalOperationCount() == this.vectorTime.getRemoteOperationCount()
         : "msg.myMsgs != otherMsgs !!";
@@ -233,6 +272,20 @@ public class Jupiter implements Algorithm {
         ackJupiterActivityListCnt < this.ackJupiterActivityList.size();
         ackJupiterActivityListCnt++) {
       OperationWrapper wrap = this.ackJupiterActivityList.get(ackJupiterActivityListCnt);
+
+      if (wrap instanceof CompoundOperationWrapper
+          && !((CompoundOperationWrapper) wrap).isSeparatedFrom(newOp)) {
+        /*
+         * The operation overlaps or touches the compound operation, so the
+         * result may depend on the single operations.
+         */
+        this.ackJupiterActivityList.remove(ackJupiterActivityListCnt);
+        this.ackJupiterActivityList.addAll(
+            ackJupiterActivityListCnt, ((CompoundOperationWrapper) wrap).decompose());
+
+        wrap = this.ackJupiterActivityList.get(ackJupiterActivityListCnt);
+      }
+
       Operation existingOp = wrap.getOperation();
 
       Operation transformedOp;
@@ -244,15 +297,35 @@ public class Jupiter implements Algorithm {
         transformedOp = this.inclusion.transform(newOp, existingOp, Boolean.FALSE);
         existingOp = this.inclusion.transform(existingOp, newOp, Boolean.TRUE);
       }
-      this.ackJupiterActivityList.set(
-          ackJupiterActivityListCnt,
-          new OperationWrapper(existingOp, wrap.getLocalOperationCount()));
+      this.ackJupiterActivityList.set(ackJupiterActivityListCnt, wrap.withOperation(existingOp));
 
       newOp = transformedOp;
     }
     return newOp;
   }
 
+  /**
+   * Adds the given operation to the {@link #ackJupiterActivityList}, combining it with the last
+   * entry if possible.
+   *
+   * @param wrap the operation to add
+   */
+  private void addUnacknowledged(OperationWrapper wrap) {
+    int last = this.ackJupiterActivityList.size() - 1;
+
+    if (last >= 0) {
+      OperationWrapper merged =
+          CompoundOperationWrapper.merge(this.ackJupiterActivityList.get(last), wrap);
+
+      if (merged != null) {
+        this.ackJupiterActivityList.set(last, merged);
+        return;
+      }
+    }
+
+    this.ackJupiterActivityList.add(wrap);
+  }
+
   /**
    * Test 3 preconditions that must be fulfilled before transforming. They are taken from the
    * Jupiter paper.
@@ -309,6 +382,20 @@ public class Jupiter implements Algorithm {
       return this.count;
     }
 
+    /**
+     * Returns the local operation count of the last operation contained in this wrapper. This
+     * differs from {@link #getLocalOperationCount()} only for {@linkplain CompoundOperationWrapper
+     * compound operations}.
+     */
+    int getLastLocalOperationCount() {
+      return this.count;
+    }
+
+    /** Returns a wrapper for the given transformed operation with the same operation count. */
+    OperationWrapper withOperation(Operation op) {
+      return new OperationWrapper(op, this.count);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
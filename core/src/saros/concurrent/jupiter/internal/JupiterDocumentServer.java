@@ -42,9 +42,8 @@ public class JupiterDocumentServer {
     return proxies.remove(user) != null;
   }
 
-  // FIXME why is this not synchronized ?!
-  public Map<User, JupiterActivity> transformJupiterActivity(final JupiterActivity activity)
-      throws TransformationException {
+  public synchronized Map<User, JupiterActivity> transformJupiterActivity(
+      final JupiterActivity activity) throws TransformationException {
 
     final Map<User, JupiterActivity> result = new HashMap<User, JupiterActivity>();
 
@@ -105,7 +104,7 @@ public class JupiterDocumentServer {
     if (removeProxyClient(user)) addProxyClient(user);
   }
 
-  public Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
+  public synchronized Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
       throws TransformationException {
 
     final Map<User, ChecksumActivity> result = new HashMap<User, ChecksumActivity>();
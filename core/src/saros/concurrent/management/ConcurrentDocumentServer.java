@@ -4,7 +4,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.log4j.Logger;
 import saros.activities.ChecksumActivity;
 import saros.activities.IActivity;
@@ -16,6 +21,7 @@ import saros.repackaged.picocontainer.Startable;
 import saros.session.ISarosSession;
 import saros.session.ISessionListener;
 import saros.session.User;
+import saros.util.NamedThreadFactory;
 
 /**
  * The ConcurrentDocumentServer is responsible for coordinating all JupiterActivities.
@@ -25,17 +31,34 @@ import saros.session.User;
  * to everybody else.
  *
  * <p>A ConcurrentDocumentServer exists only on the host!
+ *
+ * <p>The documents are distributed by their file across a fixed number of worker threads. Every
+ * worker transforms the activities of its documents in the order they were passed to this server,
+ * while activities of documents handled by different workers are transformed in parallel.
  */
 public class ConcurrentDocumentServer implements Startable {
 
   private static Logger log = Logger.getLogger(ConcurrentDocumentServer.class);
 
+  private static final int WORKER_COUNT;
+
+  static {
+    int workerCount =
+        Integer.getInteger(
+            "saros.session.JUPITER_WORKER_THREADS",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    WORKER_COUNT = Math.max(1, workerCount);
+  }
+
   private final ISarosSession sarosSession;
 
   private final JupiterServer server;
 
   private final ResourceActivityFilter resourceActivityFilter;
 
+  private volatile ExecutorService[] workers;
+
   /** {@link ISessionListener} for updating Jupiter documents on the host. */
   private final ISessionListener sessionListener =
       new ISessionListener() {
@@ -58,7 +81,12 @@ public class ConcurrentDocumentServer implements Startable {
     Consumer<IFile> deletedFileHandler =
         file -> {
           log.debug("Resetting jupiter server for " + file);
-          server.removeFile(file);
+          execute(
+              file,
+              () -> {
+                server.removeFile(file);
+                return null;
+              });
         };
 
     this.resourceActivityFilter = new ResourceActivityFilter(sarosSession, deletedFileHandler);
@@ -66,6 +94,14 @@ public class ConcurrentDocumentServer implements Startable {
 
   @Override
   public void start() {
+    final ExecutorService[] executors = new ExecutorService[WORKER_COUNT];
+
+    for (int i = 0; i < executors.length; i++)
+      executors[i] =
+          Executors.newSingleThreadExecutor(new NamedThreadFactory("Jupiter-Server-Worker-" + i));
+
+    workers = executors;
+
     sarosSession.addListener(sessionListener);
     resourceActivityFilter.initialize();
   }
@@ -74,6 +110,14 @@ public class ConcurrentDocumentServer implements Startable {
   public void stop() {
     sarosSession.removeListener(sessionListener);
     resourceActivityFilter.dispose();
+
+    final ExecutorService[] executors = workers;
+
+    workers = null;
+
+    if (executors == null) return;
+
+    for (final ExecutorService executor : executors) executor.shutdown();
   }
 
   /**
@@ -88,7 +132,7 @@ public class ConcurrentDocumentServer implements Startable {
   }
 
   /**
-   * Transforms the given activities on the server side and returns a list of QueueItems containing
+   * Transforms the given activity on the server side and returns a list of QueueItems containing
    * the transformed activities and there receivers.
    *
    * <p>Drops activities that are reported as filtered out by {@link
@@ -99,22 +143,56 @@ public class ConcurrentDocumentServer implements Startable {
    * @notGUI This method may not be called from SWT, otherwise a deadlock might occur!!
    * @param activity Activity to be transformed
    * @return A list of QueueItems containing the activities and receivers
+   * @see #transformIncomingAsync(IActivity)
    */
   public List<QueueItem> transformIncoming(final IActivity activity) {
+    return transformIncomingAsync(activity).join();
+  }
+
+  /**
+   * Schedules the transformation of the given activity on the server side. The activity is
+   * transformed by the worker thread responsible for its file after all previously scheduled
+   * activities of the same file. Activities of other files may be transformed in parallel, so
+   * callers that need the results in order have to wait for the returned futures in order.
+   *
+   * <p>Drops activities that are reported as filtered out by {@link
+   * ResourceActivityFilter#isFiltered(IActivity)}. The filter is evaluated immediately, i.e the
+   * result depends on the resource changes passed to {@link #handleResourceChange(IActivity)}
+   * before this call.
+   *
+   * @host
+   * @sarosThread Must be executed in the Saros dispatch thread.
+   * @notGUI This method may not be called from SWT, otherwise a deadlock might occur!!
+   * @param activity Activity to be transformed
+   * @return A future completed with a list of QueueItems containing the activities and receivers
+   */
+  public CompletableFuture<List<QueueItem>> transformIncomingAsync(final IActivity activity) {
 
     assert sarosSession.isHost() : "CDS.transformIncoming must not be called on the client";
 
     // assert !isGUI() :
     // "CDS.transformIncoming must not be called from SWT";
 
-    final List<QueueItem> result = new ArrayList<QueueItem>();
-
     if (resourceActivityFilter.isFiltered(activity)) {
       log.debug("Ignored activity for already deleted resource: " + activity);
 
-      return result;
+      return CompletableFuture.completedFuture(new ArrayList<QueueItem>());
     }
 
+    final IFile file;
+
+    if (activity instanceof JupiterActivity) file = ((JupiterActivity) activity).getResource();
+    else if (activity instanceof ChecksumActivity)
+      file = ((ChecksumActivity) activity).getResource();
+    else return CompletableFuture.completedFuture(new ArrayList<QueueItem>());
+
+    return execute(file, () -> transform(activity));
+  }
+
+  private List<QueueItem> transform(final IActivity activity) {
+
+    final List<QueueItem> result = new ArrayList<QueueItem>();
+
     try {
       if (activity instanceof JupiterActivity) {
         result.addAll(receive((JupiterActivity) activity));
@@ -129,6 +207,26 @@ public class ConcurrentDocumentServer implements Startable {
     return result;
   }
 
+  /**
+   * Executes the given task in the worker thread responsible for the given file. The task is
+   * executed in the calling thread if this server is not started.
+   */
+  private <T> CompletableFuture<T> execute(final IFile file, final Supplier<T> task) {
+    final ExecutorService[] executors = workers;
+
+    if (executors != null) {
+      final int index = (file.hashCode() & Integer.MAX_VALUE) % executors.length;
+
+      try {
+        return CompletableFuture.supplyAsync(task, executors[index]);
+      } catch (RejectedExecutionException e) {
+        // server was stopped concurrently
+      }
+    }
+
+    return CompletableFuture.completedFuture(task.get());
+  }
+
   /**
    * Does the actual work of transforming a clients JupiterActivity into specific JupiterActivities
    * for every client.
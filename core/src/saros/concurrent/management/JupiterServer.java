@@ -16,6 +16,10 @@ import saros.session.User;
  * A JupiterServer manages Jupiter server instances for a number of users AND number of files.
  *
  * <p>(in contrast to a JupiterDocumentServer which only handles a single file)
+ *
+ * <p>Transformations only lock the JupiterDocumentServer of the affected file, so activities of
+ * different files can be transformed concurrently. Activities of the same file must still be passed
+ * in the order they should be transformed.
  */
 public class JupiterServer {
 
@@ -89,7 +93,7 @@ public class JupiterServer {
     getServer(file).reset(user);
   }
 
-  public synchronized Map<User, JupiterActivity> transform(final JupiterActivity activity)
+  public Map<User, JupiterActivity> transform(final JupiterActivity activity)
       throws TransformationException {
 
     final JupiterDocumentServer docServer = getServer(activity.getResource());
@@ -97,7 +101,7 @@ public class JupiterServer {
     return docServer.transformJupiterActivity(activity);
   }
 
-  public synchronized Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
+  public Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
       throws TransformationException {
 
     final JupiterDocumentServer docServer = getServer(activity.getResource());
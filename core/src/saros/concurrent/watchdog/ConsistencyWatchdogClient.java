@@ -1,10 +1,13 @@
 package saros.concurrent.watchdog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -15,9 +18,15 @@ import org.apache.log4j.Logger;
 import saros.activities.ChecksumActivity;
 import saros.activities.ChecksumErrorActivity;
 import saros.activities.FileActivity;
+import saros.activities.IActivity;
+import saros.activities.TextEditActivity;
+import saros.activities.TextRecoveryActivity;
 import saros.annotations.Component;
 import saros.editor.IEditorManager;
+import saros.editor.ISharedEditorListener;
+import saros.editor.text.TextPosition;
 import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
 import saros.monitoring.IProgressMonitor;
 import saros.monitoring.NullProgressMonitor;
 import saros.monitoring.remote.RemoteProgressManager;
@@ -37,10 +46,16 @@ import saros.util.CoreUtils;
  *       them. See {@link #performCheck(ChecksumActivity)} If an inconsistency is detected the
  *       inconsistency state is set via the {@link IsInconsistentObservable}.
  *   <li>Send a ChecksumError to the host, if the user wants to recover from an inconsistency. See
- *       {@link #runRecovery}
+ *       {@link #runRecovery} The error contains the {@linkplain DocumentSignature signatures} of
+ *       the inconsistent documents, so the host can repair only the differing lines with a {@link
+ *       TextRecoveryActivity}.
  * </ol>
  *
  * This class both produces and consumes activities.
+ *
+ * <p>Checksums of {@linkplain ChecksumAlgorithm#isIncremental() incremental} algorithms are
+ * maintained locally from the text edits, so the document content only has to be fetched and hashed
+ * if the local checksum does not match the received one.
  */
 @Component(module = "consistency")
 public class ConsistencyWatchdogClient extends AbstractActivityProducer implements Startable {
@@ -73,6 +88,12 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
 
   private final Set<IFile> filesWithWrongChecksums = new CopyOnWriteArraySet<>();
 
+  /** The signatures sent to the host in the currently running recovery. */
+  private final Map<IFile, DocumentSignature> recoverySignatures = new ConcurrentHashMap<>();
+
+  /** The incrementally maintained checksums of the documents the host sent checksums for. */
+  private final Map<IFile, DocumentChecksum> documentChecksums = new ConcurrentHashMap<>();
+
   private final RemoteProgressManager remoteProgressManager;
 
   private final ISarosSession session;
@@ -105,16 +126,40 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
           }
         }
 
+        @Override
+        public void receive(TextRecoveryActivity textRecovery) {
+          recoverText(textRecovery);
+        }
+
         @Override
         public void receive(FileActivity fileActivity) {
+          documentChecksums.remove(fileActivity.getResource());
+
+          if (fileActivity.getOldResource() != null)
+            documentChecksums.remove(fileActivity.getOldResource());
+
           if (!fileActivity.isRecovery()) return;
 
-          int currentValue;
-          while ((currentValue = filesRemaining.get()) > 0) {
-            if (filesRemaining.compareAndSet(currentValue, currentValue - 1)) {
-              break;
-            }
-          }
+          decrementFilesRemaining();
+        }
+      };
+
+  private void decrementFilesRemaining() {
+    int currentValue;
+    while ((currentValue = filesRemaining.get()) > 0) {
+      if (filesRemaining.compareAndSet(currentValue, currentValue - 1)) {
+        break;
+      }
+    }
+  }
+
+  private final ISharedEditorListener sharedEditorListener =
+      new ISharedEditorListener() {
+        @Override
+        public void textEdited(TextEditActivity textEdit) {
+          DocumentChecksum checksum = documentChecksums.get(textEdit.getResource());
+
+          if (checksum != null) checksum.applyEdit(textEdit);
         }
       };
 
@@ -124,14 +169,17 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
 
     session.addActivityConsumer(consumer, Priority.ACTIVE);
     session.addActivityProducer(this);
+    editorManager.addSharedEditorListener(sharedEditorListener);
   }
 
   @Override
   public void stop() {
     session.removeActivityConsumer(consumer);
     session.removeActivityProducer(this);
+    editorManager.removeSharedEditorListener(sharedEditorListener);
 
     filesWithWrongChecksums.clear();
+    documentChecksums.clear();
 
     // abort running recoveries
     cancelRecovery.set(true);
@@ -209,9 +257,28 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
               + CoreUtils.determineUserDisplayName(currentSession.getLocalUser()),
           filesRemaining.get());
 
+      final List<DocumentSignature> signatures = new ArrayList<>(handledFiles.size());
+
+      for (final IFile file : handledFiles) {
+        final String normalizedEditorContent = editorManager.getNormalizedContent(file);
+
+        final DocumentSignature signature =
+            normalizedEditorContent == null
+                ? null
+                : DocumentSignature.create(normalizedEditorContent);
+
+        if (signature != null) recoverySignatures.put(file, signature);
+
+        signatures.add(signature);
+      }
+
       fireActivity(
           new ChecksumErrorActivity(
-              currentSession.getLocalUser(), currentSession.getHost(), handledFiles, recoveryID));
+              currentSession.getLocalUser(),
+              currentSession.getHost(),
+              handledFiles,
+              signatures,
+              recoveryID));
 
       try {
         // block until all inconsistencies are resolved
@@ -239,6 +306,8 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
       } finally {
         // Inform others for progress...
         remoteProgress.done();
+
+        recoverySignatures.clear();
       }
 
     } finally {
@@ -247,6 +316,81 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
     }
   }
 
+  /**
+   * Replaces the line ranges of the given recovery in the local document. This is only done if the
+   * document still matches the signature that was sent to the host, otherwise the ranges do not
+   * refer to the right lines and the whole file is requested from the host instead.
+   */
+  private void recoverText(TextRecoveryActivity textRecovery) {
+    final IFile file = textRecovery.getResource();
+
+    /*
+     * The host reset its Jupiter server for this file before sending the
+     * recovery, so the client must be reset as well even if the ranges
+     * cannot be applied. The edits are executed like remote edits of the host.
+     */
+    session.getConcurrentDocumentClient().reset(file);
+
+    final DocumentSignature signature = recoverySignatures.remove(file);
+
+    final String normalizedEditorContent = editorManager.getNormalizedContent(file);
+
+    if (signature == null
+        || normalizedEditorContent == null
+        || !signature.equals(DocumentSignature.create(normalizedEditorContent))) {
+      log.warn("document was changed during the consistency recovery, requesting file: " + file);
+      requestFile(file);
+      return;
+    }
+
+    final int[] lineOffsets = DocumentSignature.getLineOffsets(normalizedEditorContent);
+
+    final List<IActivity> textEdits = new ArrayList<>(textRecovery.getRangeCount());
+
+    for (int i = 0; i < textRecovery.getRangeCount(); i++) {
+      final int startLine = textRecovery.getStartLine(i);
+      final int endLine = startLine + textRecovery.getLineCount(i);
+
+      if (endLine >= lineOffsets.length) {
+        log.warn("recovered line range exceeds the document, requesting file: " + file);
+        requestFile(file);
+        return;
+      }
+
+      textEdits.add(
+          TextEditActivity.buildTextEditActivity(
+              textRecovery.getSource(),
+              new TextPosition(startLine, 0),
+              textRecovery.getText(i),
+              normalizedEditorContent.substring(lineOffsets[startLine], lineOffsets[endLine]),
+              file));
+    }
+
+    log.debug("recovering " + textEdits.size() + " line range(s) of file: " + file);
+
+    session.exec(textEdits);
+
+    decrementFilesRemaining();
+  }
+
+  /**
+   * Requests the whole file from the host because the line ranges of a recovery could not be
+   * applied. The running recovery waits for the file as it continues with the id of the new
+   * request.
+   */
+  private void requestFile(IFile file) {
+    final String fileRecoveryID = getNextRecoveryID();
+
+    recoveryID = fileRecoveryID;
+
+    fireActivity(
+        new ChecksumErrorActivity(
+            session.getLocalUser(),
+            session.getHost(),
+            Collections.singletonList(file),
+            fileRecoveryID));
+  }
+
   private String getNextRecoveryID() {
     return Long.toHexString(RANDOM.nextLong());
   }
@@ -283,19 +427,56 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
     if (!checksum.existsFile() && !existsFileLocally) {
       log.debug("Ignoring checksum activity for file that does not exist on both sides: " + file);
 
+      documentChecksums.remove(file);
+
       return false;
     }
 
+    final ChecksumAlgorithm algorithm = checksum.getAlgorithm();
+
+    if (algorithm == null) {
+      log.warn("Ignoring checksum activity with unknown checksum algorithm for file: " + file);
+
+      return false;
+    }
+
+    final DocumentChecksum documentChecksum = documentChecksums.get(file);
+
+    if (documentChecksum != null
+        && documentChecksum.getAlgorithm() == algorithm
+        && !documentChecksum.isDirty()
+        && documentChecksum.getLength() == checksum.getLength()
+        && documentChecksum.getHash() == checksum.getHash()) return false;
+
+    /*
+     * the local checksum is missing, outdated or was not maintained correctly,
+     * so verify the actual content before reporting an inconsistency
+     */
     final String normalizedEditorContent = editorManager.getNormalizedContent(file);
 
     if (normalizedEditorContent == null) {
       log.debug("Inconsistency detected -> no editor content found for resource: " + file);
 
+      documentChecksums.remove(file);
+
       return true;
     }
 
+    final long hash;
+
+    if (algorithm.isIncremental()) {
+      final DocumentChecksum currentChecksum = new DocumentChecksum(file, algorithm);
+      currentChecksum.update(normalizedEditorContent);
+
+      documentChecksums.put(file, currentChecksum);
+
+      hash = currentChecksum.getHash();
+    } else {
+      hash = DocumentChecksum.calculateHash(algorithm, normalizedEditorContent);
+    }
+
     if ((normalizedEditorContent.length() != checksum.getLength())
-        || (normalizedEditorContent.hashCode() != checksum.getHash())) {
+        || (hash != checksum.getHash())) {
 
       log.debug(
           String.format(
@@ -304,8 +485,8 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
               normalizedEditorContent.length(),
               normalizedEditorContent.length() == checksum.getLength() ? "==" : "!=",
               checksum.getLength(),
-              normalizedEditorContent.hashCode(),
-              normalizedEditorContent.hashCode() == checksum.getHash() ? "==" : "!=",
+              hash,
+              hash == checksum.getHash() ? "==" : "!=",
               checksum.getHash()));
 
       return true;
@@ -2,6 +2,7 @@ package saros.concurrent.watchdog;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import org.apache.log4j.Logger;
@@ -10,13 +11,16 @@ import saros.activities.ChecksumErrorActivity;
 import saros.activities.FileActivity.Purpose;
 import saros.activities.FileActivity.Type;
 import saros.activities.TargetedFileActivity;
+import saros.activities.TextRecoveryActivity;
 import saros.annotations.Component;
 import saros.concurrent.management.ConcurrentDocumentServer;
+import saros.concurrent.watchdog.DocumentSignature.Difference;
 import saros.editor.IEditorManager;
 import saros.filesystem.IFile;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.AbstractActivityConsumer;
 import saros.session.AbstractActivityProducer;
+import saros.session.ChecksumAlgorithmHook;
 import saros.session.IActivityConsumer;
 import saros.session.IActivityConsumer.Priority;
 import saros.session.ISarosSession;
@@ -104,7 +108,14 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
 
     try {
 
-      startHandles = session.getStopManager().stop(session.getUsers(), "Consistency recovery");
+      startHandles =
+          session
+              .getStopManager()
+              .stop(
+                  canRecoverText(checksumError)
+                      ? Collections.singletonList(checksumError.getSource())
+                      : session.getUsers(),
+                  "Consistency recovery");
 
       recoverFiles(checksumError);
 
@@ -135,6 +146,21 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
     }
   }
 
+  /**
+   * Returns whether all files of the given error can be repaired by replacing line ranges. A repair
+   * only resets the Jupiter state between the host and the inconsistent user, so only this user has
+   * to be stopped until it executed the repair. Edits of other users that reach the user before the
+   * repair make its document differ from the signature, the user then requests the whole file.
+   * Whole files are still sent while all users are stopped.
+   */
+  private boolean canRecoverText(final ChecksumErrorActivity checksumError) {
+    for (final IFile file : checksumError.getFiles()) {
+      if (!file.exists() || checksumError.getSignature(file) == null) return false;
+    }
+
+    return true;
+  }
+
   private void recoverFiles(final ChecksumErrorActivity checksumError) {
 
     synchronizer.syncExec(
@@ -144,7 +170,7 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
 
             for (final IFile file : checksumError.getFiles()) {
 
-              recoverFile(checksumError.getSource(), file);
+              recoverFile(checksumError.getSource(), file, checksumError.getSignature(file));
 
               // Tell the user that we sent all files
               fireActivity(
@@ -159,10 +185,10 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
   }
 
   /**
-   * Recover a single file for the given user (that is either send the file or tell the user to
-   * remove it).
+   * Recover a single file for the given user (that is either send the file, send the differing
+   * lines if the user sent the signature of its document, or tell the user to remove it).
    */
-  private void recoverFile(final User from, final IFile file) {
+  private void recoverFile(final User from, final IFile file, final DocumentSignature signature) {
     // Reset jupiter
     concurrentDocumentServer.reset(from, file);
 
@@ -183,6 +209,11 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
       return;
     }
 
+    if (signature != null && recoverText(from, file, signature)) {
+      fireChecksum(file);
+      return;
+    }
+
     String charset = null;
 
     try {
@@ -213,17 +244,75 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
         new TargetedFileActivity(
             user, from, Type.CREATED, file, null, content, charset, Purpose.RECOVERY));
 
+    fireChecksum(file);
+  }
+
+  /**
+   * Sends the lines of the given file that differ from the document described by the given
+   * signature to the given user.
+   *
+   * @return <code>true</code> if the lines were sent, <code>false</code> if the content of the file
+   *     is not available
+   */
+  private boolean recoverText(
+      final User from, final IFile file, final DocumentSignature signature) {
+    final String text = editorManager.getNormalizedContent(file);
+
+    if (text == null) return false;
+
+    final List<Difference> differences = DocumentSignature.create(text).getDifferences(signature);
+
+    log.debug("recovering " + differences.size() + " line range(s) of file: " + file);
+
     /*
-     * Immediately follow up with a new checksum activity so that the remote
-     * side can verify the recovered file.
+     * the recovery is sent even without differences as the user resets its
+     * Jupiter state and waits for it
      */
 
-    DocumentChecksum checksum = new DocumentChecksum(file);
+    final int[] lineOffsets = DocumentSignature.getLineOffsets(text);
+
+    final int count = differences.size();
+
+    final int[] startLines = new int[count];
+    final int[] lineCounts = new int[count];
+    final String[] texts = new String[count];
+
+    /* replace the ranges from the end of the document, see TextRecoveryActivity */
+    for (int i = 0; i < count; i++) {
+      final Difference difference = differences.get(count - 1 - i);
+
+      startLines[i] = difference.getOutdatedStartLine();
+      lineCounts[i] = difference.getOutdatedLineCount();
+      texts[i] =
+          text.substring(
+              lineOffsets[difference.getStartLine()],
+              lineOffsets[difference.getStartLine() + difference.getLineCount()]);
+    }
+
+    fireActivity(
+        new TextRecoveryActivity(
+            session.getLocalUser(), from, file, startLines, lineCounts, texts));
+
+    return true;
+  }
+
+  /**
+   * Immediately follow up with a new checksum activity so that the remote side can verify the
+   * recovered file.
+   */
+  private void fireChecksum(final IFile file) {
+    final User user = session.getLocalUser();
+
+    DocumentChecksum checksum =
+        new DocumentChecksum(
+            file, ChecksumAlgorithmHook.getCommonDocumentChecksumAlgorithm(session));
 
     String normalizedText = editorManager.getNormalizedContent(file);
 
     checksum.update(normalizedText);
 
-    fireActivity(new ChecksumActivity(user, file, checksum.getHash(), checksum.getLength(), null));
+    fireActivity(
+        new ChecksumActivity(
+            user, file, checksum.getHash(), checksum.getLength(), checksum.getAlgorithm(), null));
   }
 }
@@ -17,8 +17,10 @@ import saros.editor.IEditorManager;
 import saros.editor.ISharedEditorListener;
 import saros.editor.remote.UserEditorStateManager;
 import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.AbstractActivityProducer;
+import saros.session.ChecksumAlgorithmHook;
 import saros.session.ISarosSession;
 import saros.synchronize.Blockable;
 import saros.synchronize.StopManager;
@@ -82,15 +84,16 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
   private ISharedEditorListener sharedEditorListener =
       new ISharedEditorListener() {
         /**
-         * Marks checksums as dirty as soon as their associated documents are modified. With this
-         * information, checksum calculation can be avoided when the document hasn't changed between
-         * checksum iterations.
+         * Applies the edits to the checksums of their documents, or marks the checksums as dirty if
+         * they cannot be maintained incrementally. With this information, fetching the document
+         * content and calculating the checksum can be avoided when the checksum is still up-to-date
+         * in the next checksum iteration.
          */
         @Override
         public void textEdited(TextEditActivity textEdit) {
           DocumentChecksum checksum = documentChecksums.get(textEdit.getResource());
 
-          if (checksum != null) checksum.markDirty();
+          if (checksum != null) checksum.applyEdit(textEdit);
         }
       };
 
@@ -228,17 +231,22 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
      * Update or create checksums for all currently open documents.
      */
 
+    ChecksumAlgorithm algorithm = ChecksumAlgorithmHook.getCommonDocumentChecksumAlgorithm(session);
+
     for (IFile file : allEditors) {
-      updateChecksum(file, localEditors, remoteEditors);
+      updateChecksum(file, algorithm, localEditors, remoteEditors);
       broadcastChecksum(file);
     }
   }
 
-  private void updateChecksum(IFile file, Set<IFile> localEditors, Set<IFile> remoteEditors) {
+  private void updateChecksum(
+      IFile file, ChecksumAlgorithm algorithm, Set<IFile> localEditors, Set<IFile> remoteEditors) {
 
     DocumentChecksum checksum = documentChecksums.get(file);
-    if (checksum == null) {
-      checksum = new DocumentChecksum(file);
+
+    /* the algorithm changes if a user with another algorithm joins or leaves */
+    if (checksum == null || checksum.getAlgorithm() != algorithm) {
+      checksum = new DocumentChecksum(file, algorithm);
       documentChecksums.put(file, checksum);
     }
 
@@ -298,6 +306,7 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
             checksum.getFile(),
             checksum.getHash(),
             checksum.getLength(),
+            checksum.getAlgorithm(),
             null);
 
     fireActivity(checksumActivity);
@@ -1,10 +1,17 @@
 package saros.concurrent.watchdog;
 
+import saros.activities.TextEditActivity;
 import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.filesystem.checksum.Hasher;
 
 /**
  * Represents a checksum of a document in the workspace. It consists of the document's file, the
- * content length, and the content's string hash code.
+ * content length, and the hash of the content calculated with a {@link ChecksumAlgorithm}.
+ *
+ * <p>If the algorithm is {@linkplain ChecksumAlgorithm#isIncremental() incremental}, the checksum
+ * keeps a copy of the content and {@linkplain #applyEdit(TextEditActivity) applies the text edits}
+ * of the document to it, so it stays up-to-date without hashing the whole content again.
  */
 public class DocumentChecksum {
 
@@ -16,17 +23,26 @@ public class DocumentChecksum {
 
   private final IFile file;
 
+  private final ChecksumAlgorithm algorithm;
+
+  private final Hasher hasher;
+
+  private DocumentHashTree tree;
+
   private int length;
-  private int hash;
+  private long hash;
   private boolean dirty;
 
   /**
    * Creates a new DocumentChecksum.
    *
    * @param file the document's file
+   * @param algorithm the algorithm used to calculate the hash
    */
-  public DocumentChecksum(IFile file) {
+  public DocumentChecksum(IFile file, ChecksumAlgorithm algorithm) {
     this.file = file;
+    this.algorithm = algorithm;
+    this.hasher = algorithm.newHasher();
     this.dirty = true;
   }
 
@@ -39,6 +55,15 @@ public class DocumentChecksum {
     return file;
   }
 
+  /**
+   * Returns the algorithm used to calculate the hash.
+   *
+   * @return checksum algorithm
+   */
+  public ChecksumAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
   /**
    * Returns the length of the associated document's content.
    *
@@ -57,10 +82,9 @@ public class DocumentChecksum {
    * <p>If the document's content is not available ({@link #update} was not called yet or called
    * with <code>null</code> the last time), {@link #NOT_AVAILABLE} is returned.
    *
-   * @return document content hash, or {@link #NOT_AVAILABLE} if not available, or {@link
-   *     #NOT_AVAILABLE} if not available
+   * @return document content hash, or {@link #NOT_AVAILABLE} if not available
    */
-  public int getHash() {
+  public long getHash() {
     return hash;
   }
 
@@ -88,6 +112,30 @@ public class DocumentChecksum {
    */
   public void markDirty() {
     dirty = true;
+    tree = null;
+  }
+
+  /**
+   * Applies the given text edit of the associated document to the checksum without recalculating
+   * the hash of the whole content. This is only possible if the algorithm is {@linkplain
+   * ChecksumAlgorithm#isIncremental() incremental} and the checksum is not dirty.
+   *
+   * <p>If the edit cannot be applied, e.g. because its replaced text does not match the content the
+   * checksum was calculated for, the checksum is marked as dirty.
+   *
+   * @param textEdit the text edit of the associated document
+   * @return <code>true</code> if the checksum is up-to-date, <code>false</code> if it is dirty
+   */
+  public boolean applyEdit(TextEditActivity textEdit) {
+    if (tree == null || !tree.apply(textEdit)) {
+      markDirty();
+      return false;
+    }
+
+    length = tree.getLength();
+    hash = tree.getHash();
+
+    return true;
   }
 
   /**
@@ -103,15 +151,37 @@ public class DocumentChecksum {
     if (!dirty) return;
 
     if (documentContent == null) {
-      length = hash = NOT_AVAILABLE;
+      length = NOT_AVAILABLE;
+      hash = NOT_AVAILABLE;
+    } else if (algorithm.isIncremental()) {
+      tree = new DocumentHashTree(documentContent);
+      length = tree.getLength();
+      hash = tree.getHash();
     } else {
       length = documentContent.length();
-      hash = documentContent.hashCode();
+      hash = calculateHash(hasher, documentContent);
     }
 
     dirty = false;
   }
 
+  /**
+   * Calculates the hash of the given document content with the given algorithm.
+   *
+   * @param algorithm the algorithm to use
+   * @param documentContent the document's content
+   * @return the hash of the content
+   */
+  public static long calculateHash(ChecksumAlgorithm algorithm, CharSequence documentContent) {
+    return calculateHash(algorithm.newHasher(), documentContent);
+  }
+
+  private static long calculateHash(Hasher hasher, CharSequence documentContent) {
+    hasher.reset();
+
+    return hasher.update(documentContent).getValue();
+  }
+
   @Override
   public String toString() {
     return file + " [" + this.length + "," + this.hash + "]";
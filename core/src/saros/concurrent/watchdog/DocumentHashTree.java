@@ -0,0 +1,342 @@
+package saros.concurrent.watchdog;
+
+import java.util.ArrayList;
+import java.util.List;
+import saros.activities.TextEditActivity;
+import saros.editor.text.TextPosition;
+import saros.filesystem.checksum.PolynomialHasher;
+
+/**
+ * Copy of a document's content that maintains the {@linkplain PolynomialHasher polynomial hash} of
+ * the content while edits are applied to it.
+ *
+ * <p>The content is split into chunks of about {@link #CHUNK_SIZE} characters. The hash, length and
+ * number of line breaks of every chunk are kept in the leaves of a binary tree whose inner nodes
+ * combine the values of their children. An edit therefore only rehashes the affected chunks and
+ * their ancestors instead of the whole content. The tree is only rebuilt if chunks are split,
+ * merged or removed.
+ *
+ * <p>The content is expected to use the normalized line separator <code>\n</code>. This class is
+ * not thread safe.
+ */
+final class DocumentHashTree {
+
+  /** Preferred number of characters of a chunk, chunks are split once they get twice as large. */
+  static final int CHUNK_SIZE = Integer.getInteger("saros.concurrent.watchdog.CHUNK_SIZE", 1024);
+
+  private static final class Chunk {
+    private final StringBuilder text;
+    private long hash;
+    private long power;
+    private int lineBreaks;
+
+    private Chunk(CharSequence text) {
+      this.text = new StringBuilder(text);
+    }
+  }
+
+  private final PolynomialHasher hasher = new PolynomialHasher();
+
+  private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+  /* the nodes of the tree, node n has the children 2n and 2n + 1, the leaves start at leafCount */
+  private int leafCount;
+  private long[] hashes;
+  private long[] powers;
+  private int[] lengths;
+  private int[] lineBreaks;
+
+  /**
+   * Creates a new tree for the given content.
+   *
+   * @param content the current content of the document
+   */
+  DocumentHashTree(CharSequence content) {
+    final int length = content.length();
+
+    for (int start = 0; start < length; start += CHUNK_SIZE)
+      chunks.add(new Chunk(content.subSequence(start, Math.min(length, start + CHUNK_SIZE))));
+
+    /* there is always at least one chunk to insert text into */
+    if (chunks.isEmpty()) chunks.add(new Chunk(""));
+
+    for (Chunk chunk : chunks) rehash(chunk);
+
+    build();
+  }
+
+  /** Returns the length of the content. */
+  int getLength() {
+    return lengths[1];
+  }
+
+  /**
+   * Returns the hash of the content, it is equal to the hash calculated by a {@link
+   * PolynomialHasher} for the whole content.
+   */
+  long getHash() {
+    return hashes[1];
+  }
+
+  /**
+   * Applies the given text edit to the content.
+   *
+   * @param textEdit the edit to apply
+   * @return <code>true</code> if the edit was applied, <code>false</code> if its position is
+   *     outside of the content or its replaced text does not match the content, in this case the
+   *     content is not modified
+   */
+  boolean apply(TextEditActivity textEdit) {
+    final TextPosition start = textEdit.getStartPosition();
+
+    final int offset = getOffset(start.getLineNumber(), start.getInLineOffset());
+
+    if (offset == -1) return false;
+
+    return replace(offset, textEdit.getReplacedText(), textEdit.getNewText());
+  }
+
+  /**
+   * Returns the offset of the given position.
+   *
+   * @param line the line of the position
+   * @param inLineOffset the offset of the position in its line
+   * @return the offset, or <code>-1</code> if the content does not contain the line
+   */
+  int getOffset(int line, int inLineOffset) {
+    if (line < 0 || inLineOffset < 0 || line > lineBreaks[1]) return -1;
+
+    if (line == 0) return inLineOffset;
+
+    /* find the chunk containing the line break in front of the line */
+    int remaining = line;
+    int chunkStart = 0;
+    int node = 1;
+
+    while (node < leafCount) {
+      final int left = 2 * node;
+
+      if (remaining <= lineBreaks[left]) {
+        node = left;
+      } else {
+        remaining -= lineBreaks[left];
+        chunkStart += lengths[left];
+        node = left + 1;
+      }
+    }
+
+    final StringBuilder text = chunks.get(node - leafCount).text;
+
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n' && --remaining == 0) return chunkStart + i + 1 + inLineOffset;
+    }
+
+    throw new IllegalStateException("line break count of chunk is invalid");
+  }
+
+  /**
+   * Replaces the text at the given offset.
+   *
+   * @param offset the offset of the replaced text
+   * @param replacedText the replaced text
+   * @param newText the text that replaces the replaced text
+   * @return <code>true</code> if the text was replaced, <code>false</code> if the replaced text is
+   *     not contained in the content at the given offset
+   */
+  boolean replace(int offset, String replacedText, String newText) {
+    if (offset < 0 || offset > getLength() - replacedText.length()) return false;
+
+    /* find the chunk containing the offset, prefer the last chunk for the end of the content */
+    int index = chunks.size() - 1;
+    int localOffset = offset;
+
+    if (offset < getLength()) {
+      int node = 1;
+
+      while (node < leafCount) {
+        final int left = 2 * node;
+
+        if (localOffset < lengths[left]) {
+          node = left;
+        } else {
+          localOffset -= lengths[left];
+          node = left + 1;
+        }
+      }
+
+      index = node - leafCount;
+    } else {
+      localOffset -= getLength() - chunks.get(index).text.length();
+    }
+
+    if (!contains(index, localOffset, replacedText)) return false;
+
+    /* delete the replaced text which may span multiple chunks */
+    int remaining = replacedText.length();
+    int last = index;
+    int deleteOffset = localOffset;
+
+    while (remaining > 0) {
+      final StringBuilder text = chunks.get(last).text;
+      final int count = Math.min(remaining, text.length() - deleteOffset);
+
+      text.delete(deleteOffset, deleteOffset + count);
+
+      remaining -= count;
+      deleteOffset = 0;
+
+      if (remaining > 0) last++;
+    }
+
+    chunks.get(index).text.insert(localOffset, newText);
+
+    final boolean restructured = restructure(index, last);
+
+    if (restructured) build();
+    else for (int i = index; i <= last; i++) updateLeaf(i);
+
+    return true;
+  }
+
+  private boolean contains(int index, int localOffset, String text) {
+    int chunkIndex = index;
+    int chunkOffset = localOffset;
+
+    for (int i = 0; i < text.length(); i++) {
+      StringBuilder chunkText = chunks.get(chunkIndex).text;
+
+      while (chunkOffset == chunkText.length()) {
+        chunkText = chunks.get(++chunkIndex).text;
+        chunkOffset = 0;
+      }
+
+      if (chunkText.charAt(chunkOffset++) != text.charAt(i)) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Rehashes the modified chunks. The first modified chunk is split if it grew too large and merged
+   * with its successor if it got too small, chunks that became empty are removed.
+   *
+   * @return <code>true</code> if the chunk list changed
+   */
+  private boolean restructure(int first, int last) {
+    boolean restructured = false;
+
+    /* all modified chunks but the first one only lost text */
+    for (int i = last; i > first; i--) {
+      if (chunks.get(i).text.length() == 0) {
+        chunks.remove(i);
+        restructured = true;
+      } else {
+        rehash(chunks.get(i));
+      }
+    }
+
+    final Chunk chunk = chunks.get(first);
+    final int length = chunk.text.length();
+
+    if (length > 2 * CHUNK_SIZE) {
+      final List<Chunk> parts = new ArrayList<Chunk>();
+
+      for (int start = 0; start < length; start += CHUNK_SIZE) {
+        final Chunk part =
+            new Chunk(chunk.text.subSequence(start, Math.min(length, start + CHUNK_SIZE)));
+
+        rehash(part);
+        parts.add(part);
+      }
+
+      chunks.remove(first);
+      chunks.addAll(first, parts);
+
+      return true;
+    }
+
+    if (length < CHUNK_SIZE / 2 && first + 1 < chunks.size()) {
+      final Chunk next = chunks.get(first + 1);
+
+      if (length + next.text.length() <= 2 * CHUNK_SIZE) {
+        chunk.text.append(next.text);
+        chunks.remove(first + 1);
+        restructured = true;
+      }
+    }
+
+    if (chunk.text.length() == 0 && chunks.size() > 1) {
+      chunks.remove(first);
+      return true;
+    }
+
+    rehash(chunk);
+
+    return restructured;
+  }
+
+  private void rehash(Chunk chunk) {
+    final StringBuilder text = chunk.text;
+
+    hasher.reset();
+    hasher.update(text);
+
+    int count = 0;
+
+    for (int i = 0; i < text.length(); i++) if (text.charAt(i) == '\n') count++;
+
+    chunk.hash = hasher.getValue();
+    chunk.power = PolynomialHasher.power(2L * text.length());
+    chunk.lineBreaks = count;
+  }
+
+  private void build() {
+    leafCount = Integer.highestOneBit(chunks.size());
+
+    if (leafCount < chunks.size()) leafCount <<= 1;
+
+    /* the root has the index 1, so a single chunk still needs an inner node */
+    leafCount = Math.max(2, leafCount);
+
+    hashes = new long[2 * leafCount];
+    powers = new long[2 * leafCount];
+    lengths = new int[2 * leafCount];
+    lineBreaks = new int[2 * leafCount];
+
+    for (int i = 0; i < leafCount; i++) {
+      if (i < chunks.size()) {
+        setLeaf(i);
+      } else {
+        powers[leafCount + i] = 1;
+      }
+    }
+
+    for (int node = leafCount - 1; node > 0; node--) combine(node);
+  }
+
+  private void updateLeaf(int index) {
+    setLeaf(index);
+
+    for (int node = (leafCount + index) / 2; node > 0; node /= 2) combine(node);
+  }
+
+  private void setLeaf(int index) {
+    final Chunk chunk = chunks.get(index);
+    final int node = leafCount + index;
+
+    hashes[node] = chunk.hash;
+    powers[node] = chunk.power;
+    lengths[node] = chunk.text.length();
+    lineBreaks[node] = chunk.lineBreaks;
+  }
+
+  private void combine(int node) {
+    final int left = 2 * node;
+    final int right = left + 1;
+
+    hashes[node] = PolynomialHasher.concat(hashes[left], hashes[right], powers[right]);
+    powers[node] = PolynomialHasher.multiply(powers[left], powers[right]);
+    lengths[node] = lengths[left] + lengths[right];
+    lineBreaks[node] = lineBreaks[left] + lineBreaks[right];
+  }
+}
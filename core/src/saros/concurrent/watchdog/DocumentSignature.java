@@ -0,0 +1,290 @@
+package saros.concurrent.watchdog;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.filesystem.checksum.Hasher;
+import saros.util.LineSeparatorNormalizationUtil;
+
+/**
+ * Signature of a document's normalized content that is used to find the lines that differ between
+ * two copies of the document during a consistency recovery without transferring the content.
+ *
+ * <p>The lines of the content are grouped into blocks and the signature consists of the number of
+ * lines and the hash of every block. A block ends after a line whose hash matches a certain bit
+ * pattern, so the block boundaries only depend on the content of the lines. An inserted or removed
+ * line therefore only changes the block containing it while all other blocks stay the same.
+ */
+@XStreamAlias("documentSignature")
+public final class DocumentSignature {
+
+  /** On average every 32nd line ends a block. */
+  private static final long BOUNDARY_MASK = 31;
+
+  private static final int MAX_BLOCK_LINES = 256;
+
+  /** The number of blocks searched for the end of a differing range. */
+  private static final int LOOKAHEAD = 32;
+
+  @XStreamAlias("l")
+  private final int[] lineCounts;
+
+  @XStreamAlias("h")
+  private final long[] hashes;
+
+  /**
+   * A range of lines of an outdated document and the range of lines of the current document that
+   * replaces it.
+   */
+  public static final class Difference {
+    private final int outdatedStartLine;
+    private final int outdatedLineCount;
+    private final int startLine;
+    private final int lineCount;
+
+    private Difference(int outdatedStartLine, int outdatedLineCount, int startLine, int lineCount) {
+      this.outdatedStartLine = outdatedStartLine;
+      this.outdatedLineCount = outdatedLineCount;
+      this.startLine = startLine;
+      this.lineCount = lineCount;
+    }
+
+    /** Returns the first line of the range in the outdated document. */
+    public int getOutdatedStartLine() {
+      return outdatedStartLine;
+    }
+
+    /** Returns the number of lines of the range in the outdated document. */
+    public int getOutdatedLineCount() {
+      return outdatedLineCount;
+    }
+
+    /** Returns the first line of the range in the current document. */
+    public int getStartLine() {
+      return startLine;
+    }
+
+    /** Returns the number of lines of the range in the current document. */
+    public int getLineCount() {
+      return lineCount;
+    }
+
+    @Override
+    public String toString() {
+      return "Difference [outdated="
+          + outdatedStartLine
+          + "+"
+          + outdatedLineCount
+          + ", current="
+          + startLine
+          + "+"
+          + lineCount
+          + "]";
+    }
+  }
+
+  /**
+   * Creates a signature from the given number of lines and hashes of the blocks.
+   *
+   * @param lineCounts the number of lines of every block
+   * @param hashes the hash of every block
+   */
+  public DocumentSignature(int[] lineCounts, long[] hashes) {
+    if (lineCounts.length != hashes.length)
+      throw new IllegalArgumentException("every block must have a line count and a hash");
+
+    this.lineCounts = lineCounts;
+    this.hashes = hashes;
+  }
+
+  /**
+   * Calculates the signature of the given content.
+   *
+   * @param content the normalized content of a document
+   * @return the signature of the content
+   */
+  public static DocumentSignature create(CharSequence content) {
+    final Hasher lineHasher = ChecksumAlgorithm.XXHASH64.newHasher();
+    final Hasher blockHasher = ChecksumAlgorithm.XXHASH64.newHasher();
+
+    final List<Integer> lineCounts = new ArrayList<Integer>();
+    final List<Long> hashes = new ArrayList<Long>();
+
+    final int length = content.length();
+
+    int lines = 0;
+    int lineStart = 0;
+
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+
+      while (lineEnd < length && content.charAt(lineEnd) != '\n') lineEnd++;
+
+      /* the line includes its line separator */
+      if (lineEnd < length) lineEnd++;
+
+      lineHasher.reset();
+      lineHasher.update(content, lineStart, lineEnd);
+      blockHasher.update(content, lineStart, lineEnd);
+
+      lines++;
+      lineStart = lineEnd;
+
+      if ((lineHasher.getValue() & BOUNDARY_MASK) == BOUNDARY_MASK
+          || lines == MAX_BLOCK_LINES
+          || lineStart == length) {
+        lineCounts.add(lines);
+        hashes.add(blockHasher.getValue());
+
+        blockHasher.reset();
+        lines = 0;
+      }
+    }
+
+    final int[] lineCountArray = new int[lineCounts.size()];
+    final long[] hashArray = new long[hashes.size()];
+
+    for (int i = 0; i < lineCountArray.length; i++) {
+      lineCountArray[i] = lineCounts.get(i);
+      hashArray[i] = hashes.get(i);
+    }
+
+    return new DocumentSignature(lineCountArray, hashArray);
+  }
+
+  /**
+   * Returns the offsets of the lines of the given content as they are counted by the signature,
+   * i.e. lines end after the {@link LineSeparatorNormalizationUtil#NORMALIZED_LINE_SEPARATOR
+   * normalized line separator} and a line separator at the end of the content does not start
+   * another line.
+   *
+   * @param content the normalized content of a document
+   * @return the offset of the first character of every line followed by the length of the content
+   */
+  public static int[] getLineOffsets(String content) {
+    final int length = content.length();
+
+    int lines = 0;
+
+    for (int i = 0; i < length; i++) if (content.charAt(i) == '\n') lines++;
+
+    if (length > 0 && content.charAt(length - 1) != '\n') lines++;
+
+    final int[] offsets = new int[lines + 1];
+
+    int line = 1;
+
+    for (int i = 0; i < length && line < lines; i++)
+      if (content.charAt(i) == '\n') offsets[line++] = i + 1;
+
+    offsets[lines] = length;
+
+    return offsets;
+  }
+
+  /** Returns the number of blocks of the signature. */
+  public int getBlockCount() {
+    return hashes.length;
+  }
+
+  /** Returns the number of lines of the given block. */
+  public int getLineCount(int block) {
+    return lineCounts[block];
+  }
+
+  /** Returns the hash of the given block. */
+  public long getHash(int block) {
+    return hashes[block];
+  }
+
+  /**
+   * Returns the ranges of lines that differ between the document described by the given signature
+   * and the document described by this signature. Replacing every range of the outdated document
+   * with the corresponding range of this document turns the outdated document into this document.
+   *
+   * @param outdated the signature of the outdated document
+   * @return the differing ranges ordered by their position
+   */
+  public List<Difference> getDifferences(DocumentSignature outdated) {
+    final int outdatedEnd = outdated.getBlockCount();
+    final int end = getBlockCount();
+
+    final int[] outdatedStartLines = outdated.getStartLines();
+    final int[] startLines = getStartLines();
+
+    final List<Difference> differences = new ArrayList<Difference>();
+
+    int i = 0;
+    int j = 0;
+
+    while (i < outdatedEnd || j < end) {
+      if (i < outdatedEnd && j < end && outdated.hashes[i] == hashes[j]) {
+        i++;
+        j++;
+        continue;
+      }
+
+      /* search the closest pair of equal blocks that ends the differing range */
+      int nextI = outdatedEnd;
+      int nextJ = end;
+
+      search:
+      for (int distance = 1; distance <= 2 * LOOKAHEAD; distance++) {
+        for (int di = Math.max(0, distance - LOOKAHEAD);
+            di <= Math.min(distance, LOOKAHEAD);
+            di++) {
+          final int dj = distance - di;
+
+          if (i + di < outdatedEnd && j + dj < end && outdated.hashes[i + di] == hashes[j + dj]) {
+            nextI = i + di;
+            nextJ = j + dj;
+            break search;
+          }
+        }
+      }
+
+      differences.add(
+          new Difference(
+              outdatedStartLines[i],
+              outdatedStartLines[nextI] - outdatedStartLines[i],
+              startLines[j],
+              startLines[nextJ] - startLines[j]));
+
+      i = nextI;
+      j = nextJ;
+    }
+
+    return differences;
+  }
+
+  /** Returns the first line of every block followed by the number of lines of the document. */
+  private int[] getStartLines() {
+    final int[] startLines = new int[lineCounts.length + 1];
+
+    for (int i = 0; i < lineCounts.length; i++) startLines[i + 1] = startLines[i] + lineCounts[i];
+
+    return startLines;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(lineCounts) + Arrays.hashCode(hashes);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof DocumentSignature)) return false;
+
+    DocumentSignature other = (DocumentSignature) obj;
+
+    return Arrays.equals(lineCounts, other.lineCounts) && Arrays.equals(hashes, other.hashes);
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentSignature [blocks=" + hashes.length + "]";
+  }
+}
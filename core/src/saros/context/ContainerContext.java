@@ -19,6 +19,8 @@ import saros.communication.extensions.KickUserExtension;
 import saros.communication.extensions.LeaveSessionExtension;
 import saros.communication.extensions.PingExtension;
 import saros.communication.extensions.PongExtension;
+import saros.communication.extensions.ResourceNegotiationFileListRequest;
+import saros.communication.extensions.ResourceNegotiationFileListResponse;
 import saros.communication.extensions.ResourceNegotiationMissingFilesExtension;
 import saros.communication.extensions.ResourceNegotiationOfferingExtension;
 import saros.communication.extensions.StartActivityQueuingRequest;
@@ -125,6 +127,8 @@ public class ContainerContext implements IContainerContext {
       Class.forName(CancelResourceNegotiationExtension.class.getName());
       Class.forName(ResourceNegotiationOfferingExtension.class.getName());
       Class.forName(ResourceNegotiationMissingFilesExtension.class.getName());
+      Class.forName(ResourceNegotiationFileListRequest.class.getName());
+      Class.forName(ResourceNegotiationFileListResponse.class.getName());
 
       // General session extensions
       Class.forName(ActivitiesExtension.class.getName());
@@ -35,6 +35,8 @@ import saros.net.xmpp.subscription.SubscriptionHandler;
 import saros.observables.FileReplacementInProgressObservable;
 import saros.repackaged.picocontainer.BindKey;
 import saros.repackaged.picocontainer.MutablePicoContainer;
+import saros.session.ActivityCodecHook;
+import saros.session.ChecksumAlgorithmHook;
 import saros.session.ColorNegotiationHook;
 import saros.session.ResourceNegotiationTypeHook;
 import saros.session.SarosSessionManager;
@@ -74,6 +76,8 @@ public class CoreContextFactory extends AbstractContextFactory {
       Component.create(SessionNegotiationHookManager.class),
       Component.create(ColorNegotiationHook.class),
       Component.create(ResourceNegotiationTypeHook.class),
+      Component.create(ActivityCodecHook.class),
+      Component.create(ChecksumAlgorithmHook.class),
 
       // Network
       Component.create(DispatchThreadContext.class),
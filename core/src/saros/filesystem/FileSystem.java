@@ -5,11 +5,18 @@ import static saros.filesystem.IResource.Type.FOLDER;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.zip.Adler32;
+import java.util.Optional;
 import org.apache.commons.io.IOUtils;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.filesystem.checksum.Hasher;
 
 /**
  * Utility class offering static methods to perform file and folder manipulation. If not stated
@@ -20,17 +27,60 @@ public class FileSystem {
 
   private static final int BUFFER_SIZE = 32 * 1024;
 
+  /**
+   * Files of at least this size are mapped into memory to calculate their checksum if they are
+   * {@linkplain IFile#getLocalPath() backed by a local file}.
+   */
+  private static final long MAPPED_CHECKSUM_THRESHOLD =
+      Long.getLong("saros.filesystem.MAPPED_CHECKSUM_THRESHOLD", 4 * 1024 * 1024);
+
+  /** Maximum size of a file region that is mapped into memory at once. */
+  private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
   private FileSystem() {
     // NOP
   }
 
   /**
-   * Calculate Adler32 checksum for given file.
+   * Calculates the checksum of the given file with the {@linkplain ChecksumAlgorithm#getDefault()
+   * default algorithm}.
    *
    * @return checksum of file
    * @throws IOException if an I/O error occurred
+   * @see #checksum(IFile, ChecksumAlgorithm)
    */
   public static long checksum(IFile file) throws IOException {
+    return checksum(file, ChecksumAlgorithm.getDefault());
+  }
+
+  /**
+   * Calculates the checksum of the given file with the given algorithm.
+   *
+   * <p>Large files are mapped into memory instead of being copied into a buffer if they are
+   * {@linkplain IFile#getLocalPath() backed by a local file}.
+   *
+   * @param file the file
+   * @param algorithm the algorithm to use
+   * @return checksum of file
+   * @throws IOException if an I/O error occurred
+   */
+  public static long checksum(IFile file, ChecksumAlgorithm algorithm) throws IOException {
+
+    Hasher hasher = algorithm.newHasher();
+
+    Optional<Path> location = file.getLocalPath();
+
+    try {
+      if (location.isPresent() && Files.size(location.get()) >= MAPPED_CHECKSUM_THRESHOLD) {
+        try (FileChannel channel = FileChannel.open(location.get(), StandardOpenOption.READ)) {
+          updateMapped(hasher, channel);
+        }
+
+        return hasher.getValue();
+      }
+    } catch (IOException e) {
+      throw new IOException("failed to calculate checksum", e);
+    }
 
     InputStream in;
 
@@ -40,19 +90,26 @@ public class FileSystem {
       throw new IOException("failed to calculate checksum", e);
     }
 
-    byte[] buffer = new byte[BUFFER_SIZE];
-
-    Adler32 adler = new Adler32();
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
 
-    int read;
+      int read;
 
-    try {
-      while ((read = in.read(buffer)) != -1) adler.update(buffer, 0, read);
+      while ((read = in.read(buffer)) != -1) hasher.update(buffer, 0, read);
     } finally {
       IOUtils.closeQuietly(in);
     }
 
-    return adler.getValue();
+    return hasher.getValue();
+  }
+
+  private static void updateMapped(Hasher hasher, FileChannel channel) throws IOException {
+    final long size = channel.size();
+
+    for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+      hasher.update(
+          channel.map(MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position)));
+    }
   }
 
   /**
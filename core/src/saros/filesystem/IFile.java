@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.file.Path;
+import java.util.Optional;
 
 /**
  * Represents a handle for a file in the (virtual) file system.
@@ -74,6 +76,19 @@ public interface IFile extends IResource {
    */
   long getSize() throws IOException;
 
+  /**
+   * Returns the location of the file in the local file system if the content returned by {@link
+   * #getContents()} can be read directly from there.
+   *
+   * <p>The default implementation returns an empty optional.
+   *
+   * @return the location of the file in the local file system or an empty optional if the file is
+   *     not backed by a local file
+   */
+  default Optional<Path> getLocalPath() {
+    return Optional.empty();
+  }
+
   default Type getType() {
     return Type.FILE;
   }
@@ -0,0 +1,95 @@
+package saros.filesystem.checksum;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The algorithms available to calculate the checksums of files and documents that are compared
+ * between the session participants. As both sides have to use the same algorithm, it is negotiated
+ * per session participant, see {@link saros.session.ChecksumAlgorithmHook}.
+ */
+public enum ChecksumAlgorithm {
+
+  /**
+   * Adler32 for file contents and {@link String#hashCode()} for document contents. This is used
+   * with participants that do not negotiate an algorithm.
+   */
+  LEGACY(0),
+
+  /** 64-bit xxHash. */
+  XXHASH64(1),
+
+  /** 128-bit MurmurHash3, only the lower 64 bits are used as checksum. */
+  MURMUR3_128(2),
+
+  /**
+   * Polynomial hash modulo 2<sup>61</sup>-1 that can be {@linkplain #isIncremental() updated
+   * incrementally}, see {@link PolynomialHasher}.
+   */
+  POLYNOMIAL61(3);
+
+  private static final Logger log = Logger.getLogger(ChecksumAlgorithm.class);
+
+  private static final String DEFAULT_ALGORITHM =
+      System.getProperty("saros.filesystem.checksum.ALGORITHM", XXHASH64.name());
+
+  private final int id;
+
+  private ChecksumAlgorithm(int id) {
+    this.id = id;
+  }
+
+  /** Returns the id used to identify this algorithm between different Saros instances. */
+  public int getId() {
+    return id;
+  }
+
+  /** Creates a new hasher calculating hash values with this algorithm. */
+  public Hasher newHasher() {
+    switch (this) {
+      case XXHASH64:
+        return new XxHash64Hasher(0);
+      case MURMUR3_128:
+        return new Murmur3Hasher(0);
+      case POLYNOMIAL61:
+        return new PolynomialHasher();
+      default:
+        return new LegacyHasher();
+    }
+  }
+
+  /**
+   * Returns whether the hash of edited content can be calculated from the hash of the unedited
+   * content by only rehashing the edited part.
+   */
+  public boolean isIncremental() {
+    return this == POLYNOMIAL61;
+  }
+
+  /**
+   * Returns the algorithm with the given id.
+   *
+   * @param id the id of the algorithm
+   * @return the algorithm or <code>null</code> if there is no algorithm with the given id
+   */
+  public static ChecksumAlgorithm forId(int id) {
+    for (ChecksumAlgorithm algorithm : values()) if (algorithm.id == id) return algorithm;
+
+    return null;
+  }
+
+  /**
+   * Returns the algorithm that is preferred during negotiations and used for checksums that are
+   * only stored locally, e.g. by the {@link IChecksumCache checksum caches}. It can be chosen with
+   * the system property <code>saros.filesystem.checksum.ALGORITHM</code>.
+   *
+   * @return the default algorithm
+   */
+  public static ChecksumAlgorithm getDefault() {
+    try {
+      return valueOf(DEFAULT_ALGORITHM);
+    } catch (IllegalArgumentException e) {
+      log.warn("unknown checksum algorithm: " + DEFAULT_ALGORITHM);
+      return XXHASH64;
+    }
+  }
+}
@@ -1,7 +1,5 @@
 package saros.filesystem.checksum;
 
-import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -226,143 +224,12 @@ public final class FileSystemChecksumCache implements IChecksumCache {
   }
 
   private Murmur3Hash<Long> create128BitMurmur3Hash(String path) {
-    try {
-      return create128BitMurmur3Hash(path.getBytes("UTF-8"), SEED);
-    } catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(
-          "invalid Java installation, UTF-8 charset must be included per specification", e);
-    }
-  }
-
-  /*
-   * Simplified version of
-   * http://code.google.com/p/guava-libraries/source/browse
-   * /guava/src/com/google/common/hash/Murmur3_128HashFunction.java
-   *
-   * Copyright (C) 2011 The Guava Authors
-   *
-   * License: http://www.apache.org/licenses/LICENSE-2.0
-   */
-
-  private Murmur3Hash<Long> create128BitMurmur3Hash(byte[] bytes, int seed) {
-    long h1 = seed;
-    long h2 = seed;
-    long c1 = 0x87c37b91114253d5L;
-    long c2 = 0x4cf5ad432745937fL;
-    int len = 0;
-
-    long k1 = 0;
-    long k2 = 0;
-
-    ByteBuffer buffer = ByteBuffer.wrap(bytes);
-
-    while (buffer.remaining() >= 16) {
-      k1 = buffer.getLong();
-      k2 = buffer.getLong();
-      len += 16;
-
-      k1 = Long.rotateLeft(k1, 31);
-      k1 *= c2;
-      h1 ^= k1;
-
-      h1 = Long.rotateLeft(h1, 27);
-      h1 += h2;
-      h1 = h1 * 5 + 0x52dce729;
-
-      k2 *= c2;
-      k2 = Long.rotateLeft(k2, 33);
-      k2 *= c1;
-      h2 ^= k2;
-
-      h2 = Long.rotateLeft(h2, 31);
-      h2 += h1;
-      h2 = h2 * 5 + 0x38495ab5;
-    }
-
-    len += buffer.remaining();
-    switch (buffer.remaining()) {
-      case 15:
-        k2 ^= (long) toInt(buffer.get(14)) << 48;
-        // $FALL-THROUGH$
-      case 14:
-        k2 ^= (long) toInt(buffer.get(13)) << 40;
-        // $FALL-THROUGH$
-      case 13:
-        k2 ^= (long) toInt(buffer.get(12)) << 32;
-        // $FALL-THROUGH$
-      case 12:
-        k2 ^= (long) toInt(buffer.get(11)) << 24;
-        // $FALL-THROUGH$
-      case 11:
-        k2 ^= (long) toInt(buffer.get(10)) << 16;
-        // $FALL-THROUGH$
-      case 10:
-        k2 ^= (long) toInt(buffer.get(9)) << 8;
-        // $FALL-THROUGH$
-      case 9:
-        k2 ^= (long) toInt(buffer.get(8)) << 0;
-        k2 *= c2;
-        k2 = Long.rotateLeft(k2, 33);
-        k2 *= c1;
-        h2 ^= k2;
-        // $FALL-THROUGH$
-      case 8:
-        k1 ^= (long) toInt(buffer.get(7)) << 56;
-        // $FALL-THROUGH$
-      case 7:
-        k1 ^= (long) toInt(buffer.get(6)) << 48;
-        // $FALL-THROUGH$
-      case 6:
-        k1 ^= (long) toInt(buffer.get(5)) << 40;
-        // $FALL-THROUGH$
-      case 5:
-        k1 ^= (long) toInt(buffer.get(4)) << 32;
-        // $FALL-THROUGH$
-      case 4:
-        k1 ^= (long) toInt(buffer.get(3)) << 24;
-        // $FALL-THROUGH$
-      case 3:
-        k1 ^= (long) toInt(buffer.get(2)) << 16;
-        // $FALL-THROUGH$
-      case 2:
-        k1 ^= (long) toInt(buffer.get(1)) << 8;
-        // $FALL-THROUGH$
-      case 1:
-        k1 ^= (long) toInt(buffer.get(0)) << 0;
-        k1 *= c1;
-        k1 = Long.rotateLeft(k1, 31);
-        k1 *= c2;
-        h1 ^= k1;
-        // $FALL-THROUGH$
-      default:
-    }
+    final Murmur3Hasher hasher = new Murmur3Hasher(SEED);
+    hasher.update(path);
 
-    h1 ^= len;
-    h2 ^= len;
-
-    h1 += h2;
-    h2 += h1;
-
-    h1 ^= h1 >>> 33;
-    h1 *= 0xff51afd7ed558ccdL;
-    h1 ^= h1 >>> 33;
-    h1 *= 0xc4ceb9fe1a85ec53L;
-    h1 ^= h1 >>> 33;
-
-    h2 ^= h2 >>> 33;
-    h2 *= 0xff51afd7ed558ccdL;
-    h2 ^= h2 >>> 33;
-    h2 *= 0xc4ceb9fe1a85ec53L;
-    h2 ^= h2 >>> 33;
-
-    h1 += h2;
-    h2 += h1;
-
-    return new Murmur3Hash<Long>(h1, h2);
-  }
+    final long[] value = hasher.getValue128();
 
-  private int toInt(byte b) {
-    return b & 0xFF;
+    return new Murmur3Hash<Long>(value[0], value[1]);
   }
 
   private void logNoValidPath(IFile file) {
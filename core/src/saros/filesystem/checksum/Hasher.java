@@ -0,0 +1,107 @@
+package saros.filesystem.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Calculates a hash value of content that is passed in pieces. Characters are hashed as their
+ * UTF-16 code units in little-endian byte order without creating intermediate strings, so the
+ * content of a document can be hashed directly from its buffer.
+ *
+ * <p>Instances are obtained via {@link ChecksumAlgorithm#newHasher()} and are not thread safe.
+ */
+public abstract class Hasher {
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private byte[] buffer;
+
+  /**
+   * Adds the given range of bytes to the hash.
+   *
+   * @param bytes the bytes
+   * @param offset the offset of the first byte to add
+   * @param length the number of bytes to add
+   * @return this hasher
+   */
+  public abstract Hasher update(byte[] bytes, int offset, int length);
+
+  /**
+   * Returns the hash value of all content added since this hasher was created or {@link #reset()
+   * reset}. The hasher is not modified, so further content can be added afterwards.
+   *
+   * @return the hash value, algorithms producing larger values return their lower 64 bits
+   */
+  public abstract long getValue();
+
+  /** Resets this hasher to its initial state. */
+  public abstract void reset();
+
+  public final Hasher update(byte[] bytes) {
+    return update(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Adds the remaining bytes of the given buffer to the hash. The position of the buffer is set to
+   * its limit.
+   *
+   * @param bytes the buffer
+   * @return this hasher
+   */
+  public Hasher update(ByteBuffer bytes) {
+    if (bytes.hasArray()) {
+      update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+      bytes.position(bytes.limit());
+      return this;
+    }
+
+    final byte[] buffer = getBuffer();
+
+    while (bytes.hasRemaining()) {
+      final int length = Math.min(buffer.length, bytes.remaining());
+      bytes.get(buffer, 0, length);
+      update(buffer, 0, length);
+    }
+
+    return this;
+  }
+
+  /**
+   * Adds the given range of characters to the hash.
+   *
+   * @param chars the characters
+   * @param start the index of the first character to add
+   * @param end the index after the last character to add
+   * @return this hasher
+   */
+  public Hasher update(CharSequence chars, int start, int end) {
+    final byte[] buffer = getBuffer();
+
+    int length = 0;
+
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+
+      buffer[length++] = (byte) c;
+      buffer[length++] = (byte) (c >>> 8);
+
+      if (length == buffer.length) {
+        update(buffer, 0, length);
+        length = 0;
+      }
+    }
+
+    if (length > 0) update(buffer, 0, length);
+
+    return this;
+  }
+
+  public final Hasher update(CharSequence chars) {
+    return update(chars, 0, chars.length());
+  }
+
+  private byte[] getBuffer() {
+    if (buffer == null) buffer = new byte[BUFFER_SIZE];
+
+    return buffer;
+  }
+}
@@ -0,0 +1,54 @@
+package saros.filesystem.checksum;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+
+/**
+ * Hasher of the {@link ChecksumAlgorithm#LEGACY legacy} algorithm. Bytes are hashed with Adler32,
+ * characters like {@link String#hashCode()} does. A hasher must not be passed both.
+ */
+final class LegacyHasher extends Hasher {
+
+  private final Adler32 adler = new Adler32();
+
+  private int charHash;
+
+  private boolean chars;
+
+  @Override
+  public Hasher update(byte[] bytes, int offset, int length) {
+    adler.update(bytes, offset, length);
+    return this;
+  }
+
+  @Override
+  public Hasher update(ByteBuffer bytes) {
+    adler.update(bytes);
+    return this;
+  }
+
+  @Override
+  public Hasher update(CharSequence chars, int start, int end) {
+    this.chars = true;
+
+    int hash = charHash;
+
+    for (int i = start; i < end; i++) hash = 31 * hash + chars.charAt(i);
+
+    charHash = hash;
+
+    return this;
+  }
+
+  @Override
+  public long getValue() {
+    return chars ? charHash : adler.getValue();
+  }
+
+  @Override
+  public void reset() {
+    adler.reset();
+    charHash = 0;
+    chars = false;
+  }
+}
@@ -0,0 +1,150 @@
+package saros.filesystem.checksum;
+
+/**
+ * Streaming implementation of the 128-bit x64 variant of MurmurHash3.
+ *
+ * <p>Based on the Murmur3_128HashFunction of the Guava libraries, Copyright (C) 2011 The Guava
+ * Authors, licensed under the Apache License, Version 2.0.
+ */
+final class Murmur3Hasher extends Hasher {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private static final int BLOCK_LENGTH = 16;
+
+  private final int seed;
+
+  private final byte[] block = new byte[BLOCK_LENGTH];
+
+  private int blockLength;
+
+  private long totalLength;
+
+  private long h1;
+  private long h2;
+
+  Murmur3Hasher(int seed) {
+    this.seed = seed;
+    reset();
+  }
+
+  @Override
+  public void reset() {
+    h1 = seed & 0xFFFFFFFFL;
+    h2 = seed & 0xFFFFFFFFL;
+    blockLength = 0;
+    totalLength = 0;
+  }
+
+  @Override
+  public Hasher update(byte[] bytes, int offset, int length) {
+    totalLength += length;
+
+    if (blockLength > 0) {
+      final int copied = Math.min(BLOCK_LENGTH - blockLength, length);
+
+      System.arraycopy(bytes, offset, block, blockLength, copied);
+
+      blockLength += copied;
+      offset += copied;
+      length -= copied;
+
+      if (blockLength < BLOCK_LENGTH) return this;
+
+      processBlock(block, 0);
+      blockLength = 0;
+    }
+
+    final int end = offset + length;
+
+    for (; offset <= end - BLOCK_LENGTH; offset += BLOCK_LENGTH) processBlock(bytes, offset);
+
+    blockLength = end - offset;
+    System.arraycopy(bytes, offset, block, 0, blockLength);
+
+    return this;
+  }
+
+  private void processBlock(byte[] bytes, int offset) {
+    final long k1 = XxHash64Hasher.getLong(bytes, offset);
+    final long k2 = XxHash64Hasher.getLong(bytes, offset + 8);
+
+    h1 ^= mixK1(k1);
+
+    h1 = Long.rotateLeft(h1, 27);
+    h1 += h2;
+    h1 = h1 * 5 + 0x52dce729;
+
+    h2 ^= mixK2(k2);
+
+    h2 = Long.rotateLeft(h2, 31);
+    h2 += h1;
+    h2 = h2 * 5 + 0x38495ab5;
+  }
+
+  @Override
+  public long getValue() {
+    return finish()[0];
+  }
+
+  /**
+   * Returns the full 128-bit hash value.
+   *
+   * @return the lower 64 bits followed by the upper 64 bits
+   */
+  long[] getValue128() {
+    return finish();
+  }
+
+  private long[] finish() {
+    long k1 = 0;
+    long k2 = 0;
+
+    for (int i = blockLength - 1; i >= 8; i--) k2 = (k2 << 8) | (block[i] & 0xFF);
+
+    for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) k1 = (k1 << 8) | (block[i] & 0xFF);
+
+    long h1 = this.h1;
+    long h2 = this.h2;
+
+    if (blockLength > 8) h2 ^= mixK2(k2);
+
+    if (blockLength > 0) h1 ^= mixK1(k1);
+
+    h1 ^= totalLength;
+    h2 ^= totalLength;
+
+    h1 += h2;
+    h2 += h1;
+
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+
+    h1 += h2;
+    h2 += h1;
+
+    return new long[] {h1, h2};
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
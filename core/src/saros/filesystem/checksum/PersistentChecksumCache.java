@@ -0,0 +1,412 @@
+package saros.filesystem.checksum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import saros.filesystem.IFile;
+import saros.repackaged.picocontainer.Startable;
+import saros.util.PathUtils;
+
+/**
+ * Checksum cache that keeps the checksums across sessions and restarts by storing them in an index
+ * file per reference point.
+ *
+ * <p>Every checksum is stored along with the size and the modification time of the file at the time
+ * the checksum was added. A checksum is only returned if the file still has this size and
+ * modification time, so a lookup needs nothing but a single file attribute read. As a modification
+ * may not change the modification time of a file that was modified shortly before, checksums of
+ * recently modified files are not cached. If a file content change {@link
+ * IFileContentChangedNotifier notifier} is available, the checksums of changed files are
+ * additionally invalidated immediately.
+ *
+ * <p>The index files are located in the directory given by the system property <code>
+ * saros.filesystem.CHECKSUM_CACHE_DIRECTORY</code>, by default <code>.saros/checksums</code> in the
+ * home directory of the user. They are read completely when they are first needed and rewritten
+ * when the cache is stopped. Every index file records the {@linkplain
+ * ChecksumAlgorithm#getDefault() checksum algorithm} its checksums were calculated with and is
+ * ignored if another algorithm is used.
+ */
+public final class PersistentChecksumCache implements IChecksumCache, Startable {
+
+  private static final Logger log = Logger.getLogger(PersistentChecksumCache.class);
+
+  private static final String CACHE_DIRECTORY =
+      System.getProperty(
+          "saros.filesystem.CHECKSUM_CACHE_DIRECTORY",
+          Paths.get(System.getProperty("user.home"), ".saros", "checksums").toString());
+
+  private static final int MAGIC = 0x53434349;
+
+  private static final int VERSION = 2;
+
+  private static final String INDEX_FILE_SUFFIX = ".idx";
+
+  /**
+   * Checksums of files that were modified less than this amount of milliseconds ago are not cached,
+   * as a following modification may not change the modification time.
+   */
+  private static final long RACY_INTERVAL = 2000;
+
+  private static final int MAX_PATH_LENGTH = 0xFFFF;
+
+  private static final class Entry {
+    private final long size;
+    private final long modified;
+    private final long checksum;
+
+    private Entry(long size, long modified, long checksum) {
+      this.size = size;
+      this.modified = modified;
+      this.checksum = checksum;
+    }
+
+    private boolean matches(BasicFileAttributes attributes) {
+      return size == attributes.size() && modified == getModified(attributes);
+    }
+  }
+
+  /** The checksums of the files of one reference point. */
+  private static final class Index {
+    private final Path root;
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private volatile boolean dirty;
+
+    private Index(Path root, Path file) {
+      this.root = root;
+      this.file = file;
+    }
+  }
+
+  private final IFileContentChangedListener fileContentChangedListener =
+      new IFileContentChangedListener() {
+
+        @Override
+        public void fileContentChanged(IFile file) {
+          final Path path = getPath(file);
+
+          if (path == null) return;
+
+          final Index index = getIndex(path, file);
+
+          if (index == null) return;
+
+          if (index.entries.remove(getKey(file)) != null) index.dirty = true;
+        }
+      };
+
+  private final IFileContentChangedNotifier fileContentChangedNotifier;
+
+  private final IAbsolutePathResolver absolutePathResolver;
+
+  private final Path directory;
+
+  /** the indexes by the root directory of their reference point */
+  private final Map<Path, Index> indexes = new ConcurrentHashMap<Path, Index>();
+
+  /**
+   * Creates a cache that stores its index files in the default directory and relies on the file
+   * modification times only.
+   *
+   * @param absolutePathResolver the resolver used to locate the files on disk
+   */
+  public PersistentChecksumCache(IAbsolutePathResolver absolutePathResolver) {
+    this(null, absolutePathResolver, Paths.get(CACHE_DIRECTORY));
+  }
+
+  /**
+   * Creates a cache that stores its index files in the default directory and additionally
+   * invalidates the checksums of files reported by the given notifier.
+   *
+   * @param fileContentChangedNotifier the notifier reporting file content changes
+   * @param absolutePathResolver the resolver used to locate the files on disk
+   */
+  public PersistentChecksumCache(
+      IFileContentChangedNotifier fileContentChangedNotifier,
+      IAbsolutePathResolver absolutePathResolver) {
+    this(fileContentChangedNotifier, absolutePathResolver, Paths.get(CACHE_DIRECTORY));
+  }
+
+  /**
+   * Creates a cache that stores its index files in the given directory.
+   *
+   * @param fileContentChangedNotifier the notifier reporting file content changes or <code>null
+   *     </code>
+   * @param absolutePathResolver the resolver used to locate the files on disk
+   * @param directory the directory containing the index files
+   */
+  public PersistentChecksumCache(
+      IFileContentChangedNotifier fileContentChangedNotifier,
+      IAbsolutePathResolver absolutePathResolver,
+      Path directory) {
+
+    this.fileContentChangedNotifier = fileContentChangedNotifier;
+    this.absolutePathResolver = absolutePathResolver;
+    this.directory = directory;
+  }
+
+  @Override
+  public void start() {
+    if (fileContentChangedNotifier != null)
+      fileContentChangedNotifier.addFileContentChangedListener(fileContentChangedListener);
+  }
+
+  @Override
+  public void stop() {
+    if (fileContentChangedNotifier != null)
+      fileContentChangedNotifier.removeFileContentChangedListener(fileContentChangedListener);
+
+    flush();
+  }
+
+  /** Writes the index files of all reference points whose checksums changed. */
+  public void flush() {
+    for (Index index : indexes.values()) {
+      if (!index.dirty) continue;
+
+      try {
+        save(index);
+      } catch (IOException e) {
+        log.warn("failed to write checksum index file " + index.file, e);
+      }
+    }
+  }
+
+  @Override
+  public Long getChecksum(IFile file) {
+    final Path path = getPath(file);
+
+    if (path == null) return null;
+
+    final Index index = getIndex(path, file);
+
+    if (index == null) return null;
+
+    final Entry entry = index.entries.get(getKey(file));
+
+    if (entry == null) {
+      logNoValidChecksum(path);
+      return null;
+    }
+
+    final BasicFileAttributes attributes = readAttributes(path);
+
+    if (attributes == null || !entry.matches(attributes)) {
+      logNoValidChecksum(path);
+      return null;
+    }
+
+    if (log.isTraceEnabled())
+      log.trace("found valid checksum for file: " + path + " [" + entry.checksum + "]");
+
+    return entry.checksum;
+  }
+
+  @Override
+  public boolean addChecksum(IFile file, long checksum) {
+    final Path path = getPath(file);
+
+    if (path == null) return false;
+
+    final Index index = getIndex(path, file);
+
+    if (index == null) return false;
+
+    final String key = getKey(file);
+
+    final BasicFileAttributes attributes = readAttributes(path);
+
+    final Entry previous;
+
+    if (attributes == null
+        || System.currentTimeMillis() - attributes.lastModifiedTime().toMillis() < RACY_INTERVAL) {
+
+      previous = index.entries.remove(key);
+    } else {
+      previous =
+          index.entries.put(key, new Entry(attributes.size(), getModified(attributes), checksum));
+    }
+
+    index.dirty = true;
+
+    return previous != null && (attributes == null || !previous.matches(attributes));
+  }
+
+  private Path getPath(IFile file) {
+    final String absolutePath = absolutePathResolver.getAbsolutePath(file);
+
+    if (absolutePath == null) {
+      if (log.isTraceEnabled()) log.trace("failed to obtain absolute path for file : " + file);
+
+      return null;
+    }
+
+    try {
+      return Paths.get(absolutePath);
+    } catch (InvalidPathException e) {
+      log.warn("invalid absolute path for file " + file + ": " + absolutePath);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the index of the reference point containing the given file, loading it if necessary.
+   *
+   * @param path the absolute path of the file
+   * @param file the file
+   * @return the index or <code>null</code> if the root of the reference point cannot be determined
+   */
+  private Index getIndex(Path path, IFile file) {
+    final int rootNameCount =
+        path.getNameCount() - file.getReferencePointRelativePath().getNameCount();
+
+    if (rootNameCount < 0 || path.getRoot() == null) return null;
+
+    final Path root =
+        rootNameCount == 0
+            ? path.getRoot()
+            : path.getRoot().resolve(path.subpath(0, rootNameCount));
+
+    return indexes.computeIfAbsent(root, this::load);
+  }
+
+  private static String getKey(IFile file) {
+    return PathUtils.toPortableString(file.getReferencePointRelativePath());
+  }
+
+  private Index load(Path root) {
+    final String name =
+        UUID.nameUUIDFromBytes(root.toString().getBytes(StandardCharsets.UTF_8))
+            + INDEX_FILE_SUFFIX;
+
+    final Index index = new Index(root, directory.resolve(name));
+
+    if (!Files.exists(index.file)) return index;
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(index.file)))) {
+
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        log.warn("ignoring checksum index file with unknown format: " + index.file);
+        return index;
+      }
+
+      if (in.readInt() != ChecksumAlgorithm.getDefault().getId()) {
+        log.debug("ignoring checksum index file of another checksum algorithm: " + index.file);
+        return index;
+      }
+
+      if (!readString(in).equals(root.toString())) {
+        log.warn("ignoring checksum index file of another location: " + index.file);
+        return index;
+      }
+
+      final int count = in.readInt();
+
+      for (int i = 0; i < count; i++) {
+        final String key = readString(in);
+
+        index.entries.put(key, new Entry(in.readLong(), in.readLong(), in.readLong()));
+      }
+
+      log.debug("loaded " + count + " checksum(s) for " + root + " from " + index.file);
+
+    } catch (IOException e) {
+      log.warn("failed to read checksum index file " + index.file, e);
+      index.entries.clear();
+    }
+
+    return index;
+  }
+
+  private void save(Index index) throws IOException {
+    index.dirty = false;
+
+    Files.createDirectories(directory);
+
+    final Path tempFile = Files.createTempFile(directory, "checksums", null);
+
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(ChecksumAlgorithm.getDefault().getId());
+        writeString(out, index.root.toString());
+
+        final Map<String, Entry> entries = new HashMap<String, Entry>(index.entries);
+
+        entries
+            .keySet()
+            .removeIf(key -> key.getBytes(StandardCharsets.UTF_8).length > MAX_PATH_LENGTH);
+
+        out.writeInt(entries.size());
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          writeString(out, entry.getKey());
+          out.writeLong(entry.getValue().size);
+          out.writeLong(entry.getValue().modified);
+          out.writeLong(entry.getValue().checksum);
+        }
+      }
+
+      try {
+        Files.move(
+            tempFile,
+            index.file,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, index.file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static long getModified(BasicFileAttributes attributes) {
+    return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void logNoValidChecksum(Path path) {
+    if (log.isTraceEnabled()) log.trace("no valid checksum found for file: " + path);
+  }
+}
@@ -0,0 +1,109 @@
+package saros.filesystem.checksum;
+
+/**
+ * Hasher of the {@link ChecksumAlgorithm#POLYNOMIAL61 polynomial} algorithm. The content is
+ * interpreted as the coefficients of a polynomial that is evaluated at a fixed base modulo the
+ * Mersenne prime 2<sup>61</sup>-1, every byte is one coefficient.
+ *
+ * <p>Unlike the other algorithms the hash of concatenated content can be {@link #concat calculated}
+ * from the hashes of its parts, so the hash of a large document can be maintained by only rehashing
+ * the part that was edited.
+ */
+public final class PolynomialHasher extends Hasher {
+
+  /** The Mersenne prime 2^61-1, every hash is smaller than this value. */
+  public static final long MODULUS = (1L << 61) - 1;
+
+  private static final long BASE = 0x0123456789ABCDEFL % MODULUS;
+
+  private static final long LOW_31_BITS = (1L << 31) - 1;
+  private static final long LOW_30_BITS = (1L << 30) - 1;
+
+  private long hash;
+
+  @Override
+  public Hasher update(byte[] bytes, int offset, int length) {
+    long h = hash;
+
+    for (int i = offset; i < offset + length; i++)
+      h = add(multiply(h, BASE), (bytes[i] & 0xFF) + 1);
+
+    hash = h;
+
+    return this;
+  }
+
+  @Override
+  public long getValue() {
+    return hash;
+  }
+
+  @Override
+  public void reset() {
+    hash = 0;
+  }
+
+  /**
+   * Returns the hash of the concatenation of two contents.
+   *
+   * @param left the hash of the first content
+   * @param right the hash of the second content
+   * @param rightPower the {@link #power(long) power} of the second content's length in bytes
+   * @return the hash of the first content followed by the second content
+   */
+  public static long concat(long left, long right, long rightPower) {
+    return add(multiply(left, rightPower), right);
+  }
+
+  /**
+   * Returns the base raised to the given length, which is needed to {@link #concat concatenate}
+   * hashes of content with this length.
+   *
+   * @param length the length of the content in bytes, characters count as two bytes
+   * @return the base raised to the length modulo {@link #MODULUS}
+   */
+  public static long power(long length) {
+    long result = 1;
+    long base = BASE;
+
+    for (long exponent = length; exponent > 0; exponent >>>= 1) {
+      if ((exponent & 1) != 0) result = multiply(result, base);
+
+      base = multiply(base, base);
+    }
+
+    return result;
+  }
+
+  /**
+   * Multiplies two values modulo {@link #MODULUS}.
+   *
+   * @param a a value smaller than {@link #MODULUS}
+   * @param b a value smaller than {@link #MODULUS}
+   * @return the product modulo {@link #MODULUS}
+   */
+  public static long multiply(long a, long b) {
+    final long a1 = a >>> 31;
+    final long a0 = a & LOW_31_BITS;
+    final long b1 = b >>> 31;
+    final long b0 = b & LOW_31_BITS;
+
+    /*
+     * a * b = a1b1 * 2^62 + (a1b0 + a0b1) * 2^31 + a0b0 with 2^61 = 1 modulo
+     * the Mersenne prime, the sum does not exceed 64 unsigned bits
+     */
+    final long middle = a1 * b0 + a0 * b1;
+
+    final long sum = (a1 * b1 << 1) + (middle >>> 30) + ((middle & LOW_30_BITS) << 31) + a0 * b0;
+
+    return reduce((sum & MODULUS) + (sum >>> 61));
+  }
+
+  private static long add(long a, long b) {
+    return reduce(a + b);
+  }
+
+  private static long reduce(long value) {
+    return value >= MODULUS ? value - MODULUS : value;
+  }
+}
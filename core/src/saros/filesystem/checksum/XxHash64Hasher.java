@@ -0,0 +1,147 @@
+package saros.filesystem.checksum;
+
+/** Streaming implementation of the 64-bit xxHash algorithm. */
+final class XxHash64Hasher extends Hasher {
+
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+  private static final int STRIPE_LENGTH = 32;
+
+  private final long seed;
+
+  private final byte[] stripe = new byte[STRIPE_LENGTH];
+
+  private int stripeLength;
+
+  private long totalLength;
+
+  private long v1;
+  private long v2;
+  private long v3;
+  private long v4;
+
+  XxHash64Hasher(long seed) {
+    this.seed = seed;
+    reset();
+  }
+
+  @Override
+  public void reset() {
+    v1 = seed + PRIME1 + PRIME2;
+    v2 = seed + PRIME2;
+    v3 = seed;
+    v4 = seed - PRIME1;
+    stripeLength = 0;
+    totalLength = 0;
+  }
+
+  @Override
+  public Hasher update(byte[] bytes, int offset, int length) {
+    totalLength += length;
+
+    if (stripeLength > 0) {
+      final int copied = Math.min(STRIPE_LENGTH - stripeLength, length);
+
+      System.arraycopy(bytes, offset, stripe, stripeLength, copied);
+
+      stripeLength += copied;
+      offset += copied;
+      length -= copied;
+
+      if (stripeLength < STRIPE_LENGTH) return this;
+
+      processStripe(stripe, 0);
+      stripeLength = 0;
+    }
+
+    final int end = offset + length;
+
+    for (; offset <= end - STRIPE_LENGTH; offset += STRIPE_LENGTH) processStripe(bytes, offset);
+
+    stripeLength = end - offset;
+    System.arraycopy(bytes, offset, stripe, 0, stripeLength);
+
+    return this;
+  }
+
+  private void processStripe(byte[] bytes, int offset) {
+    v1 = round(v1, getLong(bytes, offset));
+    v2 = round(v2, getLong(bytes, offset + 8));
+    v3 = round(v3, getLong(bytes, offset + 16));
+    v4 = round(v4, getLong(bytes, offset + 24));
+  }
+
+  @Override
+  public long getValue() {
+    long hash;
+
+    if (totalLength >= STRIPE_LENGTH) {
+      hash =
+          Long.rotateLeft(v1, 1)
+              + Long.rotateLeft(v2, 7)
+              + Long.rotateLeft(v3, 12)
+              + Long.rotateLeft(v4, 18);
+
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = seed + PRIME5;
+    }
+
+    hash += totalLength;
+
+    int offset = 0;
+
+    for (; offset + 8 <= stripeLength; offset += 8) {
+      hash ^= round(0, getLong(stripe, offset));
+      hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+    }
+
+    if (offset + 4 <= stripeLength) {
+      hash ^= (getInt(stripe, offset) & 0xFFFFFFFFL) * PRIME1;
+      hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+      offset += 4;
+    }
+
+    for (; offset < stripeLength; offset++) {
+      hash ^= (stripe[offset] & 0xFF) * PRIME5;
+      hash = Long.rotateLeft(hash, 11) * PRIME1;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= PRIME2;
+    hash ^= hash >>> 29;
+    hash *= PRIME3;
+    hash ^= hash >>> 32;
+
+    return hash;
+  }
+
+  private static long round(long accumulator, long input) {
+    accumulator += input * PRIME2;
+    accumulator = Long.rotateLeft(accumulator, 31);
+    return accumulator * PRIME1;
+  }
+
+  private static long mergeRound(long accumulator, long value) {
+    accumulator ^= round(0, value);
+    return accumulator * PRIME1 + PRIME4;
+  }
+
+  static long getLong(byte[] bytes, int offset) {
+    return (getInt(bytes, offset) & 0xFFFFFFFFL) | ((long) getInt(bytes, offset + 4) << 32);
+  }
+
+  static int getInt(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF)
+        | (bytes[offset + 1] & 0xFF) << 8
+        | (bytes[offset + 2] & 0xFF) << 16
+        | (bytes[offset + 3] & 0xFF) << 24;
+  }
+}
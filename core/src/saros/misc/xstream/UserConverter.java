@@ -45,7 +45,7 @@ public class UserConverter extends AbstractSingleValueConverter implements Start
 
   @Override
   public Object fromString(String str) {
-    JID jid = new JID(URLCodec.decode(str));
+    JID jid = JID.valueOf(URLCodec.decode(str));
     return session.getUser(jid);
   }
 }
@@ -10,6 +10,8 @@ import java.util.Map.Entry;
 import java.util.concurrent.Future;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.packet.Packet;
+import saros.communication.extensions.ResourceNegotiationFileListRequest;
+import saros.communication.extensions.ResourceNegotiationFileListResponse;
 import saros.communication.extensions.ResourceNegotiationMissingFilesExtension;
 import saros.communication.extensions.StartActivityQueuingRequest;
 import saros.communication.extensions.StartActivityQueuingResponse;
@@ -354,12 +356,11 @@ public abstract class AbstractIncomingResourceNegotiation extends ResourceNegoti
           FileListFactory.createFileList(
               referencePoint,
               checksumCache,
+              getChecksumAlgorithm(),
               new SubProgressMonitor(
                   monitor, 1 * MONITOR_WORK_SCALE, SubProgressMonitor.SUPPRESS_BEGINTASK));
 
-      final ResourceNegotiationData data = getResourceNegotiationData(id);
-
-      final FileListDiff diff = FileListDiff.diff(localReferencePointFileList, data.getFileList());
+      final FileListDiff diff = computeDiff(id, localReferencePointFileList);
 
       checkCancellation(CancelOption.NOTIFY_PEER);
 
@@ -371,6 +372,85 @@ public abstract class AbstractIncomingResourceNegotiation extends ResourceNegoti
     return result;
   }
 
+  /**
+   * Computes the differences (files and folders) between the given local file list and the file
+   * list of the remote side for the given reference point.
+   *
+   * <p>The file list offered by the remote side may only contain the digest of some folders instead
+   * of their content. The content of all such folders that differ from the local ones is requested
+   * from the remote side until the difference is complete. The requested content is added to the
+   * file list of the {@linkplain #getResourceNegotiationData(String) negotiation data}, so it is
+   * only requested once.
+   *
+   * @param referencePointID the id of the reference point
+   * @param localFileList the local file list of the reference point
+   * @return the difference between the local and the remote side
+   * @throws IOException if the content of the folders could not be obtained from the remote side
+   */
+  public synchronized FileListDiff computeDiff(
+      final String referencePointID, final FileList localFileList) throws IOException {
+
+    final ResourceNegotiationData data = getResourceNegotiationData(referencePointID);
+
+    if (data == null)
+      throw new IllegalArgumentException("invalid reference point id: " + referencePointID);
+
+    final FileList remoteFileList = data.getFileList();
+
+    FileListDiff diff = FileListDiff.diff(localFileList, remoteFileList);
+
+    if (diff.getUnresolvedFolders().isEmpty()) return diff;
+
+    final PacketCollector collector =
+        receiver.createCollector(
+            ResourceNegotiationFileListResponse.PROVIDER.getPacketFilter(getSessionID(), getID()));
+
+    try {
+      while (!diff.getUnresolvedFolders().isEmpty()) {
+
+        log.debug(
+            this
+                + " : requesting content of "
+                + diff.getUnresolvedFolders().size()
+                + " folder(s) of reference point "
+                + referencePointID);
+
+        transmitter.send(
+            ISarosSession.SESSION_CONNECTION_ID,
+            getPeer(),
+            ResourceNegotiationFileListRequest.PROVIDER.create(
+                new ResourceNegotiationFileListRequest(
+                    getSessionID(),
+                    getID(),
+                    referencePointID,
+                    new ArrayList<String>(diff.getUnresolvedFolders()))));
+
+        final Packet packet = collector.nextResult(PACKET_TIMEOUT);
+
+        if (packet == null)
+          throw new IOException(
+              "received no response from "
+                  + getPeer()
+                  + " while waiting for the content of the requested folders");
+
+        final FileList partialFileList =
+            ResourceNegotiationFileListResponse.PROVIDER.getPayload(packet).getFileList();
+
+        if (remoteFileList.addContents(partialFileList) == 0)
+          throw new IOException(
+              "the remote side "
+                  + getPeer()
+                  + " did not send the content of the requested folders");
+
+        diff = FileListDiff.diff(localFileList, remoteFileList);
+      }
+    } finally {
+      collector.cancel();
+    }
+
+    return diff;
+  }
+
   /**
    * Synchronize the reference point structures, deleting files and folders that are not present on
    * the remote side and creating empty folders that do not exists and the local side.
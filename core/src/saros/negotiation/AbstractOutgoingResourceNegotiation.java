@@ -2,12 +2,17 @@ package saros.negotiation;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CancellationException;
 import org.apache.log4j.Logger;
+import org.jivesoftware.smack.filter.OrFilter;
 import org.jivesoftware.smack.packet.Packet;
+import saros.communication.extensions.ResourceNegotiationFileListRequest;
+import saros.communication.extensions.ResourceNegotiationFileListResponse;
 import saros.communication.extensions.ResourceNegotiationMissingFilesExtension;
 import saros.communication.extensions.ResourceNegotiationOfferingExtension;
 import saros.communication.extensions.StartActivityQueuingRequest;
@@ -46,6 +51,14 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
 
   private static final Random NEGOTIATION_ID_GENERATOR = new Random();
 
+  /**
+   * Number of file list entries up to which the content of additional folders is included in the
+   * offered and the requested partial file lists. The content of all other folders is only
+   * requested by the remote side if it differs.
+   */
+  private static final int MAX_PARTIAL_FILE_LIST_ENTRIES =
+      Integer.getInteger("saros.negotiation.resource.MAX_PARTIAL_FILE_LIST_ENTRIES", 1000);
+
   protected final IEditorManager editorManager;
 
   private PacketCollector remoteFileListResponseCollector;
@@ -54,6 +67,9 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
 
   private final AdditionalResourceDataFactory additionalResourceDataFactory;
 
+  /** the complete file lists of the offered reference points by their reference point id */
+  private final Map<String, FileList> fileLists = new HashMap<String, FileList>();
+
   protected AbstractOutgoingResourceNegotiation( //
       final JID peer, //
       final ResourceSharingData resourceSharingData, //
@@ -228,12 +244,27 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
 
     checkCancellation(CancelOption.NOTIFY_PEER);
 
-    Packet packet = collectPacket(remoteFileListResponseCollector, 60 * 60 * 1000);
+    Packet packet;
 
-    if (packet == null)
-      throw new LocalCancellationException(
-          "received no response from " + getPeer() + " while waiting for the file list",
-          CancelOption.DO_NOT_NOTIFY_PEER);
+    /*
+     * the remote side requests the content of all differing folders of the
+     * partial file lists before it replies with the missing files
+     */
+    while (true) {
+      packet = collectPacket(remoteFileListResponseCollector, 60 * 60 * 1000);
+
+      if (packet == null)
+        throw new LocalCancellationException(
+            "received no response from " + getPeer() + " while waiting for the file list",
+            CancelOption.DO_NOT_NOTIFY_PEER);
+
+      final ResourceNegotiationFileListRequest request =
+          ResourceNegotiationFileListRequest.PROVIDER.getPayload(packet);
+
+      if (request == null) break;
+
+      sendPartialFileList(request);
+    }
 
     List<FileList> remoteFileLists =
         ResourceNegotiationMissingFilesExtension.PROVIDER.getPayload(packet).getFileLists();
@@ -247,6 +278,37 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
     return remoteFileLists;
   }
 
+  /**
+   * Sends the content of the requested folders of a reference point to the remote side.
+   *
+   * @param request the request of the remote side
+   * @throws IOException
+   */
+  private void sendPartialFileList(ResourceNegotiationFileListRequest request) throws IOException {
+
+    final FileList fileList = fileLists.get(request.getReferencePointID());
+
+    final FileList partialFileList =
+        fileList == null
+            ? FileListFactory.createEmptyFileList()
+            : fileList.createPartialFileList(request.getFolders(), MAX_PARTIAL_FILE_LIST_ENTRIES);
+
+    partialFileList.setReferencePointID(request.getReferencePointID());
+
+    log.debug(
+        this
+            + " : sending content of "
+            + request.getFolders().size()
+            + " folder(s) of reference point "
+            + request.getReferencePointID());
+
+    transmitter.send(
+        ISarosSession.SESSION_CONNECTION_ID,
+        getPeer(),
+        ResourceNegotiationFileListResponse.PROVIDER.create(
+            new ResourceNegotiationFileListResponse(getSessionID(), getID(), partialFileList)));
+  }
+
   @Override
   protected void executeCancellation() {
     if (session.isHost() && session.getRemoteUsers().isEmpty())
@@ -294,8 +356,11 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
   protected void createCollectors() {
     remoteFileListResponseCollector =
         receiver.createCollector(
-            ResourceNegotiationMissingFilesExtension.PROVIDER.getPacketFilter(
-                getSessionID(), getID()));
+            new OrFilter(
+                ResourceNegotiationMissingFilesExtension.PROVIDER.getPacketFilter(
+                    getSessionID(), getID()),
+                ResourceNegotiationFileListRequest.PROVIDER.getPacketFilter(
+                    getSessionID(), getID())));
 
     startActivityQueuingResponseCollector =
         receiver.createCollector(
@@ -338,6 +403,7 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
             FileListFactory.createFileList(
                 referencePoint,
                 checksumCache,
+                getChecksumAlgorithm(),
                 new SubProgressMonitor(
                     monitor,
                     1 * scale,
@@ -346,6 +412,16 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
 
         referencePointFileList.setReferencePointID(referencePointID);
 
+        fileLists.put(referencePointID, referencePointFileList);
+
+        /*
+         * only offer the top of the file list, the remote side requests
+         * the content of all folders that differ from its local ones
+         */
+        FileList partialFileList =
+            referencePointFileList.createPartialFileList(
+                Collections.singletonList(""), MAX_PARTIAL_FILE_LIST_ENTRIES);
+
         Map<String, String> additionalResourceData =
             additionalResourceDataFactory.build(referencePoint);
 
@@ -353,7 +429,7 @@ public abstract class AbstractOutgoingResourceNegotiation extends ResourceNegoti
             new ResourceNegotiationData(
                 referencePointID,
                 referencePoint.getName(),
-                referencePointFileList,
+                partialFileList,
                 additionalResourceData);
 
         negData.add(data);
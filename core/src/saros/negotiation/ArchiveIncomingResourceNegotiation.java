@@ -1,12 +1,15 @@
 package saros.negotiation;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.log4j.Logger;
 import saros.exceptions.LocalCancellationException;
 import saros.exceptions.SarosCancellationException;
@@ -15,13 +18,13 @@ import saros.filesystem.IResource;
 import saros.filesystem.IWorkspace;
 import saros.filesystem.checksum.IChecksumCache;
 import saros.monitoring.IProgressMonitor;
-import saros.monitoring.SubProgressMonitor;
 import saros.negotiation.NegotiationTools.CancelOption;
 import saros.net.IReceiver;
 import saros.net.ITransmitter;
 import saros.net.xmpp.JID;
 import saros.net.xmpp.filetransfer.XMPPFileTransfer;
 import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.net.xmpp.filetransfer.XMPPFileTransferRequest;
 import saros.observables.FileReplacementInProgressObservable;
 import saros.session.ISarosSession;
 import saros.session.ISarosSessionManager;
@@ -69,47 +72,44 @@ public class ArchiveIncomingResourceNegotiation extends AbstractIncomingResource
       List<FileList> missingFiles)
       throws IOException, SarosCancellationException {
 
-    boolean filesMissing = false;
+    int filesMissing = 0;
 
-    for (FileList list : missingFiles) filesMissing |= list.getPaths().size() > 0;
+    for (FileList list : missingFiles) filesMissing += list.getPaths().size();
 
     // the host do not send an archive if we do not need any files
-    if (filesMissing) {
-      receiveAndUnpackArchive(referencePointMapping, monitor);
+    if (filesMissing > 0) {
+      receiveAndUnpackArchive(referencePointMapping, filesMissing, monitor);
     }
   }
 
-  /** Receives the archive with all missing files and unpacks it. */
+  /**
+   * Receives the archive with all missing files and unpacks every file as soon as it was received.
+   */
   private void receiveAndUnpackArchive(
-      final Map<String, IReferencePoint> localReferencePointMapping, final IProgressMonitor monitor)
+      final Map<String, IReferencePoint> localReferencePointMapping,
+      final int fileCount,
+      final IProgressMonitor monitor)
       throws IOException, SarosCancellationException {
 
-    // waiting for the big archive to come in
-
-    monitor.beginTask(null, 100);
+    monitor.beginTask("Receiving archive file...", 100);
+    log.debug("waiting for incoming archive stream request");
 
-    File archiveFile = receiveArchive(new SubProgressMonitor(monitor, 50));
+    monitor.subTask("Waiting for the host to send the archive file...");
+    monitor.waitForCompletion(expectedTransfer);
+    monitor.subTask("Receiving archive file...");
+    log.debug(this + " : receiving archive");
 
-    /*
-     * FIXME at this point it makes no sense to report the cancellation to
-     * the remote side, because his negotiation is already finished !
-     */
+    final XMPPFileTransferRequest transferRequest;
+    final InputStream archiveStream;
 
     try {
-      unpackArchive(localReferencePointMapping, archiveFile, new SubProgressMonitor(monitor, 50));
-      monitor.done();
-    } finally {
-      if (archiveFile != null && !archiveFile.delete()) {
-        log.warn("Could not clean up archive file " + archiveFile.getAbsolutePath());
-      }
+      transferRequest = expectedTransfer.get();
+      archiveStream = transferRequest.acceptStream();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IOException(e.getMessage(), e.getCause());
     }
-  }
 
-  private void unpackArchive(
-      final Map<String, IReferencePoint> localReferencePointMapping,
-      final File archiveFile,
-      final IProgressMonitor monitor)
-      throws LocalCancellationException, IOException {
+    final CountingInputStream countStream = new CountingInputStream(archiveStream);
 
     final Map<String, IReferencePoint> referencePointMapping =
         new HashMap<String, IReferencePoint>();
@@ -118,11 +118,12 @@ public class ArchiveIncomingResourceNegotiation extends AbstractIncomingResource
       referencePointMapping.put(entry.getKey(), entry.getValue());
 
     final DecompressArchiveTask decompressTask =
-        new DecompressArchiveTask(archiveFile, referencePointMapping, PATH_DELIMITER, monitor);
+        new DecompressArchiveTask(
+            countStream, fileCount, referencePointMapping, PATH_DELIMITER, monitor);
 
     long startTime = System.currentTimeMillis();
 
-    log.debug(this + " : unpacking archive file...");
+    log.debug(this + " : unpacking archive stream...");
 
     /*
      * TODO: calculate the ADLER32 checksums during decompression and add
@@ -136,54 +137,31 @@ public class ArchiveIncomingResourceNegotiation extends AbstractIncomingResource
       workspace.run(decompressTask, referencePointMapping.values().toArray(new IResource[0]));
     } catch (saros.exceptions.OperationCanceledException e) {
       LocalCancellationException canceled =
-          new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
+          new LocalCancellationException(null, CancelOption.NOTIFY_PEER);
       canceled.initCause(e);
       throw canceled;
+    } finally {
+      IOUtils.closeQuietly(archiveStream);
     }
 
-    log.debug(
-        String.format("unpacked archive in %d s", (System.currentTimeMillis() - startTime) / 1000));
-
-    // TODO: now add the checksums into the cache
-  }
-
-  private File receiveArchive(IProgressMonitor monitor)
-      throws IOException, SarosCancellationException {
-
-    monitor.beginTask("Receiving archive file...", 100);
-    log.debug("waiting for incoming archive stream request");
+    final Optional<XMPPFileTransfer> transfer = transferRequest.getStreamTransfer();
 
-    monitor.subTask("Host is compressing resource files. Waiting for the archive file...");
-    monitor.waitForCompletion(expectedTransfer);
-    monitor.subTask("Receiving archive file...");
-    log.debug(this + " : receiving archive");
+    if (transfer.isPresent()) {
+      final XMPPFileTransfer.Status status = transfer.get().getStatus();
 
-    File archiveFile = File.createTempFile("saros_archive_" + System.currentTimeMillis(), null);
-
-    boolean transferFailed = true;
-
-    try {
-      XMPPFileTransfer transfer = expectedTransfer.get().acceptFile(archiveFile);
-
-      monitorFileTransfer(transfer, monitor);
-      transferFailed = false;
-    } catch (InterruptedException | ExecutionException e) {
-      throw new IOException(e.getMessage(), e.getCause());
-    } finally {
-      if (transferFailed && !archiveFile.delete()) {
-        log.warn("Could not clean up archive file " + archiveFile.getAbsolutePath());
-      }
+      if (status == XMPPFileTransfer.Status.CANCELED || status == XMPPFileTransfer.Status.ERROR)
+        throw transfer
+            .get()
+            .getException()
+            .orElse(new IOException("archive transfer failed with status " + status));
     }
 
-    monitor.done();
-
     log.debug(
-        this
-            + " : stored archive in file "
-            + archiveFile.getAbsolutePath()
-            + ", size: "
-            + CoreUtils.formatByte(archiveFile.length()));
+        String.format(
+            "received and unpacked archive in %d s, size: %s",
+            (System.currentTimeMillis() - startTime) / 1000,
+            CoreUtils.formatByte(countStream.getByteCount())));
 
-    return archiveFile;
+    // TODO: now add the checksums into the cache
   }
 }
@@ -1,6 +1,5 @@
 package saros.negotiation;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,11 +30,26 @@ import saros.synchronize.StartHandle;
 /**
  * Implementation of {@link AbstractOutgoingResourceNegotiation} utilizing a transferred zip archive
  * to exchange differences in the reference point files.
+ *
+ * <p>The files are compressed into an {@link ArchiveSpool} that is read by the file transfer while
+ * it is written, so compressing and sending overlap. All users of the session must stay stopped
+ * until every file was read, otherwise the peer could receive a change both in the archive and as a
+ * queued activity. As writing to the spool never waits for the transfer, the users are restarted as
+ * soon as the files were read, independent of the speed of the network. Archive data that the
+ * transfer could not send yet is kept in memory up to {@link #SPOOL_MEMORY_LIMIT} bytes and in a
+ * temporary file beyond.
  */
 public class ArchiveOutgoingResourceNegotiation extends AbstractOutgoingResourceNegotiation {
 
   private static final Logger log = Logger.getLogger(ArchiveOutgoingResourceNegotiation.class);
-  private File zipArchive = null;
+
+  /** number of bytes of the archive that are buffered in memory before using a temporary file */
+  private static final int SPOOL_MEMORY_LIMIT =
+      Integer.getInteger("saros.negotiation.ARCHIVE_SPOOL_MEMORY_LIMIT", 8 * 1024 * 1024);
+
+  private List<Pair<IFile, String>> filesToCompress = null;
+  private List<IResource> resourcesToLock = null;
+  private List<StartHandle> stoppedUsers = null;
 
   public ArchiveOutgoingResourceNegotiation( //
       final JID peer, //
@@ -73,57 +87,58 @@ public class ArchiveOutgoingResourceNegotiation extends AbstractOutgoingResource
   protected void prepareTransfer(IProgressMonitor monitor, List<FileList> fileLists)
       throws IOException, SarosCancellationException {
 
-    List<StartHandle> stoppedUsers = null;
-    try {
-      stoppedUsers = stopUsers(monitor);
-      monitor.subTask("");
+    /* the users stay stopped until the files were read, see sendArchive */
+    stoppedUsers = stopUsers(monitor);
+    monitor.subTask("");
 
-      sendAndAwaitActivityQueueingActivation(monitor);
-      monitor.subTask("");
+    sendAndAwaitActivityQueueingActivation(monitor);
+    monitor.subTask("");
 
-      User user = session.getUser(getPeer());
+    User user = session.getUser(getPeer());
 
-      if (user == null) throw new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
+    if (user == null) throw new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
 
-      /*
-       * inform all listeners that the peer has started queuing and can
-       * therefore process IResourceActivities now
-       *
-       * TODO this needs a review as this is called inside the "blocked"
-       * section and so it is not allowed to send resource activities at
-       * this time. Maybe change the description of the listener interface
-       * ?
-       */
-      session.userStartedQueuing(user);
+    /*
+     * inform all listeners that the peer has started queuing and can
+     * therefore process IResourceActivities now
+     *
+     * TODO this needs a review as this is called inside the "blocked"
+     * section and so it is not allowed to send resource activities at
+     * this time. Maybe change the description of the listener interface
+     * ?
+     */
+    session.userStartedQueuing(user);
 
-      zipArchive = createResourceArchive(fileLists, monitor);
-      monitor.subTask("");
-    } finally {
-      if (stoppedUsers != null) startUsers(stoppedUsers);
-    }
+    collectFilesToCompress(fileLists);
+    monitor.subTask("");
   }
 
   @Override
   protected void transfer(IProgressMonitor monitor, List<FileList> fileLists)
       throws SarosCancellationException, IOException {
-    if (zipArchive != null)
-      sendArchive(zipArchive, getPeer(), TRANSFER_ID_PREFIX + getID(), monitor);
+    if (filesToCompress != null) sendArchive(getPeer(), TRANSFER_ID_PREFIX + getID(), monitor);
   }
 
   @Override
   protected void cleanup(IProgressMonitor monitor) {
-    if (zipArchive != null && !zipArchive.delete())
-      log.warn("could not delete archive file: " + zipArchive.getAbsolutePath());
+    restartUsers();
     super.cleanup(monitor);
   }
 
+  private void restartUsers() {
+    if (stoppedUsers != null) startUsers(stoppedUsers);
+
+    stoppedUsers = null;
+  }
+
   /**
+   * Collects the files to archive and the resources to lock while the archive is created. If the
+   * file lists do not contain any files, no files are collected.
+   *
    * @param fileLists a list of file lists containing the files to archive
-   * @return zip file containing all files denoted by the file lists or <code>null</code> if the
-   *     file lists do not contain any files
    */
-  private File createResourceArchive(final List<FileList> fileLists, final IProgressMonitor monitor)
-      throws IOException, SarosCancellationException {
+  private void collectFilesToCompress(final List<FileList> fileLists)
+      throws SarosCancellationException {
 
     boolean skip = true;
 
@@ -134,13 +149,13 @@ public class ArchiveOutgoingResourceNegotiation extends AbstractOutgoingResource
       fileCount += list.getPaths().size();
     }
 
-    if (skip) return null;
+    if (skip) return;
 
     checkCancellation(CancelOption.NOTIFY_PEER);
 
-    final List<Pair<IFile, String>> filesToCompress = new ArrayList<>(fileCount);
+    filesToCompress = new ArrayList<>(fileCount);
 
-    final List<IResource> resourcesToLock = new ArrayList<IResource>();
+    resourcesToLock = new ArrayList<IResource>();
 
     for (final FileList list : fileLists) {
       final String referencePointID = list.getReferencePointID();
@@ -179,37 +194,49 @@ public class ArchiveOutgoingResourceNegotiation extends AbstractOutgoingResource
         aliasBuilder.setLength(prefixLength);
       }
     }
+  }
 
-    log.debug(this + " : creating archive");
-
-    File tempArchive = null;
+  /**
+   * Sends the archive by compressing the collected files into a spool that is read by the file
+   * transfer. The stopped users are restarted once all files were compressed.
+   */
+  private void sendArchive(JID remoteContact, String transferID, IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
 
-    try {
-      tempArchive = File.createTempFile("saros_" + getID(), ".zip");
-      workspace.run(
-          new CreateArchiveTask(tempArchive, filesToCompress, monitor),
-          resourcesToLock.toArray(new IResource[0]));
-    } catch (OperationCanceledException e) {
-      LocalCancellationException canceled = new LocalCancellationException();
-      canceled.initCause(e);
-      throw canceled;
-    }
+    log.debug(this + " : sending archive");
 
-    monitor.done();
+    try (ArchiveSpool spool = new ArchiveSpool(SPOOL_MEMORY_LIMIT)) {
+      XMPPFileTransfer transfer =
+          fileTransferManager.streamSendStart(remoteContact, transferID, spool.getInputStream());
+
+      log.debug(this + " : compressing archive into the transfer stream");
+
+      try {
+        workspace.run(
+            new CreateArchiveTask(spool.getOutputStream(), filesToCompress, monitor),
+            resourcesToLock.toArray(new IResource[0]));
+      } catch (OperationCanceledException e) {
+        transfer.cancel();
+        LocalCancellationException canceled = new LocalCancellationException();
+        canceled.initCause(e);
+        throw canceled;
+      } catch (IOException e) {
+        transfer.cancel();
+        // the peer may have rejected the transfer and closed the spool
+        checkCancellation(CancelOption.NOTIFY_PEER);
+        throw e;
+      }
 
-    return tempArchive;
-  }
+      /* the remaining archive data is sent from the spool */
+      restartUsers();
 
-  private void sendArchive(
-      File archive, JID remoteContact, String transferID, IProgressMonitor monitor)
-      throws SarosCancellationException, IOException {
+      monitor.subTask("waiting for client to accept archive file transfer");
+      transfer.waitForTransferStart(monitor::isCanceled);
 
-    log.debug(this + " : sending archive");
-    monitor.beginTask("Sending archive file...", 100);
+      checkCancellation(CancelOption.NOTIFY_PEER);
 
-    XMPPFileTransfer transfer =
-        fileTransferManager.fileSendStart(remoteContact, archive, transferID);
-    monitorFileTransfer(transfer, monitor);
+      awaitTransfer(transfer, monitor);
+    }
 
     monitor.done();
 
@@ -0,0 +1,222 @@
+package saros.negotiation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Buffer between the creation of an archive and its transfer. Other than a pipe, writing to the
+ * spool never waits for the reader, so the files of the archive can be read regardless of the speed
+ * of the transfer. The first bytes are kept in memory, all bytes beyond the memory limit are
+ * written to a temporary file that is deleted when the spool is closed.
+ *
+ * <p>The spool supports exactly one writer and one reader thread.
+ */
+class ArchiveSpool implements Closeable {
+
+  private final int memoryLimit;
+
+  private final Object lock = new Object();
+
+  /** chunks written to memory that were not read yet */
+  private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+  /** number of bytes of the chunks that were not read yet */
+  private int bufferedBytes;
+
+  /** offset of the next byte to read in the first chunk */
+  private int chunkOffset;
+
+  private Path file;
+
+  private FileChannel channel;
+
+  private long fileWritePosition;
+
+  private long fileReadPosition;
+
+  private boolean writerClosed;
+
+  private boolean closed;
+
+  private final OutputStream out =
+      new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          if (len == 0) return;
+
+          synchronized (lock) {
+            if (closed || writerClosed) throw new IOException("spool is closed");
+
+            if (channel == null && bufferedBytes + len <= memoryLimit) {
+              chunks.add(Arrays.copyOfRange(b, off, off + len));
+              bufferedBytes += len;
+            } else {
+              // once spooled to the file all following bytes must go there to keep their order
+              writeToFile(ByteBuffer.wrap(b, off, len));
+            }
+
+            lock.notifyAll();
+          }
+        }
+
+        @Override
+        public void close() {
+          synchronized (lock) {
+            writerClosed = true;
+            lock.notifyAll();
+          }
+        }
+      };
+
+  private final InputStream in =
+      new InputStream() {
+        @Override
+        public int read() throws IOException {
+          byte[] b = new byte[1];
+
+          return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          if (len == 0) return 0;
+
+          synchronized (lock) {
+            while (true) {
+              if (closed) throw new IOException("spool is closed");
+
+              if (!chunks.isEmpty()) return readFromMemory(b, off, len);
+
+              if (fileReadPosition < fileWritePosition) return readFromFile(b, off, len);
+
+              if (writerClosed) return -1;
+
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for archive data");
+              }
+            }
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          ArchiveSpool.this.close();
+        }
+      };
+
+  /**
+   * Creates a spool.
+   *
+   * @param memoryLimit the number of bytes that are kept in memory before the spool writes to a
+   *     temporary file
+   */
+  ArchiveSpool(final int memoryLimit) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  /**
+   * Returns the stream to write the archive to. Closing the stream marks the end of the archive.
+   *
+   * @return the output stream of the spool
+   */
+  OutputStream getOutputStream() {
+    return out;
+  }
+
+  /**
+   * Returns the stream to read the archive from. Reading blocks until the writer wrote more data or
+   * closed its stream.
+   *
+   * @return the input stream of the spool
+   */
+  InputStream getInputStream() {
+    return in;
+  }
+
+  /** Discards all data that was not read yet and deletes the temporary file. */
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) return;
+
+      closed = true;
+      chunks.clear();
+      bufferedBytes = 0;
+      lock.notifyAll();
+
+      if (channel == null) return;
+
+      try {
+        channel.close();
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private int readFromMemory(byte[] b, int off, int len) {
+    byte[] chunk = chunks.peek();
+
+    int count = Math.min(len, chunk.length - chunkOffset);
+
+    System.arraycopy(chunk, chunkOffset, b, off, count);
+
+    chunkOffset += count;
+    bufferedBytes -= count;
+
+    if (chunkOffset == chunk.length) {
+      chunks.poll();
+      chunkOffset = 0;
+    }
+
+    return count;
+  }
+
+  private int readFromFile(byte[] b, int off, int len) throws IOException {
+    int count = (int) Math.min(len, fileWritePosition - fileReadPosition);
+
+    ByteBuffer buffer = ByteBuffer.wrap(b, off, count);
+
+    while (buffer.hasRemaining())
+      if (channel.read(buffer, fileReadPosition + buffer.position() - off) == -1)
+        throw new IOException("temporary archive file was truncated");
+
+    fileReadPosition += count;
+
+    return count;
+  }
+
+  private void writeToFile(ByteBuffer buffer) throws IOException {
+    if (channel == null) {
+      file = Files.createTempFile("saros-archive-", ".zip");
+
+      try {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      } catch (IOException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+    }
+
+    while (buffer.hasRemaining()) fileWritePosition += channel.write(buffer, fileWritePosition);
+  }
+}
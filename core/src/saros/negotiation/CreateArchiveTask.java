@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -20,7 +21,10 @@ import saros.monitoring.IProgressMonitor;
 import saros.monitoring.NullProgressMonitor;
 import saros.util.CoreUtils;
 
-// TODO java doc
+/**
+ * Compresses files into a zip archive that is either written to a file or directly to a stream,
+ * e.g. the stream of a file transfer.
+ */
 public class CreateArchiveTask implements IWorkspaceRunnable {
 
   private static final int BUFFER_SIZE = 32 * 1024;
@@ -28,15 +32,46 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
   private static final Logger log = Logger.getLogger(CreateArchiveTask.class);
 
   private final File archive;
+  private final OutputStream out;
   private final List<Pair<IFile, String>> filesToCompress;
   private final IProgressMonitor monitor;
 
+  /**
+   * Creates a task that writes the archive to the given file. The file is deleted if the archive
+   * could not be created.
+   *
+   * @param archive the file to write the archive to
+   * @param filesToCompress the files to compress along with their path inside the archive
+   * @param monitor monitor that is used for progress report and cancellation or <code>null</code>
+   *     to use the monitor provided by the {@link #run(IProgressMonitor)} method
+   */
   public CreateArchiveTask(
       final File archive,
       final List<Pair<IFile, String>> filesToCompress,
       final IProgressMonitor monitor) {
 
     this.archive = archive;
+    this.out = null;
+    this.filesToCompress = filesToCompress;
+    this.monitor = monitor;
+  }
+
+  /**
+   * Creates a task that writes the archive to the given stream while the files are compressed. The
+   * stream is closed when the task is done.
+   *
+   * @param out the stream to write the archive to
+   * @param filesToCompress the files to compress along with their path inside the archive
+   * @param monitor monitor that is used for progress report and cancellation or <code>null</code>
+   *     to use the monitor provided by the {@link #run(IProgressMonitor)} method
+   */
+  public CreateArchiveTask(
+      final OutputStream out,
+      final List<Pair<IFile, String>> filesToCompress,
+      final IProgressMonitor monitor) {
+
+    this.archive = null;
+    this.out = out;
     this.filesToCompress = filesToCompress;
     this.monitor = monitor;
   }
@@ -66,7 +101,9 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
 
     try {
       zipStream =
-          new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), BUFFER_SIZE));
+          new ZipOutputStream(
+              new BufferedOutputStream(
+                  archive != null ? new FileOutputStream(archive) : out, BUFFER_SIZE));
 
       while (fileIt.hasNext()) {
         Pair<IFile, String> fileToCompress = fileIt.next();
@@ -109,7 +146,9 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
       zipStream.finish();
       cleanup = false;
     } finally {
-      IOUtils.closeQuietly(zipStream);
+      if (zipStream != null) IOUtils.closeQuietly(zipStream);
+      else IOUtils.closeQuietly(out);
+
       if (cleanup && archive != null && archive.exists() && !archive.delete())
         log.warn("could not delete archive file: " + archive);
 
@@ -121,8 +160,9 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
     log.debug(
         String.format(
             "created archive %s I/O: [%s]",
-            archive.getAbsolutePath(),
-            CoreUtils.throughput(archive.length(), stopWatch.getTime())));
+            archive != null ? archive.getAbsolutePath() : "stream",
+            CoreUtils.throughput(
+                archive != null ? archive.length() : totalRead, stopWatch.getTime())));
   }
 
   private int lastWorked = 0;
@@ -1,5 +1,6 @@
 package saros.negotiation;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -7,6 +8,9 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.log4j.Logger;
 import saros.exceptions.OperationCanceledException;
 import saros.filesystem.FileSystem;
@@ -23,6 +27,8 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
   private static final Logger log = Logger.getLogger(DecompressArchiveTask.class);
 
   private final File file;
+  private final InputStream stream;
+  private final int entryCount;
   private final IProgressMonitor monitor;
   private final Map<String, IReferencePoint> idToReferencePointMapping;
   private final String delimiter;
@@ -44,6 +50,39 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
       final String delimiter,
       final IProgressMonitor monitor) {
     this.file = file;
+    this.stream = null;
+    this.entryCount = IProgressMonitor.UNKNOWN;
+    this.idToReferencePointMapping = idToReferencePointMapping;
+    this.delimiter = delimiter;
+    this.monitor = monitor;
+  }
+
+  /**
+   * Creates a decompress task for an archive that is read from a stream, e.g. the stream of a file
+   * transfer. Every entry is written to the workspace as soon as it was read, so the archive is
+   * never stored as a whole. The stream is read to its end and closed when the task is done.
+   *
+   * <p>If the number of entries is known the task fails with an {@link IOException} if the stream
+   * ends before all entries were read.
+   *
+   * @param stream stream providing the compressed data
+   * @param entryCount the expected number of entries used for progress report and to detect
+   *     truncated archives or {@link IProgressMonitor#UNKNOWN}
+   * @param idToReferencePointMapping map containing the id to reference point mapping (see also
+   *     {@link ISarosSession#getReferencePointId(IReferencePoint)}
+   * @param monitor monitor that is used for progress report and cancellation or <code>null</code>
+   *     to use the monitor provided by the {@link #run(IProgressMonitor)} method
+   * @see #DecompressArchiveTask(File, Map, String, IProgressMonitor)
+   */
+  public DecompressArchiveTask(
+      final InputStream stream,
+      final int entryCount,
+      final Map<String, IReferencePoint> idToReferencePointMapping,
+      final String delimiter,
+      final IProgressMonitor monitor) {
+    this.file = null;
+    this.stream = stream;
+    this.entryCount = entryCount;
     this.idToReferencePointMapping = idToReferencePointMapping;
     this.delimiter = delimiter;
     this.monitor = monitor;
@@ -58,6 +97,11 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
   public void run(IProgressMonitor monitor) throws IOException, OperationCanceledException {
     if (this.monitor != null) monitor = this.monitor;
 
+    if (stream != null) {
+      decompressStream(monitor);
+      return;
+    }
+
     ZipFile zipFile = null;
 
     try {
@@ -71,67 +115,115 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
 
         final ZipEntry entry = entries.nextElement();
 
-        final String entryName = entry.getName();
+        if (monitor.isCanceled()) throw new OperationCanceledException();
+
+        decompressEntry(entry.getName(), zipFile.getInputStream(entry), monitor);
+      }
+    } finally {
+      if (monitor != null) monitor.done();
+
+      try {
+        if (zipFile != null) zipFile.close();
+      } catch (IOException e) {
+        log.warn("failed to close zip file " + zipFile.getName() + " : " + e.getMessage());
+      }
+    }
+  }
+
+  private void decompressStream(final IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    final InputStream in = new BufferedInputStream(stream);
+    final ZipInputStream zipStream = new ZipInputStream(in);
+
+    try {
+      monitor.beginTask("Unpacking archive to workspace", entryCount);
+
+      int entriesRead = 0;
 
+      ZipEntry entry;
+
+      while ((entry = zipStream.getNextEntry()) != null) {
         if (monitor.isCanceled()) throw new OperationCanceledException();
 
-        final int delimiterIdx = entry.getName().indexOf(delimiter);
+        // the consumers may close the stream they are reading from
+        decompressEntry(entry.getName(), new CloseShieldInputStream(zipStream), monitor);
 
-        if (delimiterIdx == -1) {
-          log.warn("skipping zip entry " + entryName + ", entry is not valid");
+        zipStream.closeEntry();
 
-          monitor.worked(1);
-          continue;
-        }
+        entriesRead++;
+      }
 
-        final String id = entryName.substring(0, delimiterIdx);
+      /*
+       * the central directory follows the last entry, the sender fails if we
+       * close the stream before it was able to write it
+       */
+      IOUtils.skip(in, Long.MAX_VALUE);
 
-        final String path = entryName.substring(delimiterIdx + 1, entryName.length());
+      if (entryCount != IProgressMonitor.UNKNOWN && entriesRead != entryCount)
+        throw new IOException(
+            "archive is incomplete, received "
+                + entriesRead
+                + " of "
+                + entryCount
+                + " expected entries");
 
-        final IReferencePoint referencePoint = idToReferencePointMapping.get(id);
+    } finally {
+      monitor.done();
 
-        if (referencePoint == null) {
-          log.warn("skipping zip entry " + entryName + ", unknown reference point id: " + id);
+      IOUtils.closeQuietly(zipStream);
+    }
+  }
 
-          monitor.worked(1);
-          continue;
-        }
+  private void decompressEntry(
+      final String entryName, final InputStream inZip, final IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
 
-        final IFile decompressedFile = referencePoint.getFile(path);
+    final int delimiterIdx = entryName.indexOf(delimiter);
 
-        FileSystem.createFolder(decompressedFile);
+    if (delimiterIdx == -1) {
+      log.warn("skipping zip entry " + entryName + ", entry is not valid");
 
-        monitor.subTask("decompressing: " + path);
+      monitor.worked(1);
+      return;
+    }
 
-        final InputStream inZip = zipFile.getInputStream(entry);
+    final String id = entryName.substring(0, delimiterIdx);
 
-        CancelableInputStream in;
-        in = new CancelableInputStream(inZip, monitor);
+    final String path = entryName.substring(delimiterIdx + 1, entryName.length());
 
-        try {
-          if (!decompressedFile.exists()) decompressedFile.create(in);
-          else decompressedFile.setContents(in);
-        } catch (IOException e) {
-          /* if triggered by check in CancelableInputStream */
-          if (monitor.isCanceled()) {
-            throw new OperationCanceledException();
-          } else {
-            throw e;
-          }
-        }
+    final IReferencePoint referencePoint = idToReferencePointMapping.get(id);
 
-        monitor.worked(1);
+    if (referencePoint == null) {
+      log.warn("skipping zip entry " + entryName + ", unknown reference point id: " + id);
 
-        if (log.isTraceEnabled()) log.trace("file written to disk: " + path);
-      }
-    } finally {
-      if (monitor != null) monitor.done();
+      monitor.worked(1);
+      return;
+    }
 
-      try {
-        if (zipFile != null) zipFile.close();
-      } catch (IOException e) {
-        log.warn("failed to close zip file " + zipFile.getName() + " : " + e.getMessage());
+    final IFile decompressedFile = referencePoint.getFile(path);
+
+    FileSystem.createFolder(decompressedFile);
+
+    monitor.subTask("decompressing: " + path);
+
+    CancelableInputStream in;
+    in = new CancelableInputStream(inZip, monitor);
+
+    try {
+      if (!decompressedFile.exists()) decompressedFile.create(in);
+      else decompressedFile.setContents(in);
+    } catch (IOException e) {
+      /* if triggered by check in CancelableInputStream */
+      if (monitor.isCanceled()) {
+        throw new OperationCanceledException();
+      } else {
+        throw e;
       }
     }
+
+    monitor.worked(1);
+
+    if (log.isTraceEnabled()) log.trace("file written to disk: " + path);
   }
 }
@@ -0,0 +1,337 @@
+package saros.negotiation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.log4j.Logger;
+import saros.exceptions.LocalCancellationException;
+import saros.exceptions.OperationCanceledException;
+import saros.exceptions.SarosCancellationException;
+import saros.filesystem.FileSystem;
+import saros.filesystem.IFile;
+import saros.filesystem.IReferencePoint;
+import saros.filesystem.IResource;
+import saros.filesystem.IWorkspace;
+import saros.filesystem.checksum.IChecksumCache;
+import saros.monitoring.IProgressMonitor;
+import saros.negotiation.NegotiationTools.CancelOption;
+import saros.negotiation.delta.DeltaDecoder;
+import saros.negotiation.delta.FileSignature;
+import saros.net.IReceiver;
+import saros.net.ITransmitter;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.filetransfer.XMPPFileTransfer;
+import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.observables.FileReplacementInProgressObservable;
+import saros.session.ISarosSession;
+import saros.session.ISarosSessionManager;
+import saros.util.CoreUtils;
+
+/**
+ * Implementation of {@link AbstractIncomingResourceNegotiation} that only receives the differences
+ * of altered files. See {@link DeltaOutgoingResourceNegotiation} for the exchanged streams.
+ *
+ * <p>The current content of every missing file that already exists locally is copied to a temporary
+ * file while its signature is calculated, so the deltas can be applied to exactly the content the
+ * signatures describe.
+ */
+public class DeltaIncomingResourceNegotiation extends AbstractIncomingResourceNegotiation {
+
+  private static final Logger log = Logger.getLogger(DeltaIncomingResourceNegotiation.class);
+
+  /** Files smaller than this amount of bytes are always received completely. */
+  private static final long MIN_DELTA_FILE_SIZE =
+      Long.getLong("saros.negotiation.resource.MIN_DELTA_FILE_SIZE", 4 * 1024);
+
+  /** The signature of an outdated copy and the temporary file holding the outdated copy. */
+  private static final class OutdatedCopy {
+    private final FileSignature signature;
+    private final Path file;
+
+    private OutdatedCopy(FileSignature signature, Path file) {
+      this.signature = signature;
+      this.file = file;
+    }
+  }
+
+  /** the outdated copies by the reference point id and path joined by {@link #PATH_DELIMITER} */
+  private final Map<String, OutdatedCopy> outdatedCopies = new HashMap<String, OutdatedCopy>();
+
+  public DeltaIncomingResourceNegotiation(
+      final JID peer, //
+      final String negotiationID, //
+      final List<ResourceNegotiationData> resourceNegotiationData, //
+      final ISarosSessionManager sessionManager, //
+      final ISarosSession session, //
+      final FileReplacementInProgressObservable fileReplacementInProgressObservable, //
+      final IWorkspace workspace, //
+      final IChecksumCache checksumCache, //
+      final XMPPFileTransferManager fileTransferManager, //
+      final ITransmitter transmitter, //
+      final IReceiver receiver //
+      ) {
+    super(
+        peer,
+        negotiationID,
+        resourceNegotiationData,
+        sessionManager,
+        session,
+        fileReplacementInProgressObservable,
+        workspace,
+        checksumCache,
+        fileTransferManager,
+        transmitter,
+        receiver);
+  }
+
+  @Override
+  protected void transfer(
+      IProgressMonitor monitor,
+      Map<String, IReferencePoint> referencePointMapping,
+      List<FileList> missingFiles)
+      throws IOException, SarosCancellationException {
+
+    int filesMissing = 0;
+
+    for (FileList list : missingFiles) filesMissing += list.getPaths().size();
+
+    // the host does not send any deltas if we do not need any files
+    if (filesMissing == 0) return;
+
+    try {
+      sendSignatures(referencePointMapping, missingFiles, monitor);
+      receiveAndApplyDeltas(referencePointMapping, filesMissing, monitor);
+    } finally {
+      deleteOutdatedCopies();
+    }
+  }
+
+  /**
+   * Calculates the signatures of all missing files that exist locally and sends them to the host.
+   * The stream is sent even if there are no signatures as the host waits for it.
+   */
+  private void sendSignatures(
+      final Map<String, IReferencePoint> referencePointMapping,
+      final List<FileList> missingFiles,
+      final IProgressMonitor monitor)
+      throws IOException, SarosCancellationException {
+
+    monitor.beginTask("Calculating file signatures...", IProgressMonitor.UNKNOWN);
+
+    final ByteArrayOutputStream signatures = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(signatures)) {
+
+      for (final FileList list : missingFiles) {
+        final String referencePointID = list.getReferencePointID();
+
+        final IReferencePoint referencePoint = referencePointMapping.get(referencePointID);
+
+        if (referencePoint == null) continue;
+
+        for (final String path : list.getPaths()) {
+          checkCancellation(CancelOption.NOTIFY_PEER);
+
+          final OutdatedCopy copy = createOutdatedCopy(referencePoint.getFile(path));
+
+          if (copy == null) continue;
+
+          outdatedCopies.put(referencePointID + PATH_DELIMITER + path, copy);
+
+          out.writeUTF(referencePointID);
+          out.writeUTF(path);
+          copy.signature.write(out);
+        }
+      }
+
+      out.writeUTF("");
+    }
+
+    log.debug(
+        this
+            + " : sending "
+            + outdatedCopies.size()
+            + " file signature(s), size: "
+            + CoreUtils.formatByte(signatures.size()));
+
+    monitor.subTask("Sending file signatures...");
+
+    final XMPPFileTransfer transfer =
+        fileTransferManager.streamSendStart(
+            getPeer(),
+            DeltaOutgoingResourceNegotiation.SIGNATURE_TRANSFER_ID_PREFIX + getID(),
+            new ByteArrayInputStream(signatures.toByteArray()));
+
+    awaitTransfer(transfer, monitor);
+
+    monitor.done();
+  }
+
+  /**
+   * Copies the current content of the given file to a temporary file and calculates its signature.
+   *
+   * @return the outdated copy or <code>null</code> if the file does not exist or is too small
+   */
+  private OutdatedCopy createOutdatedCopy(final IFile file) throws IOException {
+    if (!file.exists()) return null;
+
+    final long size = file.getSize();
+
+    if (size < MIN_DELTA_FILE_SIZE) return null;
+
+    final Path copyFile = Files.createTempFile("saros_delta_", null);
+
+    boolean created = false;
+
+    try (InputStream in = file.getContents();
+        OutputStream out = Files.newOutputStream(copyFile)) {
+
+      final FileSignature signature = FileSignature.create(new TeeInputStream(in, out), size);
+
+      created = true;
+
+      return new OutdatedCopy(signature, copyFile);
+    } finally {
+      if (!created) Files.deleteIfExists(copyFile);
+    }
+  }
+
+  /**
+   * Receives the deltas of all missing files and applies every delta as soon as it was received.
+   */
+  private void receiveAndApplyDeltas(
+      final Map<String, IReferencePoint> referencePointMapping,
+      final int fileCount,
+      final IProgressMonitor monitor)
+      throws IOException, SarosCancellationException {
+
+    monitor.beginTask("Receiving files...", fileCount);
+
+    monitor.subTask("Waiting for the host to send the files...");
+    monitor.waitForCompletion(expectedTransfer);
+    log.debug(this + " : receiving deltas");
+
+    final InputStream deltaStream;
+
+    try {
+      deltaStream = expectedTransfer.get().acceptStream();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+
+    final CountingInputStream countStream = new CountingInputStream(deltaStream);
+
+    final long startTime = System.currentTimeMillis();
+
+    try {
+      workspace.run(
+          (m) -> applyDeltas(new DataInputStream(countStream), referencePointMapping, monitor),
+          referencePointMapping.values().toArray(new IResource[0]));
+    } catch (OperationCanceledException e) {
+      LocalCancellationException canceled =
+          new LocalCancellationException(null, CancelOption.NOTIFY_PEER);
+      canceled.initCause(e);
+      throw canceled;
+    } finally {
+      IOUtils.closeQuietly(deltaStream);
+    }
+
+    log.debug(
+        String.format(
+            "received and applied deltas in %d s, size: %s",
+            (System.currentTimeMillis() - startTime) / 1000,
+            CoreUtils.formatByte(countStream.getByteCount())));
+
+    monitor.done();
+  }
+
+  private void applyDeltas(
+      final DataInputStream in,
+      final Map<String, IReferencePoint> referencePointMapping,
+      final IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    while (true) {
+      if (monitor.isCanceled()) throw new OperationCanceledException();
+
+      final String referencePointID = in.readUTF();
+
+      if (referencePointID.isEmpty()) break;
+
+      final String path = in.readUTF();
+
+      final IReferencePoint referencePoint = referencePointMapping.get(referencePointID);
+
+      if (referencePoint == null)
+        throw new IOException(
+            "received delta of file " + path + " for unknown reference point " + referencePointID);
+
+      monitor.subTask("receiving " + path);
+
+      applyDelta(
+          in,
+          referencePoint.getFile(path),
+          outdatedCopies.get(referencePointID + PATH_DELIMITER + path));
+
+      monitor.worked(1);
+    }
+  }
+
+  /**
+   * Decodes the delta of the given file into a temporary file and replaces the content of the file
+   * afterwards, so the file is not altered if the delta is invalid.
+   */
+  private void applyDelta(final DataInputStream in, final IFile file, final OutdatedCopy copy)
+      throws IOException {
+
+    final Path decodedFile = Files.createTempFile("saros_delta_", null);
+
+    try {
+      try (OutputStream out = Files.newOutputStream(decodedFile)) {
+        if (copy == null) {
+          DeltaDecoder.decode(in, null, null, out);
+        } else {
+          try (FileChannel base = FileChannel.open(copy.file, StandardOpenOption.READ)) {
+            DeltaDecoder.decode(in, copy.signature, base, out);
+          }
+        }
+      }
+
+      FileSystem.createFolder(file);
+
+      try (InputStream content = Files.newInputStream(decodedFile)) {
+        if (!file.exists()) file.create(content);
+        else file.setContents(content);
+      }
+    } finally {
+      Files.deleteIfExists(decodedFile);
+    }
+  }
+
+  private void deleteOutdatedCopies() {
+    for (final OutdatedCopy copy : outdatedCopies.values()) {
+      try {
+        Files.deleteIfExists(copy.file);
+      } catch (IOException e) {
+        log.warn("failed to delete temporary file " + copy.file, e);
+      }
+    }
+
+    outdatedCopies.clear();
+  }
+}
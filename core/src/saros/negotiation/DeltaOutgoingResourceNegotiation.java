@@ -0,0 +1,340 @@
+package saros.negotiation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.log4j.Logger;
+import saros.editor.IEditorManager;
+import saros.exceptions.LocalCancellationException;
+import saros.exceptions.OperationCanceledException;
+import saros.exceptions.SarosCancellationException;
+import saros.filesystem.IFile;
+import saros.filesystem.IReferencePoint;
+import saros.filesystem.IResource;
+import saros.filesystem.IWorkspace;
+import saros.filesystem.checksum.IChecksumCache;
+import saros.monitoring.IProgressMonitor;
+import saros.negotiation.NegotiationTools.CancelOption;
+import saros.negotiation.delta.DeltaEncoder;
+import saros.negotiation.delta.FileSignature;
+import saros.net.IReceiver;
+import saros.net.ITransmitter;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.filetransfer.XMPPFileTransfer;
+import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.net.xmpp.filetransfer.XMPPFileTransferRequest;
+import saros.session.ISarosSession;
+import saros.session.ISarosSessionManager;
+import saros.session.User;
+import saros.synchronize.StartHandle;
+import saros.util.CoreUtils;
+
+/**
+ * Implementation of {@link AbstractOutgoingResourceNegotiation} that only sends the differences of
+ * altered files, similar to rsync.
+ *
+ * <p>The remote side sends the {@linkplain FileSignature signatures} of its outdated copies of the
+ * missing files first. Every missing file is then sent as a {@linkplain DeltaEncoder delta} to the
+ * outdated copy, so only the blocks that are not contained in the outdated copy are transferred.
+ * Files without an outdated copy are sent completely.
+ *
+ * <p><b>Signature stream</b> (sent by the remote side): for every file the reference point id and
+ * the path encoded via {@link DataOutputStream#writeUTF(String)} followed by the signature. The end
+ * of the stream is signaled by an empty reference point id.
+ *
+ * <p><b>Delta stream</b>: for every missing file the reference point id and the path encoded via
+ * {@link DataOutputStream#writeUTF(String)} followed by the delta. The end of the stream is
+ * signaled by an empty reference point id.
+ */
+public class DeltaOutgoingResourceNegotiation extends AbstractOutgoingResourceNegotiation {
+
+  private static final Logger log = Logger.getLogger(DeltaOutgoingResourceNegotiation.class);
+
+  /** Prefix part of the id used to transfer the signatures of the outdated copies. */
+  static final String SIGNATURE_TRANSFER_ID_PREFIX = "saros-dpp-pn-client-server-signatures/";
+
+  private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+  /** A missing file along with the reference point id and path it is announced with. */
+  private static final class FileToSend {
+    private final String referencePointID;
+    private final String path;
+    private final IFile file;
+
+    private FileToSend(String referencePointID, String path, IFile file) {
+      this.referencePointID = referencePointID;
+      this.path = path;
+      this.file = file;
+    }
+  }
+
+  private Future<XMPPFileTransferRequest> expectedSignatureTransfer;
+
+  private List<FileToSend> filesToSend = null;
+  private List<IResource> resourcesToLock = null;
+  private List<StartHandle> stoppedUsers = null;
+
+  public DeltaOutgoingResourceNegotiation( //
+      final JID peer, //
+      final ResourceSharingData resourceSharingData, //
+      final ISarosSessionManager sessionManager, //
+      final ISarosSession session, //
+      final IEditorManager editorManager, //
+      final IWorkspace workspace, //
+      final IChecksumCache checksumCache, //
+      final XMPPFileTransferManager fileTransferManager, //
+      final ITransmitter transmitter, //
+      final IReceiver receiver, //
+      final AdditionalResourceDataFactory additionalResourceDataFactory //
+      ) {
+    super(
+        peer,
+        resourceSharingData,
+        sessionManager,
+        session,
+        editorManager,
+        workspace,
+        checksumCache,
+        fileTransferManager,
+        transmitter,
+        receiver,
+        additionalResourceDataFactory);
+  }
+
+  @Override
+  protected void setup(IProgressMonitor monitor) throws IOException, LocalCancellationException {
+    if (fileTransferManager == null)
+      throw new LocalCancellationException(
+          "not connected to a XMPP server", CancelOption.DO_NOT_NOTIFY_PEER);
+
+    /* the remote side sends the signatures as soon as it knows the missing files */
+    expectedSignatureTransfer =
+        fileTransferManager.addExpectedTransferRequest(SIGNATURE_TRANSFER_ID_PREFIX + getID());
+  }
+
+  @Override
+  protected void prepareTransfer(IProgressMonitor monitor, List<FileList> fileLists)
+      throws IOException, SarosCancellationException {
+
+    /* the users stay stopped until the deltas were sent, see cleanup */
+    stoppedUsers = stopUsers(monitor);
+    monitor.subTask("");
+
+    sendAndAwaitActivityQueueingActivation(monitor);
+    monitor.subTask("");
+
+    User user = session.getUser(getPeer());
+
+    if (user == null) throw new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
+
+    session.userStartedQueuing(user);
+
+    collectFilesToSend(fileLists);
+  }
+
+  @Override
+  protected void transfer(IProgressMonitor monitor, List<FileList> fileLists)
+      throws SarosCancellationException, IOException {
+    if (filesToSend == null) return;
+
+    final Map<String, FileSignature> signatures = receiveSignatures(monitor);
+
+    sendDeltas(signatures, monitor);
+  }
+
+  @Override
+  protected void cleanup(IProgressMonitor monitor) {
+    if (stoppedUsers != null) startUsers(stoppedUsers);
+
+    // only needed for error cases
+    if (expectedSignatureTransfer != null) expectedSignatureTransfer.cancel(false);
+
+    super.cleanup(monitor);
+  }
+
+  /**
+   * Collects the files to send and the resources to lock while they are sent. If the file lists do
+   * not contain any files, no files are collected.
+   */
+  private void collectFilesToSend(final List<FileList> fileLists)
+      throws SarosCancellationException {
+
+    int fileCount = 0;
+
+    for (final FileList list : fileLists) fileCount += list.getPaths().size();
+
+    if (fileCount == 0) return;
+
+    checkCancellation(CancelOption.NOTIFY_PEER);
+
+    filesToSend = new ArrayList<FileToSend>(fileCount);
+    resourcesToLock = new ArrayList<IResource>();
+
+    for (final FileList list : fileLists) {
+      final String referencePointID = list.getReferencePointID();
+
+      final IReferencePoint referencePoint =
+          resourceSharingData.getReferencePoint(referencePointID);
+
+      if (referencePoint == null)
+        throw new LocalCancellationException(
+            "reference point with id " + referencePointID + " was unshared during synchronization",
+            CancelOption.NOTIFY_PEER);
+
+      resourcesToLock.add(referencePoint);
+
+      /*
+       * force editor buffer flush because we read the files from the
+       * underlying storage
+       */
+      if (editorManager != null) editorManager.saveEditors(referencePoint);
+
+      for (final String path : list.getPaths())
+        filesToSend.add(new FileToSend(referencePointID, path, referencePoint.getFile(path)));
+    }
+  }
+
+  /**
+   * Receives the signatures of the outdated copies of the remote side.
+   *
+   * @return the signatures by the reference point id and the path of their files joined by {@link
+   *     #PATH_DELIMITER}
+   */
+  private Map<String, FileSignature> receiveSignatures(IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
+
+    monitor.beginTask(
+        "Waiting for " + getPeer().getName() + " to send the file signatures...",
+        IProgressMonitor.UNKNOWN);
+
+    monitor.waitForCompletion(expectedSignatureTransfer);
+
+    final Map<String, FileSignature> signatures = new HashMap<String, FileSignature>();
+
+    final InputStream signatureStream;
+
+    try {
+      signatureStream = expectedSignatureTransfer.get().acceptStream();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+
+    try (DataInputStream in = new DataInputStream(signatureStream)) {
+      while (true) {
+        final String referencePointID = in.readUTF();
+
+        if (referencePointID.isEmpty()) break;
+
+        final String path = in.readUTF();
+
+        signatures.put(referencePointID + PATH_DELIMITER + path, FileSignature.read(in));
+      }
+    }
+
+    monitor.done();
+
+    log.debug(this + " : received " + signatures.size() + " file signature(s)");
+
+    return signatures;
+  }
+
+  /**
+   * Sends the deltas of all files by encoding them directly into the stream of the file transfer.
+   */
+  private void sendDeltas(final Map<String, FileSignature> signatures, IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
+
+    log.debug(this + " : sending deltas");
+
+    monitor.beginTask("Sending files to " + getPeer().getName() + "...", filesToSend.size());
+
+    try (PipedInputStream in = new PipedInputStream(PIPE_BUFFER_SIZE)) {
+      final CountingOutputStream countStream = new CountingOutputStream(new PipedOutputStream(in));
+
+      monitor.subTask("waiting for client to accept file transfer");
+      XMPPFileTransfer transfer =
+          fileTransferManager.streamSendStart(getPeer(), TRANSFER_ID_PREFIX + getID(), in);
+      transfer.waitForTransferStart(monitor::isCanceled);
+
+      checkCancellation(CancelOption.NOTIFY_PEER);
+
+      final long startTime = System.currentTimeMillis();
+
+      try {
+        workspace.run(
+            (m) -> writeDeltas(new DataOutputStream(countStream), signatures, monitor),
+            resourcesToLock.toArray(new IResource[0]));
+      } catch (OperationCanceledException e) {
+        transfer.cancel();
+        LocalCancellationException canceled = new LocalCancellationException();
+        canceled.initCause(e);
+        throw canceled;
+      } catch (IOException e) {
+        transfer.cancel();
+        throw e;
+      }
+
+      awaitTransfer(transfer, monitor);
+
+      log.debug(
+          String.format(
+              "sent deltas of %d file(s) in %d s, size: %s",
+              filesToSend.size(),
+              (System.currentTimeMillis() - startTime) / 1000,
+              CoreUtils.formatByte(countStream.getByteCount())));
+    }
+
+    monitor.done();
+  }
+
+  private void writeDeltas(
+      final DataOutputStream out,
+      final Map<String, FileSignature> signatures,
+      final IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    try {
+      for (final FileToSend fileToSend : filesToSend) {
+        if (monitor.isCanceled()) throw new OperationCanceledException();
+
+        monitor.subTask("sending " + fileToSend.path);
+
+        out.writeUTF(fileToSend.referencePointID);
+        out.writeUTF(fileToSend.path);
+
+        final FileSignature signature =
+            signatures.get(fileToSend.referencePointID + PATH_DELIMITER + fileToSend.path);
+
+        final long literalLength;
+
+        try (InputStream content = fileToSend.file.getContents()) {
+          literalLength = DeltaEncoder.encode(signature, content, out);
+        }
+
+        if (log.isTraceEnabled())
+          log.trace(
+              "sent "
+                  + literalLength
+                  + " literal byte(s) of file "
+                  + fileToSend.file
+                  + (signature == null ? " without outdated copy" : ""));
+
+        monitor.worked(1);
+      }
+
+      out.writeUTF("");
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -3,8 +3,16 @@ package saros.negotiation;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -15,6 +23,13 @@ import java.util.Set;
  * point. FileLists can be compared to other FileLists. Folders are denoted by a trailing separator.
  * Instances of this class are immutable. No further modification is allowed after creation.
  * Instances should be created using the methods provided by the {@link FileListFactory}.
+ *
+ * <p>Every file and folder has a digest that covers its name, its type, and either the checksum of
+ * the file or the digests of all folder members (Merkle tree). A {@linkplain
+ * #createPartialFileList(Collection, int) partial} file list only contains the digest of some
+ * folders instead of their content. Two folders with the same digest have the same content, so the
+ * content of such a folder only has to be {@linkplain #addContents(FileList) added} if it differs
+ * from the local one.
  */
 
 // FIXME remove the referencePointID stuff, as it is mutable !
@@ -42,7 +57,7 @@ public class FileList {
    * foo/bar/foobar.txt will be stored as foo, bar, foo.txt, and foobar.txt
    */
   @XStreamAlias("f")
-  private static class File {
+  static class File {
 
     @XStreamAlias("p")
     @XStreamAsAttribute
@@ -58,6 +73,16 @@ public class FileList {
     @XStreamAsAttribute
     boolean isDirectory;
 
+    /**
+     * The digest of this folder if its content is omitted, <code>null</code> if the content is
+     * available.
+     */
+    @XStreamAlias("h")
+    @XStreamAsAttribute
+    Long digest;
+
+    @XStreamOmitField private Long computedDigest;
+
     private File(String path, MetaData metaData, boolean isDirectory) {
       this.path = path;
       this.metaData = metaData;
@@ -113,7 +138,7 @@ public class FileList {
      */
     private void toList(String base, List<String> paths) {
       for (File sub : files) {
-        if (sub.isDirectory && sub.files.isEmpty())
+        if (sub.isDirectory && sub.files.isEmpty() && !sub.isCollapsed())
           paths.add(sub.appendTo(base).concat(DIR_SEPARATOR));
         else if (!sub.isDirectory) paths.add(sub.appendTo(base));
 
@@ -136,7 +161,7 @@ public class FileList {
     }
 
     /** Retrieves the file for the given path, <code>null</code> if it does not exist. */
-    private File getFile(String path) {
+    File getFile(String path) {
       for (File file : files) {
         File foundFile = file.getFile(segments(path), 0);
         if (foundFile != null) return foundFile;
@@ -179,40 +204,85 @@ public class FileList {
      * @param path not <code>null</code>
      * @param metaData can be <code>null</code>
      */
-    public void addPath(String path, MetaData metaData, boolean isDirectory) {
-      addPath(segments(path), 0, metaData, isDirectory);
+    public File addPath(String path, MetaData metaData, boolean isDirectory) {
+      return addPath(segments(path), 0, metaData, isDirectory);
     }
 
     /**
      * Will be called recursively to create the entry for the path given by its segments including
      * all folder hierarchy levels.
      */
-    private void addPath(
+    private File addPath(
         String[] segments, int segmentIndex, MetaData metaData, boolean isDirectory) {
 
-      if (segmentIndex >= segments.length) return;
+      if (segmentIndex >= segments.length) return this;
 
       for (File file : files) {
         if (file.path.equals(segments[segmentIndex])) {
           if (segmentIndex + 1 == segments.length) {
             file.metaData = metaData;
             file.isDirectory = isDirectory;
-            return;
+            return file;
           } else {
-            file.addPath(segments, segmentIndex + 1, metaData, isDirectory);
-            return;
+            return file.addPath(segments, segmentIndex + 1, metaData, isDirectory);
           }
         }
       }
 
       if (segmentIndex + 1 == segments.length) {
-        files.add(new File(segments[segmentIndex], metaData, isDirectory));
-        return;
+        File file = new File(segments[segmentIndex], metaData, isDirectory);
+        files.add(file);
+        return file;
       }
 
       File file = new File(segments[segmentIndex], null, true);
       files.add(file);
-      file.addPath(segments, segmentIndex + 1, metaData, isDirectory);
+      return file.addPath(segments, segmentIndex + 1, metaData, isDirectory);
+    }
+
+    /** True, if this is a folder whose content is omitted and only its digest is known. */
+    boolean isCollapsed() {
+      return digest != null;
+    }
+
+    /**
+     * Returns the digest of this file or folder. The digest of a folder covers the digests of all
+     * its members and is only computed once.
+     *
+     * @param messageDigest the message digest used to compute missing digests
+     */
+    long getDigest(MessageDigest messageDigest) {
+      if (digest != null) return digest;
+
+      if (computedDigest == null) computedDigest = computeDigest(messageDigest);
+
+      return computedDigest;
+    }
+
+    private long computeDigest(MessageDigest messageDigest) {
+      final List<File> members = new ArrayList<File>(files);
+      members.sort(Comparator.comparing(member -> member.path));
+
+      final ByteBuffer buffer = ByteBuffer.allocate(members.size() * Long.BYTES + Long.BYTES + 2);
+
+      for (File member : members) buffer.putLong(member.getDigest(messageDigest));
+
+      buffer.put((byte) (isDirectory ? 1 : 0));
+
+      if (metaData != null) buffer.put((byte) 1).putLong(metaData.checksum);
+      else buffer.put((byte) 0);
+
+      messageDigest.reset();
+      messageDigest.update(path.getBytes(StandardCharsets.UTF_8));
+      messageDigest.update((byte) 0);
+      messageDigest.update(buffer.array(), 0, buffer.position());
+
+      return ByteBuffer.wrap(messageDigest.digest()).getLong();
+    }
+
+    /** Returns a copy of this file or folder without any members. */
+    private File copy() {
+      return new File(path, metaData, isDirectory);
     }
 
     @Override
@@ -223,6 +293,7 @@ public class FileList {
       result = prime * result + (isDirectory ? 1231 : 1237);
       result = prime * result + Objects.hashCode(metaData);
       result = prime * result + Objects.hashCode(path);
+      result = prime * result + Objects.hashCode(digest);
       return result;
     }
 
@@ -239,6 +310,7 @@ public class FileList {
       if (!Objects.equals(path, other.path)) return false;
       if (!Objects.equals(metaData, other.metaData)) return false;
       if (!Objects.equals(files, other.files)) return false;
+      if (!Objects.equals(digest, other.digest)) return false;
 
       return true;
     }
@@ -285,6 +357,10 @@ public class FileList {
     return root.getMetaData(path);
   }
 
+  File getRoot() {
+    return root;
+  }
+
   /** Creates an empty file list. */
   FileList() {
     this.root = File.createRoot();
@@ -320,6 +396,138 @@ public class FileList {
 
   @XStreamOmitField private volatile List<String> cachedList = null;
 
+  /**
+   * Returns a partial copy of this file list that contains the content of the given folders.
+   * Additional folders are included breadth first as long as the total number of entries does not
+   * exceed the given maximum. All other folders below the given ones are only included with their
+   * digest.
+   *
+   * @param folders the folders whose content must be included, the empty string denotes the root of
+   *     the reference point
+   * @param maxEntries the number of entries up to which additional folders are included
+   * @return a partial copy of this file list
+   */
+  FileList createPartialFileList(Collection<String> folders, int maxEntries) {
+    final FileList result = new FileList();
+
+    result.referencePointID = referencePointID;
+    result.encodings.addAll(encodings);
+
+    final MessageDigest messageDigest = createMessageDigest();
+
+    final Deque<File[]> pending = new ArrayDeque<File[]>();
+
+    final List<String> sortedFolders = new ArrayList<String>();
+
+    for (final String folder : folders)
+      sortedFolders.add(
+          folder.isEmpty() || folder.endsWith(DIR_SEPARATOR) ? folder : folder + DIR_SEPARATOR);
+
+    Collections.sort(sortedFolders);
+
+    String lastFolder = null;
+
+    int entries = 0;
+
+    for (final String folder : sortedFolders) {
+
+      // the content of sub folders is already included with the content of the parent folder
+      if (lastFolder != null && folder.startsWith(lastFolder)) continue;
+
+      final File original = folder.isEmpty() ? root : root.getFile(folder);
+
+      if (original == null || !original.isDirectory) continue;
+
+      lastFolder = folder;
+
+      final File copy = folder.isEmpty() ? result.root : result.root.addPath(folder, null, true);
+
+      entries += addMembers(original, copy, pending, messageDigest);
+    }
+
+    while (!pending.isEmpty()) {
+      final File[] next = pending.poll();
+
+      final File original = next[0];
+      final File copy = next[1];
+
+      if (entries + original.files.size() > maxEntries) continue;
+
+      copy.digest = null;
+      entries += addMembers(original, copy, pending, messageDigest);
+    }
+
+    return result;
+  }
+
+  /**
+   * Copies the members of the given folder. Non empty folders are only copied with their digest and
+   * added to the given queue.
+   */
+  private static int addMembers(
+      File original, File copy, Deque<File[]> pending, MessageDigest messageDigest) {
+
+    for (final File member : original.files) {
+      final File memberCopy = member.copy();
+
+      if (member.isDirectory && !member.files.isEmpty()) {
+        memberCopy.digest = member.getDigest(messageDigest);
+        pending.add(new File[] {member, memberCopy});
+      }
+
+      copy.files.add(memberCopy);
+    }
+
+    return original.files.size();
+  }
+
+  /**
+   * Adds the content of folders that is contained in the given partial file list to the folders of
+   * this file list which are only included with their digest.
+   *
+   * @param partialFileList a partial file list of the same reference point
+   * @return the number of folders whose content was added
+   */
+  int addContents(FileList partialFileList) {
+    final int added = addContents(root, partialFileList.root);
+
+    if (added > 0) cachedList = null;
+
+    return added;
+  }
+
+  private static int addContents(File target, File source) {
+    int added = 0;
+
+    for (final File sourceMember : source.files) {
+      if (!sourceMember.isDirectory || sourceMember.isCollapsed()) continue;
+
+      for (final File targetMember : target.files) {
+        if (!targetMember.isDirectory || !targetMember.path.equals(sourceMember.path)) continue;
+
+        if (targetMember.isCollapsed()) {
+          targetMember.files = sourceMember.files;
+          targetMember.digest = null;
+          added++;
+        } else {
+          added += addContents(targetMember, sourceMember);
+        }
+
+        break;
+      }
+    }
+
+    return added;
+  }
+
+  static MessageDigest createMessageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not available", e);
+    }
+  }
+
   /**
    * Returns an immutable list of all paths in this FileList.
    *
@@ -337,7 +545,8 @@ public class FileList {
    * then this method returns: <code>[A/A1.java, B/B2.java, B/B3.java, C/]</code>
    *
    * @return Returns only the leaves of the tree, i.e. folders are only included if they don't
-   *     contain anything. The paths are sorted by their character length.
+   *     contain anything. Folders whose content is omitted in a partial file list are not included.
+   *     The paths are sorted by their character length.
    */
   public List<String> getPaths() {
 
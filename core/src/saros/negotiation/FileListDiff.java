@@ -1,10 +1,12 @@
 package saros.negotiation;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import saros.negotiation.FileList.File;
 import saros.negotiation.FileList.MetaData;
 
 /**
@@ -33,6 +35,8 @@ public class FileListDiff {
 
   private final List<String> unalteredFolders = new ArrayList<String>();
 
+  private final List<String> unresolvedFolders = new ArrayList<String>();
+
   /**
    * Returns a new {@link FileListDiff diff} which contains the difference of the two {@link
    * FileList}s.
@@ -41,6 +45,10 @@ public class FileListDiff {
    * <code>target</code>. For example, the result's {@link #getAddedFolders()} returns the list of
    * folders that are present in <code>target</code>, but not in <code>base</code>.
    *
+   * <p>If <code>target</code> is a partial file list, the content of its folders that are only
+   * included with their digest is compared by the digest. Folders with a differing digest are
+   * returned by {@link #getUnresolvedFolders()}.
+   *
    * <p>If either of the two parameters is <code>null</code>, the result is an empty diff.
    *
    * @param base The base {@link FileList}.
@@ -54,87 +62,87 @@ public class FileListDiff {
 
     if (base == null || target == null) return result;
 
-    final List<String> basePaths = base.getPaths();
-    final List<String> targetPaths = target.getPaths();
-
-    /*
-     * TODO find better values to avoid multiple rehashing for larger file
-     * lists
-     */
-    final Set<String> baseFolders = new HashSet<String>(1024);
-    final Set<String> baseFiles = new HashSet<String>(1024);
+    result.diff(base.getRoot(), target.getRoot(), "", FileList.createMessageDigest());
 
-    final Set<String> targetFolders = new HashSet<String>(1024);
-    final Set<String> targetFiles = new HashSet<String>(1024);
-
-    for (final String path : basePaths) {
+    return result;
+  }
 
-      addAllFolders(baseFolders, path);
+  /**
+   * Compares the members of the given folders. Folders whose content is omitted in <code>target
+   * </code> are only compared by their digest, so the content of equal folders is never compared.
+   */
+  private void diff(
+      final File base, final File target, final String parent, final MessageDigest messageDigest) {
 
-      if (!isFolder(path)) baseFiles.add(path);
-    }
+    final Map<String, File> baseMembers = new HashMap<String, File>();
 
-    for (final String path : targetPaths) {
+    for (final File baseMember : base.files) baseMembers.put(baseMember.path, baseMember);
 
-      addAllFolders(targetFolders, path);
+    for (final File targetMember : target.files) {
 
-      if (!isFolder(path)) targetFiles.add(path);
-    }
+      final String path = parent + targetMember.path;
 
-    final Set<String> complementSet =
-        new HashSet<String>(
-            max(baseFolders.size(), baseFiles.size(), targetFolders.size(), targetFiles.size()));
+      final File baseMember = baseMembers.remove(targetMember.path);
 
-    complementSet.addAll(targetFiles);
-    complementSet.removeAll(baseFiles);
+      if (baseMember == null) {
+        addAll(addedFiles, addedFolders, targetMember, path);
 
-    result.addedFiles.addAll(complementSet);
+      } else if (!baseMember.isDirectory && !targetMember.isDirectory) {
 
-    complementSet.clear();
-    complementSet.addAll(baseFiles);
-    complementSet.removeAll(targetFiles);
+        final MetaData baseData = baseMember.metaData;
+        final MetaData targetData = targetMember.metaData;
 
-    result.removedFiles.addAll(complementSet);
+        if ((baseData == null && targetData == null)
+            || (baseData != null && targetData != null)
+                && (baseData.checksum == targetData.checksum)) {
+          unalteredFiles.add(path);
+        } else {
+          alteredFiles.add(path);
+        }
 
-    final Set<String> intersectionSet =
-        new HashSet<String>(max(targetFiles.size(), targetFolders.size()));
+      } else if (baseMember.isDirectory && targetMember.isDirectory) {
 
-    intersectionSet.addAll(targetFiles);
-    intersectionSet.retainAll(baseFiles);
+        final String folder = path + FileList.DIR_SEPARATOR;
 
-    for (final String path : intersectionSet) {
+        unalteredFolders.add(folder);
 
-      final MetaData baseData = base.getMetaData(path);
-      final MetaData targetData = target.getMetaData(path);
+        if (!targetMember.isCollapsed()) diff(baseMember, targetMember, folder, messageDigest);
+        else if (targetMember.getDigest(messageDigest) == baseMember.getDigest(messageDigest))
+          addMembers(unalteredFiles, unalteredFolders, baseMember, folder);
+        else unresolvedFolders.add(folder);
 
-      if ((baseData == null && targetData == null)
-          || (baseData != null && targetData != null)
-              && (baseData.checksum == targetData.checksum)) {
-        result.unalteredFiles.add(path);
       } else {
-        result.alteredFiles.add(path);
+        addAll(removedFiles, removedFolders, baseMember, path);
+        addAll(addedFiles, addedFolders, targetMember, path);
       }
     }
 
-    complementSet.clear();
-    complementSet.addAll(targetFolders);
-    complementSet.removeAll(baseFolders);
+    for (final File baseMember : baseMembers.values())
+      addAll(removedFiles, removedFolders, baseMember, parent + baseMember.path);
+  }
 
-    result.addedFolders.addAll(complementSet);
+  /** Adds the given file or folder including all its members to the given lists. */
+  private void addAll(
+      final List<String> files, final List<String> folders, final File file, final String path) {
 
-    complementSet.clear();
-    complementSet.addAll(baseFolders);
-    complementSet.removeAll(targetFolders);
+    if (!file.isDirectory) {
+      files.add(path);
+      return;
+    }
 
-    result.removedFolders.addAll(complementSet);
+    final String folder = path + FileList.DIR_SEPARATOR;
 
-    intersectionSet.clear();
-    intersectionSet.addAll(targetFolders);
-    intersectionSet.retainAll(baseFolders);
+    folders.add(folder);
 
-    result.unalteredFolders.addAll(intersectionSet);
+    if (file.isCollapsed()) unresolvedFolders.add(folder);
+    else addMembers(files, folders, file, folder);
+  }
 
-    return result;
+  /** Adds all members of the given folder to the given lists. */
+  private void addMembers(
+      final List<String> files, final List<String> folders, final File folder, final String path) {
+
+    for (final File member : folder.files) addAll(files, folders, member, path + member.path);
   }
 
   /**
@@ -205,6 +213,18 @@ public class FileListDiff {
     return Collections.unmodifiableList(unalteredFolders);
   }
 
+  /**
+   * Returns an unmodifiable list containing the folders of <code>target</code> whose content is
+   * omitted and differs from <code>base</code>. The content of these folders is not part of this
+   * diff and must be added to <code>target</code> before the diff is complete.
+   *
+   * @return an unmodifiable list containing the folders whose content is not known.
+   * @see FileList#addContents(FileList)
+   */
+  public List<String> getUnresolvedFolders() {
+    return Collections.unmodifiableList(unresolvedFolders);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -217,6 +237,7 @@ public class FileListDiff {
     result = prime * result + removedFolders.hashCode();
     result = prime * result + unalteredFiles.hashCode();
     result = prime * result + unalteredFolders.hashCode();
+    result = prime * result + unresolvedFolders.hashCode();
 
     return result;
   }
@@ -237,7 +258,8 @@ public class FileListDiff {
         && removedFiles.equals(other.removedFiles)
         && removedFolders.equals(other.removedFolders)
         && unalteredFiles.equals(other.unalteredFiles)
-        && unalteredFolders.equals(other.unalteredFolders);
+        && unalteredFolders.equals(other.unalteredFolders)
+        && unresolvedFolders.equals(other.unresolvedFolders);
   }
 
   @Override
@@ -256,38 +278,8 @@ public class FileListDiff {
         + removedFolders
         + ", unalteredFolders="
         + unalteredFolders
+        + ", unresolvedFolders="
+        + unresolvedFolders
         + "]";
   }
-
-  private static boolean isFolder(final String path) {
-    return path.charAt(path.length() - 1) == FileList.DIR_SEPARATOR_CHAR;
-  }
-
-  private static void addAllFolders(final Set<String> into, final String path) {
-
-    int idx = path.length() - 1;
-
-    if (!isFolder(path)) idx = path.lastIndexOf(FileList.DIR_SEPARATOR_CHAR, idx - 1);
-
-    String subPath;
-
-    while (idx >= 0) {
-
-      subPath = path.substring(0, idx + 1);
-
-      if (into.contains(subPath)) break;
-
-      into.add(subPath);
-
-      idx = subPath.lastIndexOf(FileList.DIR_SEPARATOR_CHAR, idx - 1);
-    }
-  }
-
-  private static int max(int a, int... others) {
-    int max = a;
-
-    for (int i = 0; i < others.length; i++) max = Math.max(max, others[i]);
-
-    return max;
-  }
 }
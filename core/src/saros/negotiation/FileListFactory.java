@@ -1,16 +1,27 @@
 package saros.negotiation;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.log4j.Logger;
 import saros.filesystem.FileSystem;
 import saros.filesystem.IFile;
 import saros.filesystem.IFolder;
 import saros.filesystem.IReferencePoint;
 import saros.filesystem.IResource;
+import saros.filesystem.checksum.ChecksumAlgorithm;
 import saros.filesystem.checksum.IChecksumCache;
 import saros.monitoring.IProgressMonitor;
 import saros.monitoring.NullProgressMonitor;
@@ -22,7 +33,7 @@ import saros.util.PathUtils;
  *
  * <p>
  * <li>Either an expensive one that rescans the whole reference point to gather meta data:<br>
- *     {@link #createFileList(IReferencePoint, IChecksumCache, IProgressMonitor)}
+ *     {@link #createFileList(IReferencePoint, IChecksumCache, ChecksumAlgorithm, IProgressMonitor)}
  * <li>Or a cheap one which requires the caller to take care of the validity of input data:<br>
  *     {@link #createFileList(List)}
  */
@@ -30,6 +41,16 @@ public class FileListFactory {
 
   private static final Logger log = Logger.getLogger(FileListFactory.class);
 
+  /** Maximum number of threads reading files at the same time while creating a file list. */
+  private static final int MAX_IO_CONCURRENCY =
+      Math.max(
+          1,
+          Integer.getInteger(
+              "saros.negotiation.FILE_LIST_IO_CONCURRENCY",
+              Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+  private static final long PROGRESS_UPDATE_INTERVAL = 100;
+
   private FileListFactory() {
     // NOP
   }
@@ -56,79 +77,238 @@ public class FileListFactory {
     return new FileList();
   }
 
+  /**
+   * Creates a file list for the given reference point using the {@linkplain
+   * ChecksumAlgorithm#getDefault() default checksum algorithm}.
+   *
+   * @see #createFileList(IReferencePoint, IChecksumCache, ChecksumAlgorithm, IProgressMonitor)
+   */
+  public static FileList createFileList(
+      final IReferencePoint referencePoint,
+      final IChecksumCache checksumCache,
+      final IProgressMonitor suggestedMonitor)
+      throws IOException {
+
+    return createFileList(
+        referencePoint, checksumCache, ChecksumAlgorithm.getDefault(), suggestedMonitor);
+  }
+
   /**
    * Creates a file list for the given reference point.
    *
    * <p>Uses the given checksum cache for the checksum calculation. Reports progress to the passed
    * progress monitor if present.
    *
+   * <p>The reference point is scanned and the checksums are calculated by multiple threads. At most
+   * {@link #MAX_IO_CONCURRENCY} files are read at the same time. The progress monitor is only
+   * accessed by the calling thread.
+   *
    * @param referencePoint the reference point for which to create a file list
-   * @param checksumCache the checksum cache to use during the checksum calculation
+   * @param checksumCache the checksum cache to use during the checksum calculation, it is only used
+   *     with the default checksum algorithm
+   * @param algorithm the algorithm used to calculate the checksums
    * @param suggestedMonitor the progress monitor to report to or <code>null</code>
    * @return a file list for the given reference point
    * @throws IOException if the the members contained in the reference point or one of its folders
-   *     or the charset of a contained file could not be obtained
+   *     or the charset of a contained file could not be obtained, if the checksum calculation
+   *     failed, or if the calling thread was interrupted
    */
   public static FileList createFileList(
       final IReferencePoint referencePoint,
       final IChecksumCache checksumCache,
+      final ChecksumAlgorithm algorithm,
       final IProgressMonitor suggestedMonitor)
       throws IOException {
 
+    IProgressMonitor monitor =
+        suggestedMonitor != null ? suggestedMonitor : new NullProgressMonitor();
+
     FileList list = new FileList();
 
-    List<IFile> files = calculateMembers(list, referencePoint);
+    ForkJoinPool pool = new ForkJoinPool(MAX_IO_CONCURRENCY);
 
-    IProgressMonitor monitor =
-        suggestedMonitor != null ? suggestedMonitor : new NullProgressMonitor();
+    try {
+      List<Member> files = calculateMembers(pool, list, referencePoint);
 
-    calculateChecksums(list, files, checksumCache, monitor);
+      /* the caches only contain checksums calculated with the default algorithm */
+      calculateChecksums(
+          pool,
+          files,
+          algorithm == ChecksumAlgorithm.getDefault() ? checksumCache : null,
+          algorithm,
+          monitor);
+    } finally {
+      pool.shutdownNow();
+    }
 
     return list;
   }
 
+  /** A resource found while scanning the reference point. */
+  private static final class Member {
+    private final String path;
+    private final IResource resource;
+    private final MetaData data;
+    private final String charset;
+
+    private Member(String path, IResource resource, MetaData data, String charset) {
+      this.path = path;
+      this.resource = resource;
+      this.data = data;
+      this.charset = charset;
+    }
+  }
+
+  /**
+   * Scans the given resources and all resources contained in the given folders. The members of the
+   * folders are obtained in parallel.
+   */
+  private static final class ScanTask extends RecursiveTask<List<Member>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<IResource> resources;
+
+    private ScanTask(List<IResource> resources) {
+      this.resources = resources;
+    }
+
+    @Override
+    protected List<Member> compute() {
+      final List<Member> members = new ArrayList<>();
+      final List<ScanTask> subTasks = new ArrayList<>();
+
+      try {
+        for (IResource resource : resources) {
+          if (resource.isIgnored() || !resource.exists()) continue;
+
+          String path = PathUtils.toPortableString(resource.getReferencePointRelativePath());
+
+          switch (resource.getType()) {
+            case FILE:
+              members.add(
+                  new Member(path, resource, new MetaData(), ((IFile) resource).getCharset()));
+              break;
+
+            case FOLDER:
+              members.add(new Member(path, resource, null, null));
+
+              ScanTask subTask = new ScanTask(((IFolder) resource).members());
+              subTask.fork();
+              subTasks.add(subTask);
+              break;
+          }
+        }
+      } catch (IOException e) {
+        for (ScanTask subTask : subTasks) subTask.cancel(true);
+
+        throw new UncheckedIOException(e);
+      }
+
+      for (ScanTask subTask : subTasks) members.addAll(subTask.join());
+
+      return members;
+    }
+  }
+
+  /**
+   * Calculates the checksums of the given files. Large ranges of files are split and calculated in
+   * parallel.
+   */
+  private static final class ChecksumTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BATCH_SIZE = 16;
+
+    private final List<Member> files;
+    private final IChecksumCache checksumCache;
+    private final ChecksumAlgorithm algorithm;
+    private final Semaphore readPermits;
+    private final AtomicInteger done;
+
+    private ChecksumTask(
+        List<Member> files,
+        IChecksumCache checksumCache,
+        ChecksumAlgorithm algorithm,
+        Semaphore readPermits,
+        AtomicInteger done) {
+      this.files = files;
+      this.checksumCache = checksumCache;
+      this.algorithm = algorithm;
+      this.readPermits = readPermits;
+      this.done = done;
+    }
+
+    @Override
+    protected void compute() {
+      if (files.size() > BATCH_SIZE) {
+        int middle = files.size() / 2;
+
+        invokeAll(
+            new ChecksumTask(files.subList(0, middle), checksumCache, algorithm, readPermits, done),
+            new ChecksumTask(
+                files.subList(middle, files.size()), checksumCache, algorithm, readPermits, done));
+
+        return;
+      }
+
+      for (Member member : files) {
+        /*
+         * the pool may add threads while tasks are joined, so the number of
+         * concurrent reads is limited separately
+         */
+        readPermits.acquireUninterruptibly();
+
+        try {
+          calculateChecksum((IFile) member.resource, member.data, checksumCache, algorithm);
+        } finally {
+          readPermits.release();
+        }
+
+        done.incrementAndGet();
+      }
+    }
+  }
+
   /**
    * Calculates all files contained in the given reference point and adds them to the given file
    * list. Returns a list of all found files.
    *
+   * @param pool the pool used to scan the folders in parallel
    * @param list the file list
    * @param referencePoint the reference point for which to calculate the members
    * @return a list of all found files
    * @throws IOException if the members contained in the reference point or one of its folders or
    *     the charset of a contained file could not be obtained
    */
-  private static List<IFile> calculateMembers(
-      final FileList list, final IReferencePoint referencePoint) throws IOException {
+  private static List<Member> calculateMembers(
+      final ForkJoinPool pool, final FileList list, final IReferencePoint referencePoint)
+      throws IOException {
 
     List<IResource> resources = referencePoint.members();
 
     if (resources.isEmpty()) return Collections.emptyList();
 
-    Deque<IResource> stack = new LinkedList<>(resources);
-
-    List<IFile> files = new LinkedList<>();
-
-    while (!stack.isEmpty()) {
-      IResource resource = stack.pop();
-
-      if (resource.isIgnored() || !resource.exists()) continue;
+    final List<Member> members;
 
-      String path = PathUtils.toPortableString(resource.getReferencePointRelativePath());
+    try {
+      members = pool.invoke(new ScanTask(resources));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
 
-      if (list.contains(path)) continue;
+    List<Member> files = new ArrayList<>();
 
-      switch (resource.getType()) {
-        case FILE:
-          files.add((IFile) resource);
-          MetaData data = new MetaData();
-          list.addPath(path, data, false);
-          list.addEncoding(((IFile) resource).getCharset());
-          break;
+    for (Member member : members) {
+      if (list.contains(member.path)) continue;
 
-        case FOLDER:
-          stack.addAll(((IFolder) resource).members());
-          list.addPath(path, null, true);
-          break;
+      if (member.data != null) {
+        files.add(member);
+        list.addPath(member.path, member.data, false);
+        list.addEncoding(member.charset);
+      } else {
+        list.addPath(member.path, null, true);
       }
     }
 
@@ -136,46 +316,91 @@ public class FileListFactory {
   }
 
   /**
-   * Calculates the checksums of the given files and adds them to the given file list.
+   * Calculates the checksums of the given files and stores them in their meta data. Progress is
+   * reported by the calling thread while the checksums are calculated by the given pool.
    *
-   * @param list the file list
+   * @param pool the pool used to calculate the checksums in parallel
    * @param files the files for which to calculate the checksum
-   * @param checksumCache the checksum cache to use during the checksum calculation
+   * @param checksumCache the checksum cache to use during the checksum calculation or <code>null
+   *     </code>
+   * @param algorithm the algorithm used to calculate the checksums
    * @param monitor the progress monitor to report to
+   * @throws IOException if the calculation failed or the calling thread was interrupted
    */
   private static void calculateChecksums(
-      final FileList list,
-      final List<IFile> files,
+      final ForkJoinPool pool,
+      final List<Member> files,
       final IChecksumCache checksumCache,
-      final IProgressMonitor monitor) {
+      final ChecksumAlgorithm algorithm,
+      final IProgressMonitor monitor)
+      throws IOException {
 
     monitor.beginTask("Calculating checksums...", files.size());
 
-    for (IFile file : files) {
-      try {
-        monitor.subTask(
-            file.getReferencePoint().getName() + ": " + file.getReferencePointRelativePath());
+    final AtomicInteger done = new AtomicInteger();
 
-        MetaData data =
-            list.getMetaData(PathUtils.toPortableString(file.getReferencePointRelativePath()));
+    final ForkJoinTask<Void> task =
+        pool.submit(
+            new ChecksumTask(
+                files, checksumCache, algorithm, new Semaphore(MAX_IO_CONCURRENCY), done));
 
-        Long checksum = null;
+    int reported = 0;
 
-        if (checksumCache != null) checksum = checksumCache.getChecksum(file);
+    try {
+      while (true) {
+        try {
+          task.get(PROGRESS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+          break;
+        } catch (TimeoutException e) {
+          // report the progress made so far
+        } finally {
+          int current = done.get();
+
+          if (current > reported) {
+            monitor.worked(current - reported);
+            monitor.subTask("Calculated " + current + " of " + files.size() + " checksums");
+            reported = current;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      task.cancel(true);
+      Thread.currentThread().interrupt();
 
-        data.checksum = checksum == null ? FileSystem.checksum(file) : checksum;
+      throw new InterruptedIOException("calculating checksums was interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
 
-        if (checksumCache != null) {
-          boolean isInvalid = checksumCache.addChecksum(file, data.checksum);
+      if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
 
-          if (isInvalid && checksum != null) log.warn("calculated checksum on dirty data: " + file);
-        }
+      if (cause instanceof Error) throw (Error) cause;
 
-      } catch (IOException e) {
-        log.error(e);
+      throw new IOException("failed to calculate checksums", cause);
+    }
+  }
+
+  private static void calculateChecksum(
+      final IFile file,
+      final MetaData data,
+      final IChecksumCache checksumCache,
+      final ChecksumAlgorithm algorithm) {
+
+    try {
+      Long checksum = null;
+
+      if (checksumCache != null) checksum = checksumCache.getChecksum(file);
+
+      data.checksum = checksum == null ? FileSystem.checksum(file, algorithm) : checksum;
+
+      if (checksumCache != null) {
+        boolean isInvalid = checksumCache.addChecksum(file, data.checksum);
+
+        if (isInvalid && checksum != null) log.warn("calculated checksum on dirty data: " + file);
       }
 
-      monitor.worked(1);
+    } catch (IOException e) {
+      // rethrown by calculateChecksums, a missing checksum must not be sent as 0
+      throw new UncheckedIOException(e);
     }
   }
 }
@@ -9,6 +9,7 @@ import saros.exceptions.LocalCancellationException;
 import saros.exceptions.RemoteCancellationException;
 import saros.exceptions.SarosCancellationException;
 import saros.filesystem.IWorkspace;
+import saros.filesystem.checksum.ChecksumAlgorithm;
 import saros.filesystem.checksum.IChecksumCache;
 import saros.monitoring.IProgressMonitor;
 import saros.monitoring.MonitorableFileTransfer;
@@ -19,8 +20,10 @@ import saros.net.ITransmitter;
 import saros.net.xmpp.JID;
 import saros.net.xmpp.filetransfer.XMPPFileTransfer;
 import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.session.ChecksumAlgorithmHook;
 import saros.session.ISarosSession;
 import saros.session.ISarosSessionManager;
+import saros.session.User;
 
 /**
  * This abstract class is the superclass for {@link AbstractOutgoingResourceNegotiation} and {@link
@@ -87,6 +90,20 @@ public abstract class ResourceNegotiation extends Negotiation {
     return sessionID;
   }
 
+  /**
+   * Returns the algorithm that is used to calculate the checksums of the file lists exchanged
+   * during this negotiation, i.e. the algorithm that was negotiated with the remote user.
+   *
+   * @return the checksum algorithm
+   */
+  public ChecksumAlgorithm getChecksumAlgorithm() {
+    User user = session.getUser(getPeer());
+
+    return user == null
+        ? ChecksumAlgorithm.LEGACY
+        : ChecksumAlgorithmHook.getChecksumAlgorithm(user);
+  }
+
   @Override
   protected void notifyCancellation(SarosCancellationException exception) {
 
@@ -145,6 +162,42 @@ public abstract class ResourceNegotiation extends Negotiation {
     throw new RemoteCancellationException(null);
   }
 
+  /**
+   * Waits until the given transfer is done, e.g. until it sent the remaining data of an already
+   * closed stream. Unlike {@link #monitorFileTransfer} this does not report any progress.
+   *
+   * @param transfer the transfer to wait for
+   * @param monitor the monitor used to check for a local cancellation
+   * @throws SarosCancellationException if the transfer was aborted either on local side or remote
+   *     side
+   * @throws IOException if an I/O error occurred
+   */
+  protected void awaitTransfer(XMPPFileTransfer transfer, IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
+
+    try {
+      while (!transfer.isDone()) {
+        if (monitor.isCanceled()) transfer.cancel();
+
+        Thread.sleep(100);
+      }
+    } catch (InterruptedException e) {
+      transfer.cancel();
+      Thread.currentThread().interrupt();
+      throw new LocalCancellationException();
+    }
+
+    if (transfer.getStatus() == XMPPFileTransfer.Status.COMPLETED) return;
+
+    IOException exception = transfer.getException().orElse(null);
+
+    if (exception != null) throw exception;
+
+    if (monitor.isCanceled()) throw new LocalCancellationException();
+
+    throw new RemoteCancellationException(null);
+  }
+
   @Override
   protected void notifyTerminated(NegotiationListener listener) {
     listener.negotiationTerminated(this);
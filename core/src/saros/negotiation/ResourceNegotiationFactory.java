@@ -80,6 +80,19 @@ public class ResourceNegotiationFactory {
             transmitter,
             receiver,
             additionalResourceDataFactory);
+      case DELTA:
+        return new DeltaOutgoingResourceNegotiation(
+            remoteAddress,
+            resourceSharingData,
+            sessionManager,
+            session,
+            editorManager,
+            workspace,
+            checksumCache,
+            fileTransferManager,
+            transmitter,
+            receiver,
+            additionalResourceDataFactory);
       default:
         throw new UnsupportedOperationException("transferType not implemented");
     }
@@ -119,6 +132,19 @@ public class ResourceNegotiationFactory {
             fileTransferManager,
             transmitter,
             receiver);
+      case DELTA:
+        return new DeltaIncomingResourceNegotiation(
+            remoteAddress,
+            negotiationID,
+            resourceNegotiationData,
+            sessionManager,
+            session,
+            fileReplacementInProgressObservable,
+            workspace,
+            checksumCache,
+            fileTransferManager,
+            transmitter,
+            receiver);
       default:
         throw new UnsupportedOperationException("transferType not implemented");
     }
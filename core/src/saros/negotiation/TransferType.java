@@ -3,5 +3,6 @@ package saros.negotiation;
 /** Describes different types of transfers used to share reference points */
 public enum TransferType {
   ARCHIVE,
-  INSTANT
+  INSTANT,
+  DELTA
 }
@@ -0,0 +1,122 @@
+package saros.negotiation.delta;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/** Decodes a delta written by the {@link DeltaEncoder}. */
+public final class DeltaDecoder {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private DeltaDecoder() {
+    // NOP
+  }
+
+  /**
+   * Reads a delta and writes the content it describes.
+   *
+   * @param in the input to read the delta from
+   * @param signature the signature the delta was created for or <code>null</code> if there is no
+   *     outdated copy
+   * @param base the outdated copy the signature was created from or <code>null</code> if there is
+   *     no outdated copy
+   * @param out the output to write the content to, the stream is not closed
+   * @throws IOException if the delta could not be read, is invalid, or the content could not be
+   *     written
+   */
+  public static void decode(
+      DataInputStream in, FileSignature signature, FileChannel base, OutputStream out)
+      throws IOException {
+
+    final CRC32 crc = new CRC32();
+
+    final CheckedOutputStream checkedOut = new CheckedOutputStream(out, crc);
+
+    final byte[] buffer = new byte[BUFFER_SIZE];
+
+    while (true) {
+      final int operation = in.readUnsignedByte();
+
+      switch (operation) {
+        case DeltaEncoder.END:
+          checkedOut.flush();
+
+          if (in.readInt() != (int) crc.getValue())
+            throw new IOException("checksum of decoded content does not match");
+
+          return;
+
+        case DeltaEncoder.COPY:
+          copyBlocks(in.readInt(), in.readInt(), signature, base, checkedOut, buffer);
+          break;
+
+        case DeltaEncoder.LITERAL:
+          copyLiteral(in, in.readInt(), checkedOut, buffer);
+          break;
+
+        default:
+          throw new ProtocolException("unknown delta operation: " + operation);
+      }
+    }
+  }
+
+  private static void copyBlocks(
+      int block,
+      int count,
+      FileSignature signature,
+      FileChannel base,
+      OutputStream out,
+      byte[] buffer)
+      throws IOException {
+
+    if (signature == null || base == null)
+      throw new ProtocolException("delta refers to blocks but there is no outdated copy");
+
+    if (block < 0 || count <= 0 || (long) block + count > signature.getBlockCount())
+      throw new ProtocolException(
+          "delta refers to invalid blocks " + block + " - " + ((long) block + count - 1));
+
+    long position = (long) block * signature.getBlockSize();
+
+    long remaining =
+        Math.min((long) count * signature.getBlockSize(), signature.getLength() - position);
+
+    final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+    while (remaining > 0) {
+      byteBuffer.clear();
+      byteBuffer.limit((int) Math.min(buffer.length, remaining));
+
+      final int read = base.read(byteBuffer, position);
+
+      if (read == -1) throw new IOException("outdated copy is shorter than its signature");
+
+      out.write(buffer, 0, read);
+
+      position += read;
+      remaining -= read;
+    }
+  }
+
+  private static void copyLiteral(DataInputStream in, int length, OutputStream out, byte[] buffer)
+      throws IOException {
+
+    if (length <= 0 || length > DeltaEncoder.MAX_LITERAL_LENGTH)
+      throw new ProtocolException("invalid literal length: " + length);
+
+    while (length > 0) {
+      final int chunk = Math.min(buffer.length, length);
+
+      in.readFully(buffer, 0, chunk);
+      out.write(buffer, 0, chunk);
+
+      length -= chunk;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package saros.negotiation.delta;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Encodes the content of a file as a delta to an outdated copy of the file which is described by
+ * its {@link FileSignature}. The delta consists of operations that either copy a range of blocks of
+ * the outdated copy or contain literal data. The delta is decoded by the {@link DeltaDecoder}.
+ *
+ * <p><b>Delta format</b>
+ *
+ * <table>
+ * <tr><th>operation</th><th>content</th></tr>
+ * <tr><td>{@code byte} 1 (copy)</td><td>{@code int} first block, {@code int} block count</td></tr>
+ * <tr><td>{@code byte} 2 (literal)</td><td>{@code int} length, literal data</td></tr>
+ * <tr><td>{@code byte} 0 (end)</td><td>{@code int} CRC32 checksum of the whole content</td></tr>
+ * </table>
+ */
+public final class DeltaEncoder {
+
+  static final int END = 0;
+
+  static final int COPY = 1;
+
+  static final int LITERAL = 2;
+
+  static final int MAX_LITERAL_LENGTH = 64 * 1024;
+
+  private final FileSignature signature;
+
+  private final DataOutputStream out;
+
+  /** the full blocks of the signature by their weak checksum */
+  private final Map<Integer, int[]> blocks = new HashMap<Integer, int[]>();
+
+  private final MessageDigest messageDigest = FileSignature.createMessageDigest();
+
+  private final RollingChecksum checksum = new RollingChecksum();
+
+  private int copyStart;
+
+  private int copyCount;
+
+  private long literalLength;
+
+  private DeltaEncoder(FileSignature signature, DataOutputStream out) {
+    this.signature = signature;
+    this.out = out;
+
+    if (signature == null) return;
+
+    final int blockSize = signature.getBlockSize();
+
+    for (int block = 0; block < signature.getBlockCount(); block++) {
+      if (signature.getBlockLength(block) != blockSize) continue;
+
+      blocks.merge(
+          signature.getWeakChecksum(block),
+          new int[] {block},
+          (existing, added) -> {
+            final int[] merged = new int[existing.length + 1];
+            System.arraycopy(existing, 0, merged, 0, existing.length);
+            merged[existing.length] = added[0];
+            return merged;
+          });
+    }
+  }
+
+  /**
+   * Writes the delta of the given content to the outdated copy described by the given signature.
+   *
+   * @param signature the signature of the outdated copy or <code>null</code> if there is no copy,
+   *     in which case the whole content is written as literal data
+   * @param in the current content, the stream is not closed
+   * @param out the output the delta is written to
+   * @return the number of bytes of the content that were written as literal data
+   * @throws IOException if the content could not be read or the delta could not be written
+   */
+  public static long encode(FileSignature signature, InputStream in, DataOutputStream out)
+      throws IOException {
+
+    final DeltaEncoder encoder = new DeltaEncoder(signature, out);
+
+    final CRC32 crc = new CRC32();
+
+    encoder.encode(new CheckedInputStream(in, crc));
+
+    out.writeByte(END);
+    out.writeInt((int) crc.getValue());
+
+    return encoder.literalLength;
+  }
+
+  private void encode(InputStream in) throws IOException {
+    if (blocks.isEmpty()) {
+      final byte[] buffer = new byte[MAX_LITERAL_LENGTH];
+
+      int read;
+
+      while ((read = FileSignature.readBlock(in, buffer)) > 0) writeLiteral(buffer, 0, read);
+
+      return;
+    }
+
+    final int blockSize = signature.getBlockSize();
+
+    final byte[] buffer = new byte[MAX_LITERAL_LENGTH + 2 * blockSize];
+
+    /*
+     * buffer[start, pos) is the literal data that is not written yet and
+     * buffer[pos, pos + blockSize) the block that is compared
+     */
+    int start = 0;
+    int pos = 0;
+    int end = 0;
+
+    boolean eof = false;
+    boolean valid = false;
+
+    while (true) {
+      if (end - pos < blockSize && !eof) {
+        System.arraycopy(buffer, start, buffer, 0, end - start);
+
+        pos -= start;
+        end -= start;
+        start = 0;
+
+        final int read = FileSignature.readBlock(in, buffer, end, buffer.length - end);
+
+        eof = end + read < buffer.length;
+        end += read;
+        continue;
+      }
+
+      if (end - pos < blockSize) break;
+
+      if (!valid) {
+        checksum.reset(buffer, pos, blockSize);
+        valid = true;
+      }
+
+      final int block = findBlock(buffer, pos, blockSize);
+
+      if (block != -1) {
+        writeLiteral(buffer, start, pos - start);
+        writeCopy(block);
+
+        pos += blockSize;
+        start = pos;
+        valid = false;
+        continue;
+      }
+
+      if (pos - start >= MAX_LITERAL_LENGTH) {
+        writeLiteral(buffer, start, pos - start);
+        start = pos;
+      }
+
+      if (pos + blockSize < end) {
+        checksum.roll(buffer[pos], buffer[pos + blockSize]);
+      } else {
+        valid = false;
+      }
+
+      pos++;
+    }
+
+    for (int offset = start; offset < end; offset += MAX_LITERAL_LENGTH)
+      writeLiteral(buffer, offset, Math.min(MAX_LITERAL_LENGTH, end - offset));
+
+    writePendingCopy();
+  }
+
+  private int findBlock(byte[] buffer, int offset, int length) {
+    final int[] candidates = blocks.get(checksum.getValue());
+
+    if (candidates == null) return -1;
+
+    final long strongChecksum = FileSignature.strongChecksum(messageDigest, buffer, offset, length);
+
+    for (final int block : candidates)
+      if (signature.getStrongChecksum(block) == strongChecksum) return block;
+
+    return -1;
+  }
+
+  private void writeCopy(int block) throws IOException {
+    if (copyCount > 0 && block == copyStart + copyCount) {
+      copyCount++;
+      return;
+    }
+
+    writePendingCopy();
+
+    copyStart = block;
+    copyCount = 1;
+  }
+
+  private void writePendingCopy() throws IOException {
+    if (copyCount == 0) return;
+
+    out.writeByte(COPY);
+    out.writeInt(copyStart);
+    out.writeInt(copyCount);
+
+    copyCount = 0;
+  }
+
+  private void writeLiteral(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) return;
+
+    writePendingCopy();
+
+    out.writeByte(LITERAL);
+    out.writeInt(length);
+    out.write(buffer, offset, length);
+
+    literalLength += length;
+  }
+}
@@ -0,0 +1,205 @@
+package saros.negotiation.delta;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The signature of the content of a file. The content is divided into blocks of the same size
+ * (except for the last one) and every block is described by a weak {@linkplain RollingChecksum
+ * rolling checksum} and a strong checksum. The signature of an outdated copy of a file is used by
+ * the {@link DeltaEncoder} to only send the parts of the current content that are not already
+ * contained in the outdated copy.
+ */
+public final class FileSignature {
+
+  static final int MIN_BLOCK_SIZE = 1024;
+
+  static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+  private final int blockSize;
+
+  private final long length;
+
+  private final int[] weakChecksums;
+
+  private final long[] strongChecksums;
+
+  private FileSignature(int blockSize, long length, int[] weakChecksums, long[] strongChecksums) {
+    this.blockSize = blockSize;
+    this.length = length;
+    this.weakChecksums = weakChecksums;
+    this.strongChecksums = strongChecksums;
+  }
+
+  /**
+   * Creates the signature of the given content.
+   *
+   * @param in the content, the stream is not closed
+   * @param length the expected length of the content which determines the block size
+   * @return the signature of the content
+   * @throws IOException if the content could not be read
+   */
+  public static FileSignature create(InputStream in, long length) throws IOException {
+    final int blockSize = getBlockSize(length);
+
+    final MessageDigest messageDigest = createMessageDigest();
+
+    final byte[] buffer = new byte[blockSize];
+
+    int blockCount = (int) ((length + blockSize - 1) / blockSize);
+
+    int[] weakChecksums = new int[blockCount];
+    long[] strongChecksums = new long[blockCount];
+
+    long actualLength = 0;
+
+    int count = 0;
+
+    int read;
+
+    while ((read = readBlock(in, buffer)) > 0) {
+      if (count == weakChecksums.length) {
+        weakChecksums = Arrays.copyOf(weakChecksums, count * 2 + 1);
+        strongChecksums = Arrays.copyOf(strongChecksums, count * 2 + 1);
+      }
+
+      weakChecksums[count] = RollingChecksum.checksum(buffer, 0, read);
+      strongChecksums[count] = strongChecksum(messageDigest, buffer, 0, read);
+
+      count++;
+      actualLength += read;
+    }
+
+    return new FileSignature(
+        blockSize,
+        actualLength,
+        Arrays.copyOf(weakChecksums, count),
+        Arrays.copyOf(strongChecksums, count));
+  }
+
+  /**
+   * Reads a signature written by {@link #write(DataOutput)}.
+   *
+   * @param in the input to read from
+   * @return the signature
+   * @throws IOException if the signature could not be read or is invalid
+   */
+  public static FileSignature read(DataInput in) throws IOException {
+    final int blockSize = in.readInt();
+    final long length = in.readLong();
+    final int count = in.readInt();
+
+    if (blockSize < MIN_BLOCK_SIZE
+        || blockSize > MAX_BLOCK_SIZE
+        || length < 0
+        || count != (length + blockSize - 1) / blockSize)
+      throw new ProtocolException(
+          "invalid file signature: block size "
+              + blockSize
+              + ", length "
+              + length
+              + ", "
+              + count
+              + " block(s)");
+
+    final int[] weakChecksums = new int[count];
+    final long[] strongChecksums = new long[count];
+
+    for (int i = 0; i < count; i++) {
+      weakChecksums[i] = in.readInt();
+      strongChecksums[i] = in.readLong();
+    }
+
+    return new FileSignature(blockSize, length, weakChecksums, strongChecksums);
+  }
+
+  /**
+   * Writes this signature to the given output.
+   *
+   * @param out the output to write to
+   * @throws IOException if the signature could not be written
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(blockSize);
+    out.writeLong(length);
+    out.writeInt(weakChecksums.length);
+
+    for (int i = 0; i < weakChecksums.length; i++) {
+      out.writeInt(weakChecksums[i]);
+      out.writeLong(strongChecksums[i]);
+    }
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /** Returns the length of the content this signature was created for. */
+  public long getLength() {
+    return length;
+  }
+
+  public int getBlockCount() {
+    return weakChecksums.length;
+  }
+
+  int getWeakChecksum(int block) {
+    return weakChecksums[block];
+  }
+
+  long getStrongChecksum(int block) {
+    return strongChecksums[block];
+  }
+
+  /** Returns the length of the given block, which is only less than the block size for the last. */
+  int getBlockLength(int block) {
+    return (int) Math.min(blockSize, length - (long) block * blockSize);
+  }
+
+  /** Returns a block size of roughly the square root of the length as suggested by rsync. */
+  static int getBlockSize(long length) {
+    final long blockSize = (long) Math.sqrt(length) & ~0x3FFL;
+
+    return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, blockSize));
+  }
+
+  static MessageDigest createMessageDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  static long strongChecksum(MessageDigest messageDigest, byte[] buffer, int offset, int length) {
+    messageDigest.reset();
+    messageDigest.update(buffer, offset, length);
+    return ByteBuffer.wrap(messageDigest.digest()).getLong();
+  }
+
+  /** Reads until the buffer is full or the end of the stream is reached. */
+  static int readBlock(InputStream in, byte[] buffer) throws IOException {
+    return readBlock(in, buffer, 0, buffer.length);
+  }
+
+  static int readBlock(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+    int total = 0;
+
+    while (total < length) {
+      final int read = in.read(buffer, offset + total, length - total);
+
+      if (read == -1) break;
+
+      total += read;
+    }
+
+    return total;
+  }
+}
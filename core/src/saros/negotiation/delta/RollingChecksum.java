@@ -0,0 +1,50 @@
+package saros.negotiation.delta;
+
+/**
+ * Weak checksum of a block of bytes that can be moved forward by one byte in constant time, as used
+ * by rsync.
+ */
+final class RollingChecksum {
+
+  private int a;
+  private int b;
+  private int length;
+
+  /** Computes the checksum of the given block. */
+  void reset(byte[] buffer, int offset, int length) {
+    this.length = length;
+
+    a = 0;
+    b = 0;
+
+    for (int i = 0; i < length; i++) {
+      final int value = buffer[offset + i] & 0xFF;
+
+      a += value;
+      b += (length - i) * value;
+    }
+  }
+
+  /**
+   * Moves the block forward by one byte.
+   *
+   * @param removed the first byte of the current block
+   * @param added the byte following the current block
+   */
+  void roll(byte removed, byte added) {
+    final int removedValue = removed & 0xFF;
+
+    a += (added & 0xFF) - removedValue;
+    b += a - length * removedValue;
+  }
+
+  int getValue() {
+    return (a & 0xFFFF) | (b << 16);
+  }
+
+  static int checksum(byte[] buffer, int offset, int length) {
+    final RollingChecksum checksum = new RollingChecksum();
+    checksum.reset(buffer, offset, length);
+    return checksum.getValue();
+  }
+}
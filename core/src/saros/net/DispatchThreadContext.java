@@ -1,22 +1,44 @@
 package saros.net;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import org.apache.log4j.Logger;
 import saros.annotations.Component;
 import saros.repackaged.picocontainer.Disposable;
 import saros.util.NamedThreadFactory;
 import saros.util.ThreadUtils;
 
-/** The ExecutorService under which all incoming activities should be executed. */
+/**
+ * The ExecutorService under which all incoming activities should be executed.
+ *
+ * <p>Received data can be decoded by a small pool of threads before it is dispatched, see {@link
+ * #decodeAndDispatch(Object, Supplier)}. Decoding is only done in parallel for data of different
+ * sources, so the data of every source is still dispatched in the order it was received.
+ */
 @Component(module = "core")
 public class DispatchThreadContext implements Disposable {
 
   private static final Logger log = Logger.getLogger(DispatchThreadContext.class);
 
+  private static final int DECODER_THREADS =
+      Integer.getInteger(
+          "saros.net.DispatchThreadContext.DECODER_THREADS",
+          Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
   protected ExecutorService dispatch =
       Executors.newSingleThreadExecutor(new NamedThreadFactory("DispatchContext", false));
 
+  protected ExecutorService decode =
+      Executors.newFixedThreadPool(DECODER_THREADS, new NamedThreadFactory("DispatchDecoder-"));
+
+  /* the pending decoders of every source that is currently decoded, guarded by itself */
+  private final Map<Object, ArrayDeque<Supplier<Runnable>>> pendingDecoders =
+      new HashMap<Object, ArrayDeque<Supplier<Runnable>>>();
+
   /**
    * Execute the given runnable as if it was received via the network component.
    *
@@ -27,12 +49,67 @@ public class DispatchThreadContext implements Disposable {
     dispatch.submit(ThreadUtils.wrapSafe(log, runnable));
   }
 
+  /**
+   * Decodes data on one of the decoder threads and executes the result on the dispatch thread.
+   * Decoders of the same source are executed one after another and their results are dispatched in
+   * the order the decoders were passed to this method.
+   *
+   * @param source identifies the source of the data, e.g. the address of the sender
+   * @param decoder decodes the data and returns the runnable to dispatch it or <code>null</code> if
+   *     nothing has to be dispatched
+   */
+  public void decodeAndDispatch(Object source, Supplier<Runnable> decoder) {
+    final ArrayDeque<Supplier<Runnable>> decoders;
+
+    synchronized (pendingDecoders) {
+      final ArrayDeque<Supplier<Runnable>> pending = pendingDecoders.get(source);
+
+      if (pending != null) {
+        pending.add(decoder);
+        return;
+      }
+
+      decoders = new ArrayDeque<Supplier<Runnable>>();
+      decoders.add(decoder);
+      pendingDecoders.put(source, decoders);
+    }
+
+    decode.execute(() -> decode(source, decoders));
+  }
+
+  private void decode(Object source, ArrayDeque<Supplier<Runnable>> decoders) {
+    while (true) {
+      final Supplier<Runnable> decoder;
+
+      synchronized (pendingDecoders) {
+        decoder = decoders.poll();
+
+        if (decoder == null) {
+          pendingDecoders.remove(source);
+          return;
+        }
+      }
+
+      final Runnable result;
+
+      try {
+        result = decoder.get();
+      } catch (RuntimeException e) {
+        log.error("failed to decode data received from " + source, e);
+        continue;
+      }
+
+      if (result != null) executeAsDispatch(result);
+    }
+  }
+
   public ExecutorService getDispatchExecutor() {
     return dispatch;
   }
 
   @Override
   public void dispose() {
+    decode.shutdownNow();
     dispatch.shutdownNow();
   }
 
@@ -0,0 +1,142 @@
+package saros.net;
+
+import java.util.function.Function;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Packet;
+
+/**
+ * A {@link PacketFilter} that only accepts packets containing a packet extension with a certain
+ * element name and namespace, optionally belonging to a certain session and fulfilling an
+ * additional condition.
+ *
+ * <p>Unlike arbitrary filters, the {@link IReceiver} is able to route packets to the listeners of
+ * these filters by the element name, namespace and session id of the packet extension, so the
+ * filters of listeners waiting for other extensions or sessions are not evaluated at all.
+ *
+ * <p>Filters are immutable, the methods of this class return new filters.
+ */
+public final class ExtensionPacketFilter implements PacketFilter {
+
+  private final String elementName;
+  private final String namespace;
+  private final String sessionID;
+  private final Function<Packet, String> sessionIDResolver;
+  private final PacketFilter condition;
+
+  /**
+   * Creates a filter accepting packets that contain a packet extension with the given element name
+   * and namespace.
+   *
+   * @param elementName the element name of the packet extension
+   * @param namespace the namespace of the packet extension
+   */
+  public ExtensionPacketFilter(String elementName, String namespace) {
+    this(elementName, namespace, null, null, null);
+  }
+
+  private ExtensionPacketFilter(
+      String elementName,
+      String namespace,
+      String sessionID,
+      Function<Packet, String> sessionIDResolver,
+      PacketFilter condition) {
+
+    if (elementName == null) throw new IllegalArgumentException("elementName is null");
+    if (namespace == null) throw new IllegalArgumentException("namespace is null");
+
+    this.elementName = elementName;
+    this.namespace = namespace;
+    this.sessionID = sessionID;
+    this.sessionIDResolver = sessionIDResolver;
+    this.condition = condition;
+  }
+
+  /**
+   * Returns a filter that additionally only accepts packets whose extension belongs to the given
+   * session.
+   *
+   * @param sessionID the id of the session, if it is <code>null</code> no packets are accepted
+   * @param sessionIDResolver returns the session id of the extension contained in a packet or
+   *     <code>null</code> if the packet does not contain the extension
+   * @return the new filter
+   */
+  public ExtensionPacketFilter forSession(
+      String sessionID, Function<Packet, String> sessionIDResolver) {
+
+    if (sessionIDResolver == null) throw new IllegalArgumentException("sessionIDResolver is null");
+
+    if (sessionID == null) return and((packet) -> false);
+
+    return new ExtensionPacketFilter(
+        elementName, namespace, sessionID, sessionIDResolver, condition);
+  }
+
+  /**
+   * Returns a filter that additionally only accepts packets fulfilling the given condition.
+   *
+   * @param condition the additional condition
+   * @return the new filter
+   */
+  public ExtensionPacketFilter and(final PacketFilter condition) {
+    if (condition == null) throw new IllegalArgumentException("condition is null");
+
+    final PacketFilter current = this.condition;
+
+    return new ExtensionPacketFilter(
+        elementName,
+        namespace,
+        sessionID,
+        sessionIDResolver,
+        current == null
+            ? condition
+            : (packet) -> current.accept(packet) && condition.accept(packet));
+  }
+
+  /** Returns the element name of the accepted packet extensions. */
+  public String getElementName() {
+    return elementName;
+  }
+
+  /** Returns the namespace of the accepted packet extensions. */
+  public String getNamespace() {
+    return namespace;
+  }
+
+  /**
+   * Returns the id of the session the accepted packet extensions belong to or <code>null</code> if
+   * the session is not restricted.
+   */
+  public String getSessionID() {
+    return sessionID;
+  }
+
+  /**
+   * Returns the session id of the packet extension contained in the given packet.
+   *
+   * @return the session id or <code>null</code> if the packet does not contain the packet extension
+   *     or this filter does not restrict the session
+   */
+  public String getSessionID(Packet packet) {
+    return sessionIDResolver != null ? sessionIDResolver.apply(packet) : null;
+  }
+
+  @Override
+  public boolean accept(Packet packet) {
+    if (packet.getExtension(elementName, namespace) == null) return false;
+
+    if (sessionID != null && !sessionID.equals(sessionIDResolver.apply(packet))) return false;
+
+    return condition == null || condition.accept(packet);
+  }
+
+  @Override
+  public String toString() {
+    return "ExtensionPacketFilter [element="
+        + elementName
+        + ", namespace="
+        + namespace
+        + ", sessionID="
+        + sessionID
+        + "]";
+  }
+}
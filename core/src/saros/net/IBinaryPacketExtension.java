@@ -0,0 +1,36 @@
+package saros.net;
+
+import org.jivesoftware.smack.packet.PacketExtension;
+
+/**
+ * A {@link PacketExtension} that is able to provide its own binary representation. Extensions
+ * implementing this interface are transferred as is over direct stream connections instead of being
+ * serialized to XML first.
+ *
+ * <p>The XML representation returned by {@link #toXML()} is still required for all transports that
+ * are not able to carry binary data.
+ *
+ * @see IBinaryPacketExtensionProvider
+ */
+public interface IBinaryPacketExtension extends PacketExtension {
+
+  /**
+   * Returns the binary representation of this extension. The result <b>must</b> be parsable by the
+   * {@link IBinaryPacketExtensionProvider} that is registered for the element name and namespace of
+   * this extension.
+   *
+   * @return the binary representation of this extension, never <code>null</code>
+   */
+  public byte[] toByteArray();
+
+  /**
+   * Returns whether the binary representation may be compressed by the transport. Extensions that
+   * already carry compressed data should return <code>false</code>.
+   *
+   * @return <code>true</code> if the binary representation may be compressed, <code>false</code>
+   *     otherwise
+   */
+  public default boolean isCompressible() {
+    return true;
+  }
+}
@@ -0,0 +1,46 @@
+package saros.net;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.jivesoftware.smack.packet.PacketExtension;
+import org.jivesoftware.smack.provider.PacketExtensionProvider;
+import org.jivesoftware.smack.provider.ProviderManager;
+
+/**
+ * A {@link PacketExtensionProvider} that is also able to parse the binary representation of its
+ * extensions. The provider must be registered at the {@link ProviderManager} like any other packet
+ * extension provider.
+ *
+ * @see IBinaryPacketExtension
+ */
+public interface IBinaryPacketExtensionProvider extends PacketExtensionProvider {
+
+  /**
+   * Parses the given binary representation of a {@linkplain IBinaryPacketExtension packet
+   * extension}.
+   *
+   * @param data the data as returned by {@link IBinaryPacketExtension#toByteArray()}
+   * @return the parsed packet extension
+   * @throws IOException if the data is malformed
+   */
+  public PacketExtension parseExtension(byte[] data) throws IOException;
+
+  /**
+   * Parses the binary representation of a {@linkplain IBinaryPacketExtension packet extension}
+   * contained in the given range of the data. The returned extension may refer to the data, so it
+   * <b>must not</b> be modified afterwards.
+   *
+   * <p>The default implementation copies the range and calls {@link #parseExtension(byte[])}.
+   *
+   * @param data the array containing the data as returned by {@link
+   *     IBinaryPacketExtension#toByteArray()}
+   * @param offset the offset of the data in the array
+   * @param length the length of the data
+   * @return the parsed packet extension
+   * @throws IOException if the data is malformed
+   */
+  public default PacketExtension parseExtension(byte[] data, int offset, int length)
+      throws IOException {
+    return parseExtension(Arrays.copyOfRange(data, offset, offset + length));
+  }
+}
@@ -29,4 +29,33 @@ public interface ITransferListener {
    * @param duration time in milliseconds it took to receive the data
    */
   public void received(StreamMode mode, long sizeCompressed, long sizeUncompressed, long duration);
+
+  /**
+   * Gets called when data was compressed before it was sent. Data that is sent uncompressed because
+   * compression does not pay off for the stream mode is not reported. The default implementation
+   * does nothing.
+   *
+   * @param mode the {@link StreamMode mode} used for sending
+   * @param level the compression level that was used
+   * @param sizeUncompressed the uncompressed size of the data
+   * @param sizeCompressed the compressed size of the data
+   * @param nanos time in nanoseconds it took to compress the data
+   */
+  public default void compressed(
+      StreamMode mode, int level, long sizeUncompressed, long sizeCompressed, long nanos) {
+    // NOP
+  }
+
+  /**
+   * Gets called before data is sent with the number of transfers of the same traffic class that are
+   * not completely sent over the connection yet. This is the depth of the queue the data has to
+   * wait in. The default implementation does nothing.
+   *
+   * @param mode the {@link StreamMode mode} used for sending
+   * @param trafficClass the traffic class of the data
+   * @param queueDepth the number of pending transfers of this traffic class
+   */
+  public default void queued(StreamMode mode, TrafficClass trafficClass, int queueDepth) {
+    // NOP
+  }
 }
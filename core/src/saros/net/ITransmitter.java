@@ -54,6 +54,24 @@ public interface ITransmitter {
   public void send(String connectionID, JID recipient, PacketExtension extension)
       throws IOException;
 
+  /**
+   * Sends the given {@link PacketExtension} to the given {@link JID} using a direct stream
+   * connection. The connection must be already established to the recipient with the given id.
+   * Extensions of a {@link TrafficClass} with a higher priority are sent before extensions that are
+   * sent at the same time with a lower priority.
+   *
+   * @param connectionID the id of the connection
+   * @param recipient the recipient of the extension
+   * @param extension the extension to send
+   * @param trafficClass the traffic class of the extension
+   * @throws IOException if an I/O error occurs
+   */
+  public default void send(
+      String connectionID, JID recipient, PacketExtension extension, TrafficClass trafficClass)
+      throws IOException {
+    send(connectionID, recipient, extension);
+  }
+
   public default void addTransferListener(ITransferListener listener) {
     // NOP
   }
@@ -0,0 +1,19 @@
+package saros.net;
+
+/**
+ * Traffic classes of the data sent over a connection. Data of a class is sent before the data of
+ * all classes declared after it, e.g. text edits are not delayed by large resource transfers.
+ */
+public enum TrafficClass {
+  /** Text edits and everything that is needed to keep the shared documents consistent. */
+  EDIT,
+
+  /** Awareness information like text selections, viewports and opened editors. */
+  AWARENESS,
+
+  /** Session and connection management, e.g. negotiations and keep alive messages. */
+  CONTROL,
+
+  /** Large data like file contents or file lists. */
+  BULK
+}
@@ -0,0 +1,234 @@
+package saros.net.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.log4j.Logger;
+import saros.net.stream.StreamMode;
+
+/**
+ * Compresses the payloads of packet extensions before they are sent over a stream connection.
+ *
+ * <p>The payloads are compressed with a preset {@linkplain #DICTIONARY dictionary} containing the
+ * markup that recurs in the marshalled packet extensions, so even small payloads compress well. The
+ * receiver has to set the dictionary once its {@link Inflater} {@linkplain
+ * Inflater#needsDictionary() requests} it, the identifier of the dictionary is contained in the
+ * compressed data. The dictionary only contains XML markup as the payloads compressed by this class
+ * are marshalled extensions, e.g. the activities sent to peers that did not negotiate the binary
+ * activity codec. Binary activity payloads are compressed once for all recipients by the extension
+ * itself and are not compressed again.
+ *
+ * <p>The compression level is chosen separately for every {@link StreamMode}. After every
+ * compression the time it took is compared with the time the saved bytes would have needed to be
+ * transferred over the stream, the level is decreased if compressing took longer and increased if
+ * it was considerably faster. If compression does not reduce the size of the payloads of a stream
+ * mode they are sent uncompressed, only every {@link #PROBE_INTERVAL}th payload is still compressed
+ * to notice changes of the content. The ratio, level, and time of every compression are reported to
+ * a {@link Listener}.
+ *
+ * <p>{@link Deflater}s are reused as their native state is expensive to create. This class is
+ * thread safe.
+ */
+final class AdaptiveCompressor {
+
+  private static final Logger log = Logger.getLogger(AdaptiveCompressor.class);
+
+  /**
+   * The preset dictionary, the most common strings are at the end of the dictionary as they are
+   * cheaper to reference. Changing the dictionary requires incrementing the protocol version of the
+   * {@link BinaryChannelConnection}.
+   */
+  static final byte[] DICTIONARY =
+      ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+              + "<checksumErrorActivity/><checksumActivity/><fileActivity/><targetedFileActivity/>"
+              + "<folderCreated/><folderDeleted/><progressActivity/><permissionActivity/>"
+              + "<changeColorActivity/><startFollowingActivity/><stopFollowingActivity/>"
+              + "<stopActivity/><nopActivity/><viewportActivity/><textSelectionActivity/>"
+              + "<editorActivity type=\"ACTIVATED\"/><textEditActivity/>"
+              + "<splitOp><deleteOp sl=\"0\" so=\"0\" ld=\"0\" od=\"0\" text=\"\"/>"
+              + "<insertOp sl=\"0\" so=\"0\" ld=\"0\" od=\"0\" ol=\"0\" text=\"\"/></splitOp>"
+              + "<jupiterActivity><vectorTime local=\"0\" remote=\"0\"/><o class=\""
+              + "<r i=\"\" p=\"\"/></jupiterActivity>"
+              + "<ados xmlns=\"saros\"><payload class=\"ADOS\" v=\"SPXV1\" sid=\"\" seq=\"\">"
+              + "<source>%40%2FSaros</source></payload></ados>")
+          .getBytes(StandardCharsets.UTF_8);
+
+  /** Maximum number of idle {@link Deflater}s that are kept for reuse. */
+  private static final int POOL_SIZE =
+      Integer.getInteger("saros.net.internal.AdaptiveCompressor.POOL_SIZE", 4);
+
+  /** Payloads of a stream mode are sent uncompressed if they do not shrink below this ratio. */
+  private static final double MAX_RATIO = 0.9;
+
+  /** Every n-th payload is compressed even if compression does not pay off for a stream mode. */
+  static final int PROBE_INTERVAL = 32;
+
+  private static final int INITIAL_LEVEL = 6;
+
+  /** Weight of the latest sample in the moving averages. */
+  private static final double WEIGHT = 0.125;
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private static final class Statistics {
+    private int level = INITIAL_LEVEL;
+
+    private double ratio;
+
+    /* nanoseconds it takes to transfer a byte, NaN until there is a sample */
+    private double transferNanosPerByte = Double.NaN;
+
+    private int skipped;
+  }
+
+  /** Receives the statistics of every compression. */
+  interface Listener {
+
+    /**
+     * Gets called after a payload was compressed.
+     *
+     * @param mode the mode of the stream the payload is sent over
+     * @param level the compression level that was used
+     * @param sizeUncompressed the size of the payload
+     * @param sizeCompressed the size of the compressed payload
+     * @param nanos the time the compression took in nanoseconds
+     */
+    void compressed(
+        StreamMode mode, int level, long sizeUncompressed, long sizeCompressed, long nanos);
+  }
+
+  private final Listener listener;
+
+  private final ConcurrentLinkedQueue<Deflater> pool = new ConcurrentLinkedQueue<Deflater>();
+
+  private final Map<StreamMode, Statistics> statistics =
+      new EnumMap<StreamMode, Statistics>(StreamMode.class);
+
+  AdaptiveCompressor() {
+    this((mode, level, sizeUncompressed, sizeCompressed, nanos) -> {});
+  }
+
+  /**
+   * Creates a compressor that reports its statistics to the given listener.
+   *
+   * @param listener the listener to report to, it is called by the compressing threads
+   */
+  AdaptiveCompressor(Listener listener) {
+    this.listener = listener;
+
+    for (StreamMode mode : StreamMode.values()) statistics.put(mode, new Statistics());
+  }
+
+  private Statistics getStatistics(StreamMode mode) {
+    return statistics.get(mode != null ? mode : StreamMode.NONE);
+  }
+
+  /**
+   * Compresses the given payload if this is expected to pay off for the given stream mode.
+   *
+   * @param mode the mode of the stream the payload is sent over
+   * @param payload the payload to compress
+   * @return the compressed payload or <code>null</code> if the payload should be sent uncompressed
+   */
+  byte[] compress(StreamMode mode, byte[] payload) {
+    final Statistics stats = getStatistics(mode);
+
+    final int level;
+
+    synchronized (stats) {
+      if (stats.ratio > MAX_RATIO && ++stats.skipped % PROBE_INTERVAL != 0) return null;
+
+      level = stats.level;
+    }
+
+    final long start = System.nanoTime();
+
+    final byte[] compressed = deflate(payload, level);
+
+    final long nanos = System.nanoTime() - start;
+
+    synchronized (stats) {
+      final double ratio = (double) compressed.length / Math.max(1, payload.length);
+
+      stats.ratio += WEIGHT * (ratio - stats.ratio);
+
+      if (!Double.isNaN(stats.transferNanosPerByte)) {
+        final double savedNanos = (payload.length - compressed.length) * stats.transferNanosPerByte;
+
+        if (nanos > savedNanos && stats.level > Deflater.BEST_SPEED) {
+          stats.level--;
+        } else if (nanos * 4 < savedNanos && stats.level < Deflater.BEST_COMPRESSION) {
+          stats.level++;
+        }
+
+        if (stats.level != level && log.isDebugEnabled())
+          log.debug("changed compression level for " + mode + " to " + stats.level);
+      }
+    }
+
+    listener.compressed(mode, level, payload.length, compressed.length, nanos);
+
+    return compressed.length < payload.length ? compressed : null;
+  }
+
+  /**
+   * Records the time it took to transfer data over a stream of the given mode.
+   *
+   * @param mode the mode of the stream
+   * @param size the number of transferred bytes
+   * @param nanos the time the transfer took in nanoseconds
+   */
+  void transferred(StreamMode mode, long size, long nanos) {
+    if (size <= 0) return;
+
+    final Statistics stats = getStatistics(mode);
+
+    final double sample = (double) nanos / size;
+
+    synchronized (stats) {
+      if (Double.isNaN(stats.transferNanosPerByte)) stats.transferNanosPerByte = sample;
+      else stats.transferNanosPerByte += WEIGHT * (sample - stats.transferNanosPerByte);
+    }
+  }
+
+  /** Returns the compression level that is currently used for the given stream mode. */
+  int getLevel(StreamMode mode) {
+    final Statistics stats = getStatistics(mode);
+
+    synchronized (stats) {
+      return stats.level;
+    }
+  }
+
+  private byte[] deflate(byte[] input, int level) {
+    Deflater compressor = pool.poll();
+
+    if (compressor == null) compressor = new Deflater(level);
+    else compressor.setLevel(level);
+
+    try {
+      compressor.setDictionary(DICTIONARY);
+      compressor.setInput(input);
+      compressor.finish();
+
+      byte[] buffer = new byte[Math.min(input.length + 64, CHUNK_SIZE)];
+      int length = 0;
+
+      while (!compressor.finished()) {
+        if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        length += compressor.deflate(buffer, length, buffer.length - length);
+      }
+
+      return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    } finally {
+      compressor.reset();
+
+      if (pool.size() >= POOL_SIZE || !pool.offer(compressor)) compressor.end();
+    }
+  }
+}
@@ -2,7 +2,6 @@ package saros.net.internal;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -10,9 +9,15 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.ProtocolException;
 import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.log4j.Logger;
+import saros.net.TrafficClass;
 import saros.net.stream.ByteStream;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.JID;
@@ -24,7 +29,16 @@ import saros.net.xmpp.JID;
  * <p>The threading requirements of this class are the following:
  *
  * <p>send() is a reentrant method for sending data. Any number of threads can call it in parallel.
- * <b>Note:</b> The maximum number of concurrent threads is 32 !
+ * Every call opens a new stream on the connection. The data of all open streams is split into
+ * frames and written by a single writer thread. The streams are served by their {@linkplain
+ * TrafficClass traffic class} with one frame per turn, see {@link PrioritySendScheduler}. Streams
+ * of the same traffic class are served in a round robin fashion, so small packets are not delayed
+ * by large ones that are sent at the same time.
+ *
+ * <p>The amount of data of a stream that is not yet received by the remote side is limited by a per
+ * stream window. The remote side grants further data after it read a frame of the stream. The
+ * written frames are only flushed if there are no further frames to write, so concurrently sent
+ * small packets are batched.
  */
 public class BinaryChannelConnection implements IByteStreamConnection {
 
@@ -32,36 +46,110 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
   private static final long TERMINATE_TIMEOUT = 10000L;
 
+  /** Version of the framing protocol, must be increased on every incompatible change. */
+  private static final int PROTOCOL_VERSION = 3;
+
   private static class Opcode {
     /* these opcodes will be cropped to byte values, do not exceed 0xFF ! */
 
+    private static final int HELLO = 0x01;
+
     private static final int TRANSFERDESCRIPTION = 0xFA;
     private static final int DATA = 0xFB;
+    private static final int WINDOW_UPDATE = 0xFC;
 
     private static final int NAMESPACE_UPDATE = 0x64;
     private static final int ELEMENT_NAME_UPDATE = 0x65;
   }
 
-  /** Max size of data chunks */
-  private static final int CHUNKSIZE = 32 * 1024 - 1;
+  /** Max size of data frames */
+  private static final int FRAME_SIZE = 16 * 1024;
+
+  /**
+   * Number of bytes of a stream that may be sent before the remote side grants further data. Must
+   * be a multiple of {@link #FRAME_SIZE}.
+   */
+  private static final int STREAM_WINDOW_SIZE = 8 * FRAME_SIZE;
+
+  private static final int BUFFER_SIZE = 2 * FRAME_SIZE;
+
+  /**
+   * Max size of the payload of a stream. Larger transfer descriptions are treated as a protocol
+   * violation, as the receiver has to keep the whole payload in memory.
+   */
+  private static final int MAX_PAYLOAD_SIZE =
+      Integer.getInteger("saros.net.internal.MAX_PAYLOAD_SIZE", 64 * 1024 * 1024);
+
+  /** A frame that is written before the frames of the open streams, e.g. a cache update. */
+  private interface ControlFrame {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /** A stream that is sent to the remote side. */
+  private static class OutgoingStream {
+    private final int id;
+    private final TrafficClass trafficClass;
+    private final byte[] content;
+    private final ControlFrame transferDescription;
+
+    private boolean opened;
+    private int offset;
+    private int window = STREAM_WINDOW_SIZE;
+    private boolean done;
+
+    private OutgoingStream(
+        int id, TrafficClass trafficClass, byte[] content, ControlFrame transferDescription) {
+      this.id = id;
+      this.trafficClass = trafficClass;
+      this.content = content;
+      this.transferDescription = transferDescription;
+    }
+  }
+
+  /**
+   * A stream that is received from the remote side. The payload buffer grows as the data arrives,
+   * so the memory used by a stream is bounded by the data actually received and not by the length
+   * announced by the remote side.
+   */
+  private static class IncomingStream {
+    private final BinaryXMPPExtension extension;
+    private final int length;
+    private byte[] payload;
+    private int offset;
+
+    private IncomingStream(BinaryXMPPExtension extension, int length) {
+      this.extension = extension;
+      this.length = length;
+      this.payload = new byte[Math.min(length, STREAM_WINDOW_SIZE)];
+    }
+
+    /**
+     * Ensures that the payload buffer can hold the given number of further bytes.
+     *
+     * @param count the number of bytes that are about to be read
+     */
+    private void ensureCapacity(int count) {
+      final int required = offset + count;
+
+      if (required <= payload.length) return;
+
+      payload = Arrays.copyOf(payload, (int) Math.min(length, Math.max(required, 2L * offset)));
+    }
+  }
 
   private IByteStreamConnectionListener listener;
   private ReceiverThread receiveThread;
+  private WriterThread writeThread;
 
   private final JID remoteAddress;
   private final JID localAddress;
 
   private final String connectionID;
 
-  private IDPool idPool = new IDPool();
-
   private boolean connected;
   private boolean initialized;
 
-  private Map<Integer, ByteArrayOutputStream> pendingFragmentedPackets =
-      new HashMap<Integer, ByteArrayOutputStream>();
-  private Map<Integer, BinaryXMPPExtension> pendingXMPPExtensions =
-      new HashMap<Integer, BinaryXMPPExtension>();
+  private Map<Integer, IncomingStream> pendingStreams = new HashMap<Integer, IncomingStream>();
 
   private DataInputStream inputStream;
   private DataOutputStream outputStream;
@@ -78,6 +166,26 @@ public class BinaryChannelConnection implements IByteStreamConnection {
   private int nextNamespaceId = 0;
   private int nextElementNameId = 0;
 
+  /*
+   * The following fields are guarded by the sendLock. Only the writer thread
+   * writes to the output stream.
+   */
+
+  private final Object sendLock = new Object();
+
+  private final Deque<ControlFrame> pendingControlFrames = new ArrayDeque<ControlFrame>();
+
+  /** open outgoing streams */
+  private final PrioritySendScheduler<OutgoingStream> outgoingStreams =
+      new PrioritySendScheduler<OutgoingStream>();
+
+  private final Map<Integer, OutgoingStream> outgoingStreamsById =
+      new HashMap<Integer, OutgoingStream>();
+
+  private int nextStreamId = 0;
+
+  private IOException sendError;
+
   private class ReceiverThread extends Thread {
 
     @Override
@@ -86,6 +194,8 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
       log.debug(connection + " ReceiverThread started.");
       try {
+        readHello();
+
         while (!isInterrupted()) {
           final BinaryXMPPExtension extension = readNextXMPPExtension();
           if (receiver != null) receiver.receive(extension);
@@ -105,6 +215,29 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     }
   }
 
+  private class WriterThread extends Thread {
+
+    @Override
+    public void run() {
+      String connection = BinaryChannelConnection.this.toString();
+
+      log.debug(connection + " WriterThread started.");
+      try {
+        writeFrames();
+      } catch (IOException e) {
+        if (isConnected()) log.error(connection + " network error: " + e.getMessage(), e);
+
+        failPendingStreams(e);
+      } catch (Exception e) {
+        log.error(connection + " internal error: " + e.getMessage(), e);
+
+        failPendingStreams(new IOException(e));
+      } finally {
+        close();
+      }
+    }
+  }
+
   private IBinaryXMPPExtensionReceiver receiver;
 
   public BinaryChannelConnection(
@@ -123,8 +256,10 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     this.stream.setReadTimeout(0); // keep connection alive
     this.mode = mode;
 
-    outputStream = new DataOutputStream(new BufferedOutputStream(stream.getOutputStream()));
-    inputStream = new DataInputStream(new BufferedInputStream(stream.getInputStream()));
+    outputStream =
+        new DataOutputStream(new BufferedOutputStream(stream.getOutputStream(), BUFFER_SIZE));
+    inputStream =
+        new DataInputStream(new BufferedInputStream(stream.getInputStream(), BUFFER_SIZE));
   }
 
   @Override
@@ -138,15 +273,29 @@ public class BinaryChannelConnection implements IByteStreamConnection {
   public synchronized void initialize() {
     if (initialized) return;
 
+    synchronized (sendLock) {
+      pendingControlFrames.add(
+          (out) -> {
+            out.write(Opcode.HELLO);
+            out.write(PROTOCOL_VERSION);
+          });
+    }
+
     /*
      * it is ok to start the receiver a bit later because the data will be
      * already buffered by SMACK or the OS
      */
     receiveThread = new ReceiverThread();
     receiveThread.setName("BinaryChannel-" + remoteAddress.getName());
-    receiveThread.start();
+
+    writeThread = new WriterThread();
+    writeThread.setName("BinaryChannel-Writer-" + remoteAddress.getName());
+
     connected = true;
     initialized = true;
+
+    receiveThread.start();
+    writeThread.start();
   }
 
   @Override
@@ -173,6 +322,8 @@ public class BinaryChannelConnection implements IByteStreamConnection {
       }
     }
 
+    failPendingStreams(new EOFException("connection is closed"));
+
     assert receiveThread != null;
 
     if (Thread.currentThread() != receiveThread) {
@@ -191,6 +342,13 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     listener.connectionClosed(connectionID, this);
   }
 
+  @Override
+  public int getQueueDepth(TrafficClass trafficClass) {
+    synchronized (sendLock) {
+      return outgoingStreams.size(trafficClass);
+    }
+  }
+
   @Override
   public StreamMode getMode() {
     return mode;
@@ -206,73 +364,149 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
     if (!isConnected()) throw new EOFException("connection is closed");
 
-    final int fragmentId = idPool.nextID();
+    assert content.length > 0;
 
-    if (fragmentId < 0) throw new IOException("concurrent access threshold exceeded");
+    if (content.length > MAX_PAYLOAD_SIZE)
+      throw new IOException(
+          "payload of "
+              + content.length
+              + " bytes exceeds the maximum payload size of "
+              + MAX_PAYLOAD_SIZE
+              + " bytes");
 
-    try {
+    final OutgoingStream outgoingStream;
 
-      Integer namespaceId;
-      Integer elementNameId;
+    synchronized (sendLock) {
+      if (sendError != null) throw newSendException();
 
-      synchronized (this) {
-        final String namespace = data.getNamespace();
-        namespaceId = outNamespaceCache.get(namespace);
+      final String namespace = data.getNamespace();
+      Integer namespaceId = outNamespaceCache.get(namespace);
 
-        if (namespaceId == null) {
-          if (nextNamespaceId > 255) throw new IOException("namespace cache limit exceeded");
+      if (namespaceId == null) {
+        if (nextNamespaceId > 255) throw new IOException("namespace cache limit exceeded");
 
-          namespaceId = Integer.valueOf(nextNamespaceId++);
-          outNamespaceCache.put(namespace, namespaceId);
+        final int id = nextNamespaceId++;
+        namespaceId = Integer.valueOf(id);
+        outNamespaceCache.put(namespace, namespaceId);
 
-          if (log.isTraceEnabled())
-            log.trace(
-                "updated outgoing namespace cache, id: "
-                    + namespaceId
-                    + " , namespace: "
-                    + namespace);
-
-          outputStream.write(Opcode.NAMESPACE_UPDATE);
-          outputStream.write(namespaceId);
-          outputStream.writeUTF(namespace);
-        }
+        if (log.isTraceEnabled())
+          log.trace(
+              "updated outgoing namespace cache, id: "
+                  + namespaceId
+                  + " , namespace: "
+                  + namespace);
 
-        final String elementName = data.getElementName();
-        elementNameId = outElementNameCache.get(elementName);
+        pendingControlFrames.add(
+            (out) -> {
+              out.write(Opcode.NAMESPACE_UPDATE);
+              out.write(id);
+              out.writeUTF(namespace);
+            });
+      }
 
-        if (elementNameId == null) {
-          if (nextElementNameId > 65535) throw new IOException("element name cache limit exceeded");
+      final String elementName = data.getElementName();
+      Integer elementNameId = outElementNameCache.get(elementName);
+
+      if (elementNameId == null) {
+        if (nextElementNameId > 65535) throw new IOException("element name cache limit exceeded");
+
+        final int id = nextElementNameId++;
+        elementNameId = Integer.valueOf(id);
+        outElementNameCache.put(elementName, elementNameId);
+
+        if (log.isTraceEnabled())
+          log.trace(
+              "updated outgoing element name cache, id: "
+                  + elementNameId
+                  + " , element name: "
+                  + elementName);
+
+        pendingControlFrames.add(
+            (out) -> {
+              out.write(Opcode.ELEMENT_NAME_UPDATE);
+              out.writeShort(id);
+              out.writeUTF(elementName);
+            });
+      }
 
-          elementNameId = Integer.valueOf(nextElementNameId++);
-          outElementNameCache.put(elementName, elementNameId);
+      final int streamId = nextStreamId;
+      nextStreamId = (nextStreamId + 1) & Integer.MAX_VALUE;
+
+      final int transferNamespaceId = namespaceId;
+      final int transferElementNameId = elementNameId;
+      final boolean compress = data.compressContent();
+
+      outgoingStream =
+          new OutgoingStream(
+              streamId,
+              data.getTrafficClass(),
+              content,
+              (out) ->
+                  writeTransferDescription(
+                      out,
+                      streamId,
+                      content.length,
+                      transferNamespaceId,
+                      transferElementNameId,
+                      compress));
+
+      outgoingStreams.add(outgoingStream.trafficClass, outgoingStream);
+      outgoingStreamsById.put(streamId, outgoingStream);
+
+      if (log.isTraceEnabled())
+        log.trace(
+            "queued stream: id="
+                + streamId
+                + ", traffic class="
+                + outgoingStream.trafficClass
+                + ", queue depth="
+                + outgoingStreams.size(outgoingStream.trafficClass));
+
+      sendLock.notifyAll();
+
+      boolean interrupted = false;
 
-          if (log.isTraceEnabled())
-            log.trace(
-                "updated outgoing element name cache, id: "
-                    + elementNameId
-                    + " , element name: "
-                    + elementName);
-
-          outputStream.write(Opcode.ELEMENT_NAME_UPDATE);
-          outputStream.writeShort(elementNameId);
-          outputStream.writeUTF(elementName);
+      try {
+        while (!outgoingStream.done && sendError == null) {
+          try {
+            sendLock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
         }
+      } finally {
+        if (interrupted) Thread.currentThread().interrupt();
       }
 
-      assert content.length > 0;
+      if (!outgoingStream.done) throw newSendException();
+    }
+  }
 
-      int chunks = ((content.length - 1) / CHUNKSIZE) + 1;
+  /** Returns the exception to throw if sending failed because the connection broke. */
+  private IOException newSendException() {
+    if (sendError instanceof EOFException) return new EOFException(sendError.getMessage());
 
-      sendTransferDescription(
-          fragmentId, chunks, namespaceId, elementNameId, data.compressContent());
+    return new IOException("connection broke: " + sendError.getMessage(), sendError);
+  }
 
-      splitAndSend(content, chunks, fragmentId);
-    } catch (IOException e) {
-      close();
-      throw e;
-    } finally {
-      idPool.freeID(fragmentId);
-    }
+  /**
+   * Reads the greeting of the remote side.
+   *
+   * @throws IOException If the associated socket broke, while reading or if the remote side uses a
+   *     different protocol version.
+   */
+  private void readHello() throws IOException {
+    final int opcode = inputStream.readUnsignedByte();
+
+    if (opcode != Opcode.HELLO)
+      throw new ProtocolException(
+          "expected greeting but got opcode: 0x" + Integer.toHexString(opcode).toUpperCase());
+
+    final int version = inputStream.readUnsignedByte();
+
+    if (version != PROTOCOL_VERSION)
+      throw new ProtocolException(
+          "unsupported protocol version: " + version + ", expected: " + PROTOCOL_VERSION);
   }
 
   /**
@@ -290,26 +524,30 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
       if (opcode == -1) throw new EOFException("no stream data available");
 
-      final int fragmentId;
+      final int streamId;
 
       final int id;
       final String name;
 
       switch (opcode) {
         case Opcode.TRANSFERDESCRIPTION:
-          fragmentId = inputStream.readShort();
-          final int chunks = inputStream.readInt();
+          streamId = inputStream.readInt();
+          final int length = inputStream.readInt();
 
           if (log.isTraceEnabled()) {
             log.trace(
                 "processing opcode 0x"
                     + Integer.toHexString(opcode).toUpperCase()
                     + " [TFD]: id="
-                    + fragmentId
-                    + ", chunks="
-                    + chunks);
+                    + streamId
+                    + ", len="
+                    + length);
           }
 
+          if (length <= 0 || length > MAX_PAYLOAD_SIZE)
+            throw new ProtocolException(
+                "length field contains corrupted value: 0 < " + length + " <= " + MAX_PAYLOAD_SIZE);
+
           final int namespaceId = inputStream.readUnsignedByte();
           final int elementNameId = inputStream.readUnsignedShort();
           final int compressed = inputStream.readUnsignedByte();
@@ -326,16 +564,20 @@ public class BinaryChannelConnection implements IByteStreamConnection {
           transferDescription.setElementName(elementName);
           transferDescription.setCompressContent(compressed == 1);
 
-          BinaryXMPPExtension oldTransferObject =
-              pendingXMPPExtensions.put(
-                  fragmentId, new BinaryXMPPExtension(mode, transferDescription, chunks));
+          final int chunks = ((length - 1) / FRAME_SIZE) + 1;
 
-          if (oldTransferObject != null)
+          IncomingStream oldStream =
+              pendingStreams.put(
+                  streamId,
+                  new IncomingStream(
+                      new BinaryXMPPExtension(mode, transferDescription, chunks), length));
+
+          if (oldStream != null)
             throw new IOException("replaced a XMPP extension that is still transmitted");
           break;
 
         case Opcode.DATA:
-          fragmentId = inputStream.readShort();
+          streamId = inputStream.readInt();
           final int payloadLength = inputStream.readInt();
 
           if (log.isTraceEnabled()) {
@@ -343,45 +585,75 @@ public class BinaryChannelConnection implements IByteStreamConnection {
                 "processing opcode 0x"
                     + Integer.toHexString(opcode).toUpperCase()
                     + " [DATA]: id="
-                    + fragmentId
+                    + streamId
                     + ", DATA len="
                     + payloadLength
                     + " bytes");
           }
 
-          if (payloadLength <= 0 || payloadLength > CHUNKSIZE)
+          final IncomingStream incomingStream = pendingStreams.get(streamId);
+
+          if (incomingStream == null)
+            throw new ProtocolException("received data for unknown stream: " + streamId);
+
+          final int remaining = incomingStream.length - incomingStream.offset;
+
+          if (payloadLength <= 0 || payloadLength > Math.min(FRAME_SIZE, remaining))
             throw new ProtocolException(
                 "payload length field contains corrupted value: 0 < "
                     + payloadLength
                     + " <= "
-                    + CHUNKSIZE);
-
-          byte[] payload = new byte[payloadLength];
-          inputStream.readFully(payload);
+                    + Math.min(FRAME_SIZE, remaining));
 
-          ByteArrayOutputStream out = pendingFragmentedPackets.get(fragmentId);
+          // read directly into the payload, no intermediate buffers needed
+          incomingStream.ensureCapacity(payloadLength);
+          inputStream.readFully(incomingStream.payload, incomingStream.offset, payloadLength);
+          incomingStream.offset += payloadLength;
 
-          if (out == null) {
-            out = new ByteArrayOutputStream(payloadLength * 2);
-            pendingFragmentedPackets.put(fragmentId, out);
+          if (!incomingStream.extension.isLastChunk()) {
+            grantWindow(streamId, payloadLength);
+            break;
           }
 
-          out.write(payload);
-          out.flush();
+          pendingStreams.remove(streamId);
 
-          if (!pendingXMPPExtensions.get(fragmentId).isLastChunk()) break;
+          final BinaryXMPPExtension fullyReceivedTransferObject = incomingStream.extension;
 
-          pendingFragmentedPackets.remove(fragmentId);
+          fullyReceivedTransferObject.setPayload(incomingStream.length, incomingStream.payload);
 
-          BinaryXMPPExtension fullyReceivedTransferObject =
-              pendingXMPPExtensions.remove(fragmentId);
+          return fullyReceivedTransferObject;
+
+        case Opcode.WINDOW_UPDATE:
+          streamId = inputStream.readInt();
+          final int increment = inputStream.readInt();
 
-          payload = out.toByteArray();
-          out = null; // help GC
+          if (log.isTraceEnabled()) {
+            log.trace(
+                "processing opcode 0x"
+                    + Integer.toHexString(opcode).toUpperCase()
+                    + " [WU]: id="
+                    + streamId
+                    + ", increment="
+                    + increment);
+          }
 
-          fullyReceivedTransferObject.setPayload(payload.length, payload);
+          if (increment <= 0 || increment > STREAM_WINDOW_SIZE)
+            throw new ProtocolException(
+                "window increment field contains corrupted value: 0 < "
+                    + increment
+                    + " <= "
+                    + STREAM_WINDOW_SIZE);
 
-          return fullyReceivedTransferObject;
+          synchronized (sendLock) {
+            final OutgoingStream outgoingStream = outgoingStreamsById.get(streamId);
+
+            if (outgoingStream != null) {
+              outgoingStream.window += increment;
+              sendLock.notifyAll();
+            }
+          }
+
+          break;
 
         case Opcode.ELEMENT_NAME_UPDATE:
           if (log.isTraceEnabled()) {
@@ -426,85 +698,158 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     throw new InterruptedIOException("interrupted while reading stream data");
   }
 
-  private synchronized void sendData(int fragmentId, byte[] data, int offset, int length)
-      throws IOException {
-
-    if (log.isTraceEnabled()) {
-      log.trace("sending data: id=" + fragmentId + ", len=" + length + " bytes");
+  /** Allows the remote side to send further data of the given stream. */
+  private void grantWindow(final int streamId, final int increment) {
+    synchronized (sendLock) {
+      pendingControlFrames.add(
+          (out) -> {
+            out.write(Opcode.WINDOW_UPDATE);
+            out.writeInt(streamId);
+            out.writeInt(increment);
+          });
+
+      sendLock.notifyAll();
     }
-
-    outputStream.write(Opcode.DATA);
-    outputStream.writeShort(fragmentId);
-    outputStream.writeInt(length);
-    outputStream.write(data, offset, length);
-    outputStream.flush();
   }
 
-  private synchronized void sendTransferDescription(
-      int fragmentId, int chunks, int namespaceId, int elementNameId, boolean compress)
-      throws IOException {
+  /**
+   * Writes the pending control frames and the frames of the open streams until the connection is
+   * closed. Control frames are always written first, the open streams are served in a round robin
+   * fashion with one frame per turn. The output stream is flushed once there is nothing more to
+   * write.
+   */
+  private void writeFrames() throws IOException {
+    final List<ControlFrame> controlFrames = new ArrayList<ControlFrame>();
 
-    if (log.isTraceEnabled()) {
-      log.trace("sending transfer description: id=" + fragmentId);
-    }
+    boolean flushed = true;
 
-    outputStream.write(Opcode.TRANSFERDESCRIPTION);
-    outputStream.writeShort(fragmentId);
-    outputStream.writeInt(chunks);
-    outputStream.write(namespaceId);
-    outputStream.writeShort(elementNameId);
-    outputStream.write(compress ? 1 : 0);
-  }
+    while (true) {
+      OutgoingStream outgoingStream = null;
+
+      int offset = 0;
+      int length = 0;
+      boolean last = false;
+      boolean flush = false;
+
+      synchronized (sendLock) {
+        while (sendError == null
+            && pendingControlFrames.isEmpty()
+            && (outgoingStream = outgoingStreams.poll((stream) -> stream.window > 0)) == null) {
+
+          if (!flushed) {
+            flush = true;
+            break;
+          }
 
-  /** Splits the given data into chunks of CHUNKSIZE to send the BinaryPackets. */
-  private void splitAndSend(byte[] data, int chunks, int fragmentId) throws IOException {
+          try {
+            sendLock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
 
-    int offset = 0;
-    int length = 0;
+        if (sendError != null) return;
 
-    while (chunks-- > 0) {
+        if (!flush) {
+          controlFrames.addAll(pendingControlFrames);
+          pendingControlFrames.clear();
+        }
 
-      length = Math.min(data.length - offset, CHUNKSIZE);
+        if (outgoingStream != null) {
+          if (!outgoingStream.opened) {
+            outgoingStream.opened = true;
+            controlFrames.add(outgoingStream.transferDescription);
+          }
 
-      sendData(fragmentId, data, offset, length);
+          offset = outgoingStream.offset;
+          length = Math.min(FRAME_SIZE, outgoingStream.content.length - offset);
 
-      offset += length;
-    }
-  }
+          assert outgoingStream.window >= length;
 
-  @Override
-  public String toString() {
-    return "[mode=" + getMode() + ", id=" + connectionID + "]" + " " + remoteAddress;
-  }
+          outgoingStream.offset += length;
+          outgoingStream.window -= length;
+
+          last = outgoingStream.offset == outgoingStream.content.length;
+
+          if (last) outgoingStreamsById.remove(outgoingStream.id);
+          else outgoingStreams.add(outgoingStream.trafficClass, outgoingStream);
+        }
+      }
 
-  static class IDPool {
+      if (flush) {
+        outputStream.flush();
+        flushed = true;
+        continue;
+      }
+
+      for (ControlFrame controlFrame : controlFrames) controlFrame.write(outputStream);
+
+      controlFrames.clear();
 
-    private final int MAX_ID = 32;
-    private int pool = 0; // 32 ids
+      if (outgoingStream != null) {
+        writeData(outgoingStream.id, outgoingStream.content, offset, length);
+
+        if (last) {
+          synchronized (sendLock) {
+            outgoingStream.done = true;
+            sendLock.notifyAll();
+          }
+        }
+      }
 
-    // see
-    // http://graphics.stanford.edu/~seander/bithacks.html#IntegerLogDeBruijn
-    private static final int LOG_2_TABLE[] = {
-      0, 1, 28, 2, 29, 14, 24, 3, 30, 22, 20, 15, 25, 17, 4, 8, 31, 27, 13, 23, 21, 19, 16, 7, 26,
-      12, 18, 6, 11, 5, 10, 9
-    };
+      flushed = false;
+    }
+  }
 
-    public synchronized int nextID() {
+  /** Aborts all streams that are not sent yet, the connection can no longer be used to send. */
+  private void failPendingStreams(IOException cause) {
+    synchronized (sendLock) {
+      if (sendError == null) sendError = cause;
 
-      final int bitIdx = Integer.lowestOneBit(~pool);
+      pendingControlFrames.clear();
+      outgoingStreams.clear();
+      outgoingStreamsById.clear();
 
-      if (bitIdx == 0) return -1;
+      sendLock.notifyAll();
+    }
+  }
 
-      pool |= bitIdx;
+  private void writeData(int streamId, byte[] data, int offset, int length) throws IOException {
 
-      return LOG_2_TABLE[(bitIdx * 0x077CB531) >>> 27];
+    if (log.isTraceEnabled()) {
+      log.trace("sending data: id=" + streamId + ", len=" + length + " bytes");
     }
 
-    public synchronized void freeID(int id) {
-      if (id < 0 || id >= MAX_ID) return;
+    outputStream.write(Opcode.DATA);
+    outputStream.writeInt(streamId);
+    outputStream.writeInt(length);
+    outputStream.write(data, offset, length);
+  }
+
+  private static void writeTransferDescription(
+      DataOutputStream out,
+      int streamId,
+      int length,
+      int namespaceId,
+      int elementNameId,
+      boolean compress)
+      throws IOException {
 
-      int bitIdx = 1 << id;
-      pool &= (~bitIdx);
+    if (log.isTraceEnabled()) {
+      log.trace("sending transfer description: id=" + streamId);
     }
+
+    out.write(Opcode.TRANSFERDESCRIPTION);
+    out.writeInt(streamId);
+    out.writeInt(length);
+    out.write(namespaceId);
+    out.writeShort(elementNameId);
+    out.write(compress ? 1 : 0);
+  }
+
+  @Override
+  public String toString() {
+    return "[mode=" + getMode() + ", id=" + connectionID + "]" + " " + remoteAddress;
   }
 }
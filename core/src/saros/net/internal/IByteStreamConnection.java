@@ -1,6 +1,7 @@
 package saros.net.internal;
 
 import java.io.IOException;
+import saros.net.TrafficClass;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.JID;
 
@@ -39,4 +40,14 @@ public interface IByteStreamConnection {
   public StreamMode getMode();
 
   public void setBinaryXMPPExtensionReceiver(IBinaryXMPPExtensionReceiver receiver);
+
+  /**
+   * Returns the number of transfers of the given traffic class that are not completely sent yet.
+   *
+   * @param trafficClass the traffic class
+   * @return the number of pending transfers
+   */
+  public default int getQueueDepth(TrafficClass trafficClass) {
+    return 0;
+  }
 }
@@ -0,0 +1,118 @@
+package saros.net.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Predicate;
+import saros.net.TrafficClass;
+
+/**
+ * Schedules the items that are sent over a connection. Every {@link TrafficClass} has its own lane.
+ * Items are served with strict priority, i.e. an item of a lane is only served if no item of a lane
+ * with a higher priority is ready. Items of the same lane are served in the order they were added.
+ *
+ * <p>To prevent the starvation of lanes with a lower priority, a lane that has waiting items is
+ * served at the latest after {@link #STARVATION_LIMIT} items of lanes with a higher priority were
+ * served.
+ *
+ * <p><b>Note:</b> This class is not thread safe.
+ */
+final class PrioritySendScheduler<T> {
+
+  /** Max number of items served from higher lanes while a lane with ready items is waiting. */
+  static final int STARVATION_LIMIT = 16;
+
+  private static final TrafficClass[] LANES = TrafficClass.values();
+
+  private final Deque<T>[] lanes;
+
+  /** number of items served from higher lanes while the lane was waiting */
+  private final int[] skipped = new int[LANES.length];
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  PrioritySendScheduler() {
+    lanes = new Deque[LANES.length];
+
+    for (int i = 0; i < LANES.length; i++) lanes[i] = new ArrayDeque<T>();
+  }
+
+  /**
+   * Adds the given item to the end of the given lane.
+   *
+   * @param lane the lane of the item
+   * @param item the item to add
+   */
+  void add(TrafficClass lane, T item) {
+    lanes[lane.ordinal()].add(item);
+  }
+
+  /**
+   * Removes and returns the next item to serve.
+   *
+   * @param ready predicate that determines if an item can be served now, e.g. because it is not
+   *     blocked by flow control
+   * @return the next item to serve or <code>null</code> if no item is ready
+   */
+  T poll(Predicate<T> ready) {
+    int servedLane = -1;
+
+    // serve the lane that waited the longest if it reached the starvation limit
+    int maxSkipped = STARVATION_LIMIT - 1;
+
+    for (int i = 1; i < LANES.length; i++) {
+      if (skipped[i] > maxSkipped && lanes[i].stream().anyMatch(ready)) {
+        servedLane = i;
+        maxSkipped = skipped[i];
+      }
+    }
+
+    T item = servedLane != -1 ? removeFirst(lanes[servedLane], ready) : null;
+
+    for (int i = 0; item == null && i < LANES.length; i++) {
+      item = removeFirst(lanes[i], ready);
+      servedLane = i;
+    }
+
+    if (item == null) return null;
+
+    skipped[servedLane] = 0;
+
+    for (int i = servedLane + 1; i < LANES.length; i++) {
+      if (lanes[i].isEmpty()) skipped[i] = 0;
+      else skipped[i]++;
+    }
+
+    return item;
+  }
+
+  /**
+   * Returns the number of items in the given lane.
+   *
+   * @param lane the lane
+   * @return the number of items waiting in the lane
+   */
+  int size(TrafficClass lane) {
+    return lanes[lane.ordinal()].size();
+  }
+
+  /** Removes all items from all lanes. */
+  void clear() {
+    for (int i = 0; i < LANES.length; i++) {
+      lanes[i].clear();
+      skipped[i] = 0;
+    }
+  }
+
+  private static <T> T removeFirst(Deque<T> lane, Predicate<T> ready) {
+    for (Iterator<T> it = lane.iterator(); it.hasNext(); ) {
+      final T item = it.next();
+
+      if (ready.test(item)) {
+        it.remove();
+        return item;
+      }
+    }
+
+    return null;
+  }
+}
@@ -1,6 +1,7 @@
 /** */
 package saros.net.internal;
 
+import saros.net.TrafficClass;
 import saros.net.xmpp.JID;
 
 /**
@@ -25,6 +26,9 @@ public class TransferDescription {
   /** Field used to indicate that the payload may be compressed. */
   private boolean compress;
 
+  /** Field used to schedule the transfer locally, it is not transmitted. */
+  private TrafficClass trafficClass = TrafficClass.CONTROL;
+
   public static TransferDescription newDescription() {
     return new TransferDescription();
   }
@@ -74,6 +78,15 @@ public class TransferDescription {
     return compress;
   }
 
+  TransferDescription setTrafficClass(TrafficClass trafficClass) {
+    this.trafficClass = trafficClass;
+    return this;
+  }
+
+  public TrafficClass getTrafficClass() {
+    return trafficClass;
+  }
+
   @Override
   public String toString() {
     return "TransferDescription [elementName="
@@ -86,6 +99,8 @@ public class TransferDescription {
         + sender
         + ", compress="
         + compress
+        + ", trafficClass="
+        + trafficClass
         + "]";
   }
 }
@@ -1,12 +1,13 @@
 package saros.net.internal;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
@@ -24,6 +25,8 @@ import org.xmlpull.v1.XmlPullParser;
 import saros.annotations.Component;
 import saros.net.ConnectionState;
 import saros.net.DispatchThreadContext;
+import saros.net.ExtensionPacketFilter;
+import saros.net.IBinaryPacketExtensionProvider;
 import saros.net.IPacketInterceptor;
 import saros.net.IReceiver;
 import saros.net.ITransferListener;
@@ -42,8 +45,86 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
 
   private final DispatchThreadContext dispatchThreadContext;
 
-  private final Map<PacketListener, PacketFilter> listeners =
-      Collections.synchronizedMap(new HashMap<PacketListener, PacketFilter>());
+  private static final class Registration {
+    private final PacketListener listener;
+    private final PacketFilter filter;
+
+    private Registration(PacketListener listener, PacketFilter filter) {
+      this.listener = listener;
+      this.filter = filter;
+    }
+  }
+
+  /**
+   * Routes packets to the listeners whose filters are {@linkplain ExtensionPacketFilter extension
+   * filters} by the namespace, element name and session id of the packet extensions, only the
+   * filters of the other listeners are evaluated for every packet. The table is immutable and
+   * replaced on every change of the listeners, so packets are forwarded without locking.
+   */
+  private static final class RoutingTable {
+    private static final RoutingTable EMPTY = new RoutingTable(new Registration[0]);
+
+    private final Registration[] registrations;
+
+    private final Registration[] unrouted;
+
+    /* namespace -> element name -> route */
+    private final Map<String, Map<String, Route>> routes =
+        new HashMap<String, Map<String, Route>>();
+
+    private RoutingTable(Registration[] registrations) {
+      this.registrations = registrations;
+
+      final List<Registration> unroutedRegistrations = new ArrayList<Registration>();
+
+      for (Registration registration : registrations) {
+        if (!(registration.filter instanceof ExtensionPacketFilter)) {
+          unroutedRegistrations.add(registration);
+          continue;
+        }
+
+        final ExtensionPacketFilter filter = (ExtensionPacketFilter) registration.filter;
+
+        routes
+            .computeIfAbsent(filter.getNamespace(), (namespace) -> new HashMap<String, Route>())
+            .computeIfAbsent(filter.getElementName(), (elementName) -> new Route())
+            .add(registration, filter);
+      }
+
+      unrouted = unroutedRegistrations.toArray(new Registration[0]);
+    }
+
+    private Route getRoute(PacketExtension extension) {
+      final Map<String, Route> elements = routes.get(extension.getNamespace());
+
+      return elements != null ? elements.get(extension.getElementName()) : null;
+    }
+  }
+
+  private static final class Route {
+    private final List<Registration> anySession = new ArrayList<Registration>();
+
+    private final Map<String, List<Registration>> bySession =
+        new HashMap<String, List<Registration>>();
+
+    /* resolves the session id of the packets, all filters of a route refer to the same extension */
+    private ExtensionPacketFilter sessionFilter;
+
+    private void add(Registration registration, ExtensionPacketFilter filter) {
+      if (filter.getSessionID() == null) {
+        anySession.add(registration);
+        return;
+      }
+
+      sessionFilter = filter;
+
+      bySession
+          .computeIfAbsent(filter.getSessionID(), (sessionID) -> new ArrayList<Registration>())
+          .add(registration);
+    }
+  }
+
+  private volatile RoutingTable routingTable = RoutingTable.EMPTY;
 
   private final CopyOnWriteArrayList<ITransferListener> transferListeners =
       new CopyOnWriteArrayList<>();
@@ -51,7 +132,10 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
   private final CopyOnWriteArrayList<IPacketInterceptor> packetInterceptors =
       new CopyOnWriteArrayList<>();
 
-  private XmlPullParser parser;
+  /* extensions are converted on the decoder threads of the dispatch thread context */
+  private final ThreadLocal<XmlPullParser> parser = ThreadLocal.withInitial(() -> new MXParser());
+
+  private final ThreadLocal<Inflater> decompressor = ThreadLocal.withInitial(() -> new Inflater());
 
   private final PacketListener smackPacketListener =
       new PacketListener() {
@@ -86,7 +170,6 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
       DataTransferManager dataTransferManager) {
 
     this.dispatchThreadContext = dispatchThreadContext;
-    this.parser = new MXParser();
 
     connectionService.addListener(connectionListener);
     dataTransferManager.addConnectionListener(
@@ -102,13 +185,27 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
   }
 
   @Override
-  public void addPacketListener(PacketListener listener, PacketFilter filter) {
-    listeners.put(listener, filter);
+  public synchronized void addPacketListener(PacketListener listener, PacketFilter filter) {
+    final Registration[] registrations = routingTable.registrations;
+    final List<Registration> updated = new ArrayList<Registration>(registrations.length + 1);
+
+    for (Registration registration : registrations)
+      if (registration.listener != listener) updated.add(registration);
+
+    updated.add(new Registration(listener, filter));
+
+    routingTable = new RoutingTable(updated.toArray(new Registration[0]));
   }
 
   @Override
-  public void removePacketListener(PacketListener listener) {
-    listeners.remove(listener);
+  public synchronized void removePacketListener(PacketListener listener) {
+    final Registration[] registrations = routingTable.registrations;
+    final List<Registration> updated = new ArrayList<Registration>(registrations.length);
+
+    for (Registration registration : registrations)
+      if (registration.listener != listener) updated.add(registration);
+
+    routingTable = new RoutingTable(updated.toArray(new Registration[0]));
   }
 
   @Override
@@ -133,13 +230,10 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
 
   @Override
   public void processPacket(final Packet packet) {
-    dispatchThreadContext.executeAsDispatch(
-        new Runnable() {
-          @Override
-          public void run() {
-            forwardPacket(packet);
-          }
-        });
+    /* keep the order of the packets of a sender that also sends binary extensions */
+    final String sender = packet.getFrom() != null ? packet.getFrom() : "";
+
+    dispatchThreadContext.decodeAndDispatch(sender, () -> () -> forwardPacket(packet));
   }
 
   @Override
@@ -160,16 +254,14 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
 
   @Override
   public void receive(BinaryXMPPExtension extension) {
-    dispatchThreadContext.executeAsDispatch(
-        new Runnable() {
-
-          @Override
-          public void run() {
+    final String sender = extension.getTransferDescription().getSender().toString();
 
-            Packet packet = convertBinaryXMPPExtension(extension);
+    dispatchThreadContext.decodeAndDispatch(
+        sender,
+        () -> {
+          final Packet packet = convertBinaryXMPPExtension(extension);
 
-            if (packet != null) forwardPacket(packet);
-          }
+          return packet != null ? () -> forwardPacket(packet) : null;
         });
   }
 
@@ -179,27 +271,43 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
    * @sarosThread must be called from the Dispatch Thread
    */
   private void forwardPacket(Packet packet) {
-    Map<PacketListener, PacketFilter> copy;
+    final RoutingTable table = routingTable;
 
-    synchronized (listeners) {
-      copy = new HashMap<PacketListener, PacketFilter>(listeners);
-    }
-    for (Entry<PacketListener, PacketFilter> entry : copy.entrySet()) {
-      PacketListener listener = entry.getKey();
-      PacketFilter filter = entry.getValue();
+    for (Registration registration : table.unrouted) forwardPacket(registration, packet);
 
-      if (filter == null || filter.accept(packet)) {
-        listener.processPacket(packet);
-      }
+    if (table.routes.isEmpty()) return;
+
+    for (PacketExtension extension : packet.getExtensions()) {
+      final Route route = table.getRoute(extension);
+
+      if (route == null) continue;
+
+      for (Registration registration : route.anySession) forwardPacket(registration, packet);
+
+      if (route.sessionFilter == null) continue;
+
+      final String sessionID = route.sessionFilter.getSessionID(packet);
+
+      final List<Registration> sessionRegistrations =
+          sessionID != null ? route.bySession.get(sessionID) : null;
+
+      if (sessionRegistrations == null) continue;
+
+      for (Registration registration : sessionRegistrations) forwardPacket(registration, packet);
     }
   }
 
+  private static void forwardPacket(Registration registration, Packet packet) {
+    if (registration.filter == null || registration.filter.accept(packet))
+      registration.listener.processPacket(packet);
+  }
+
   /**
    * Deserializes the payload of an {@link BinaryXMPPExtension} back to its original {@link
    * PacketExtension} and returns a new packet containing the deserialized packet extension.
    *
-   * <p>This method is <b>not</b> thread safe and <b>must not</b> accessed by multiple threads
-   * concurrently.
+   * <p>This method is called on the decoder threads of the {@link DispatchThreadContext}, the
+   * extensions of the same sender are converted one after another.
    */
   private Packet convertBinaryXMPPExtension(BinaryXMPPExtension extension) {
 
@@ -222,24 +330,27 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
               + extension.getTransferMode()
               + "]");
 
+    byte[] payload = extension.getPayload();
+    int payloadLength = payload.length;
+
     if (extension.getTransferDescription().compressContent()) {
-      byte[] payload = extension.getPayload();
-      long compressedPayloadLength = payload.length;
+      final ByteBuffer inflated;
 
       try {
-        payload = inflate(payload);
+        inflated = inflate(payload);
       } catch (IOException e) {
         log.error("could not decompress extension payload", e);
         return null;
       }
 
-      extension.setPayload(compressedPayloadLength, payload);
+      payload = inflated.array();
+      payloadLength = inflated.limit();
     }
 
     notifyDataReceived(
         extension.getTransferMode(),
         extension.getCompressedSize(),
-        extension.getUncompressedSize(),
+        payloadLength,
         extension.getTransferDuration());
 
     TransferDescription description = extension.getTransferDescription();
@@ -264,8 +375,22 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
 
     PacketExtension packetExtension = null;
 
+    if (provider instanceof IBinaryPacketExtensionProvider) {
+      try {
+        packetExtension =
+            ((IBinaryPacketExtensionProvider) provider).parseExtension(payload, 0, payloadLength);
+      } catch (IOException e) {
+        log.error("could not deserialize binary transfer object payload: " + e.getMessage(), e);
+        return null;
+      }
+
+      return createPacket(description, packetExtension);
+    }
+
     try {
-      parser.setInput(new ByteArrayInputStream(extension.getPayload()), "UTF-8");
+      final XmlPullParser parser = this.parser.get();
+
+      parser.setInput(new ByteArrayInputStream(payload, 0, payloadLength), "UTF-8");
       /*
        * We have to skip the empty start tag because Smack expects a
        * parser that already has started parsing.
@@ -276,10 +401,15 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
       log.error("could not deserialize transfer object payload: " + e.getMessage(), e);
 
       // just to be safe
-      parser = new MXParser();
+      parser.remove();
       return null;
     }
 
+    return createPacket(description, packetExtension);
+  }
+
+  private static Packet createPacket(
+      TransferDescription description, PacketExtension packetExtension) {
     Packet packet = new Message();
     packet.setPacketID(Packet.ID_NOT_AVAILABLE);
     packet.setFrom(description.getSender().toString());
@@ -304,24 +434,39 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
     }
   }
 
-  private static byte[] inflate(byte[] input) throws IOException {
-
-    ByteArrayOutputStream bos;
-    Inflater decompressor = new Inflater();
+  /**
+   * Inflates the input directly into a new array. The array is not trimmed to the inflated size,
+   * which is the limit of the returned buffer.
+   */
+  private ByteBuffer inflate(byte[] input) throws IOException {
+    final Inflater decompressor = this.decompressor.get();
 
+    decompressor.reset();
     decompressor.setInput(input, 0, input.length);
-    bos = new ByteArrayOutputStream(input.length);
 
-    byte[] buf = new byte[CHUNKSIZE];
+    byte[] buffer = new byte[Math.max(CHUNKSIZE, input.length * 4)];
+    int length = 0;
 
     try {
       while (!decompressor.finished()) {
-        int count = decompressor.inflate(buf);
-        bos.write(buf, 0, count);
+        if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        int count = decompressor.inflate(buffer, length, buffer.length - length);
+
+        if (count == 0 && decompressor.needsDictionary()) {
+          decompressor.setDictionary(AdaptiveCompressor.DICTIONARY);
+          continue;
+        }
+
+        if (count == 0 && decompressor.needsInput())
+          throw new IOException("compressed data is truncated");
+
+        length += count;
       }
-      return bos.toByteArray();
     } catch (DataFormatException e) {
       throw new IOException("failed to inflate data", e);
     }
+
+    return ByteBuffer.wrap(buffer, 0, length);
   }
 }
@@ -1,9 +1,8 @@
 package saros.net.internal;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.zip.Deflater;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.packet.Message;
@@ -11,9 +10,11 @@ import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smack.packet.PacketExtension;
 import saros.annotations.Component;
 import saros.net.ConnectionState;
+import saros.net.IBinaryPacketExtension;
 import saros.net.IPacketInterceptor;
 import saros.net.ITransferListener;
 import saros.net.ITransmitter;
+import saros.net.TrafficClass;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.IConnectionListener;
 import saros.net.xmpp.JID;
@@ -32,10 +33,16 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
   private static final int PACKET_EXTENSION_COMPRESS_THRESHOLD =
       Integer.getInteger("saros.net.transmitter.PACKET_EXTENSION_COMPRESS_THRESHOLD", 32);
 
-  private static final int CHUNKSIZE = 16 * 1024;
+  /**
+   * size in bytes that a packet extension without a given traffic class must exceed to be sent as
+   * {@linkplain TrafficClass#BULK bulk} data
+   */
+  private static final int BULK_THRESHOLD = 64 * 1024;
 
   private final DataTransferManager dataManager;
 
+  private final AdaptiveCompressor compressor = new AdaptiveCompressor(this::notifyDataCompressed);
+
   private Connection connection;
 
   private final CopyOnWriteArrayList<ITransferListener> transferListeners =
@@ -59,6 +66,13 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
   @Override
   public void send(String connectionID, JID recipient, PacketExtension extension)
       throws IOException {
+    send(connectionID, recipient, extension, null);
+  }
+
+  @Override
+  public void send(
+      String connectionID, JID recipient, PacketExtension extension, TrafficClass trafficClass)
+      throws IOException {
 
     boolean sendPacket = true;
 
@@ -91,12 +105,25 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
             .setElementName(extension.getElementName())
             .setNamespace(extension.getNamespace());
 
-    byte[] data = extension.toXML().getBytes("UTF-8");
+    final byte[] data;
+    boolean compressible = true;
+
+    if (extension instanceof IBinaryPacketExtension) {
+      data = ((IBinaryPacketExtension) extension).toByteArray();
+      compressible = ((IBinaryPacketExtension) extension).isCompressible();
+    } else {
+      data = extension.toXML().getBytes("UTF-8");
+    }
 
-    if (data.length > PACKET_EXTENSION_COMPRESS_THRESHOLD) {
+    if (compressible && data.length > PACKET_EXTENSION_COMPRESS_THRESHOLD) {
       transferDescription.setCompressContent(true);
     }
 
+    if (trafficClass == null)
+      trafficClass = data.length > BULK_THRESHOLD ? TrafficClass.BULK : TrafficClass.CONTROL;
+
+    transferDescription.setTrafficClass(trafficClass);
+
     sendPacketExtension(connection, transferDescription, data);
   }
 
@@ -191,9 +218,18 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
 
     long sizeUncompressed = payload.length;
 
-    if (description.compressContent()) payload = deflate(payload);
+    if (description.compressContent()) {
+      final byte[] compressed = compressor.compress(connection.getMode(), payload);
 
-    final long transferStartTime = System.currentTimeMillis();
+      if (compressed != null) payload = compressed;
+      else description.setCompressContent(false);
+    }
+
+    final TrafficClass trafficClass = description.getTrafficClass();
+
+    notifyDataQueued(connection.getMode(), trafficClass, connection.getQueueDepth(trafficClass));
+
+    final long transferStartTime = System.nanoTime();
 
     try {
       connection.send(description, payload);
@@ -203,43 +239,57 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
       throw e;
     }
 
+    final long transferDuration = System.nanoTime() - transferStartTime;
+
+    compressor.transferred(connection.getMode(), payload.length, transferDuration);
+
     notifyDataSent(
         connection.getMode(),
         payload.length,
         sizeUncompressed,
-        System.currentTimeMillis() - transferStartTime);
+        TimeUnit.NANOSECONDS.toMillis(transferDuration));
   }
 
-  private void notifyDataSent(
+  private void notifyDataCompressed(
       final StreamMode mode,
-      final long sizeCompressed,
+      final int level,
       final long sizeUncompressed,
-      final long duration) {
+      final long sizeCompressed,
+      final long nanos) {
 
     for (final ITransferListener listener : transferListeners) {
       try {
-        listener.sent(mode, sizeCompressed, sizeUncompressed, duration);
+        listener.compressed(mode, level, sizeUncompressed, sizeCompressed, nanos);
       } catch (RuntimeException e) {
-        log.error("invoking sent() on listener: " + listener + " failed", e);
+        log.error("invoking compressed() on listener: " + listener + " failed", e);
       }
     }
   }
 
-  private static byte[] deflate(byte[] input) {
-
-    Deflater compressor = new Deflater(Deflater.DEFLATED);
-    compressor.setInput(input);
-    compressor.finish();
+  private void notifyDataQueued(
+      final StreamMode mode, final TrafficClass trafficClass, final int queueDepth) {
 
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
+    for (final ITransferListener listener : transferListeners) {
+      try {
+        listener.queued(mode, trafficClass, queueDepth);
+      } catch (RuntimeException e) {
+        log.error("invoking queued() on listener: " + listener + " failed", e);
+      }
+    }
+  }
 
-    byte[] buf = new byte[CHUNKSIZE];
+  private void notifyDataSent(
+      final StreamMode mode,
+      final long sizeCompressed,
+      final long sizeUncompressed,
+      final long duration) {
 
-    while (!compressor.finished()) {
-      int count = compressor.deflate(buf);
-      bos.write(buf, 0, count);
+    for (final ITransferListener listener : transferListeners) {
+      try {
+        listener.sent(mode, sizeCompressed, sizeUncompressed, duration);
+      } catch (RuntimeException e) {
+        log.error("invoking sent() on listener: " + listener + " failed", e);
+      }
     }
-
-    return bos.toByteArray();
   }
 }
@@ -1,6 +1,7 @@
 package saros.net.xmpp;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jivesoftware.smack.util.StringUtils;
 import org.jivesoftware.smackx.muc.MultiUserChat;
 import saros.net.util.XMPPUtils;
@@ -8,14 +9,38 @@ import saros.net.util.XMPPUtils;
 /**
  * A JID which is used to identify the users of the XMPP network.
  *
+ * <p>The segments of the JID are parsed once on construction, so comparing and hashing JIDs does
+ * not allocate. JIDs that are created very often, e.g. for the sender of every received packet,
+ * should be obtained by {@link #valueOf(String)} which returns canonical instances. All canonical
+ * JIDs of the same user share the segment of their bare JID, so {@link #equals(Object)} detects
+ * them by an identity check before comparing any strings.
+ *
+ * <p>The interning is deliberately limited: JIDs are not mapped to integer IDs, and only the first
+ * 4096 distinct addresses (configurable by the system property <code>
+ * saros.net.xmpp.JID_INTERN_LIMIT</code>) are interned, so the table cannot grow without bound.
+ * Further addresses and JIDs created by the constructors are still correct but compared by value.
+ *
  * @valueObject A JID is a value object, i.e. it is immutable!
  */
 public class JID implements Serializable {
 
   private static final long serialVersionUID = 4830741516870940459L;
 
+  /** Maximum number of canonical instances, further JIDs are no longer interned. */
+  private static final int INTERN_LIMIT =
+      Integer.getInteger("saros.net.xmpp.JID_INTERN_LIMIT", 4096);
+
+  private static final ConcurrentHashMap<String, JID> interned =
+      new ConcurrentHashMap<String, JID>();
+
   private final String jid;
 
+  private final transient String base;
+  private final transient String resource;
+  private final transient int hash;
+
+  private transient volatile JID bareJID;
+
   /**
    * Creates the client {@link JID} on the base of a service perspective {@link JID} as explained in
    * XEP-0045.
@@ -33,6 +58,35 @@ public class JID implements Serializable {
     return new JID(StringUtils.parseResource(servicePerspectiveJID));
   }
 
+  /**
+   * Returns the canonical JID for the given address. Repeated calls with the same address return
+   * the same instance as long as the number of canonical instances does not exceed an internal
+   * limit.
+   *
+   * @param jid the JID in the format of user@host[/resource]. Resource is optional.
+   * @return the canonical JID for the address
+   */
+  public static JID valueOf(String jid) {
+    if (jid == null) throw new IllegalArgumentException("jid cannot be null");
+
+    JID result = interned.get(jid);
+
+    if (result != null) return result;
+
+    final String resource = StringUtils.parseResource(jid);
+
+    /* share the bare JID and its base with all canonical JIDs of the same user */
+    if (resource.isEmpty())
+      result = new JID(jid, StringUtils.parseBareAddress(jid), resource, null);
+    else result = new JID(jid, null, resource, valueOf(StringUtils.parseBareAddress(jid)));
+
+    if (interned.size() >= INTERN_LIMIT) return result;
+
+    final JID existing = interned.putIfAbsent(jid, result);
+
+    return existing != null ? existing : result;
+  }
+
   /**
    * Construct a new JID
    *
@@ -42,6 +96,9 @@ public class JID implements Serializable {
     if (jid == null) throw new IllegalArgumentException("jid cannot be null");
 
     this.jid = jid;
+    this.base = StringUtils.parseBareAddress(jid);
+    this.resource = StringUtils.parseResource(jid);
+    this.hash = base.hashCode();
   }
 
   public JID(String name, String domain) {
@@ -50,6 +107,22 @@ public class JID implements Serializable {
     if (domain == null) throw new IllegalArgumentException("domain cannot be null");
 
     this.jid = name + "@" + domain;
+    this.base = StringUtils.parseBareAddress(jid);
+    this.resource = StringUtils.parseResource(jid);
+    this.hash = base.hashCode();
+  }
+
+  private JID(String jid, String base, String resource, JID bareJID) {
+    this.jid = jid;
+    this.base = bareJID != null ? bareJID.base : base;
+    this.resource = resource;
+    this.hash = this.base.hashCode();
+    this.bareJID = bareJID != null ? bareJID : this;
+  }
+
+  /** Restores the transient segments which are not serialized by using the canonical JID. */
+  private Object readResolve() {
+    return valueOf(jid);
   }
 
   // TODO remove this method from the class
@@ -80,7 +153,7 @@ public class JID implements Serializable {
    * @see StringUtils#parseBareAddress(String)
    */
   public String getBase() {
-    return StringUtils.parseBareAddress(jid);
+    return base;
   }
 
   /**
@@ -96,12 +169,12 @@ public class JID implements Serializable {
    * @see StringUtils#parseResource(String)
    */
   public String getResource() {
-    return StringUtils.parseResource(jid);
+    return resource;
   }
 
   /** Returns true if this JID does not have a resource part. */
   public boolean isBareJID() {
-    return "".equals(getResource());
+    return resource.isEmpty();
   }
 
   /** Returns true if this JID does have a resource part. */
@@ -111,7 +184,14 @@ public class JID implements Serializable {
 
   /** Returns the JID without any resource qualifier. */
   public JID getBareJID() {
-    return new JID(getBase());
+    JID result = bareJID;
+
+    if (result == null) {
+      result = isBareJID() ? this : new JID(base);
+      bareJID = result;
+    }
+
+    return result;
   }
 
   /**
@@ -127,11 +207,15 @@ public class JID implements Serializable {
   @Override
   public boolean equals(Object obj) {
 
-    if (obj == null) return false;
+    if (this == obj) return true;
 
     if (obj instanceof JID) {
       JID other = (JID) obj;
-      return getBase().equals(other.getBase());
+
+      /* identity fast path, canonical JIDs of the same user share their base */
+      if (base == other.base) return true;
+
+      return hash == other.hash && base.equals(other.base);
     }
     return false;
   }
@@ -141,12 +225,12 @@ public class JID implements Serializable {
    * unlike equals)
    */
   public boolean strictlyEquals(JID other) {
-    return jid.equals(other.jid);
+    return this == other || jid.equals(other.jid);
   }
 
   @Override
   public int hashCode() {
-    return getBase().hashCode();
+    return hash;
   }
 
   /** @return the complete string that was used to construct this object. */
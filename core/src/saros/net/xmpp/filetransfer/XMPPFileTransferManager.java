@@ -135,7 +135,7 @@ public class XMPPFileTransferManager {
    * @param identifier identifier to match a transfer
    * @return Future providing {@link XMPPFileTransferRequest}
    */
-  public Future<XMPPFileTransferRequest> addExpectedTransferRequest(String identifier) {
+  public CompletableFuture<XMPPFileTransferRequest> addExpectedTransferRequest(String identifier) {
     CompletableFuture<XMPPFileTransferRequest> future = new CompletableFuture<>();
 
     // removes the transfer on cancel / complete
@@ -3,6 +3,7 @@ package saros.net.xmpp.filetransfer;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Optional;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smackx.filetransfer.FileTransferRequest;
 import org.jivesoftware.smackx.filetransfer.IncomingFileTransfer;
@@ -18,6 +19,8 @@ public class XMPPFileTransferRequest {
   private final XMPPContact contact;
   private final FileTransferRequest request;
 
+  private volatile XMPPFileTransfer transfer;
+
   XMPPFileTransferRequest(XMPPContact contact, FileTransferRequest request) {
     this.contact = contact;
     this.request = request;
@@ -48,13 +51,24 @@ public class XMPPFileTransferRequest {
    */
   public InputStream acceptStream() throws IOException {
     try {
-      IncomingFileTransfer transfer = request.accept();
-      return transfer.recieveFile();
+      IncomingFileTransfer incomingTransfer = request.accept();
+      transfer = new XMPPFileTransfer(incomingTransfer);
+      return incomingTransfer.recieveFile();
     } catch (XMPPException e) {
       throw new IOException(e);
     }
   }
 
+  /**
+   * Returns the transfer that was started by {@link #acceptStream()}. Its status can be used to
+   * check whether the data was completely transmitted after the stream was read.
+   *
+   * @return Optional with the transfer or an empty Optional if the stream was not accepted yet
+   */
+  public Optional<XMPPFileTransfer> getStreamTransfer() {
+    return Optional.ofNullable(transfer);
+  }
+
   /** Reject the incoming transfer request. */
   public void reject() {
     request.reject();
@@ -47,4 +47,6 @@ public class PreferenceConstants {
   public static final String SESSION_NICKNAME = "session.nickname";
 
   public static final String INSTANT_SESSION_START_PREFERRED = "instant_session_start_preferred";
+
+  public static final String DELTA_TRANSFER_PREFERRED = "delta_transfer_preferred";
 }
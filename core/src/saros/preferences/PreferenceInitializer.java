@@ -37,5 +37,6 @@ public class PreferenceInitializer {
 
     store.setDefault(PreferenceConstants.SESSION_NICKNAME, "");
     store.setDefault(PreferenceConstants.INSTANT_SESSION_START_PREFERRED, false);
+    store.setDefault(PreferenceConstants.DELTA_TRANSFER_PREFERRED, false);
   }
 }
@@ -179,4 +179,13 @@ public abstract class Preferences {
   public boolean isInstantSessionStartPreferred() {
     return store.getBoolean(PreferenceConstants.INSTANT_SESSION_START_PREFERRED);
   }
+
+  /**
+   * Returns the preference for transferring only the differences of altered files.
+   *
+   * @return true if the delta transfer is preferred
+   */
+  public boolean isDeltaTransferPreferred() {
+    return store.getBoolean(PreferenceConstants.DELTA_TRANSFER_PREFERRED);
+  }
 }
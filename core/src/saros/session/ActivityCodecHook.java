@@ -0,0 +1,92 @@
+package saros.session;
+
+import java.util.Collections;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import saros.activities.codec.BinaryActivityCodec;
+import saros.communication.extensions.ActivitiesExtension;
+import saros.negotiation.hooks.ISessionNegotiationHook;
+import saros.negotiation.hooks.SessionNegotiationHookManager;
+import saros.net.xmpp.JID;
+import saros.preferences.IPreferenceStore;
+
+/**
+ * Hook for negotiating the wire format that is used to transmit activities between the host and a
+ * client.
+ *
+ * <p>The client tells the highest {@link BinaryActivityCodec} version it supports, the host uses it
+ * if it supports the same version. Otherwise the XStream based {@link ActivitiesExtension} is used
+ * which is also the case for clients that do not know about this hook at all.
+ */
+public class ActivityCodecHook implements ISessionNegotiationHook {
+  private static final String HOOK_IDENTIFIER = "activityCodecHook";
+  private static final String KEY_SUPPORTED_VERSION = "supportedActivityCodecVersion";
+
+  /**
+   * Preference key for the negotiated codec version. A value of <code>0</code> (the default of
+   * every preference store) denotes that no binary codec is used.
+   */
+  public static final String KEY_CODEC_VERSION = "activityCodecVersion";
+
+  private static final Logger log = Logger.getLogger(ActivityCodecHook.class);
+
+  public ActivityCodecHook(SessionNegotiationHookManager hookManager) {
+    hookManager.addHook(this);
+  }
+
+  @Override
+  public String getIdentifier() {
+    return HOOK_IDENTIFIER;
+  }
+
+  @Override
+  public void setInitialHostPreferences(IPreferenceStore hostPreferences) {
+    // NOP
+  }
+
+  @Override
+  public Map<String, String> tellClientPreferences() {
+    return Collections.singletonMap(
+        KEY_SUPPORTED_VERSION, String.valueOf(BinaryActivityCodec.VERSION));
+  }
+
+  @Override
+  public Map<String, String> considerClientPreferences(JID client, Map<String, String> input) {
+    String version = input == null ? null : input.get(KEY_SUPPORTED_VERSION);
+
+    if (String.valueOf(BinaryActivityCodec.VERSION).equals(version))
+      return Collections.singletonMap(KEY_CODEC_VERSION, version);
+
+    log.debug(
+        "client "
+            + client
+            + " does not support activity codec version "
+            + BinaryActivityCodec.VERSION);
+
+    return Collections.singletonMap(KEY_CODEC_VERSION, "0");
+  }
+
+  @Override
+  public void applyActualParameters(
+      Map<String, String> input,
+      IPreferenceStore hostPreferences,
+      IPreferenceStore clientPreferences) {
+    if (input == null || !input.containsKey(KEY_CODEC_VERSION)) return;
+
+    int version;
+    try {
+      version = Integer.parseInt(input.get(KEY_CODEC_VERSION));
+    } catch (NumberFormatException e) {
+      log.warn("the host sent an invalid activity codec version: " + input.get(KEY_CODEC_VERSION));
+      return;
+    }
+
+    if (version != 0 && version != BinaryActivityCodec.VERSION) {
+      log.warn("the host selected an unsupported activity codec version: " + version);
+      return;
+    }
+
+    hostPreferences.setValue(KEY_CODEC_VERSION, version);
+    clientPreferences.setValue(KEY_CODEC_VERSION, version);
+  }
+}
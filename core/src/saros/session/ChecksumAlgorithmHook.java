@@ -0,0 +1,209 @@
+package saros.session;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.negotiation.hooks.ISessionNegotiationHook;
+import saros.negotiation.hooks.SessionNegotiationHookManager;
+import saros.net.xmpp.JID;
+import saros.preferences.IPreferenceStore;
+
+/**
+ * Hook for negotiating the {@link ChecksumAlgorithm} that is used to compare file and document
+ * contents between the host and a client, e.g. in file lists and checksum activities.
+ *
+ * <p>The client tells all algorithms it supports, the host uses its {@linkplain
+ * ChecksumAlgorithm#getDefault() default algorithm} if the client supports it. Otherwise the {@link
+ * ChecksumAlgorithm#LEGACY legacy} algorithm is used which is also the case for clients that do not
+ * know about this hook at all.
+ *
+ * <p>The documents compared by the consistency watchdog use the {@linkplain
+ * ChecksumAlgorithm#isIncremental() incremental} {@link ChecksumAlgorithm#POLYNOMIAL61} algorithm
+ * if the client supports it, so their checksums can be maintained from the text edits. Otherwise
+ * they use the same algorithm as the files.
+ */
+public class ChecksumAlgorithmHook implements ISessionNegotiationHook {
+  private static final String HOOK_IDENTIFIER = "checksumAlgorithmHook";
+  private static final String KEY_SUPPORTED_ALGORITHMS = "supportedChecksumAlgorithms";
+
+  /**
+   * Preference key for the id of the negotiated algorithm. A value of <code>0</code> (the default
+   * of every preference store) denotes the legacy algorithm.
+   */
+  public static final String KEY_CHECKSUM_ALGORITHM = "checksumAlgorithm";
+
+  /**
+   * Preference key for the id of the algorithm negotiated for document checksums. A value of <code>
+   * 0</code> denotes that the algorithm of {@link #KEY_CHECKSUM_ALGORITHM} is used.
+   */
+  public static final String KEY_DOCUMENT_CHECKSUM_ALGORITHM = "documentChecksumAlgorithm";
+
+  private static final ChecksumAlgorithm DOCUMENT_ALGORITHM = ChecksumAlgorithm.POLYNOMIAL61;
+
+  private static final Logger log = Logger.getLogger(ChecksumAlgorithmHook.class);
+
+  public ChecksumAlgorithmHook(SessionNegotiationHookManager hookManager) {
+    hookManager.addHook(this);
+  }
+
+  /**
+   * Returns the checksum algorithm that was negotiated with the given user.
+   *
+   * @param user the remote user, or the local user on the client side
+   * @return the negotiated algorithm, {@link ChecksumAlgorithm#LEGACY} if none was negotiated
+   */
+  public static ChecksumAlgorithm getChecksumAlgorithm(User user) {
+    ChecksumAlgorithm algorithm =
+        ChecksumAlgorithm.forId(user.getPreferences().getInt(KEY_CHECKSUM_ALGORITHM));
+
+    return algorithm == null ? ChecksumAlgorithm.LEGACY : algorithm;
+  }
+
+  /**
+   * Returns the checksum algorithm to use for checksums that are sent to all remote users of the
+   * given session. This is the algorithm negotiated with every remote user, or the legacy algorithm
+   * if different algorithms were negotiated.
+   *
+   * @param session the session
+   * @return the common algorithm of all remote users
+   */
+  public static ChecksumAlgorithm getCommonChecksumAlgorithm(ISarosSession session) {
+    ChecksumAlgorithm common = null;
+
+    for (User user : session.getRemoteUsers()) {
+      ChecksumAlgorithm algorithm = getChecksumAlgorithm(user);
+
+      if (common == null) common = algorithm;
+      else if (common != algorithm) return ChecksumAlgorithm.LEGACY;
+    }
+
+    return common == null ? ChecksumAlgorithm.getDefault() : common;
+  }
+
+  /**
+   * Returns the checksum algorithm that was negotiated with the given user for the documents
+   * compared by the consistency watchdog.
+   *
+   * @param user the remote user, or the local user on the client side
+   * @return the negotiated algorithm, the {@linkplain #getChecksumAlgorithm(User) file algorithm}
+   *     if none was negotiated
+   */
+  public static ChecksumAlgorithm getDocumentChecksumAlgorithm(User user) {
+    ChecksumAlgorithm algorithm =
+        ChecksumAlgorithm.forId(user.getPreferences().getInt(KEY_DOCUMENT_CHECKSUM_ALGORITHM));
+
+    return algorithm == null || algorithm == ChecksumAlgorithm.LEGACY
+        ? getChecksumAlgorithm(user)
+        : algorithm;
+  }
+
+  /**
+   * Returns the checksum algorithm to use for document checksums that are sent to all remote users
+   * of the given session, see {@link #getCommonChecksumAlgorithm(ISarosSession)}.
+   *
+   * @param session the session
+   * @return the common document algorithm of all remote users
+   */
+  public static ChecksumAlgorithm getCommonDocumentChecksumAlgorithm(ISarosSession session) {
+    ChecksumAlgorithm common = null;
+
+    for (User user : session.getRemoteUsers()) {
+      ChecksumAlgorithm algorithm = getDocumentChecksumAlgorithm(user);
+
+      if (common == null) common = algorithm;
+      else if (common != algorithm) return ChecksumAlgorithm.LEGACY;
+    }
+
+    return common == null ? DOCUMENT_ALGORITHM : common;
+  }
+
+  @Override
+  public String getIdentifier() {
+    return HOOK_IDENTIFIER;
+  }
+
+  @Override
+  public void setInitialHostPreferences(IPreferenceStore hostPreferences) {
+    // NOP
+  }
+
+  @Override
+  public Map<String, String> tellClientPreferences() {
+    StringBuilder ids = new StringBuilder();
+
+    for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+      if (ids.length() > 0) ids.append(',');
+
+      ids.append(algorithm.getId());
+    }
+
+    return Collections.singletonMap(KEY_SUPPORTED_ALGORITHMS, ids.toString());
+  }
+
+  @Override
+  public Map<String, String> considerClientPreferences(JID client, Map<String, String> input) {
+    String ids = input == null ? null : input.get(KEY_SUPPORTED_ALGORITHMS);
+
+    Set<String> supported = new HashSet<String>();
+
+    if (ids != null) Collections.addAll(supported, ids.split(","));
+
+    ChecksumAlgorithm algorithm = ChecksumAlgorithm.getDefault();
+
+    if (!supported.contains(String.valueOf(algorithm.getId()))) {
+      log.debug("client " + client + " does not support checksum algorithm " + algorithm);
+
+      algorithm = ChecksumAlgorithm.LEGACY;
+    }
+
+    ChecksumAlgorithm documentAlgorithm = DOCUMENT_ALGORITHM;
+
+    if (!supported.contains(String.valueOf(documentAlgorithm.getId())))
+      documentAlgorithm = algorithm;
+
+    Map<String, String> result = new HashMap<String, String>();
+    result.put(KEY_CHECKSUM_ALGORITHM, String.valueOf(algorithm.getId()));
+    result.put(KEY_DOCUMENT_CHECKSUM_ALGORITHM, String.valueOf(documentAlgorithm.getId()));
+
+    return result;
+  }
+
+  @Override
+  public void applyActualParameters(
+      Map<String, String> input,
+      IPreferenceStore hostPreferences,
+      IPreferenceStore clientPreferences) {
+    if (input == null) return;
+
+    applyAlgorithm(KEY_CHECKSUM_ALGORITHM, input, hostPreferences, clientPreferences);
+    applyAlgorithm(KEY_DOCUMENT_CHECKSUM_ALGORITHM, input, hostPreferences, clientPreferences);
+  }
+
+  private static void applyAlgorithm(
+      String key,
+      Map<String, String> input,
+      IPreferenceStore hostPreferences,
+      IPreferenceStore clientPreferences) {
+    if (!input.containsKey(key)) return;
+
+    int id;
+    try {
+      id = Integer.parseInt(input.get(key));
+    } catch (NumberFormatException e) {
+      log.warn("the host sent an invalid checksum algorithm: " + input.get(key));
+      return;
+    }
+
+    if (ChecksumAlgorithm.forId(id) == null) {
+      log.warn("the host selected an unsupported checksum algorithm: " + id);
+      return;
+    }
+
+    hostPreferences.setValue(key, id);
+    clientPreferences.setValue(key, id);
+  }
+}
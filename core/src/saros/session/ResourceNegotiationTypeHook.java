@@ -15,8 +15,8 @@ import saros.preferences.Preferences;
  * {@link User}s to transfer files during a resource negotiation.
  *
  * <p>Host and Client tell a preference, the host decides if they are the same and use it. Otherwise
- * defaults to Archive. This approach is good enough and works best for two supported types, like
- * now {@link TransferType#ARCHIVE} and {@link TransferType#INSTANT}.
+ * defaults to Archive. If both {@link TransferType#INSTANT} and {@link TransferType#DELTA} are
+ * preferred locally, Instant is told as it changes the user experience.
  */
 public class ResourceNegotiationTypeHook implements ISessionNegotiationHook {
   private static final String HOOK_IDENTIFIER = "resourceNegotiationTypeHook";
@@ -26,6 +26,7 @@ public class ResourceNegotiationTypeHook implements ISessionNegotiationHook {
 
   private static final String TYPE_ARCHIVE = TransferType.ARCHIVE.name();
   private static final String TYPE_INSTANT = TransferType.INSTANT.name();
+  private static final String TYPE_DELTA = TransferType.DELTA.name();
 
   private static final Logger log = Logger.getLogger(ResourceNegotiationTypeHook.class);
 
@@ -108,6 +109,10 @@ public class ResourceNegotiationTypeHook implements ISessionNegotiationHook {
       return Collections.singletonMap(KEY_PREFERRED_TYPE, TYPE_INSTANT);
     }
 
+    if (localPref != null && localPref.isDeltaTransferPreferred()) {
+      return Collections.singletonMap(KEY_PREFERRED_TYPE, TYPE_DELTA);
+    }
+
     return Collections.singletonMap(KEY_PREFERRED_TYPE, TYPE_ARCHIVE);
   }
 }
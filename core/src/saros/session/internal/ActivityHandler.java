@@ -1,9 +1,15 @@
 package saros.session.internal;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import saros.activities.ActivityOptimizer;
 import saros.activities.ChecksumActivity;
@@ -12,15 +18,20 @@ import saros.activities.IResourceActivity;
 import saros.activities.ITargetedActivity;
 import saros.activities.JupiterActivity;
 import saros.activities.QueueItem;
+import saros.activities.TextEditActivity;
+import saros.activities.TextSelectionActivity;
+import saros.activities.ViewportActivity;
 import saros.concurrent.management.ConcurrentDocumentClient;
 import saros.concurrent.management.ConcurrentDocumentServer;
 import saros.concurrent.management.TransformationResult;
+import saros.filesystem.IFile;
 import saros.filesystem.IResource;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.IActivityHandlerCallback;
 import saros.session.ISarosSession;
 import saros.session.User;
 import saros.synchronize.UISynchronizer;
+import saros.util.NamedThreadFactory;
 import saros.util.ThreadUtils;
 
 /**
@@ -53,9 +64,26 @@ public final class ActivityHandler implements Startable {
     DISPATCH_MODE = dispatchModeToUse;
   }
 
+  /**
+   * Time window in milliseconds in which consecutive local text edits are combined before they are
+   * sent. A value of <code>0</code> disables the combination.
+   */
+  private static final long COALESCING_WINDOW =
+      Math.max(0L, Long.getLong("saros.session.TEXT_EDIT_COALESCING_WINDOW", 50L));
+
+  private static final long COALESCING_WINDOW_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(COALESCING_WINDOW);
+
   private final LinkedBlockingQueue<List<IActivity>> dispatchQueue =
       new LinkedBlockingQueue<List<IActivity>>();
 
+  /** results of the server side transformations in the order the activities were received */
+  private final Deque<CompletableFuture<List<QueueItem>>> pendingServerResults =
+      new ArrayDeque<CompletableFuture<List<QueueItem>>>();
+
+  private final Runnable serverResultsDelivery =
+      ThreadUtils.wrapSafe(log, this::deliverServerResults);
+
   private final IActivityHandlerCallback callback;
 
   private final ISarosSession session;
@@ -73,6 +101,25 @@ public final class ActivityHandler implements Startable {
    */
   private Thread dispatchThread;
 
+  private volatile ScheduledExecutorService coalescingScheduler;
+
+  /*
+   * The following fields must only be accessed in the context of the
+   * synchronizer as the pending text edit must be sent before any other
+   * local or remote activity is processed.
+   */
+
+  /** combined local text edits that are not sent yet */
+  private TextEditActivity pendingTextEdit;
+
+  /** latest local selection and viewport activities of the pending text edit's file */
+  private TextSelectionActivity pendingSelection;
+
+  private ViewportActivity pendingViewport;
+
+  /** time in nanoseconds at which the last local text edit was sent */
+  private long lastTextEditSendTime = System.nanoTime() - COALESCING_WINDOW_NANOS;
+
   private final Runnable dispatchThreadRunnable =
       new Runnable() {
 
@@ -152,13 +199,8 @@ public final class ActivityHandler implements Startable {
        * may transform activities again if necessary and afterward sends them to the correct
        * clients. (Note that the callback.send() methods get an actual list of recipients.)
        */
-      TransformationResult result = directServerActivities(activities);
-      for (QueueItem item : result.getSendToPeers()) {
-        List<User> recipients = getRecipientsForQueueItem(item);
-        callback.send(recipients, item.activity);
-      }
-
-      activities = result.getLocalActivities();
+      directServerActivities(activities);
+      return;
     }
 
     /**
@@ -168,6 +210,10 @@ public final class ActivityHandler implements Startable {
      * queue of the activity dispatcher. This queue is consumed by the dispatchThread, which
      * transforms activities again if necessary, and then forwards it to the SarosSession.
      */
+    dispatch(activities);
+  }
+
+  private void dispatch(final List<IActivity> activities) {
     if (activities.isEmpty()) return;
 
     if (DISPATCH_MODE == DISPATCH_MODE_ASYNC) dispatchAndExecuteActivities(activities);
@@ -246,16 +292,149 @@ public final class ActivityHandler implements Startable {
               public void run() {
                 for (IActivity activity : activities) {
 
-                  IActivity transformationResult = documentClient.transformToJupiter(activity);
+                  if (coalesce(activity)) continue;
+
+                  flushPendingTextEdit();
 
-                  callback.send(Collections.singletonList(session.getHost()), transformationResult);
+                  sendToHost(activity);
                 }
               }
             }));
   }
 
+  /**
+   * Combines consecutive text edits of the local user to reduce the number of Jupiter operations
+   * and packets during bursty typing. If no text edit was sent within the {@linkplain
+   * #COALESCING_WINDOW coalescing window} the text edit is sent immediately. Otherwise it is held
+   * back until the window expires, combining all following adjacent text edits of the same file.
+   * Selection and viewport changes of this file are held back as well and sent after the text edit.
+   *
+   * <p>Must be called in the context of the synchronizer.
+   *
+   * @param activity the local activity to send
+   * @return <code>true</code> if the activity was handled, <code>false</code> if it must be sent
+   *     after sending any pending text edit
+   */
+  private boolean coalesce(final IActivity activity) {
+    if (COALESCING_WINDOW == 0 || coalescingScheduler == null) return false;
+
+    if (activity instanceof TextSelectionActivity && isPendingFile(activity)) {
+      pendingSelection = (TextSelectionActivity) activity;
+      return true;
+    }
+
+    if (activity instanceof ViewportActivity && isPendingFile(activity)) {
+      pendingViewport = (ViewportActivity) activity;
+      return true;
+    }
+
+    if (!(activity instanceof TextEditActivity)) return false;
+
+    final TextEditActivity textEdit = (TextEditActivity) activity;
+
+    if (pendingTextEdit != null) {
+      final TextEditActivity combined = ActivityOptimizer.combine(pendingTextEdit, textEdit);
+
+      if (combined != null) {
+        pendingTextEdit = combined;
+        return true;
+      }
+
+      flushPendingTextEdit();
+    }
+
+    final long now = System.nanoTime();
+    final long remaining = lastTextEditSendTime + COALESCING_WINDOW_NANOS - now;
+
+    // the line is idle, so there is nothing to wait for
+    if (remaining <= 0) {
+      sendToHost(textEdit);
+      lastTextEditSendTime = now;
+      return true;
+    }
+
+    pendingTextEdit = textEdit;
+
+    try {
+      coalescingScheduler.schedule(
+          ThreadUtils.wrapSafe(
+              log,
+              new Runnable() {
+                @Override
+                public void run() {
+                  synchronizer.asyncExec(
+                      ThreadUtils.wrapSafe(
+                          log,
+                          new Runnable() {
+                            @Override
+                            public void run() {
+                              if (System.nanoTime() - lastTextEditSendTime
+                                  >= COALESCING_WINDOW_NANOS) flushPendingTextEdit();
+                            }
+                          }));
+                }
+              }),
+          remaining,
+          TimeUnit.NANOSECONDS);
+    } catch (RuntimeException e) {
+      // the handler is stopping
+      flushPendingTextEdit();
+    }
+
+    return true;
+  }
+
+  private boolean isPendingFile(final IActivity activity) {
+    if (pendingTextEdit == null) return false;
+
+    final IFile file =
+        activity instanceof TextSelectionActivity
+            ? ((TextSelectionActivity) activity).getResource()
+            : ((ViewportActivity) activity).getResource();
+
+    return pendingTextEdit.getResource().equals(file)
+        && pendingTextEdit.getSource().equals(activity.getSource());
+  }
+
+  /**
+   * Sends the pending text edit and the selection and viewport changes that were held back with it.
+   *
+   * <p>Must be called in the context of the synchronizer.
+   */
+  private void flushPendingTextEdit() {
+    if (pendingTextEdit == null) return;
+
+    final TextEditActivity textEdit = pendingTextEdit;
+
+    pendingTextEdit = null;
+
+    // typing and deleting the same text results in an empty text edit
+    if (!textEdit.getNewText().isEmpty() || !textEdit.getReplacedText().isEmpty())
+      sendToHost(textEdit);
+
+    lastTextEditSendTime = System.nanoTime();
+
+    if (pendingSelection != null) sendToHost(pendingSelection);
+
+    if (pendingViewport != null) sendToHost(pendingViewport);
+
+    pendingSelection = null;
+    pendingViewport = null;
+  }
+
+  private void sendToHost(final IActivity activity) {
+    IActivity transformationResult = documentClient.transformToJupiter(activity);
+
+    callback.send(Collections.singletonList(session.getHost()), transformationResult);
+  }
+
   @Override
   public void start() {
+    if (COALESCING_WINDOW > 0)
+      coalescingScheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new NamedThreadFactory("activity-coalescer", false));
+
     if (DISPATCH_MODE == DISPATCH_MODE_ASYNC) return;
 
     dispatchThread = ThreadUtils.runSafeAsync("activity-dispatcher", log, dispatchThreadRunnable);
@@ -263,6 +442,23 @@ public final class ActivityHandler implements Startable {
 
   @Override
   public void stop() {
+    final ScheduledExecutorService scheduler = coalescingScheduler;
+
+    if (scheduler != null) {
+      coalescingScheduler = null;
+      scheduler.shutdownNow();
+
+      synchronizer.syncExec(
+          ThreadUtils.wrapSafe(
+              log,
+              new Runnable() {
+                @Override
+                public void run() {
+                  flushPendingTextEdit();
+                }
+              }));
+    }
+
     if (DISPATCH_MODE == DISPATCH_MODE_ASYNC) return;
 
     dispatchQueue.add(POISON_PILL);
@@ -329,6 +525,9 @@ public final class ActivityHandler implements Startable {
           @Override
           public void run() {
 
+            // the pending local text edit precedes the remote activities
+            flushPendingTextEdit();
+
             for (IActivity activity : optimizedActivities) {
 
               User source = activity.getSource();
@@ -388,27 +587,32 @@ public final class ActivityHandler implements Startable {
    * This method is responsible for directing activities received at the server to the various
    * clients.
    *
+   * <p>Jupiter and checksum activities of different files are transformed in parallel by the {@link
+   * ConcurrentDocumentServer}. This method does not wait for the transformations, so activities of
+   * following batches are transformed while earlier ones are still in progress. The results are
+   * sent and executed in the order the activities were received by {@link #deliverServerResults()}.
+   *
    * @param activities A list of incoming activities
-   * @return A number of targeted activities.
    */
-  private TransformationResult directServerActivities(List<IActivity> activities) {
+  private void directServerActivities(List<IActivity> activities) {
 
     assert session.isHost() && documentServer != null;
 
-    TransformationResult result = new TransformationResult(session.getLocalUser());
-
     final List<User> remoteUsers = session.getRemoteUsers();
     final List<User> allUsers = session.getUsers();
 
+    final List<CompletableFuture<List<QueueItem>>> directedActivities =
+        new ArrayList<CompletableFuture<List<QueueItem>>>(activities.size());
+
     for (IActivity activity : activities) {
       documentServer.handleResourceChange(activity);
 
       if (activity instanceof JupiterActivity || activity instanceof ChecksumActivity) {
 
-        result.addAll(documentServer.transformIncoming(activity));
+        directedActivities.add(documentServer.transformIncomingAsync(activity));
       } else if (activity instanceof ITargetedActivity) {
         ITargetedActivity target = (ITargetedActivity) activity;
-        result.add(new QueueItem(target.getTarget(), activity));
+        directedActivities.add(direct(new QueueItem(target.getTarget(), activity)));
 
       } else if (remoteUsers.size() > 0) {
 
@@ -419,16 +623,59 @@ public final class ActivityHandler implements Startable {
             receivers.add(user);
           }
         }
-        result.add(new QueueItem(receivers, activity));
+        directedActivities.add(direct(new QueueItem(receivers, activity)));
 
         /*
          * should we really execute an activity from a user that is
          * about to or has left the session ?
          */
       } else if (!(session.getLocalUser().equals(activity.getSource()))) {
-        result.executeLocally.add(activity);
+        directedActivities.add(direct(new QueueItem(session.getLocalUser(), activity)));
+      }
+    }
+
+    synchronized (pendingServerResults) {
+      pendingServerResults.addAll(directedActivities);
+    }
+
+    for (CompletableFuture<List<QueueItem>> directedActivity : directedActivities)
+      directedActivity.whenComplete((items, error) -> serverResultsDelivery.run());
+  }
+
+  /**
+   * Sends and executes the results of the completed server side transformations that are not
+   * preceded by a transformation still in progress. This is called by the thread that completed a
+   * transformation, activities that need no transformation are delivered by the calling thread
+   * without any thread switch.
+   */
+  private void deliverServerResults() {
+    synchronized (pendingServerResults) {
+      final TransformationResult result = new TransformationResult(session.getLocalUser());
+
+      CompletableFuture<List<QueueItem>> directedActivity;
+
+      while ((directedActivity = pendingServerResults.peek()) != null
+          && directedActivity.isDone()) {
+
+        pendingServerResults.poll();
+
+        try {
+          result.addAll(directedActivity.join());
+        } catch (RuntimeException e) {
+          log.error("failed to transform activity", e);
+        }
+      }
+
+      for (QueueItem item : result.getSendToPeers()) {
+        List<User> recipients = getRecipientsForQueueItem(item);
+        callback.send(recipients, item.activity);
       }
+
+      dispatch(result.getLocalActivities());
     }
-    return result;
+  }
+
+  private static CompletableFuture<List<QueueItem>> direct(QueueItem item) {
+    return CompletableFuture.completedFuture(Collections.singletonList(item));
   }
 }
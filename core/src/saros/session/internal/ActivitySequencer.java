@@ -2,27 +2,46 @@ package saros.session.internal;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.PacketListener;
 import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smack.packet.PacketExtension;
 import saros.activities.ActivityOptimizer;
+import saros.activities.ChecksumActivity;
+import saros.activities.EditorActivity;
 import saros.activities.FileActivity;
 import saros.activities.IActivity;
+import saros.activities.JupiterActivity;
+import saros.activities.StartFollowingActivity;
+import saros.activities.StopFollowingActivity;
+import saros.activities.TextEditActivity;
+import saros.activities.TextSelectionActivity;
+import saros.activities.ViewportActivity;
+import saros.activities.codec.BinaryActivityCodec;
 import saros.communication.extensions.ActivitiesExtension;
+import saros.communication.extensions.BinaryActivitiesExtension;
 import saros.net.DispatchThreadContext;
 import saros.net.IReceiver;
 import saros.net.ITransmitter;
+import saros.net.TrafficClass;
 import saros.net.xmpp.JID;
+import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.preferences.IPreferenceStore;
 import saros.repackaged.picocontainer.Startable;
+import saros.session.ActivityCodecHook;
 import saros.session.ISarosSession;
 import saros.session.User;
 import saros.util.ThreadUtils;
@@ -41,13 +60,35 @@ public class ActivitySequencer implements Startable {
   /** Sequence numbers for outgoing and incoming activities start with this value. */
   private static final int FIRST_SEQUENCE_NUMBER = 0;
 
+  /**
+   * File contents exceeding this length in bytes are sent as separate file transfers instead of
+   * being sent along with the activities if the binary codec is used.
+   */
+  private static final long MAX_INLINE_CONTENT_LENGTH =
+      Long.getLong("saros.session.MAX_INLINE_FILE_CONTENT_LENGTH", 256 * 1024);
+
   private static class SequencedActivities {
     private final int sequenceNumber;
     private final List<IActivity> activites;
+    private final boolean useBinaryCodec;
 
-    private SequencedActivities(List<IActivity> activites, int sequenceNumber) {
+    private SequencedActivities(
+        List<IActivity> activites, int sequenceNumber, boolean useBinaryCodec) {
       this.activites = activites;
       this.sequenceNumber = sequenceNumber;
+      this.useBinaryCodec = useBinaryCodec;
+    }
+  }
+
+  /** Recipients that are sent the same activities, each with its own sequence number. */
+  private static class Multicast {
+    private final List<IActivity> activities;
+    private final boolean useBinaryCodec;
+    private final Map<JID, Integer> sequenceNumbers = new LinkedHashMap<JID, Integer>();
+
+    private Multicast(List<IActivity> activities, boolean useBinaryCodec) {
+      this.activities = activities;
+      this.useBinaryCodec = useBinaryCodec;
     }
   }
 
@@ -61,8 +102,18 @@ public class ActivitySequencer implements Startable {
     private int nextSequenceNumber;
     private final Deque<T> activities = new LinkedList<T>();
 
-    private ActivityBuffer(int firstSequenceNumber) {
+    /**
+     * Completed once the previously received activities were executed, <code>null</code> if no
+     * received activities had to wait for their file contents yet
+     */
+    private CompletableFuture<Void> pendingExecution;
+
+    /** the preferences of the user this buffer belongs to, may be <code>null</code> */
+    private final IPreferenceStore preferences;
+
+    private ActivityBuffer(int firstSequenceNumber, IPreferenceStore preferences) {
       nextSequenceNumber = firstSequenceNumber;
+      this.preferences = preferences;
     }
   }
 
@@ -75,6 +126,15 @@ public class ActivitySequencer implements Startable {
         }
       };
 
+  private final PacketListener binaryActivitiesPacketListener =
+      new PacketListener() {
+
+        @Override
+        public void processPacket(Packet packet) {
+          receiveBinaryActivities(packet);
+        }
+      };
+
   private final Runnable activitySender =
       new Runnable() {
 
@@ -107,7 +167,10 @@ public class ActivitySequencer implements Startable {
 
                 activitiesToSend.put(
                     entry.getKey(),
-                    new SequencedActivities(optimizedActivities, currentSequenceNumber));
+                    new SequencedActivities(
+                        optimizedActivities,
+                        currentSequenceNumber,
+                        isBinaryCodecNegotiated(buffer.preferences)));
               }
 
               if (activitiesToSend.isEmpty()) {
@@ -120,8 +183,14 @@ public class ActivitySequencer implements Startable {
               }
             }
 
-            for (Entry<JID, SequencedActivities> e : activitiesToSend.entrySet()) {
-              sendActivities(e.getKey(), e.getValue().activites, e.getValue().sequenceNumber);
+            for (Multicast multicast : groupRecipients(activitiesToSend)) {
+              sendActivities(
+                  multicast.sequenceNumbers, multicast.activities, multicast.useBinaryCodec);
+            }
+
+            if (contentTransfer != null) {
+              for (SequencedActivities sequencedActivities : activitiesToSend.values())
+                contentTransfer.releaseWhenSent(sequencedActivities.activites);
             }
 
             synchronized (bufferedOutgoingActivities) {
@@ -160,6 +229,11 @@ public class ActivitySequencer implements Startable {
 
   private final DispatchThreadContext dispatchThread;
 
+  private final BinaryActivityCodec codec;
+
+  /** transfers large file contents separately, <code>null</code> if not supported */
+  private final FileContentTransfer contentTransfer;
+
   private final Map<JID, ActivityBuffer<IActivity>> bufferedIncomingActivities;
 
   private final Map<JID, ActivityBuffer<IActivity>> bufferedOutgoingActivities;
@@ -170,11 +244,32 @@ public class ActivitySequencer implements Startable {
       final IReceiver receiver,
       final DispatchThreadContext threadContext) {
 
+    this(sarosSession, transmitter, receiver, threadContext, null);
+  }
+
+  /**
+   * Creates a sequencer that sends large file contents separately from the activities.
+   *
+   * @param fileTransferManager the manager used to transfer the file contents, may be <code>null
+   *     </code> to always send the contents along with the activities
+   */
+  public ActivitySequencer(
+      final ISarosSession sarosSession,
+      final ITransmitter transmitter,
+      final IReceiver receiver,
+      final DispatchThreadContext threadContext,
+      final XMPPFileTransferManager fileTransferManager) {
+
     this.dispatchThread = threadContext;
     this.sarosSession = sarosSession;
     this.transmitter = transmitter;
     this.receiver = receiver;
     this.currentSessionID = sarosSession.getID();
+    this.codec = new BinaryActivityCodec(sarosSession);
+    this.contentTransfer =
+        fileTransferManager != null
+            ? new FileContentTransfer(fileTransferManager, currentSessionID)
+            : null;
 
     this.bufferedIncomingActivities = new HashMap<JID, ActivityBuffer<IActivity>>();
     this.bufferedOutgoingActivities = new HashMap<JID, ActivityBuffer<IActivity>>();
@@ -226,6 +321,12 @@ public class ActivitySequencer implements Startable {
     receiver.addPacketListener(
         activitiesPacketListener, ActivitiesExtension.PROVIDER.getPacketFilter(currentSessionID));
 
+    receiver.addPacketListener(
+        binaryActivitiesPacketListener,
+        BinaryActivitiesExtension.PROVIDER.getPacketFilter(currentSessionID));
+
+    if (contentTransfer != null) contentTransfer.start();
+
     activitySendThread = ThreadUtils.runSafeAsync("activity-sender", log, activitySender);
   }
 
@@ -248,6 +349,7 @@ public class ActivitySequencer implements Startable {
     }
 
     receiver.removePacketListener(activitiesPacketListener);
+    receiver.removePacketListener(binaryActivitiesPacketListener);
 
     synchronized (bufferedOutgoingActivities) {
       stopSending = true;
@@ -277,6 +379,8 @@ public class ActivitySequencer implements Startable {
       bufferedIncomingActivities.clear();
     }
 
+    if (contentTransfer != null) contentTransfer.stop();
+
     activitySendThread = null;
 
     if (isStoppingInterrupted) Thread.currentThread().interrupt();
@@ -286,8 +390,41 @@ public class ActivitySequencer implements Startable {
     this.callback = callback;
   }
 
+  /**
+   * Executes the received activities if they are in sequence.
+   *
+   * @param sender the sender of the activities
+   * @param activities the activities to execute
+   * @param sequenceNumber the sequence number of the first activity
+   * @param activityCount the number of activities the sender sent which may be larger than the
+   *     number of activities to execute if some of them could not be decoded
+   */
   private void executeActivities(
-      final JID sender, final List<IActivity> activities, final int sequenceNumber) {
+      final JID sender,
+      final List<IActivity> activities,
+      final int sequenceNumber,
+      final int activityCount) {
+
+    executeActivities(
+        sender, CompletableFuture.completedFuture(activities), sequenceNumber, activityCount);
+  }
+
+  /**
+   * Executes the received activities if they are in sequence. If the activities are not available
+   * yet, e.g. because their file contents are still transferred, they are executed once they are
+   * available. All activities received later from the same sender are executed afterwards.
+   *
+   * @param sender the sender of the activities
+   * @param activities future providing the activities to execute
+   * @param sequenceNumber the sequence number of the first activity
+   * @param activityCount the number of activities the sender sent which may be larger than the
+   *     number of activities to execute if some of them could not be decoded
+   */
+  private void executeActivities(
+      final JID sender,
+      final CompletableFuture<List<IActivity>> activities,
+      final int sequenceNumber,
+      final int activityCount) {
 
     boolean transmissionError = false;
 
@@ -299,24 +436,95 @@ public class ActivitySequencer implements Startable {
             "dropping received activity from "
                 + sender
                 + " because it is currently not registers, dropping activities: "
-                + activities);
+                + activities.getNow(null));
+
+        activities.thenAccept(this::releaseContents);
         return;
       }
 
       if (buffer.nextSequenceNumber != sequenceNumber) {
         transmissionError = true;
       } else {
-        buffer.nextSequenceNumber += activities.size();
+        buffer.nextSequenceNumber += activityCount;
+
+        CompletableFuture<Void> previous = buffer.pendingExecution;
+
+        if (!activities.isDone() || (previous != null && !previous.isDone())) {
+          buffer.pendingExecution =
+              CompletableFuture.allOf(previous != null ? previous : activities, activities)
+                  .handle((result, exception) -> null)
+                  .thenCompose(v -> executeAsDispatch(() -> execute(sender, activities)));
+          return;
+        }
       }
     }
 
     if (transmissionError) {
+      activities.thenAccept(this::releaseContents);
+      unregisterUser(sender);
+      notifyTransmissionError(sender);
+      return;
+    }
+
+    execute(sender, activities);
+  }
+
+  private void execute(final JID sender, final CompletableFuture<List<IActivity>> activities) {
+    final List<IActivity> activitiesToExecute;
+
+    try {
+      activitiesToExecute = activities.join();
+    } catch (CompletionException | CancellationException e) {
+      log.error("failed to receive activities from " + sender, e.getCause());
       unregisterUser(sender);
       notifyTransmissionError(sender);
       return;
     }
 
-    sarosSession.exec(activities);
+    synchronized (bufferedIncomingActivities) {
+      if (bufferedIncomingActivities.get(sender) == null) {
+        log.warn(
+            "dropping received activity from "
+                + sender
+                + " because it is currently not registers, dropping activities: "
+                + activitiesToExecute);
+
+        releaseContents(activitiesToExecute);
+        return;
+      }
+    }
+
+    if (!activitiesToExecute.isEmpty()) sarosSession.exec(activitiesToExecute);
+  }
+
+  /**
+   * Releases the received file content the given activity refers to, so it is deleted once it is
+   * not needed to forward the activity anymore. This must be called after the activity was executed
+   * or it was decided not to execute it.
+   *
+   * @param activity the received activity
+   */
+  public void releaseContent(final IActivity activity) {
+    if (contentTransfer != null) contentTransfer.release(activity);
+  }
+
+  private void releaseContents(final Collection<IActivity> activities) {
+    for (IActivity activity : activities) releaseContent(activity);
+  }
+
+  private CompletableFuture<Void> executeAsDispatch(final Runnable runnable) {
+    final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+    dispatchThread.executeAsDispatch(
+        () -> {
+          try {
+            runnable.run();
+          } finally {
+            done.complete(null);
+          }
+        });
+
+    return done;
   }
 
   /** Sends an activity to the given recipients. */
@@ -332,6 +540,8 @@ public class ActivitySequencer implements Startable {
 
       log.trace("dispatching activity " + activity + " to the local user: " + user);
 
+      if (contentTransfer != null) contentTransfer.retain(activity);
+
       dispatchThread.executeAsDispatch(
           new Runnable() {
             @Override
@@ -355,6 +565,9 @@ public class ActivitySequencer implements Startable {
                   + activity);
           continue;
         }
+
+        if (contentTransfer != null) contentTransfer.retain(activity);
+
         buffer.activities.add(activity);
       }
 
@@ -374,14 +587,17 @@ public class ActivitySequencer implements Startable {
     synchronized (bufferedOutgoingActivities) {
       if (bufferedOutgoingActivities.get(user.getJID()) == null)
         bufferedOutgoingActivities.put(
-            user.getJID(), new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER));
+            user.getJID(),
+            new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER, user.getPreferences()));
     }
 
     synchronized (bufferedIncomingActivities) {
       if (bufferedIncomingActivities.get(user.getJID()) == null)
         bufferedIncomingActivities.put(
-            user.getJID(), new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER));
+            user.getJID(), new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER, null));
     }
+
+    if (contentTransfer != null) contentTransfer.addPeer(user.getJID());
   }
 
   /**
@@ -425,17 +641,72 @@ public class ActivitySequencer implements Startable {
      * the user is not present.
      */
 
+    final ActivityBuffer<IActivity> droppedActivities;
+
     synchronized (bufferedOutgoingActivities) {
-      bufferedOutgoingActivities.put(jid, null);
+      droppedActivities = bufferedOutgoingActivities.put(jid, null);
       bufferedOutgoingActivities.notifyAll();
     }
 
+    if (droppedActivities != null) releaseContents(droppedActivities.activities);
+
     synchronized (bufferedIncomingActivities) {
       bufferedIncomingActivities.put(jid, null);
     }
+
+    if (contentTransfer != null) contentTransfer.removePeer(jid);
   }
 
-  private void sendActivities(JID recipient, List<IActivity> activities, int sequenceNumber) {
+  /**
+   * Groups the recipients that are sent the same activities, e.g. activities that are broadcasted
+   * to all session participants, so these activities are only marshalled once.
+   */
+  private static List<Multicast> groupRecipients(Map<JID, SequencedActivities> activitiesToSend) {
+    List<Multicast> result = new ArrayList<Multicast>();
+
+    next:
+    for (Entry<JID, SequencedActivities> entry : activitiesToSend.entrySet()) {
+      SequencedActivities sequencedActivities = entry.getValue();
+
+      for (Multicast multicast : result) {
+        if (multicast.useBinaryCodec == sequencedActivities.useBinaryCodec
+            && isSame(multicast.activities, sequencedActivities.activites)) {
+          multicast.sequenceNumbers.put(entry.getKey(), sequencedActivities.sequenceNumber);
+          continue next;
+        }
+      }
+
+      Multicast multicast =
+          new Multicast(sequencedActivities.activites, sequencedActivities.useBinaryCodec);
+
+      multicast.sequenceNumbers.put(entry.getKey(), sequencedActivities.sequenceNumber);
+      result.add(multicast);
+    }
+
+    return result;
+  }
+
+  /** Returns whether both lists contain the same activity instances in the same order. */
+  private static boolean isSame(List<IActivity> activities, List<IActivity> otherActivities) {
+    if (activities.size() != otherActivities.size()) return false;
+
+    for (int i = 0; i < activities.size(); i++)
+      if (activities.get(i) != otherActivities.get(i)) return false;
+
+    return true;
+  }
+
+  /**
+   * Sends the given activities to the given recipients. If the binary codec is used the activities
+   * are only encoded once for all recipients.
+   *
+   * @param sequenceNumbers the recipients and the sequence number of the first activity to send to
+   *     them, recipients the activities could not be sent to are removed
+   * @param activities the activities to send
+   * @param useBinaryCodec whether the binary codec was negotiated with the recipients
+   */
+  private void sendActivities(
+      Map<JID, Integer> sequenceNumbers, List<IActivity> activities, boolean useBinaryCodec) {
 
     if (activities.size() == 0) return;
 
@@ -457,17 +728,21 @@ public class ActivitySequencer implements Startable {
     final int minActivitySize = 512; // bytes
     int currentFileActivitySize = 0;
 
+    final boolean detachContents = useBinaryCodec && contentTransfer != null;
+
     final List<IActivity> activitiesToMarshall = new ArrayList<IActivity>();
+    final List<FileActivity> detachedContents = new ArrayList<FileActivity>();
     final Iterator<IActivity> it = activities.iterator();
 
-    while (it.hasNext()) {
+    while (it.hasNext() && !sequenceNumbers.isEmpty()) {
 
       final IActivity activity = it.next();
 
       if (activity instanceof FileActivity) {
-        final byte[] fileContent = ((FileActivity) (activity)).getContent();
+        final long contentLength = ((FileActivity) activity).getContentLength();
 
-        if (fileContent != null) currentFileActivitySize += fileContent.length;
+        if (contentLength > 0 && (!detachContents || contentLength <= MAX_INLINE_CONTENT_LENGTH))
+          currentFileActivitySize += contentLength;
       }
 
       currentFileActivitySize += minActivitySize;
@@ -476,43 +751,133 @@ public class ActivitySequencer implements Startable {
 
       if (it.hasNext() && currentFileActivitySize < maxFileActivitySize) continue;
 
-      /* ensure to make a copy of the list otherwise the content will be removed later in the loop.
-       * If the marshalling is delayed in the ITransmitter this would cause errors.
-       */
-
-      final PacketExtension activityPacketExtension =
-          ActivitiesExtension.PROVIDER.create(
-              new ActivitiesExtension(
-                  currentSessionID,
-                  new ArrayList<IActivity>(activitiesToMarshall),
-                  sequenceNumber));
-
-      if (log.isTraceEnabled()) {
-        log.trace(
-            "send ("
-                + String.format("%03d", activities.size())
-                + ") "
-                + recipient
-                + " -> "
-                + activities);
-      } else if (log.isDebugEnabled()) {
-        log.debug("send (" + String.format("%03d", activities.size()) + ") " + recipient);
+      BinaryActivitiesExtension.Payload payload = null;
+
+      if (useBinaryCodec) {
+        try {
+          byte[] data =
+              codec.encode(
+                  activitiesToMarshall,
+                  detachContents ? MAX_INLINE_CONTENT_LENGTH : Long.MAX_VALUE,
+                  detachedContents);
+
+          payload =
+              BinaryActivitiesExtension.Payload.create(
+                  data, activitiesToMarshall.size(), detachedContents.size());
+        } catch (IOException e) {
+          detachedContents.clear();
+          log.debug("cannot encode activities, falling back to XML: " + e.getMessage());
+        }
       }
 
-      try {
-        transmitter.send(ISarosSession.SESSION_CONNECTION_ID, recipient, activityPacketExtension);
-      } catch (IOException e) {
-        log.error("failed to sent activities: " + activities, e);
+      final TrafficClass trafficClass = getTrafficClass(activitiesToMarshall);
 
-        unregisterUser(recipient);
-        notifyTransmissionError(recipient);
-        return;
-      } finally {
-        sequenceNumber += activitiesToMarshall.size();
-        activitiesToMarshall.clear();
-        currentFileActivitySize = 0;
+      for (Iterator<Entry<JID, Integer>> recipients = sequenceNumbers.entrySet().iterator();
+          recipients.hasNext(); ) {
+
+        final Entry<JID, Integer> entry = recipients.next();
+        final JID recipient = entry.getKey();
+        final int sequenceNumber = entry.getValue();
+
+        /* ensure to make a copy of the list otherwise the content will be removed later in the loop.
+         * If the marshalling is delayed in the ITransmitter this would cause errors.
+         */
+
+        final PacketExtension activityPacketExtension;
+
+        if (payload != null) {
+          activityPacketExtension =
+              new BinaryActivitiesExtension(currentSessionID, payload, sequenceNumber);
+        } else {
+          activityPacketExtension =
+              ActivitiesExtension.PROVIDER.create(
+                  new ActivitiesExtension(
+                      currentSessionID,
+                      new ArrayList<IActivity>(activitiesToMarshall),
+                      sequenceNumber));
+        }
+
+        if (log.isTraceEnabled()) {
+          log.trace(
+              "send ("
+                  + String.format("%03d", activities.size())
+                  + ") "
+                  + recipient
+                  + " -> "
+                  + activities);
+        } else if (log.isDebugEnabled()) {
+          log.debug("send (" + String.format("%03d", activities.size()) + ") " + recipient);
+        }
+
+        try {
+          transmitter.send(
+              ISarosSession.SESSION_CONNECTION_ID,
+              recipient,
+              activityPacketExtension,
+              trafficClass);
+        } catch (IOException e) {
+          log.error("failed to sent activities: " + activities, e);
+
+          recipients.remove();
+          unregisterUser(recipient);
+          notifyTransmissionError(recipient);
+          continue;
+        }
+
+        entry.setValue(sequenceNumber + activitiesToMarshall.size());
+
+        if (payload != null && !detachedContents.isEmpty())
+          sendContents(recipient, detachedContents);
+      }
+
+      activitiesToMarshall.clear();
+      detachedContents.clear();
+      currentFileActivitySize = 0;
+    }
+  }
+
+  /** Sends the detached file contents of the activities that were sent to the given recipient. */
+  private void sendContents(final JID recipient, final List<FileActivity> contents) {
+    contentTransfer
+        .send(sarosSession.getLocalUser().getJID(), recipient, contents)
+        .whenComplete(
+            (result, exception) -> {
+              if (exception == null) return;
+
+              log.error("failed to send file contents to " + recipient, exception);
+
+              unregisterUser(recipient);
+              notifyTransmissionError(recipient);
+            });
+  }
+
+  /**
+   * Returns the traffic class of a packet containing the given activities. File contents are sent
+   * as bulk data, otherwise the activity with the highest priority determines the traffic class.
+   */
+  private static TrafficClass getTrafficClass(List<IActivity> activities) {
+    TrafficClass trafficClass = TrafficClass.CONTROL;
+
+    for (IActivity activity : activities) {
+      if (activity instanceof FileActivity && ((FileActivity) activity).hasContent())
+        return TrafficClass.BULK;
+
+      if (activity instanceof JupiterActivity
+          || activity instanceof ChecksumActivity
+          || activity instanceof TextEditActivity) {
+        trafficClass = TrafficClass.EDIT;
+
+      } else if (trafficClass != TrafficClass.EDIT
+          && (activity instanceof TextSelectionActivity
+              || activity instanceof ViewportActivity
+              || activity instanceof EditorActivity
+              || activity instanceof StartFollowingActivity
+              || activity instanceof StopFollowingActivity)) {
+        trafficClass = TrafficClass.AWARENESS;
       }
     }
+
+    return trafficClass;
   }
 
   private void receiveActivities(Packet activityPacket) {
@@ -541,7 +906,7 @@ public class ActivitySequencer implements Startable {
       return;
     }
 
-    JID from = new JID(activityPacket.getFrom());
+    JID from = JID.valueOf(activityPacket.getFrom());
 
     List<IActivity> activities = payload.getActivities();
 
@@ -552,7 +917,106 @@ public class ActivitySequencer implements Startable {
       log.debug("rcvd (" + String.format("%03d", activities.size()) + ") " + from);
     }
 
-    executeActivities(from, activities, payload.getSequenceNumber());
+    executeActivities(from, activities, payload.getSequenceNumber(), activities.size());
+  }
+
+  private void receiveBinaryActivities(Packet activityPacket) {
+
+    BinaryActivitiesExtension payload =
+        BinaryActivitiesExtension.PROVIDER.getPayload(activityPacket);
+
+    if (payload == null) {
+      log.warn("activity packet payload is corrupted");
+      return;
+    }
+
+    JID from = JID.valueOf(activityPacket.getFrom());
+
+    if (payload.getDetachedContentCount() > 0) {
+      receiveActivitiesWithDetachedContents(from, payload);
+      return;
+    }
+
+    List<IActivity> activities;
+
+    try {
+      activities = codec.decode(payload.getActivityDataInput(), null);
+    } catch (IOException e) {
+      log.error("failed to decode activities received from " + from, e);
+      unregisterUser(from);
+      notifyTransmissionError(from);
+      return;
+    }
+
+    if (log.isTraceEnabled()) {
+      log.trace(
+          "rcvd (" + String.format("%03d", activities.size()) + ") " + from + " -> " + activities);
+    } else if (log.isDebugEnabled()) {
+      log.debug("rcvd (" + String.format("%03d", activities.size()) + ") " + from);
+    }
+
+    executeActivities(from, activities, payload.getSequenceNumber(), payload.getActivityCount());
+  }
+
+  /**
+   * Decodes and executes the received activities once the file contents they refer to were
+   * received.
+   */
+  private void receiveActivitiesWithDetachedContents(
+      final JID from, final BinaryActivitiesExtension payload) {
+
+    final CompletableFuture<List<FileContentTransfer.Content>> contents =
+        contentTransfer != null
+            ? contentTransfer.receive(from, payload.getDetachedContentCount())
+            : null;
+
+    if (contents == null) {
+      log.error("received activities with detached file contents from " + from);
+      unregisterUser(from);
+      notifyTransmissionError(from);
+      return;
+    }
+
+    log.debug(
+        "rcvd ("
+            + String.format("%03d", payload.getActivityCount())
+            + ") "
+            + from
+            + ", waiting for "
+            + payload.getDetachedContentCount()
+            + " file content(s)");
+
+    final CompletableFuture<List<IActivity>> activities =
+        contents.thenApply(
+            receivedContents -> {
+              List<IActivity> decodedActivities = Collections.emptyList();
+
+              try {
+                decodedActivities =
+                    codec.decode(
+                        payload.getActivityDataInput(),
+                        FileContentTransfer.resolver(receivedContents));
+
+                return decodedActivities;
+              } catch (IOException e) {
+                throw new CompletionException(e);
+              } finally {
+                contentTransfer.releaseUnreferenced(receivedContents, decodedActivities);
+              }
+            });
+
+    executeActivities(from, activities, payload.getSequenceNumber(), payload.getActivityCount());
+  }
+
+  /**
+   * Returns whether activities can be sent by using the {@link BinaryActivityCodec}. This is only
+   * the case if it was negotiated with the recipient during the session negotiation.
+   *
+   * @param preferences the preferences of the recipient, may be <code>null</code>
+   */
+  private static boolean isBinaryCodecNegotiated(IPreferenceStore preferences) {
+    return preferences != null
+        && preferences.getInt(ActivityCodecHook.KEY_CODEC_VERSION) == BinaryActivityCodec.VERSION;
   }
 
   /**
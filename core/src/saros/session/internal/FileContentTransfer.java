@@ -0,0 +1,468 @@
+package saros.session.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import org.apache.log4j.Logger;
+import saros.activities.FileActivity;
+import saros.activities.IActivity;
+import saros.activities.codec.BinaryActivityCodec.DetachedContentResolver;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.filetransfer.XMPPFileTransfer;
+import saros.net.xmpp.filetransfer.XMPPFileTransferManager;
+import saros.net.xmpp.filetransfer.XMPPFileTransferRequest;
+import saros.util.NamedThreadFactory;
+
+/**
+ * Transfers the contents of {@linkplain FileActivity file activities} that were detached from the
+ * activities sent by the {@link ActivitySequencer} as separate file transfers.
+ *
+ * <p>The contents sent from one user to another are numbered consecutively. As the activities
+ * referring to these contents are received in order, the receiver knows the number of the transfer
+ * belonging to each reference without any further information. The transfer with the next number of
+ * every sender is always expected in advance, so a transfer request can never arrive before the
+ * receiver is ready for it.
+ *
+ * <p>Received contents are written to temporary files. Each file is referenced by the activity
+ * referring to it until this activity was executed and additionally by every pending forward of the
+ * activity to another user, see {@link #retain(FileActivity)} and {@link #release(FileActivity)}. A
+ * file is deleted as soon as all references to it are released, the remaining files are deleted
+ * when the transfer is stopped.
+ */
+class FileContentTransfer {
+
+  private static final Logger log = Logger.getLogger(FileContentTransfer.class);
+
+  private static final String TRANSFER_ID_PREFIX = "saros-activity-content/";
+
+  private static final long TRANSFER_CHECK_INTERVAL = 100;
+
+  /** A content that was received and written to a temporary file. */
+  static final class Content {
+    private final Path file;
+    private final long length;
+    private final int checksum;
+
+    private Content(Path file, long length, int checksum) {
+      this.file = file;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+  private static final class Peer {
+    /** number of the next content sent to the peer */
+    private int nextOutgoingNumber;
+
+    /** number of the next content a received activity refers to */
+    private int nextReferencedNumber;
+
+    /** number of the transfer expected next from the peer */
+    private int expectedNumber;
+
+    /** the transfer expected next from the peer */
+    private CompletableFuture<XMPPFileTransferRequest> expectedTransfer;
+
+    /** contents that were not yet both received and referenced */
+    private final Map<Integer, CompletableFuture<Content>> incomingContents = new HashMap<>();
+
+    private CompletableFuture<Content> getIncomingContent(int number) {
+      return incomingContents.computeIfAbsent(number, n -> new CompletableFuture<>());
+    }
+  }
+
+  private final XMPPFileTransferManager fileTransferManager;
+
+  private final String sessionID;
+
+  private final Map<JID, Peer> peers = new HashMap<>();
+
+  /** received contents and the number of their references that were not released yet */
+  private final Map<Path, Integer> contentReferences = new HashMap<>();
+
+  private ExecutorService sender;
+
+  private ExecutorService receiver;
+
+  private boolean stopped;
+
+  FileContentTransfer(XMPPFileTransferManager fileTransferManager, String sessionID) {
+    this.fileTransferManager = fileTransferManager;
+    this.sessionID = sessionID;
+  }
+
+  synchronized void start() {
+    sender = Executors.newSingleThreadExecutor(new NamedThreadFactory("content-sender", false));
+    receiver = Executors.newCachedThreadPool(new NamedThreadFactory("content-receiver", false));
+  }
+
+  /** Cancels all transfers that were not started yet and deletes all received contents. */
+  synchronized void stop() {
+    stopped = true;
+
+    for (JID jid : new ArrayList<>(peers.keySet())) removePeer(jid);
+
+    if (sender != null) sender.shutdownNow();
+
+    if (receiver != null) receiver.shutdownNow();
+
+    for (Path file : contentReferences.keySet()) delete(file);
+
+    contentReferences.clear();
+  }
+
+  /**
+   * Allows the transfer of contents from and to the given user.
+   *
+   * @param jid the JID of the user
+   */
+  synchronized void addPeer(JID jid) {
+    if (stopped || peers.containsKey(jid)) return;
+
+    peers.put(jid, new Peer());
+    expectTransfer(jid, 0);
+  }
+
+  /**
+   * Disallows the transfer of contents from and to the given user. Contents that were not received
+   * yet will never be available.
+   *
+   * @param jid the JID of the user
+   */
+  synchronized void removePeer(JID jid) {
+    Peer peer = peers.remove(jid);
+
+    if (peer == null) return;
+
+    if (peer.expectedTransfer != null) peer.expectedTransfer.cancel(false);
+
+    IOException canceled = new IOException("transfer of file contents from " + jid + " stopped");
+
+    for (CompletableFuture<Content> content : peer.incomingContents.values())
+      content.completeExceptionally(canceled);
+  }
+
+  /**
+   * Sends the contents of the given file activities to the given user. The contents are sent in the
+   * background in the same order as the contents of previous calls.
+   *
+   * @param localJID the JID of the local user
+   * @param recipient the JID of the recipient
+   * @param activities the file activities whose content should be sent
+   * @return a future that is completed once all contents were sent
+   */
+  synchronized CompletableFuture<Void> send(
+      JID localJID, JID recipient, List<FileActivity> activities) {
+
+    Peer peer = peers.get(recipient);
+
+    if (peer == null || stopped)
+      return failed(new IOException("transfer of file contents to " + recipient + " stopped"));
+
+    final int firstNumber = peer.nextOutgoingNumber;
+    peer.nextOutgoingNumber += activities.size();
+
+    final List<FileActivity> contents = new ArrayList<>(activities);
+
+    return CompletableFuture.runAsync(
+        () -> {
+          for (int i = 0; i < contents.size(); i++) {
+            String transferID = getTransferID(localJID, firstNumber + i);
+
+            try {
+              sendContent(recipient, transferID, contents.get(i));
+            } catch (IOException e) {
+              throw new CompletionException(e);
+            }
+          }
+        },
+        sender);
+  }
+
+  /**
+   * Returns the next contents received from the given user.
+   *
+   * @param jid the JID of the sender
+   * @param count the number of contents the received activities refer to
+   * @return a future that is completed with the contents in the order they were sent
+   */
+  synchronized CompletableFuture<List<Content>> receive(JID jid, int count) {
+    Peer peer = peers.get(jid);
+
+    if (peer == null)
+      return failed(new IOException("transfer of file contents from " + jid + " stopped"));
+
+    final List<CompletableFuture<Content>> contents = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      int number = peer.nextReferencedNumber++;
+
+      CompletableFuture<Content> content = peer.getIncomingContent(number);
+
+      if (number < peer.expectedNumber) peer.incomingContents.remove(number);
+
+      contents.add(content);
+    }
+
+    return CompletableFuture.allOf(contents.toArray(new CompletableFuture<?>[0]))
+        .handle(
+            (v, exception) -> {
+              List<Content> result = new ArrayList<>(contents.size());
+
+              for (CompletableFuture<Content> content : contents)
+                if (!content.isCompletedExceptionally()) result.add(content.join());
+
+              if (exception == null) return result;
+
+              // no activity will ever refer to the contents that were received
+              releaseUnreferenced(result, Collections.emptyList());
+
+              throw new CompletionException(exception);
+            });
+  }
+
+  /**
+   * Releases the given received contents that none of the given activities refers to, e.g. because
+   * the activities referring to them could not be decoded.
+   *
+   * @param contents the contents returned by {@link #receive(JID, int)}
+   * @param activities the activities decoded with these contents
+   */
+  void releaseUnreferenced(List<Content> contents, List<IActivity> activities) {
+    Set<Path> referencedFiles = new HashSet<>();
+
+    for (IActivity activity : activities)
+      if (activity instanceof FileActivity)
+        referencedFiles.add(((FileActivity) activity).getContentFile());
+
+    for (Content content : contents)
+      if (!referencedFiles.contains(content.file)) release(content.file);
+  }
+
+  /**
+   * Adds a reference to the received content of the given activity, e.g. because the activity is
+   * forwarded to another user. Does nothing if the activity does not refer to a received content.
+   *
+   * @param activity the activity
+   */
+  void retain(IActivity activity) {
+    if (!(activity instanceof FileActivity)) return;
+
+    Path file = ((FileActivity) activity).getContentFile();
+
+    if (file == null) return;
+
+    synchronized (this) {
+      contentReferences.computeIfPresent(file, (f, references) -> references + 1);
+    }
+  }
+
+  /**
+   * Releases a reference to the received content of the given activity, e.g. because the activity
+   * was executed. The content is deleted once all of its references are released. Does nothing if
+   * the activity does not refer to a received content.
+   *
+   * @param activity the activity
+   */
+  void release(IActivity activity) {
+    if (!(activity instanceof FileActivity)) return;
+
+    Path file = ((FileActivity) activity).getContentFile();
+
+    if (file != null) release(file);
+  }
+
+  /**
+   * Releases a reference to the received contents of the given activities once all contents passed
+   * to {@link #send(JID, JID, List)} so far were sent.
+   *
+   * @param activities the activities that were forwarded
+   */
+  void releaseWhenSent(final List<IActivity> activities) {
+    final Runnable release =
+        () -> {
+          for (IActivity activity : activities) release(activity);
+        };
+
+    synchronized (this) {
+      // all contents are deleted when the transfer is stopped
+      if (stopped) return;
+
+      if (sender != null) sender.execute(release);
+      else release.run();
+    }
+  }
+
+  private void release(Path file) {
+    synchronized (this) {
+      Integer references = contentReferences.get(file);
+
+      if (references == null) return;
+
+      if (references > 1) {
+        contentReferences.put(file, references - 1);
+        return;
+      }
+
+      contentReferences.remove(file);
+    }
+
+    delete(file);
+  }
+
+  /** Creates the temporary file of a received content, which is referenced once. */
+  Path createContentFile() throws IOException {
+    Path file = Files.createTempFile("saros-content-", null);
+
+    synchronized (this) {
+      contentReferences.put(file, 1);
+    }
+
+    return file;
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("could not delete received file content " + file, e);
+    }
+  }
+
+  /**
+   * Returns a resolver that provides the given contents in order and verifies their length and
+   * checksum.
+   *
+   * @param contents the contents returned by {@link #receive(JID, int)}
+   * @return the resolver
+   */
+  static DetachedContentResolver resolver(final List<Content> contents) {
+    return new DetachedContentResolver() {
+      private int index;
+
+      @Override
+      public Path resolve(long length, int checksum) throws IOException {
+        if (index >= contents.size())
+          throw new ProtocolException("activities refer to more file contents than were received");
+
+        Content content = contents.get(index++);
+
+        if (content.length != length || content.checksum != checksum)
+          throw new ProtocolException(
+              "received file content does not match, expected "
+                  + length
+                  + " byte(s) with checksum "
+                  + checksum
+                  + ", received "
+                  + content.length
+                  + " byte(s) with checksum "
+                  + content.checksum);
+
+        return content.file;
+      }
+    };
+  }
+
+  private void expectTransfer(final JID jid, final int number) {
+    Peer peer = peers.get(jid);
+
+    peer.expectedNumber = number;
+    peer.expectedTransfer =
+        fileTransferManager.addExpectedTransferRequest(getTransferID(jid, number));
+
+    peer.expectedTransfer.thenAcceptAsync(
+        request -> receiveContent(jid, number, request), receiver);
+  }
+
+  private void receiveContent(JID jid, int number, XMPPFileTransferRequest request) {
+    final CompletableFuture<Content> content;
+
+    synchronized (this) {
+      Peer peer = peers.get(jid);
+
+      if (peer == null || stopped) {
+        request.reject();
+        return;
+      }
+
+      expectTransfer(jid, number + 1);
+
+      content = peer.getIncomingContent(number);
+
+      if (number < peer.nextReferencedNumber) peer.incomingContents.remove(number);
+    }
+
+    Path file = null;
+
+    try {
+      file = createContentFile();
+
+      CRC32 checksum = new CRC32();
+
+      long length;
+
+      try (InputStream in = new CheckedInputStream(request.acceptStream(), checksum)) {
+        length = Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      // the transfer from this user was stopped in the meantime
+      if (!content.complete(new Content(file, length, (int) checksum.getValue()))) release(file);
+    } catch (IOException | RuntimeException e) {
+      log.error("failed to receive file content from " + jid, e);
+      content.completeExceptionally(e);
+
+      if (file != null) release(file);
+    }
+  }
+
+  private void sendContent(JID recipient, String transferID, FileActivity activity)
+      throws IOException {
+
+    log.debug("sending content of " + activity + " to " + recipient);
+
+    try (InputStream in = activity.getContentStream()) {
+      XMPPFileTransfer transfer = fileTransferManager.streamSendStart(recipient, transferID, in);
+
+      while (!transfer.isDone()) {
+        try {
+          Thread.sleep(TRANSFER_CHECK_INTERVAL);
+        } catch (InterruptedException e) {
+          transfer.cancel();
+          Thread.currentThread().interrupt();
+          throw new IOException("interrupted while sending file content to " + recipient);
+        }
+      }
+
+      if (transfer.getStatus() != XMPPFileTransfer.Status.COMPLETED)
+        throw transfer
+            .getException()
+            .orElse(new IOException("transfer of file content to " + recipient + " was canceled"));
+    }
+  }
+
+  private String getTransferID(JID jid, int number) {
+    return TRANSFER_ID_PREFIX + sessionID + "/" + jid + "/" + number;
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable e) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(e);
+    return future;
+  }
+}
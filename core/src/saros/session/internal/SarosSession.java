@@ -137,6 +137,15 @@ public final class SarosSession implements ISarosSession {
 
         @Override
         public void execute(IActivity activity) {
+          try {
+            executeLocally(activity);
+          } finally {
+            // the received file content is not needed anymore after the execution
+            activitySequencer.releaseContent(activity);
+          }
+        }
+
+        private void executeLocally(IActivity activity) {
           // Filters out resource activities for reference points whose activity execution is
           // disabled
           if (activity instanceof IResourceActivity) {
@@ -7,9 +7,12 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
   saros.account.TestSuite.class,
   saros.activities.TestSuite.class,
+  saros.activities.codec.TestSuite.class,
   saros.communication.extensions.TestSuite.class,
   saros.concurrent.TestSuite.class,
+  saros.concurrent.jupiter.internal.TestSuite.class,
   saros.concurrent.jupiter.test.puzzles.TestSuite.class,
+  saros.concurrent.watchdog.TestSuite.class,
   saros.editor.colorstorage.TestSuite.class,
   saros.editor.remote.TestSuite.class,
   saros.editor.text.TestSuite.class,
@@ -17,6 +20,7 @@ import org.junit.runners.Suite;
   saros.misc.xstream.TestSuite.class,
   saros.monitoring.TestSuite.class,
   saros.negotiation.TestSuite.class,
+  saros.negotiation.delta.TestSuite.class,
   saros.net.TestSuite.class,
   saros.net.internal.TestSuite.class,
   saros.preferences.TestSuite.class,
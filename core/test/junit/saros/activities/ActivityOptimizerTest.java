@@ -1,7 +1,10 @@
 package saros.activities;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static saros.util.LineSeparatorNormalizationUtil.NORMALIZED_LINE_SEPARATOR;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -134,6 +137,83 @@ public class ActivityOptimizerTest {
     assertRange(23, 23, optimized, nop);
   }
 
+  @Test
+  public void testCombineTyping() {
+    TextEditActivity combined = combine(edit(2, 3, "a", ""), edit(2, 4, "b", ""));
+    combined = combine(combined, edit(2, 5, NORMALIZED_LINE_SEPARATOR, ""));
+    combined = combine(combined, edit(3, 0, "c", ""));
+
+    assertEquals(edit(2, 3, "ab" + NORMALIZED_LINE_SEPARATOR + "c", ""), combined);
+  }
+
+  @Test
+  public void testCombineBackspace() {
+    TextEditActivity combined = combine(edit(3, 1, "", "b"), edit(3, 0, "", "a"));
+    combined = combine(combined, edit(2, 5, "", NORMALIZED_LINE_SEPARATOR));
+
+    assertEquals(edit(2, 5, "", NORMALIZED_LINE_SEPARATOR + "ab"), combined);
+  }
+
+  @Test
+  public void testCombineForwardDelete() {
+    TextEditActivity combined = combine(edit(2, 5, "", "a"), edit(2, 5, "", "b"));
+
+    assertEquals(edit(2, 5, "", "ab"), combined);
+  }
+
+  @Test
+  public void testCombineCorrection() {
+    // type "abc" replacing "x", remove "c" and "b" and type "d"
+    TextEditActivity combined = combine(edit(1, 0, "abc", "x"), edit(1, 2, "", "c"));
+    combined = combine(combined, edit(1, 1, "", "b"));
+    combined = combine(combined, edit(1, 1, "d", ""));
+
+    assertEquals(edit(1, 0, "ad", "x"), combined);
+
+    // remove the remaining text and the character before it
+    combined = combine(combined, edit(1, 0, "", "ad"));
+    combined = combine(combined, edit(0, 3, "", NORMALIZED_LINE_SEPARATOR));
+
+    assertEquals(edit(0, 3, "", NORMALIZED_LINE_SEPARATOR + "x"), combined);
+  }
+
+  @Test
+  public void testCombineNotAdjacent() {
+    assertNull(ActivityOptimizer.combine(edit(1, 0, "a", ""), edit(1, 2, "b", "")));
+    assertNull(ActivityOptimizer.combine(edit(1, 2, "", "a"), edit(1, 0, "", "b")));
+    assertNull(ActivityOptimizer.combine(edit(1, 0, "ab", ""), edit(1, 1, "", "bc")));
+  }
+
+  @Test
+  public void testCombineDifferentFilesAndUsers() {
+    TextEditActivity edit = edit(1, 0, "a", "");
+
+    assertNull(
+        ActivityOptimizer.combine(
+            edit,
+            TextEditActivity.buildTextEditActivity(
+                alice, new TextPosition(1, 1), "b", "", fooBarFile)));
+
+    assertNull(
+        ActivityOptimizer.combine(
+            edit,
+            TextEditActivity.buildTextEditActivity(
+                bob, new TextPosition(1, 1), "b", "", fooFooFile)));
+  }
+
+  private TextEditActivity edit(int line, int offset, String newText, String replacedText) {
+    return TextEditActivity.buildTextEditActivity(
+        alice, new TextPosition(line, offset), newText, replacedText, fooFooFile);
+  }
+
+  private static TextEditActivity combine(TextEditActivity first, TextEditActivity second) {
+    TextEditActivity combined = ActivityOptimizer.combine(first, second);
+
+    assertNotNull("text edits were not combined", combined);
+
+    return combined;
+  }
+
   private void assertRange(int l, int h, List<IActivity> activities, IActivity activity) {
     for (int i = l; i <= h; i++)
       assertSame("optimization resulted in wrong activity order", activity, activities.get(i));
@@ -0,0 +1,505 @@
+package saros.activities.codec;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.easymock.EasyMock;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+import saros.activities.ChangeColorActivity;
+import saros.activities.ChecksumActivity;
+import saros.activities.ChecksumErrorActivity;
+import saros.activities.DeletionAcknowledgmentActivity;
+import saros.activities.EditorActivity;
+import saros.activities.FileActivity;
+import saros.activities.FolderCreatedActivity;
+import saros.activities.FolderDeletedActivity;
+import saros.activities.IActivity;
+import saros.activities.IActivityReceiver;
+import saros.activities.JupiterActivity;
+import saros.activities.NOPActivity;
+import saros.activities.PermissionActivity;
+import saros.activities.ProgressActivity;
+import saros.activities.ProgressActivity.ProgressAction;
+import saros.activities.StartFollowingActivity;
+import saros.activities.StopActivity;
+import saros.activities.StopFollowingActivity;
+import saros.activities.TargetedFileActivity;
+import saros.activities.TextEditActivity;
+import saros.activities.TextRecoveryActivity;
+import saros.activities.TextSelectionActivity;
+import saros.activities.ViewportActivity;
+import saros.communication.extensions.BinaryActivitiesExtension;
+import saros.concurrent.jupiter.internal.JupiterVectorTime;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.SplitOperation;
+import saros.concurrent.watchdog.DocumentSignature;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextSelection;
+import saros.filesystem.IFile;
+import saros.filesystem.IFolder;
+import saros.filesystem.IReferencePoint;
+import saros.filesystem.IResource.Type;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.net.xmpp.JID;
+import saros.session.ISarosSession;
+import saros.session.User;
+import saros.session.User.Permission;
+
+public class BinaryActivityCodecTest {
+
+  private IFile file;
+  private IFolder folder;
+  private IReferencePoint referencePoint;
+
+  private User alice;
+  private User bob;
+
+  private ISarosSession session;
+
+  @Before
+  public void setUp() {
+    Path filePath = Paths.get("foo/src/Main.java");
+    Path folderPath = Paths.get("foo/bar");
+
+    referencePoint = EasyMock.createNiceMock(IReferencePoint.class);
+    file = EasyMock.createNiceMock(IFile.class);
+    folder = EasyMock.createNiceMock(IFolder.class);
+
+    expect(referencePoint.getFile(filePath)).andStubReturn(file);
+    expect(referencePoint.getFolder(folderPath)).andStubReturn(folder);
+
+    expect(file.getReferencePoint()).andStubReturn(referencePoint);
+    expect(file.getReferencePointRelativePath()).andStubReturn(filePath);
+    expect(file.getType()).andStubReturn(Type.FILE);
+
+    expect(folder.getReferencePoint()).andStubReturn(referencePoint);
+    expect(folder.getReferencePointRelativePath()).andStubReturn(folderPath);
+    expect(folder.getType()).andStubReturn(Type.FOLDER);
+
+    alice = new User(new JID("alice@saros.org/Saros"), true, true, null);
+    bob = new User(new JID("bob@saros.org/Saros"), false, false, null);
+
+    session = EasyMock.createNiceMock(ISarosSession.class);
+    expect(session.getReferencePointId(referencePoint)).andStubReturn("ABC");
+    expect(session.getReferencePoint("ABC")).andStubReturn(referencePoint);
+    expect(session.getUser(alice.getJID())).andStubReturn(alice);
+    expect(session.getUser(bob.getJID())).andStubReturn(bob);
+
+    EasyMock.replay(referencePoint, file, folder, session);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    for (EditorActivity.Type type : EditorActivity.Type.values())
+      activities.add(new EditorActivity(alice, type, file));
+
+    activities.add(new EditorActivity(alice, EditorActivity.Type.ACTIVATED, null));
+    activities.add(
+        new TextEditActivity(alice, new TextPosition(3, 4), 1, 2, "a\nbc", 0, 1, "x", file));
+    activities.add(
+        new TextSelectionActivity(
+            bob, new TextSelection(new TextPosition(1, 0), new TextPosition(2, 5)), file));
+    activities.add(
+        new TextSelectionActivity(
+            bob, new TextSelection(new TextPosition(1, 0), new TextPosition(2, 5), true), file));
+    activities.add(new TextSelectionActivity(bob, TextSelection.EMPTY_SELECTION, file));
+    activities.add(new ViewportActivity(bob, 10, 42, file));
+    activities.add(new ChecksumActivity(alice, file, -17L, 1024L, new JupiterVectorTime(5, 7)));
+    activities.add(new ChecksumActivity(alice, file, 17L, 0L, null));
+    activities.add(new ChecksumActivity(alice, file, 17L, 3L, ChecksumAlgorithm.MURMUR3_128, null));
+    activities.add(new FolderCreatedActivity(bob, folder));
+    activities.add(new FolderDeletedActivity(bob, folder));
+    activities.add(new DeletionAcknowledgmentActivity(bob, file));
+    activities.add(new PermissionActivity(alice, bob, Permission.READONLY_ACCESS));
+    activities.add(new ChangeColorActivity(alice, bob, alice, 3));
+    activities.add(new NOPActivity(alice, bob, -42));
+    activities.add(
+        new ProgressActivity(alice, bob, "progress", 3, 10, "task", ProgressAction.UPDATE));
+    activities.add(new ProgressActivity(alice, bob, null, 0, 0, null, ProgressAction.DONE));
+    activities.add(new StartFollowingActivity(bob, alice));
+    activities.add(
+        new StopActivity(
+            alice, alice, bob, StopActivity.Type.LOCKREQUEST, StopActivity.State.INITIATED, "42"));
+    activities.add(
+        new StopActivity(
+            bob,
+            alice,
+            bob,
+            StopActivity.Type.UNLOCKREQUEST,
+            StopActivity.State.ACKNOWLEDGED,
+            null));
+    activities.add(new StopFollowingActivity(bob));
+    activities.add(
+        new ChecksumErrorActivity(
+            bob,
+            alice,
+            Arrays.asList(file, file),
+            Arrays.asList(new DocumentSignature(new int[] {3, 32}, new long[] {-1L, 42L}), null),
+            "recovery"));
+    activities.add(new ChecksumErrorActivity(alice, bob, null, "recovery"));
+    activities.add(
+        new TextRecoveryActivity(
+            alice, bob, file, new int[] {7, 2}, new int[] {1, 0}, new String[] {"a\n", ""}));
+    activities.add(
+        new FileActivity(
+            alice,
+            FileActivity.Type.CREATED,
+            FileActivity.Purpose.ACTIVITY,
+            file,
+            null,
+            new byte[] {1, 2, 3},
+            "UTF-8"));
+    activities.add(
+        new FileActivity(
+            bob, FileActivity.Type.MOVED, FileActivity.Purpose.ACTIVITY, file, file, null, null));
+    activities.add(
+        new TargetedFileActivity(
+            alice,
+            bob,
+            FileActivity.Type.CREATED,
+            file,
+            null,
+            new byte[] {4, 5},
+            "ISO-8859-1",
+            FileActivity.Purpose.RECOVERY));
+    activities.add(
+        new TargetedFileActivity(
+            alice,
+            bob,
+            FileActivity.Type.REMOVED,
+            file,
+            null,
+            null,
+            null,
+            FileActivity.Purpose.RECOVERY));
+
+    activities.add(
+        new JupiterActivity(
+            new JupiterVectorTime(1, 2),
+            new SplitOperation(
+                new DeleteOperation(new TextPosition(0, 1), 0, 3, "abc"),
+                new InsertOperation(new TextPosition(0, 1), 0, 2, "de", new TextPosition(0, 0))),
+            alice,
+            file));
+
+    BinaryActivityCodec codec = new BinaryActivityCodec(session);
+
+    List<IActivity> decoded = codec.decode(codec.encode(activities));
+
+    assertEquals(activities.size(), decoded.size());
+
+    /* not every activity class implements equals, so compare all fields */
+    for (int i = 0; i < activities.size(); i++) {
+      IActivity expected = activities.get(i);
+      IActivity actual = decoded.get(i);
+
+      assertEquals(expected.getClass(), actual.getClass());
+      assertTrue(
+          "decoded activity differs: " + expected + " != " + actual,
+          EqualsBuilder.reflectionEquals(expected, actual, false));
+    }
+
+    /* every activity that can be dispatched must be covered by this test */
+    Set<Class<?>> testedClasses = new HashSet<Class<?>>();
+
+    for (IActivity activity : activities) testedClasses.add(activity.getClass());
+
+    for (Method method : IActivityReceiver.class.getMethods()) {
+      if (!method.getName().equals("receive")) continue;
+
+      Class<?> activityClass = method.getParameterTypes()[0];
+
+      assertTrue(
+          activityClass.getSimpleName() + " is not covered by the round trip",
+          testedClasses.contains(activityClass));
+    }
+  }
+
+  @Test
+  public void testUnresolvableActivitiesAreDropped() throws IOException {
+    List<IActivity> activities =
+        Arrays.<IActivity>asList(
+            new EditorActivity(alice, EditorActivity.Type.ACTIVATED, file),
+            new StopFollowingActivity(bob));
+
+    byte[] data = new BinaryActivityCodec(session).encode(activities);
+
+    ISarosSession receiverSession = EasyMock.createNiceMock(ISarosSession.class);
+    expect(receiverSession.getReferencePoint("ABC")).andStubReturn(referencePoint);
+    expect(receiverSession.getUser(bob.getJID())).andStubReturn(bob);
+    EasyMock.replay(receiverSession);
+
+    List<IActivity> decoded = new BinaryActivityCodec(receiverSession).decode(data);
+
+    assertEquals(Collections.singletonList(activities.get(1)), decoded);
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnsharedResourceIsRejected() throws IOException {
+    IReferencePoint unshared = EasyMock.createNiceMock(IReferencePoint.class);
+    IFile unsharedFile = EasyMock.createNiceMock(IFile.class);
+    expect(unsharedFile.getReferencePoint()).andStubReturn(unshared);
+    expect(unsharedFile.getReferencePointRelativePath()).andStubReturn(Paths.get("a"));
+    expect(unsharedFile.getType()).andStubReturn(Type.FILE);
+    EasyMock.replay(unshared, unsharedFile);
+
+    new BinaryActivityCodec(session)
+        .encode(
+            Collections.<IActivity>singletonList(
+                new EditorActivity(alice, EditorActivity.Type.ACTIVATED, unsharedFile)));
+  }
+
+  @Test
+  public void testDetachedContentRoundTrip() throws IOException {
+    final byte[] content = new byte[] {1, 2, 3, 4};
+
+    FileActivity large =
+        new FileActivity(
+            alice,
+            FileActivity.Type.CREATED,
+            FileActivity.Purpose.ACTIVITY,
+            file,
+            null,
+            content,
+            "UTF-8");
+
+    FileActivity small =
+        new FileActivity(
+            bob,
+            FileActivity.Type.CREATED,
+            FileActivity.Purpose.ACTIVITY,
+            file,
+            null,
+            new byte[] {5},
+            "UTF-8");
+
+    BinaryActivityCodec codec = new BinaryActivityCodec(session);
+
+    List<FileActivity> detachedContents = new ArrayList<FileActivity>();
+
+    byte[] data = codec.encode(Arrays.<IActivity>asList(large, small), 2, detachedContents);
+
+    assertEquals(Collections.singletonList(large), detachedContents);
+
+    final Path contentFile = Files.createTempFile("saros-test-content", null);
+
+    try {
+      Files.write(contentFile, content);
+
+      List<IActivity> decoded =
+          codec.decode(
+              data,
+              (length, checksum) -> {
+                assertEquals(content.length, length);
+                assertEquals(BinaryActivityCodec.getContentChecksum(large), checksum);
+                return contentFile;
+              });
+
+      assertEquals(2, decoded.size());
+      assertEquals(small, decoded.get(1));
+
+      FileActivity decodedLarge = (FileActivity) decoded.get(0);
+
+      assertEquals(large.getSource(), decodedLarge.getSource());
+      assertEquals(large.getResource(), decodedLarge.getResource());
+      assertEquals(large.getEncoding(), decodedLarge.getEncoding());
+      assertEquals(content.length, decodedLarge.getContentLength());
+      assertArrayEquals(content, decodedLarge.getContent());
+    } finally {
+      Files.delete(contentFile);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testDetachedContentWithoutResolverIsRejected() throws IOException {
+    FileActivity activity =
+        new FileActivity(
+            alice,
+            FileActivity.Type.CREATED,
+            FileActivity.Purpose.ACTIVITY,
+            file,
+            null,
+            new byte[] {1, 2, 3},
+            "UTF-8");
+
+    BinaryActivityCodec codec = new BinaryActivityCodec(session);
+
+    byte[] data =
+        codec.encode(
+            Collections.<IActivity>singletonList(activity), 0, new ArrayList<FileActivity>());
+
+    codec.decode(data);
+  }
+
+  @Test
+  public void testExtensionRoundTrip() throws Exception {
+    byte[] data = new byte[] {1, 2, 3, (byte) 0xFF};
+
+    BinaryActivitiesExtension extension = new BinaryActivitiesExtension("4711", data, 3, 1000);
+
+    BinaryActivitiesExtension fromBytes =
+        (BinaryActivitiesExtension)
+            BinaryActivitiesExtension.PROVIDER.parseExtension(extension.toByteArray());
+
+    assertExtensionEquals(extension, fromBytes);
+
+    XmlPullParser parser = new MXParser();
+    parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+    parser.setInput(new StringReader(extension.toXML()));
+    parser.next();
+
+    assertTrue(parser.getName().equals(BinaryActivitiesExtension.ELEMENT_NAME));
+
+    BinaryActivitiesExtension fromXML =
+        (BinaryActivitiesExtension) BinaryActivitiesExtension.PROVIDER.parseExtension(parser);
+
+    assertExtensionEquals(extension, fromXML);
+  }
+
+  @Test
+  public void testSharedCompressedPayloadRoundTrip() throws Exception {
+    byte[] data = new byte[4096];
+
+    for (int i = 0; i < data.length; i++) data[i] = (byte) (i % 16);
+
+    BinaryActivitiesExtension.Payload payload =
+        BinaryActivitiesExtension.Payload.create(data, 42, 2);
+
+    BinaryActivitiesExtension first = new BinaryActivitiesExtension("4711", payload, 0);
+    BinaryActivitiesExtension second = new BinaryActivitiesExtension("4711", payload, 1000);
+
+    assertTrue("payload is not compressed", first.toByteArray().length < data.length);
+
+    for (BinaryActivitiesExtension extension : Arrays.asList(first, second)) {
+      BinaryActivitiesExtension fromBytes =
+          (BinaryActivitiesExtension)
+              BinaryActivitiesExtension.PROVIDER.parseExtension(extension.toByteArray());
+
+      assertExtensionEquals(extension, fromBytes);
+      assertArrayEquals(data, fromBytes.getActivityData());
+    }
+  }
+
+  @Test
+  public void testParseExtensionFromRange() throws Exception {
+    byte[] data = new byte[1000];
+
+    for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+
+    BinaryActivitiesExtension extension = new BinaryActivitiesExtension("4711", data, 3, 17);
+
+    byte[] bytes = extension.toByteArray();
+    byte[] packet = new byte[bytes.length + 20];
+
+    System.arraycopy(bytes, 0, packet, 10, bytes.length);
+
+    BinaryActivitiesExtension fromPacket =
+        (BinaryActivitiesExtension)
+            BinaryActivitiesExtension.PROVIDER.parseExtension(packet, 10, bytes.length);
+
+    assertExtensionEquals(extension, fromPacket);
+    assertArrayEquals(bytes, fromPacket.toByteArray());
+  }
+
+  @Test
+  public void testReceivedPayloadIsNotCopied() throws Exception {
+    final int payloadSize = 64 * 1024;
+
+    byte[] bytes = new BinaryActivitiesExtension("4711", new byte[payloadSize], 1, 0).toByteArray();
+
+    assertReceiveAllocations(bytes, payloadSize);
+  }
+
+  @Test
+  public void testReceivedCompressedPayloadIsNotCopied() throws Exception {
+    final int payloadSize = 64 * 1024;
+
+    byte[] data = new byte[payloadSize];
+
+    for (int i = 0; i < data.length; i++) data[i] = (byte) (i % 64);
+
+    BinaryActivitiesExtension.Payload payload =
+        BinaryActivitiesExtension.Payload.create(data, 1, 0);
+
+    byte[] bytes = new BinaryActivitiesExtension("4711", payload, 0).toByteArray();
+
+    assertTrue("payload is not compressed", bytes.length < payloadSize / 4);
+
+    assertReceiveAllocations(bytes, payloadSize);
+
+    BinaryActivitiesExtension extension =
+        (BinaryActivitiesExtension) BinaryActivitiesExtension.PROVIDER.parseExtension(bytes);
+
+    assertArrayEquals(data, extension.getActivityData());
+  }
+
+  /**
+   * Asserts that parsing the given extension data and reading its payload allocates only a fraction
+   * of the payload size in the steady state.
+   */
+  private static void assertReceiveAllocations(byte[] bytes, int payloadSize) throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    Assume.assumeTrue(
+        bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+    final int runs = 100;
+
+    long allocated = Long.MAX_VALUE;
+
+    /* the first rounds include the warm up of the JIT */
+    for (int round = 0; round < 5; round++) {
+      long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+      for (int i = 0; i < runs; i++) {
+        BinaryActivitiesExtension extension =
+            (BinaryActivitiesExtension) BinaryActivitiesExtension.PROVIDER.parseExtension(bytes);
+
+        extension.getActivityDataInput();
+      }
+
+      allocated =
+          Math.min(
+              allocated, threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start);
+    }
+
+    assertTrue(
+        "receiving a payload of " + payloadSize + " bytes allocated " + allocated / runs + " bytes",
+        allocated / runs < payloadSize / 16);
+  }
+
+  private static void assertExtensionEquals(
+      BinaryActivitiesExtension expected, BinaryActivitiesExtension actual) throws IOException {
+    assertEquals(expected.getSessionID(), actual.getSessionID());
+    assertEquals(expected.getSequenceNumber(), actual.getSequenceNumber());
+    assertEquals(expected.getActivityCount(), actual.getActivityCount());
+    assertEquals(expected.getDetachedContentCount(), actual.getDetachedContentCount());
+    assertArrayEquals(expected.getActivityData(), actual.getActivityData());
+  }
+}
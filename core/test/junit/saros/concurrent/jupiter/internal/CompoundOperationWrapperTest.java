@@ -0,0 +1,175 @@
+package saros.concurrent.jupiter.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static saros.test.util.OperationHelper.D;
+import static saros.test.util.OperationHelper.EOL;
+import static saros.test.util.OperationHelper.I;
+
+import java.util.List;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.Jupiter.OperationWrapper;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.test.util.JupiterTestCase;
+import saros.editor.text.TextPosition;
+import saros.filesystem.IFile;
+import saros.session.User;
+
+/**
+ * Tests the combination of the unacknowledged operations of the {@link Jupiter} algorithm.
+ *
+ * @see CompoundOperationWrapper
+ */
+public class CompoundOperationWrapperTest {
+
+  private IFile file;
+
+  private User source = JupiterTestCase.createUser("source");
+
+  private Jupiter jupiter;
+
+  @Before
+  public void setUp() {
+    file = EasyMock.createNiceMock(IFile.class);
+    jupiter = new Jupiter(true);
+  }
+
+  @Test
+  public void testTypedTextIsCombined() {
+    generate(I(0, 3, "a"), I(0, 4, "b"), I(0, 5, EOL), I(1, 0, "c"));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    assertEquals(4, compound.size());
+    assertEquals(0, compound.getLocalOperationCount());
+    assertEquals(3, compound.getLastLocalOperationCount());
+
+    InsertOperation op = (InsertOperation) compound.getOperation();
+
+    assertEquals(new TextPosition(0, 3), op.getStartPosition());
+    assertEquals(new TextPosition(1, 1), op.getEndPosition());
+    assertEquals("ab" + EOL + "c", op.getText());
+
+    assertComponents(compound, I(0, 3, "a"), I(0, 4, "b"), I(0, 5, EOL), I(1, 0, "c"));
+  }
+
+  @Test
+  public void testBackspaceIsCombined() {
+    generate(D(1, 2, "c"), D(1, 1, "b"), D(1, 0, "a"), D(0, 5, EOL));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    DeleteOperation op = (DeleteOperation) compound.getOperation();
+
+    assertEquals(new TextPosition(0, 5), op.getStartPosition());
+    assertEquals(new TextPosition(1, 3), op.getEndPosition());
+    assertEquals(EOL + "abc", op.getText());
+
+    assertComponents(compound, D(1, 2, "c"), D(1, 1, "b"), D(1, 0, "a"), D(0, 5, EOL));
+  }
+
+  @Test
+  public void testForwardDeleteIsCombined() {
+    generate(D(0, 5, "a"), D(0, 5, EOL), D(0, 5, "b"));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    DeleteOperation op = (DeleteOperation) compound.getOperation();
+
+    assertEquals(new TextPosition(0, 5), op.getStartPosition());
+    assertEquals(new TextPosition(1, 1), op.getEndPosition());
+    assertEquals("a" + EOL + "b", op.getText());
+
+    assertComponents(compound, D(0, 5, "a"), D(0, 5, EOL), D(0, 5, "b"));
+  }
+
+  @Test
+  public void testMixedDeleteIsCombined() {
+    generate(D(0, 5, "c"), D(0, 4, "b"), D(0, 4, "d"), D(0, 3, "a"));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    assertEquals("abcd", ((DeleteOperation) compound.getOperation()).getText());
+
+    assertComponents(compound, D(0, 5, "c"), D(0, 4, "b"), D(0, 4, "d"), D(0, 3, "a"));
+  }
+
+  @Test
+  public void testNonAdjacentOperationsAreNotCombined() {
+    generate(I(0, 3, "a"), I(0, 3, "b"), D(0, 0, "x"), I(0, 7, "c"));
+
+    assertEquals(4, jupiter.ackJupiterActivityList.size());
+  }
+
+  @Test
+  public void testShiftedCompoundIsDecomposedAtNewPosition() {
+    generate(I(1, 3, "a"), I(1, 4, "b"), I(1, 5, "c"));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    OperationWrapper shifted =
+        compound.withOperation(
+            new InsertOperation(new TextPosition(2, 0), 0, 3, "abc", new TextPosition(1, 3)));
+
+    assertTrue(shifted instanceof CompoundOperationWrapper);
+
+    assertComponents(
+        (CompoundOperationWrapper) shifted,
+        I(2, 0, "a", 1, 3),
+        I(2, 1, "b", 1, 4),
+        I(2, 2, "c", 1, 5));
+  }
+
+  @Test
+  public void testSeparation() {
+    generate(D(0, 4, "b"), D(0, 3, "a"), D(0, 3, "c"));
+
+    CompoundOperationWrapper compound = getSingleCompound();
+
+    assertTrue(compound.isSeparatedFrom(new TextPosition(0, 2)));
+    assertTrue(compound.isSeparatedFrom(new TextPosition(0, 7)));
+    assertTrue(compound.isSeparatedFrom(I(0, 2, "x")));
+    assertTrue(compound.isSeparatedFrom(D(0, 7, "x")));
+
+    assertTrue(!compound.isSeparatedFrom(new TextPosition(0, 3)));
+    assertTrue(!compound.isSeparatedFrom(new TextPosition(0, 6)));
+    assertTrue(!compound.isSeparatedFrom(I(0, 6, "x")));
+    assertTrue(!compound.isSeparatedFrom(D(0, 2, "x")));
+  }
+
+  @Test
+  public void testCompoundSizeIsLimited() {
+    for (int i = 0; i <= CompoundOperationWrapper.MAX_SIZE; i++) generate(I(0, i, "a"));
+
+    assertEquals(2, jupiter.ackJupiterActivityList.size());
+    assertEquals(
+        CompoundOperationWrapper.MAX_SIZE,
+        ((CompoundOperationWrapper) jupiter.ackJupiterActivityList.get(0)).size());
+  }
+
+  private void generate(Operation... ops) {
+    for (Operation op : ops) jupiter.generateJupiterActivity(op, source, file);
+  }
+
+  private CompoundOperationWrapper getSingleCompound() {
+    assertEquals(1, jupiter.ackJupiterActivityList.size());
+
+    return (CompoundOperationWrapper) jupiter.ackJupiterActivityList.get(0);
+  }
+
+  private static void assertComponents(CompoundOperationWrapper compound, Operation... expected) {
+    List<OperationWrapper> components = compound.decompose();
+
+    assertEquals(expected.length, components.size());
+
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], components.get(i).getOperation());
+      assertEquals(
+          compound.getLocalOperationCount() + i, components.get(i).getLocalOperationCount());
+    }
+  }
+}
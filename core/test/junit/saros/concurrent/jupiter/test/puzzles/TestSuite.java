@@ -12,7 +12,8 @@ import org.junit.runners.Suite;
   InclusionTransformationTest.class,
   SimpleClientServerTest.class,
   SimpleJupiterDocumentTest.class,
-  SimpleServerProxyTest.class
+  SimpleServerProxyTest.class,
+  TypingBurstTest.class
 })
 public class TestSuite {
   // the class remains completely empty,
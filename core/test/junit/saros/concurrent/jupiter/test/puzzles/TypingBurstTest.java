@@ -0,0 +1,209 @@
+package saros.concurrent.jupiter.test.puzzles;
+
+import static org.junit.Assert.assertEquals;
+import static saros.test.util.OperationHelper.D;
+import static saros.test.util.OperationHelper.EOL;
+import static saros.test.util.OperationHelper.I;
+
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.test.util.JupiterTestCase;
+import saros.concurrent.jupiter.test.util.TwoWayJupiterClientDocument;
+import saros.concurrent.jupiter.test.util.TwoWayJupiterServerDocument;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextPositionUtils;
+
+/**
+ * Tests the convergence of documents if many operations are not yet acknowledged, e.g. because a
+ * user types or deletes characters faster than the operations are acknowledged by the other side.
+ * In this case the unacknowledged operations are combined by the Jupiter algorithm.
+ */
+public class TypingBurstTest extends JupiterTestCase {
+
+  private static final int ROUNDS = 100;
+
+  private static final int ROUND_LENGTH = 50;
+
+  private static final int LATENCY = 7;
+
+  TwoWayJupiterClientDocument client;
+  TwoWayJupiterServerDocument server;
+
+  private void setUp(String initialText) {
+    super.setup();
+
+    client = new TwoWayJupiterClientDocument(initialText, network);
+    server = new TwoWayJupiterServerDocument(initialText, network);
+
+    network.addClient(client);
+    network.addClient(server);
+  }
+
+  /** The server inserts text in the middle of the characters typed by the client. */
+  @Test
+  public void testInsertIntoTypedText() {
+    setUp("abcdef");
+
+    client.sendOperation(I(3, "x"), 100);
+    client.sendOperation(I(4, "y"), 101);
+    client.sendOperation(I(5, "z"), 102);
+
+    server.sendOperation(I(3, "1"), 200);
+
+    network.execute(300);
+
+    assertEquals("abc1xyzdef", client.getDocument());
+    assertEquals(client.getDocument(), server.getDocument());
+  }
+
+  /** The server deletes text around the characters deleted by the client. */
+  @Test
+  public void testDeleteAroundDeletedText() {
+    setUp("abcdefgh");
+
+    // backspace
+    client.sendOperation(D(5, "f"), 100);
+    client.sendOperation(D(4, "e"), 101);
+    // forward delete
+    client.sendOperation(D(4, "g"), 102);
+
+    server.sendOperation(D(3, "defg"), 200);
+
+    network.execute(300);
+
+    assertEquals("abch", client.getDocument());
+    assertEquals(client.getDocument(), server.getDocument());
+  }
+
+  /** The client types while the operations of the server acknowledge only a part of them. */
+  @Test
+  public void testPartiallyAcknowledgedTypedText() {
+    setUp("abc" + EOL + "def");
+
+    client.sendOperation(I(1, 1, "x", 1, 1), 10);
+    client.sendOperation(I(1, 2, "y", 1, 2), 11);
+
+    network.execute(10);
+    server.sendOperation(I(0, "1"), 20);
+
+    client.sendOperation(I(1, 3, EOL, 1, 3), 21);
+    client.sendOperation(I(2, 0, "z", 2, 0), 22);
+
+    network.execute(11);
+    server.sendOperation(I(0, "2"), 30);
+
+    network.execute(100);
+
+    assertEquals("21abc" + EOL + "dxy" + EOL + "zef", client.getDocument());
+    assertEquals(client.getDocument(), server.getDocument());
+  }
+
+  /**
+   * Both sides type, delete and move their cursor randomly. The operations are delivered with a
+   * latency, so the other side acknowledges only some of the operations of a burst.
+   */
+  @Test
+  public void testRandomTypingBursts() {
+    setUp("abcdef" + EOL + "ghijkl" + EOL + "mnopqr");
+
+    Random random = new Random(42);
+
+    Typist clientTypist = new Typist(client::getDocument, client::sendOperation, random);
+    Typist serverTypist = new Typist(server::getDocument, server::sendOperation, random);
+
+    int time = 0;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < ROUND_LENGTH; i++) {
+        time++;
+
+        network.execute(time);
+
+        if (random.nextInt(4) == 0) serverTypist.type(time + LATENCY);
+        else clientTypist.type(time + LATENCY);
+      }
+
+      time += LATENCY;
+
+      network.execute(time);
+
+      assertEquals(
+          "documents diverged in round " + round, server.getDocument(), client.getDocument());
+    }
+  }
+
+  /** Generates operations like a user typing at a cursor position. */
+  private static class Typist {
+
+    private final Supplier<String> document;
+    private final BiConsumer<Operation, Integer> sender;
+    private final Random random;
+
+    private int cursor;
+
+    private Typist(
+        Supplier<String> document, BiConsumer<Operation, Integer> sender, Random random) {
+      this.document = document;
+      this.sender = sender;
+      this.random = random;
+    }
+
+    private void type(int arrivalTime) {
+      String content = document.get();
+
+      // the document may have been changed by the other side
+      cursor = Math.min(cursor, content.length());
+
+      int action = random.nextInt(20);
+
+      Operation op;
+
+      if (action == 0) {
+        cursor = random.nextInt(content.length() + 1);
+        return;
+
+      } else if (action <= 3 && cursor > 0) {
+        // backspace
+        cursor--;
+        op = delete(content, cursor);
+
+      } else if (action <= 5 && cursor < content.length()) {
+        // forward delete
+        op = delete(content, cursor);
+
+      } else {
+        String text =
+            random.nextInt(8) == 0 ? EOL : String.valueOf((char) ('a' + random.nextInt(26)));
+
+        op =
+            new InsertOperation(
+                position(content, cursor),
+                text.equals(EOL) ? 1 : 0,
+                text.equals(EOL) ? 0 : 1,
+                text);
+        cursor++;
+      }
+
+      sender.accept(op, arrivalTime);
+    }
+
+    private static Operation delete(String content, int offset) {
+      String text = content.substring(offset, offset + 1);
+
+      Pair<Integer, Integer> deltas = TextPositionUtils.calculateDeltas(text, EOL);
+
+      return new DeleteOperation(
+          position(content, offset), deltas.getLeft(), deltas.getRight(), text);
+    }
+
+    private static TextPosition position(String content, int offset) {
+      return InclusionTransformationFuzzingTest.calculateTextPosition(content, offset);
+    }
+  }
+}
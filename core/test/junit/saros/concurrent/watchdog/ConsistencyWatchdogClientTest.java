@@ -0,0 +1,163 @@
+package saros.concurrent.watchdog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.ChecksumActivity;
+import saros.activities.ChecksumErrorActivity;
+import saros.activities.IActivity;
+import saros.activities.TextRecoveryActivity;
+import saros.concurrent.management.ConcurrentDocumentClient;
+import saros.editor.IEditorManager;
+import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.monitoring.NullProgressMonitor;
+import saros.monitoring.remote.RemoteProgressManager;
+import saros.net.xmpp.JID;
+import saros.session.IActivityConsumer;
+import saros.session.IActivityConsumer.Priority;
+import saros.session.ISarosSession;
+import saros.session.User;
+
+public class ConsistencyWatchdogClientTest {
+
+  private static final long TIMEOUT = 10;
+
+  private final User host = new User(new JID("host@junit"), true, false, null);
+  private final User local = new User(new JID("alice@junit"), false, true, null);
+
+  private final AtomicReference<String> content = new AtomicReference<String>("a\nb\nc\n");
+
+  private final BlockingQueue<IActivity> sentActivities = new LinkedBlockingQueue<IActivity>();
+
+  private IFile file;
+  private ConcurrentDocumentClient documentClient;
+  private IActivityConsumer consumer;
+  private ConsistencyWatchdogClient client;
+
+  @Before
+  public void setUp() {
+    file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.expect(file.exists()).andStubReturn(true);
+    EasyMock.replay(file);
+
+    documentClient = EasyMock.createMock(ConcurrentDocumentClient.class);
+
+    final Capture<IActivityConsumer> consumerCapture = Capture.newInstance();
+
+    final ISarosSession session = EasyMock.createNiceMock(ISarosSession.class);
+    session.addActivityConsumer(EasyMock.capture(consumerCapture), EasyMock.eq(Priority.ACTIVE));
+    EasyMock.expect(session.getLocalUser()).andStubReturn(local);
+    EasyMock.expect(session.getHost()).andStubReturn(host);
+    EasyMock.expect(session.getRemoteUsers()).andStubReturn(Collections.singletonList(host));
+    EasyMock.expect(session.getConcurrentDocumentClient()).andStubReturn(documentClient);
+    EasyMock.replay(session);
+
+    final IEditorManager editorManager = EasyMock.createNiceMock(IEditorManager.class);
+    EasyMock.expect(editorManager.getNormalizedContent(file)).andStubAnswer(() -> content.get());
+    EasyMock.replay(editorManager);
+
+    final RemoteProgressManager remoteProgressManager =
+        EasyMock.createNiceMock(RemoteProgressManager.class);
+    EasyMock.expect(
+            remoteProgressManager.createRemoteProgressMonitor(
+                EasyMock.anyObject(), EasyMock.anyObject()))
+        .andStubReturn(new NullProgressMonitor());
+    EasyMock.replay(remoteProgressManager);
+
+    client =
+        new ConsistencyWatchdogClient(
+            session, new IsInconsistentObservable(), editorManager, remoteProgressManager);
+
+    client.addActivityListener(sentActivities::add);
+    client.start();
+
+    consumer = consumerCapture.getValue();
+
+    consumer.exec(new ChecksumActivity(host, file, 0, 42, ChecksumAlgorithm.XXHASH64, null));
+  }
+
+  @After
+  public void tearDown() {
+    client.stop();
+  }
+
+  @Test
+  public void testRecoveryWithoutDifferences() throws Exception {
+    documentClient.reset(file);
+    EasyMock.replay(documentClient);
+
+    final CompletableFuture<Void> recovery = startRecovery();
+
+    final ChecksumErrorActivity error = nextSentActivity(ChecksumErrorActivity.class);
+
+    assertEquals(Collections.singletonList(file), error.getFiles());
+    assertNotNull(error.getSignature(file));
+
+    consumer.exec(
+        new TextRecoveryActivity(host, local, file, new int[0], new int[0], new String[0]));
+
+    recovery.get(TIMEOUT, TimeUnit.SECONDS);
+
+    EasyMock.verify(documentClient);
+  }
+
+  @Test
+  public void testChangedDocumentRequestsFile() throws Exception {
+    documentClient.reset(file);
+    EasyMock.replay(documentClient);
+
+    final CompletableFuture<Void> recovery = startRecovery();
+
+    final ChecksumErrorActivity error = nextSentActivity(ChecksumErrorActivity.class);
+
+    content.set("a\nx\nb\nc\n");
+
+    consumer.exec(
+        new TextRecoveryActivity(
+            host, local, file, new int[] {1}, new int[] {1}, new String[] {"y\n"}));
+
+    EasyMock.verify(documentClient);
+
+    final ChecksumErrorActivity fileRequest = nextSentActivity(ChecksumErrorActivity.class);
+
+    assertEquals(Collections.singletonList(file), fileRequest.getFiles());
+    assertNull(fileRequest.getSignatures());
+    assertNotEquals(error.getRecoveryID(), fileRequest.getRecoveryID());
+
+    /* the host finishes the line recovery, but the file is still missing */
+    consumer.exec(new ChecksumErrorActivity(host, local, null, error.getRecoveryID()));
+
+    assertFalse(recovery.isDone());
+
+    consumer.exec(new ChecksumErrorActivity(host, local, null, fileRequest.getRecoveryID()));
+
+    recovery.get(TIMEOUT, TimeUnit.SECONDS);
+  }
+
+  private CompletableFuture<Void> startRecovery() {
+    return CompletableFuture.runAsync(() -> client.runRecovery(new NullProgressMonitor()));
+  }
+
+  private <T extends IActivity> T nextSentActivity(Class<T> clazz) throws InterruptedException {
+    final IActivity activity = sentActivities.poll(TIMEOUT, TimeUnit.SECONDS);
+
+    assertNotNull("no activity was sent", activity);
+
+    return clazz.cast(activity);
+  }
+}
@@ -0,0 +1,155 @@
+package saros.concurrent.watchdog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import saros.activities.TextEditActivity;
+import saros.editor.text.TextPosition;
+import saros.filesystem.IFile;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+public class DocumentHashTreeTest {
+
+  private final User alice = new User(new JID("alice@junit"), true, true, null);
+
+  private final IFile file = EasyMock.createNiceMock(IFile.class);
+
+  @Test
+  public void testEmptyDocument() {
+    DocumentHashTree tree = new DocumentHashTree("");
+
+    assertEquals(0, tree.getLength());
+    assertEquals(hash(""), tree.getHash());
+
+    assertTrue(tree.replace(0, "", "Saros"));
+    assertEquals(hash("Saros"), tree.getHash());
+
+    assertTrue(tree.replace(0, "Saros", ""));
+    assertEquals(hash(""), tree.getHash());
+  }
+
+  @Test
+  public void testRandomEdits() {
+    Random random = new Random(4711);
+
+    StringBuilder content = new StringBuilder(randomText(random, 10 * DocumentHashTree.CHUNK_SIZE));
+
+    DocumentHashTree tree = new DocumentHashTree(content);
+
+    for (int i = 0; i < 2000; i++) {
+      int offset = random.nextInt(content.length() + 1);
+      int end =
+          Math.min(content.length(), offset + random.nextInt(3 * DocumentHashTree.CHUNK_SIZE));
+
+      /* mostly small edits, sometimes large ones to split and merge chunks */
+      if (random.nextInt(10) > 0) end = Math.min(end, offset + random.nextInt(8));
+
+      String replacedText = content.substring(offset, end);
+      String newText =
+          randomText(
+              random,
+              random.nextInt(10) > 0
+                  ? random.nextInt(8)
+                  : random.nextInt(3 * DocumentHashTree.CHUNK_SIZE));
+
+      assertTrue(tree.replace(offset, replacedText, newText));
+
+      content.replace(offset, end, newText);
+
+      assertEquals(content.length(), tree.getLength());
+      assertEquals("edit " + i, hash(content), tree.getHash());
+    }
+  }
+
+  @Test
+  public void testGetOffset() {
+    StringBuilder content = new StringBuilder();
+
+    for (int i = 0; i < 1000; i++) content.append("line ").append(i).append('\n');
+
+    DocumentHashTree tree = new DocumentHashTree(content);
+
+    assertEquals(3, tree.getOffset(0, 3));
+    assertEquals(content.indexOf("line 1\n"), tree.getOffset(1, 0));
+    assertEquals(content.indexOf("line 500\n") + 5, tree.getOffset(500, 5));
+    assertEquals(content.length(), tree.getOffset(1000, 0));
+    assertEquals(-1, tree.getOffset(1001, 0));
+  }
+
+  @Test
+  public void testApplyTextEdits() {
+    String content = "first line\nsecond line\nthird line";
+
+    DocumentHashTree tree = new DocumentHashTree(content);
+
+    assertTrue(tree.apply(edit(1, 7, "line", "row\nof text")));
+    assertTrue(tree.apply(edit(0, 0, "", "the ")));
+
+    assertEquals(hash("the first line\nsecond row\nof text\nthird line"), tree.getHash());
+  }
+
+  @Test
+  public void testMismatchingEditIsRejected() {
+    String content = "first line\nsecond line";
+
+    DocumentHashTree tree = new DocumentHashTree(content);
+
+    assertFalse(tree.apply(edit(1, 0, "first", "")));
+    assertFalse(tree.apply(edit(5, 0, "", "text")));
+    assertFalse(tree.replace(content.length(), "x", ""));
+
+    assertEquals(hash(content), tree.getHash());
+    assertEquals(content.length(), tree.getLength());
+  }
+
+  @Test
+  public void testDocumentChecksumAppliesEdits() {
+    DocumentChecksum checksum = new DocumentChecksum(file, ChecksumAlgorithm.POLYNOMIAL61);
+
+    assertFalse(checksum.applyEdit(edit(0, 0, "", "text")));
+
+    checksum.update("first line\nsecond line");
+
+    assertTrue(checksum.applyEdit(edit(1, 0, "second", "2nd")));
+    assertFalse(checksum.isDirty());
+    assertEquals(hash("first line\n2nd line"), checksum.getHash());
+    assertEquals("first line\n2nd line".length(), checksum.getLength());
+
+    assertFalse(checksum.applyEdit(edit(1, 0, "second", "2nd")));
+    assertTrue(checksum.isDirty());
+  }
+
+  @Test
+  public void testDocumentChecksumWithoutIncrementalAlgorithm() {
+    DocumentChecksum checksum = new DocumentChecksum(file, ChecksumAlgorithm.XXHASH64);
+
+    checksum.update("first line");
+
+    assertFalse(checksum.applyEdit(edit(0, 0, "first", "1st")));
+    assertTrue(checksum.isDirty());
+  }
+
+  private TextEditActivity edit(int line, int inLineOffset, String replacedText, String newText) {
+    return TextEditActivity.buildTextEditActivity(
+        alice, new TextPosition(line, inLineOffset), newText, replacedText, file);
+  }
+
+  private static long hash(CharSequence content) {
+    return DocumentChecksum.calculateHash(ChecksumAlgorithm.POLYNOMIAL61, content);
+  }
+
+  private static String randomText(Random random, int length) {
+    StringBuilder text = new StringBuilder(length);
+
+    for (int i = 0; i < length; i++)
+      text.append(random.nextInt(20) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+
+    return text.toString();
+  }
+}
@@ -0,0 +1,114 @@
+package saros.concurrent.watchdog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import saros.concurrent.watchdog.DocumentSignature.Difference;
+
+public class DocumentSignatureTest {
+
+  @Test
+  public void testLineOffsets() {
+    assertArrayEquals(new int[] {0}, DocumentSignature.getLineOffsets(""));
+    assertArrayEquals(new int[] {0, 2, 3}, DocumentSignature.getLineOffsets("a\nb"));
+    assertArrayEquals(new int[] {0, 2, 4}, DocumentSignature.getLineOffsets("a\nb\n"));
+    assertArrayEquals(new int[] {0, 1, 2}, DocumentSignature.getLineOffsets("\n\n"));
+  }
+
+  @Test
+  public void testEqualDocumentsHaveNoDifferences() {
+    String content = randomLines(new Random(1), 5000);
+
+    DocumentSignature signature = DocumentSignature.create(content);
+
+    assertEquals(signature, DocumentSignature.create(content));
+    assertTrue(signature.getDifferences(signature).isEmpty());
+
+    int lines = 0;
+
+    for (int i = 0; i < signature.getBlockCount(); i++) lines += signature.getLineCount(i);
+
+    assertEquals(5000, lines);
+  }
+
+  @Test
+  public void testSingleChangedLineOnlyAffectsItsBlock() {
+    Random random = new Random(2);
+
+    String current = randomLines(random, 5000);
+
+    int[] offsets = DocumentSignature.getLineOffsets(current);
+
+    String outdated =
+        current.substring(0, offsets[2500]) + "changed line\n" + current.substring(offsets[2501]);
+
+    List<Difference> differences =
+        DocumentSignature.create(current).getDifferences(DocumentSignature.create(outdated));
+
+    assertEquals(1, differences.size());
+    assertTrue(differences.get(0).getLineCount() <= 256);
+
+    assertEquals(current, repair(outdated, current, differences));
+  }
+
+  @Test
+  public void testRandomModifications() {
+    Random random = new Random(3);
+
+    for (int run = 0; run < 50; run++) {
+      String current = randomLines(random, random.nextInt(2000));
+
+      StringBuilder outdated = new StringBuilder(current);
+
+      for (int i = random.nextInt(10); i >= 0; i--) {
+        int start = random.nextInt(outdated.length() + 1);
+        int end = Math.min(outdated.length(), start + random.nextInt(200));
+
+        outdated.replace(start, end, randomLines(random, random.nextInt(5)));
+      }
+
+      List<Difference> differences =
+          DocumentSignature.create(current)
+              .getDifferences(DocumentSignature.create(outdated.toString()));
+
+      assertEquals("run " + run, current, repair(outdated.toString(), current, differences));
+    }
+  }
+
+  /** Replaces the differing ranges like the consistency recovery does. */
+  private static String repair(String outdated, String current, List<Difference> differences) {
+    int[] outdatedOffsets = DocumentSignature.getLineOffsets(outdated);
+    int[] offsets = DocumentSignature.getLineOffsets(current);
+
+    StringBuilder result = new StringBuilder(outdated);
+
+    for (int i = differences.size() - 1; i >= 0; i--) {
+      Difference difference = differences.get(i);
+
+      result.replace(
+          outdatedOffsets[difference.getOutdatedStartLine()],
+          outdatedOffsets[difference.getOutdatedStartLine() + difference.getOutdatedLineCount()],
+          current.substring(
+              offsets[difference.getStartLine()],
+              offsets[difference.getStartLine() + difference.getLineCount()]));
+    }
+
+    return result.toString();
+  }
+
+  private static String randomLines(Random random, int count) {
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < count; i++) {
+      for (int j = random.nextInt(40); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+
+      text.append('\n');
+    }
+
+    return text.toString();
+  }
+}
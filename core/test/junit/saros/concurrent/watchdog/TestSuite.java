@@ -0,0 +1,15 @@
+package saros.concurrent.watchdog;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+  ConsistencyWatchdogClientTest.class,
+  DocumentHashTreeTest.class,
+  DocumentSignatureTest.class
+})
+public class TestSuite {
+  // the class remains completely empty,
+  // being used only as a holder for the above annotations
+}
@@ -0,0 +1,145 @@
+package saros.filesystem.checksum;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Adler32;
+import org.junit.Test;
+
+public class HasherTest {
+
+  private static final byte[] FOX =
+      "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+  @Test
+  public void testXxHash64KnownValues() {
+    assertEquals(0xEF46DB3751D8E999L, ChecksumAlgorithm.XXHASH64.newHasher().getValue());
+    assertEquals(
+        0x0B242D361FDA71BCL, ChecksumAlgorithm.XXHASH64.newHasher().update(FOX).getValue());
+  }
+
+  @Test
+  public void testMurmur3KnownValues() {
+    Murmur3Hasher hasher = new Murmur3Hasher(0);
+
+    assertEquals(0, hasher.getValue128()[0]);
+    assertEquals(0, hasher.getValue128()[1]);
+
+    hasher.update(FOX);
+
+    assertEquals(0xE34BBC7BBC071B6CL, hasher.getValue128()[0]);
+    assertEquals(0x7A433CA9C49A9347L, hasher.getValue128()[1]);
+    assertEquals(0xE34BBC7BBC071B6CL, hasher.getValue());
+  }
+
+  @Test
+  public void testLegacyValues() {
+    byte[] bytes = randomBytes(1000);
+
+    Adler32 adler = new Adler32();
+    adler.update(bytes);
+
+    assertEquals(adler.getValue(), ChecksumAlgorithm.LEGACY.newHasher().update(bytes).getValue());
+
+    String text = "Hello\nSaros";
+
+    assertEquals(
+        text.hashCode(),
+        ChecksumAlgorithm.LEGACY.newHasher().update(text, 0, 5).update(text, 5, 11).getValue());
+  }
+
+  @Test
+  public void testIncrementalUpdates() {
+    byte[] bytes = randomBytes(1000);
+
+    for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+      long expected = algorithm.newHasher().update(bytes).getValue();
+
+      for (int split : new int[] {0, 1, 7, 15, 16, 17, 31, 32, 33, 500, 999}) {
+        Hasher hasher = algorithm.newHasher();
+        hasher.update(bytes, 0, split);
+        hasher.update(bytes, split, bytes.length - split);
+
+        assertEquals(algorithm + " split at " + split, expected, hasher.getValue());
+      }
+
+      Hasher hasher = algorithm.newHasher();
+
+      for (byte b : bytes) hasher.update(new byte[] {b});
+
+      assertEquals(algorithm.toString(), expected, hasher.getValue());
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+      direct.put(bytes).flip();
+
+      assertEquals(algorithm.toString(), expected, algorithm.newHasher().update(direct).getValue());
+    }
+  }
+
+  @Test
+  public void testPolynomialConcat() {
+    byte[] bytes = randomBytes(1000);
+
+    long expected = ChecksumAlgorithm.POLYNOMIAL61.newHasher().update(bytes).getValue();
+
+    for (int split : new int[] {0, 1, 500, 999, 1000}) {
+      long left = ChecksumAlgorithm.POLYNOMIAL61.newHasher().update(bytes, 0, split).getValue();
+      long right =
+          ChecksumAlgorithm.POLYNOMIAL61
+              .newHasher()
+              .update(bytes, split, bytes.length - split)
+              .getValue();
+
+      assertEquals(
+          "split at " + split,
+          expected,
+          PolynomialHasher.concat(left, right, PolynomialHasher.power(bytes.length - split)));
+    }
+  }
+
+  @Test
+  public void testPolynomialMultiply() {
+    long max = PolynomialHasher.MODULUS - 1;
+
+    /* (-1) * (-1) = 1 modulo the prime */
+    assertEquals(1, PolynomialHasher.multiply(max, max));
+    assertEquals(max, PolynomialHasher.multiply(max, 1));
+    assertEquals(0, PolynomialHasher.multiply(max, 0));
+    assertEquals(2, PolynomialHasher.multiply(1L << 31, 1L << 31));
+  }
+
+  @Test
+  public void testCharactersAreHashedAsUtf16() {
+    String text = "Saros ä€😀";
+
+    for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+      if (algorithm == ChecksumAlgorithm.LEGACY) continue;
+
+      assertEquals(
+          algorithm.toString(),
+          algorithm.newHasher().update(text.getBytes(StandardCharsets.UTF_16LE)).getValue(),
+          algorithm.newHasher().update(new StringBuilder(text)).getValue());
+    }
+  }
+
+  @Test
+  public void testReset() {
+    for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+      Hasher hasher = algorithm.newHasher();
+      long empty = hasher.getValue();
+
+      hasher.update(FOX);
+      hasher.reset();
+
+      assertEquals(algorithm.toString(), empty, hasher.getValue());
+    }
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+}
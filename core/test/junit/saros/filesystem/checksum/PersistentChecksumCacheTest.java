@@ -0,0 +1,178 @@
+package saros.filesystem.checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.filesystem.IFile;
+
+public class PersistentChecksumCacheTest {
+
+  private Path workspace;
+  private Path cacheDirectory;
+
+  private IAbsolutePathResolver absolutePathResolver;
+
+  private IFile a;
+  private IFile b;
+
+  private IFileContentChangedListener listener;
+
+  private IFileContentChangedNotifier notifier =
+      new IFileContentChangedNotifier() {
+
+        @Override
+        public void addFileContentChangedListener(IFileContentChangedListener listener) {
+          PersistentChecksumCacheTest.this.listener = listener;
+        }
+
+        @Override
+        public void removeFileContentChangedListener(IFileContentChangedListener listener) {
+          PersistentChecksumCacheTest.this.listener = null;
+        }
+      };
+
+  @Before
+  public void setUp() throws IOException {
+    workspace = Files.createTempDirectory("saros-checksum-workspace");
+    cacheDirectory = Files.createTempDirectory("saros-checksum-cache");
+
+    absolutePathResolver = EasyMock.createNiceMock(IAbsolutePathResolver.class);
+
+    a = createFile("project/a.txt", "a");
+    b = createFile("project/src/b.txt", "bb");
+
+    EasyMock.replay(absolutePathResolver);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(workspace.toFile());
+    FileUtils.deleteQuietly(cacheDirectory.toFile());
+  }
+
+  private IFile createFile(String path, String content) throws IOException {
+    Path location = workspace.resolve(path);
+    Files.createDirectories(location.getParent());
+    Files.write(location, content.getBytes(StandardCharsets.UTF_8));
+    makeOld(location);
+
+    IFile file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.expect(file.getReferencePointRelativePath())
+        .andStubReturn(Paths.get("project").relativize(Paths.get(path)));
+    EasyMock.replay(file);
+
+    EasyMock.expect(absolutePathResolver.getAbsolutePath(file)).andStubReturn(location.toString());
+
+    return file;
+  }
+
+  private static void makeOld(Path location) throws IOException {
+    Files.setLastModifiedTime(
+        location, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+  }
+
+  private PersistentChecksumCache createCache() {
+    PersistentChecksumCache cache =
+        new PersistentChecksumCache(notifier, absolutePathResolver, cacheDirectory);
+    cache.start();
+    return cache;
+  }
+
+  @Test
+  public void testAddAndGet() {
+    PersistentChecksumCache cache = createCache();
+
+    assertNull(cache.getChecksum(a));
+    assertFalse(cache.addChecksum(a, 5L));
+    assertFalse(cache.addChecksum(b, 7L));
+
+    assertEquals(Long.valueOf(5), cache.getChecksum(a));
+    assertEquals(Long.valueOf(7), cache.getChecksum(b));
+  }
+
+  @Test
+  public void testChecksumsSurviveRestart() {
+    PersistentChecksumCache cache = createCache();
+
+    cache.addChecksum(a, 5L);
+    cache.addChecksum(b, 7L);
+    cache.stop();
+
+    PersistentChecksumCache restartedCache = createCache();
+
+    assertEquals(Long.valueOf(5), restartedCache.getChecksum(a));
+    assertEquals(Long.valueOf(7), restartedCache.getChecksum(b));
+  }
+
+  @Test
+  public void testModifiedFileIsInvalid() throws IOException {
+    PersistentChecksumCache cache = createCache();
+
+    cache.addChecksum(a, 5L);
+    cache.stop();
+
+    Path location = workspace.resolve("project/a.txt");
+    Files.write(location, "changed".getBytes(StandardCharsets.UTF_8));
+    makeOld(location);
+
+    PersistentChecksumCache restartedCache = createCache();
+
+    assertNull(restartedCache.getChecksum(a));
+    assertTrue(restartedCache.addChecksum(a, 6L));
+    assertEquals(Long.valueOf(6), restartedCache.getChecksum(a));
+  }
+
+  @Test
+  public void testRecentlyModifiedFileIsNotCached() throws IOException {
+    PersistentChecksumCache cache = createCache();
+
+    Files.setLastModifiedTime(
+        workspace.resolve("project/a.txt"), FileTime.fromMillis(System.currentTimeMillis()));
+
+    assertFalse(cache.addChecksum(a, 5L));
+    assertNull(cache.getChecksum(a));
+  }
+
+  @Test
+  public void testNotifiedChangeInvalidatesChecksum() {
+    PersistentChecksumCache cache = createCache();
+
+    cache.addChecksum(a, 5L);
+    listener.fileContentChanged(a);
+
+    assertNull(cache.getChecksum(a));
+  }
+
+  @Test
+  public void testCorruptIndexIsIgnored() throws IOException {
+    PersistentChecksumCache cache = createCache();
+
+    cache.addChecksum(a, 5L);
+    cache.stop();
+
+    try (DirectoryStream<Path> indexes = Files.newDirectoryStream(cacheDirectory)) {
+      for (Path index : indexes) Files.write(index, new byte[] {1, 2, 3});
+    }
+
+    PersistentChecksumCache restartedCache = createCache();
+
+    assertNull(restartedCache.getChecksum(a));
+    assertFalse(restartedCache.addChecksum(a, 5L));
+    assertEquals(Long.valueOf(5), restartedCache.getChecksum(a));
+  }
+}
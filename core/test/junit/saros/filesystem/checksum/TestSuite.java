@@ -4,7 +4,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({FileSystemChecksumCacheTest.class})
+@Suite.SuiteClasses({
+  FileSystemChecksumCacheTest.class,
+  HasherTest.class,
+  PersistentChecksumCacheTest.class
+})
 public class TestSuite {
   // the class remains completely empty,
   // being used only as a holder for the above annotations
@@ -0,0 +1,220 @@
+package saros.negotiation;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import saros.filesystem.IFile;
+import saros.filesystem.IReferencePoint;
+import saros.monitoring.NullProgressMonitor;
+
+/**
+ * Tests that an archive created by the {@link CreateArchiveTask} can be unpacked by the {@link
+ * DecompressArchiveTask} while it is still written.
+ */
+public class ArchiveStreamTest {
+
+  private static final String DELIMITER = ":";
+
+  @Test
+  public void testStreamedArchiveRoundTrip() throws Exception {
+    final Random random = new Random(42);
+
+    final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+    contents.put("empty.txt", new byte[0]);
+    contents.put("small.txt", "Hello Saros".getBytes("UTF-8"));
+    contents.put("src/large.bin", randomBytes(random, 1024 * 1024));
+
+    assertRoundTrip(contents, contents.size());
+  }
+
+  /**
+   * The archive is written completely into the spool before it is read, so the files can be read
+   * while the transfer is not started yet. Most of the archive exceeds the memory limit of the
+   * spool.
+   */
+  @Test
+  public void testSpooledArchiveRoundTrip() throws Exception {
+    final Random random = new Random(42);
+
+    final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+    contents.put("small.txt", "Hello Saros".getBytes("UTF-8"));
+    contents.put("src/large.bin", randomBytes(random, 1024 * 1024));
+
+    final List<Pair<IFile, String>> filesToCompress = createFilesToCompress(contents);
+    final Map<String, ByteArrayOutputStream> written = new HashMap<String, ByteArrayOutputStream>();
+
+    try (ArchiveSpool spool = new ArchiveSpool(64 * 1024)) {
+      new CreateArchiveTask(spool.getOutputStream(), filesToCompress, null)
+          .run(new NullProgressMonitor());
+
+      new DecompressArchiveTask(
+              spool.getInputStream(),
+              contents.size(),
+              Collections.singletonMap("ABC", createReferencePoint(contents, written)),
+              DELIMITER,
+              null)
+          .run(new NullProgressMonitor());
+    }
+
+    assertWritten(contents, written);
+  }
+
+  /**
+   * The central directory of an archive with many entries does not fit into the pipe, so the sender
+   * fails if the receiver stops reading after the last entry.
+   */
+  @Test
+  public void testStreamedArchiveWithManyEntries() throws Exception {
+    final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+    for (int i = 0; i < 2000; i++)
+      contents.put("src/file" + i + ".txt", ("content " + i).getBytes("UTF-8"));
+
+    assertRoundTrip(contents, contents.size());
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedArchive() throws Exception {
+    final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+    contents.put("a.txt", "a".getBytes("UTF-8"));
+    contents.put("b.txt", "b".getBytes("UTF-8"));
+
+    assertRoundTrip(contents, contents.size() + 1);
+  }
+
+  private static void assertRoundTrip(final Map<String, byte[]> contents, final int expectedEntries)
+      throws Exception {
+
+    final List<Pair<IFile, String>> filesToCompress = createFilesToCompress(contents);
+
+    final Map<String, ByteArrayOutputStream> written = new HashMap<String, ByteArrayOutputStream>();
+
+    final IReferencePoint referencePoint = createReferencePoint(contents, written);
+
+    final PipedInputStream in = new PipedInputStream(1024);
+    final PipedOutputStream out = new PipedOutputStream(in);
+
+    CompletableFuture<Void> sender =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                new CreateArchiveTask(out, filesToCompress, null).run(new NullProgressMonitor());
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+
+    new DecompressArchiveTask(
+            in, expectedEntries, Collections.singletonMap("ABC", referencePoint), DELIMITER, null)
+        .run(new NullProgressMonitor());
+
+    sender.get();
+
+    assertWritten(contents, written);
+  }
+
+  private static List<Pair<IFile, String>> createFilesToCompress(final Map<String, byte[]> contents)
+      throws IOException {
+
+    final List<Pair<IFile, String>> filesToCompress = new ArrayList<>();
+
+    for (Map.Entry<String, byte[]> entry : contents.entrySet())
+      filesToCompress.add(
+          new ImmutablePair<>(
+              createSourceFile(entry.getValue()), "ABC" + DELIMITER + entry.getKey()));
+
+    return filesToCompress;
+  }
+
+  private static IReferencePoint createReferencePoint(
+      final Map<String, byte[]> contents, final Map<String, ByteArrayOutputStream> written)
+      throws IOException {
+
+    final IReferencePoint referencePoint = EasyMock.createNiceMock(IReferencePoint.class);
+
+    for (String path : contents.keySet()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      written.put(path, out);
+
+      expect(referencePoint.getFile(path)).andStubReturn(createTargetFile(out));
+    }
+
+    EasyMock.replay(referencePoint);
+
+    return referencePoint;
+  }
+
+  private static void assertWritten(
+      final Map<String, byte[]> contents, final Map<String, ByteArrayOutputStream> written) {
+
+    assertEquals(contents.keySet(), written.keySet());
+
+    for (Map.Entry<String, byte[]> entry : contents.entrySet())
+      assertArrayEquals(
+          "content of " + entry.getKey() + " differs",
+          entry.getValue(),
+          written.get(entry.getKey()).toByteArray());
+  }
+
+  private static IFile createSourceFile(final byte[] content) throws IOException {
+    IFile file = EasyMock.createNiceMock(IFile.class);
+
+    expect(file.getContents()).andStubAnswer(() -> new ByteArrayInputStream(content));
+    expect(file.getSize()).andStubReturn((long) content.length);
+    expect(file.getReferencePointRelativePath()).andStubReturn(Paths.get("unused"));
+
+    EasyMock.replay(file);
+
+    return file;
+  }
+
+  private static IFile createTargetFile(final ByteArrayOutputStream out) throws IOException {
+    IFile file = EasyMock.createNiceMock(IFile.class);
+
+    expect(file.exists()).andStubReturn(false);
+
+    file.create(EasyMock.anyObject(InputStream.class));
+    EasyMock.expectLastCall()
+        .andAnswer(
+            () -> {
+              InputStream in = (InputStream) EasyMock.getCurrentArguments()[0];
+              IOUtils.copy(in, out);
+              // consumers like Eclipse close the stream
+              in.close();
+              return null;
+            });
+
+    EasyMock.replay(file);
+
+    return file;
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
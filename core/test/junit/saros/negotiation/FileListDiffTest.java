@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import org.junit.Test;
 import saros.negotiation.FileList.MetaData;
@@ -145,6 +146,110 @@ public class FileListDiffTest {
     assertPaths(diff.getUnalteredFolders(), FOLDER_SRC, FOLDER_A, FOLDER_B);
   }
 
+  @Test
+  public void testDiffWithPartialFileList() {
+
+    FileList remote = createFileList(0);
+    FileList local = createFileList(0);
+
+    local.addPath("folder_3/sub_1/file_2", createMetaData(42), false);
+    local.addPath("folder_5/sub_4/file_extra");
+    local.addPath("folder_7/extra/file_9", null, false);
+
+    FileListDiff expected = FileListDiff.diff(local, remote);
+
+    FileList partial = remote.createPartialFileList(Arrays.asList(""), 10);
+
+    FileListDiff diff = FileListDiff.diff(local, partial);
+
+    int requests = 0;
+
+    while (!diff.getUnresolvedFolders().isEmpty()) {
+      assertTrue(
+          "folder content was not added",
+          partial.addContents(remote.createPartialFileList(diff.getUnresolvedFolders(), 10)) > 0);
+
+      diff = FileListDiff.diff(local, partial);
+      requests++;
+    }
+
+    assertTrue("no folder content was requested", requests > 0);
+
+    assertSamePaths(expected.getAddedFiles(), diff.getAddedFiles());
+    assertSamePaths(expected.getRemovedFiles(), diff.getRemovedFiles());
+    assertSamePaths(expected.getAlteredFiles(), diff.getAlteredFiles());
+    assertSamePaths(expected.getUnalteredFiles(), diff.getUnalteredFiles());
+    assertSamePaths(expected.getAddedFolders(), diff.getAddedFolders());
+    assertSamePaths(expected.getRemovedFolders(), diff.getRemovedFolders());
+    assertSamePaths(expected.getUnalteredFolders(), diff.getUnalteredFolders());
+
+    assertPaths(diff.getAlteredFiles(), "folder_3/sub_1/file_2");
+    assertPaths(diff.getRemovedFiles(), "folder_5/sub_4/file_extra", "folder_7/extra/file_9");
+    assertPaths(diff.getRemovedFolders(), "folder_7/extra/");
+
+    // only the content of the differing folders was needed
+    assertTrue(partial.getPaths().size() < remote.getPaths().size());
+  }
+
+  @Test
+  public void testEqualFoldersAreNotResolved() {
+
+    FileList remote = createFileList(0);
+    FileList local = createFileList(0);
+
+    FileList partial = remote.createPartialFileList(Arrays.asList(""), 0);
+
+    FileListDiff diff = FileListDiff.diff(local, partial);
+
+    assertPaths(diff.getUnresolvedFolders());
+    assertSamePaths(FileListDiff.diff(local, remote).getUnalteredFiles(), diff.getUnalteredFiles());
+  }
+
+  @Test
+  public void testDifferentFoldersAreUnresolved() {
+
+    FileList remote = createFileList(0);
+    FileList local = createFileList(1);
+
+    remote.addPath("folder_10/file_0", createMetaData(1), false);
+
+    FileList partial = remote.createPartialFileList(Arrays.asList(""), 0);
+
+    FileListDiff diff = FileListDiff.diff(local, partial);
+
+    assertEquals(11, diff.getUnresolvedFolders().size());
+    assertTrue(diff.getUnresolvedFolders().contains("folder_10/"));
+    assertPaths(diff.getAddedFolders(), "folder_10/");
+    assertPaths(diff.getAddedFiles());
+    assertPaths(diff.getRemovedFiles());
+  }
+
+  /** Creates a file list with 10 folders containing 10 folders with 10 files each. */
+  private static FileList createFileList(long checksumOffset) {
+    FileList list = new FileList();
+
+    for (int i = 0; i < 10; i++)
+      for (int j = 0; j < 10; j++)
+        for (int k = 0; k < 10; k++)
+          list.addPath(
+              "folder_" + i + "/sub_" + j + "/file_" + k,
+              createMetaData(checksumOffset + i * 100 + j * 10 + k),
+              false);
+
+    return list;
+  }
+
+  private static MetaData createMetaData(long checksum) {
+    MetaData m = new MetaData();
+    m.checksum = checksum;
+    return m;
+  }
+
+  private static void assertSamePaths(List<String> expected, List<String> actual) {
+    assertEquals(new HashSet<String>(expected), new HashSet<String>(actual));
+    assertEquals(expected.size(), actual.size());
+  }
+
   private static void assertPaths(List<String> actual, String... expected) {
     for (int i = 0; i < expected.length; i++) {
       assertTrue(
@@ -20,8 +20,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.Before;
@@ -30,7 +32,10 @@ import saros.filesystem.IFile;
 import saros.filesystem.IFolder;
 import saros.filesystem.IReferencePoint;
 import saros.filesystem.IResource;
+import saros.filesystem.checksum.ChecksumAlgorithm;
+import saros.filesystem.checksum.IChecksumCache;
 import saros.misc.xstream.XStreamFactory;
+import saros.monitoring.NullProgressMonitor;
 
 /**
  * Reference point Layout for test
@@ -86,6 +91,84 @@ public class FileListTest {
     assertEquals("not all encodings were fetched", expectedEncodings, fileList.getEncodings());
   }
 
+  @Test
+  public void testCreateFileListForLargeReferencePoint() throws IOException {
+    final int folderCount = 20;
+    final int filesPerFolder = 50;
+
+    final IReferencePoint largeReferencePoint = EasyMock.createMock(IReferencePoint.class);
+
+    final List<IResource> folders = new ArrayList<>();
+
+    for (int i = 0; i < folderCount; i++) {
+      List<IResource> files = new ArrayList<>();
+
+      for (int j = 0; j < filesPerFolder; j++)
+        files.add(
+            createFileMock(largeReferencePoint, "folder" + i + "/file" + j, i + "/" + j, "UTF-8"));
+
+      folders.add(createFolderMock(largeReferencePoint, "folder" + i, files));
+    }
+
+    EasyMock.expect(largeReferencePoint.getName()).andStubReturn("large");
+    EasyMock.expect(largeReferencePoint.members()).andStubReturn(folders);
+    EasyMock.replay(largeReferencePoint);
+
+    final AtomicInteger worked = new AtomicInteger();
+
+    final FileList fileList =
+        FileListFactory.createFileList(
+            largeReferencePoint,
+            null,
+            new NullProgressMonitor() {
+              @Override
+              public void worked(int amount) {
+                worked.addAndGet(amount);
+              }
+            });
+
+    assertEquals(folderCount * filesPerFolder, fileList.getPaths().size());
+    assertEquals(folderCount * filesPerFolder, worked.get());
+
+    for (int i = 0; i < folderCount; i++) {
+      for (int j = 0; j < filesPerFolder; j++) {
+        long expected =
+            ChecksumAlgorithm.getDefault().newHasher().update((i + "/" + j).getBytes()).getValue();
+
+        assertEquals(
+            "wrong checksum for file: folder" + i + "/file" + j,
+            expected,
+            fileList.getMetaData("folder" + i + "/file" + j).checksum);
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testCreateFileListFailsIfChecksumCalculationFails() throws IOException {
+    final IChecksumCache checksumCache = EasyMock.createMock(IChecksumCache.class);
+
+    EasyMock.expect(checksumCache.getChecksum(EasyMock.anyObject()))
+        .andStubThrow(new IllegalStateException("cache is broken"));
+    EasyMock.replay(checksumCache);
+
+    FileListFactory.createFileList(referencePoint, checksumCache, null);
+  }
+
+  @Test(expected = IOException.class)
+  public void testCreateFileListFailsIfFileCannotBeRead() throws IOException {
+    final IReferencePoint unreadableReferencePoint = EasyMock.createMock(IReferencePoint.class);
+
+    final IFile unreadableFile =
+        createFileMock(unreadableReferencePoint, "unreadable.txt", null, "UTF-8");
+
+    EasyMock.expect(unreadableReferencePoint.getName()).andStubReturn("unreadable");
+    EasyMock.expect(unreadableReferencePoint.members())
+        .andStubReturn(Collections.singletonList(unreadableFile));
+    EasyMock.replay(unreadableReferencePoint);
+
+    FileListFactory.createFileList(unreadableReferencePoint, null, null);
+  }
+
   @Test
   public void testToXmlAndBack() throws Exception {
     List<String> files = new ArrayList<String>();
@@ -110,6 +193,28 @@ public class FileListTest {
     assertEquals(list, listFromXml);
   }
 
+  @Test
+  public void testPartialFileListToXmlAndBack() throws Exception {
+    List<String> files = new ArrayList<String>();
+
+    for (int i = 0; i < 5; i++)
+      for (int j = 0; j < 5; j++) files.add("foo" + i + "/bar" + j + "/file.txt");
+
+    FileList list = FileListFactory.createFileList(files);
+    FileList partialList = list.createPartialFileList(Arrays.asList(""), 0);
+
+    assertTrue(partialList.getPaths().isEmpty());
+
+    FileList partialListFromXml = fromXML(toXML(partialList));
+    assertEquals(partialList, partialListFromXml);
+
+    partialListFromXml.addContents(
+        list.createPartialFileList(Arrays.asList("foo1/", "foo3/"), Integer.MAX_VALUE));
+
+    assertEquals(10, partialListFromXml.getPaths().size());
+    assertTrue(partialListFromXml.getPaths().contains("foo3/bar4/file.txt"));
+  }
+
   private static IReferencePoint createReferencePointLayout() {
 
     final IReferencePoint referencePoint = EasyMock.createMock(IReferencePoint.class);
@@ -148,6 +253,7 @@ public class FileListTest {
     return referencePoint;
   }
 
+  /** Creates a file mock, reading its content fails if the given content is <code>null</code>. */
   private static IFile createFileMock(
       final IReferencePoint referencePoint,
       final String path,
@@ -164,19 +270,24 @@ public class FileListTest {
     EasyMock.expect(fileMock.isIgnored()).andStubReturn(false);
     EasyMock.expect(fileMock.exists()).andStubReturn(true);
     EasyMock.expect(fileMock.getType()).andStubReturn(FILE);
+    EasyMock.expect(fileMock.getLocalPath()).andStubReturn(Optional.empty());
 
     // only used for UI feedback
     EasyMock.expect(fileMock.getName()).andStubReturn("");
 
     try {
-      EasyMock.expect(fileMock.getContents())
-          .andStubAnswer(
-              new IAnswer<InputStream>() {
-                @Override
-                public InputStream answer() throws Throwable {
-                  return new ByteArrayInputStream(content.getBytes());
-                }
-              });
+      if (content == null)
+        EasyMock.expect(fileMock.getContents())
+            .andStubThrow(new IOException("cannot read " + path));
+      else
+        EasyMock.expect(fileMock.getContents())
+            .andStubAnswer(
+                new IAnswer<InputStream>() {
+                  @Override
+                  public InputStream answer() throws Throwable {
+                    return new ByteArrayInputStream(content.getBytes());
+                  }
+                });
       EasyMock.expect(fileMock.getCharset()).andStubReturn(encoding);
     } catch (IOException e) {
       // cannot happen as the mock is in recording mode
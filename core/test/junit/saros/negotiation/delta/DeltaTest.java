@@ -0,0 +1,208 @@
+package saros.negotiation.delta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaTest {
+
+  private final Random random = new Random(42);
+
+  private Path baseFile;
+
+  private long literalLength;
+
+  @Before
+  public void setUp() throws IOException {
+    baseFile = Files.createTempFile("saros_delta_test", null);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(baseFile);
+  }
+
+  @Test
+  public void testRollingChecksum() {
+    final byte[] data = randomBytes(4096);
+
+    final RollingChecksum checksum = new RollingChecksum();
+    checksum.reset(data, 0, 1024);
+
+    for (int offset = 1; offset + 1024 <= data.length; offset++) {
+      checksum.roll(data[offset - 1], data[offset + 1023]);
+      assertEquals(RollingChecksum.checksum(data, offset, 1024), checksum.getValue());
+    }
+  }
+
+  @Test
+  public void testSignatureToStreamAndBack() throws IOException {
+    final byte[] data = randomBytes(100 * 1024 + 17);
+
+    final FileSignature signature =
+        FileSignature.create(new ByteArrayInputStream(data), data.length);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    signature.write(new DataOutputStream(out));
+
+    final FileSignature read =
+        FileSignature.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+    assertEquals(signature.getBlockSize(), read.getBlockSize());
+    assertEquals(data.length, read.getLength());
+    assertEquals(signature.getBlockCount(), read.getBlockCount());
+
+    for (int block = 0; block < signature.getBlockCount(); block++) {
+      assertEquals(signature.getWeakChecksum(block), read.getWeakChecksum(block));
+      assertEquals(signature.getStrongChecksum(block), read.getStrongChecksum(block));
+    }
+  }
+
+  @Test
+  public void testUnchangedContent() throws IOException {
+    final byte[] base = randomBytes(256 * 1024);
+
+    assertArrayEquals(base, roundTrip(base, base));
+    assertEquals(0, literalLength);
+  }
+
+  @Test
+  public void testInsertedAndDeletedData() throws IOException {
+    final byte[] base = randomBytes(256 * 1024);
+
+    final ByteArrayOutputStream current = new ByteArrayOutputStream();
+    current.write(base, 0, 10000);
+    current.write(randomBytes(333), 0, 333);
+    current.write(base, 10000, 50000);
+    current.write(base, 70000, base.length - 70000);
+
+    final byte[] content = current.toByteArray();
+
+    assertArrayEquals(content, roundTrip(base, content));
+
+    // every edit invalidates at most the two blocks of 1 KiB it touches
+    assertTrue("too many literal bytes: " + literalLength, literalLength < 333 + 4 * 1024);
+  }
+
+  @Test
+  public void testMovedBlocks() throws IOException {
+    final byte[] base = randomBytes(128 * 1024);
+
+    final ByteArrayOutputStream current = new ByteArrayOutputStream();
+    current.write(base, 64 * 1024, 64 * 1024);
+    current.write(base, 0, 64 * 1024);
+
+    final byte[] content = current.toByteArray();
+
+    assertArrayEquals(content, roundTrip(base, content));
+    assertEquals(0, literalLength);
+  }
+
+  @Test
+  public void testTruncatedAndAppendedContent() throws IOException {
+    final byte[] base = randomBytes(64 * 1024 + 100);
+
+    final byte[] truncated = Arrays.copyOf(base, 20 * 1024 + 5);
+    assertArrayEquals(truncated, roundTrip(base, truncated));
+
+    final byte[] appended = Arrays.copyOf(base, base.length + 5000);
+    System.arraycopy(randomBytes(5000), 0, appended, base.length, 5000);
+    assertArrayEquals(appended, roundTrip(base, appended));
+  }
+
+  @Test
+  public void testWithoutSignature() throws IOException {
+    final byte[] content = randomBytes(200 * 1024);
+
+    assertArrayEquals(content, roundTrip(null, content));
+    assertEquals(content.length, literalLength);
+
+    assertArrayEquals(new byte[0], roundTrip(null, new byte[0]));
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptDelta() throws IOException {
+    final byte[] content = randomBytes(10 * 1024);
+
+    final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    DeltaEncoder.encode(null, new ByteArrayInputStream(content), new DataOutputStream(delta));
+
+    final byte[] corrupted = delta.toByteArray();
+    corrupted[100] ^= 1;
+
+    DeltaDecoder.decode(
+        new DataInputStream(new ByteArrayInputStream(corrupted)),
+        null,
+        null,
+        new ByteArrayOutputStream());
+  }
+
+  @Test(expected = IOException.class)
+  public void testDeltaReferringToMissingCopy() throws IOException {
+    final byte[] base = randomBytes(10 * 1024);
+
+    final FileSignature signature =
+        FileSignature.create(new ByteArrayInputStream(base), base.length);
+
+    final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    DeltaEncoder.encode(signature, new ByteArrayInputStream(base), new DataOutputStream(delta));
+
+    DeltaDecoder.decode(
+        new DataInputStream(new ByteArrayInputStream(delta.toByteArray())),
+        null,
+        null,
+        new ByteArrayOutputStream());
+  }
+
+  private byte[] roundTrip(byte[] base, byte[] content) throws IOException {
+    FileSignature signature = null;
+
+    if (base != null) {
+      Files.write(baseFile, base);
+      signature = FileSignature.create(new ByteArrayInputStream(base), base.length);
+    }
+
+    final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+
+    literalLength =
+        DeltaEncoder.encode(
+            signature, new ByteArrayInputStream(content), new DataOutputStream(delta));
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta.toByteArray()));
+
+    if (base == null) {
+      DeltaDecoder.decode(in, null, null, out);
+    } else {
+      try (FileChannel channel = FileChannel.open(baseFile, StandardOpenOption.READ)) {
+        DeltaDecoder.decode(in, signature, channel, out);
+      }
+    }
+
+    assertEquals("delta contains trailing data", -1, in.read());
+
+    return out.toByteArray();
+  }
+
+  private byte[] randomBytes(int length) {
+    final byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,119 @@
+package saros.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DispatchThreadContextTest {
+
+  private DispatchThreadContext context;
+
+  @Before
+  public void setUp() {
+    context = new DispatchThreadContext();
+  }
+
+  @After
+  public void tearDown() {
+    context.dispose();
+  }
+
+  @Test
+  public void testResultsAreDispatchedInOrderPerSource() throws Exception {
+    final int sources = 4;
+    final int count = 200;
+
+    final List<String> dispatched = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+    final CountDownLatch done = new CountDownLatch(sources * count);
+
+    for (int i = 0; i < count; i++) {
+      for (int source = 0; source < sources; source++) {
+        final String entry = source + ":" + i;
+
+        context.decodeAndDispatch(
+            "source-" + source,
+            () -> {
+              if (entry.hashCode() % 7 == 0) Thread.yield();
+
+              return () -> {
+                dispatched.add(entry);
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+              };
+            });
+      }
+    }
+
+    assertTrue("not all results were dispatched", done.await(30, TimeUnit.SECONDS));
+
+    Map<String, Integer> last = new HashMap<String, Integer>();
+
+    for (String entry : dispatched) {
+      String[] parts = entry.split(":");
+
+      int index = Integer.parseInt(parts[1]);
+
+      assertEquals("order of source " + parts[0], last.getOrDefault(parts[0], -1) + 1, index);
+
+      last.put(parts[0], index);
+    }
+
+    for (String thread : threads)
+      assertTrue("dispatched on " + thread, thread.endsWith("DispatchContext"));
+  }
+
+  @Test(timeout = 30000)
+  public void testSourcesAreDecodedInParallel() throws Exception {
+    final CountDownLatch otherSourceDecoded = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(2);
+
+    context.decodeAndDispatch(
+        "slow",
+        () -> {
+          try {
+            otherSourceDecoded.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+
+          return done::countDown;
+        });
+
+    context.decodeAndDispatch(
+        "fast",
+        () -> {
+          otherSourceDecoded.countDown();
+          return done::countDown;
+        });
+
+    done.await();
+  }
+
+  @Test(timeout = 30000)
+  public void testFailingDecoderDoesNotStopSource() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+
+    context.decodeAndDispatch(
+        "source",
+        () -> {
+          throw new IllegalStateException("expected by the test");
+        });
+
+    context.decodeAndDispatch("source", () -> null);
+    context.decodeAndDispatch("source", () -> done::countDown);
+
+    done.await();
+  }
+}
@@ -2,8 +2,13 @@ package saros.net;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import org.junit.Before;
 import org.junit.Test;
 import saros.net.xmpp.JID;
@@ -123,4 +128,55 @@ public class JIDTest {
     // assertNotEquals(servicePerspectiveJIDWithResource, new
     // JID("bob@jabber.org"));
   }
+
+  @Test
+  public void testValueOf() {
+    JID canonical = JID.valueOf("userXYZ@jabber.org/Saros");
+
+    assertSame(canonical, JID.valueOf("userXYZ@jabber.org/Saros"));
+    assertSame(JID.valueOf("userXYZ@jabber.org"), canonical.getBareJID());
+
+    assertTrue(canonical.strictlyEquals(jidWithResource));
+    assertEquals(jid, canonical);
+    assertEquals(jid.hashCode(), canonical.hashCode());
+    assertEquals("Saros", canonical.getResource());
+    assertEquals("userXYZ@jabber.org", canonical.getBase());
+  }
+
+  @Test
+  public void testCanonicalJIDsOfSameUserShareTheirBase() {
+    JID saros = JID.valueOf("userXYZ@jabber.org/Saros");
+    JID other = JID.valueOf("userXYZ@jabber.org/Other");
+
+    assertSame(saros.getBase(), other.getBase());
+    assertEquals(saros, other);
+  }
+
+  @Test
+  public void testGetBareJID() {
+    assertSame(jid, jid.getBareJID());
+    assertSame(jidWithResource.getBareJID(), jidWithResource.getBareJID());
+    assertTrue(jidWithResource.getBareJID().strictlyEquals(jid));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(jidWithResource);
+    }
+
+    JID copy;
+
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (JID) in.readObject();
+    }
+
+    assertTrue(copy.strictlyEquals(jidWithResource));
+    assertEquals(jidWithResource.hashCode(), copy.hashCode());
+    assertEquals("Saros", copy.getResource());
+    assertSame(JID.valueOf(jidWithResource.toString()), copy);
+  }
 }
@@ -0,0 +1,136 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.junit.Before;
+import org.junit.Test;
+import saros.net.stream.StreamMode;
+
+public class AdaptiveCompressorTest {
+
+  private static final byte[] ACTIVITIES =
+      ("<ados xmlns=\"saros\"><payload class=\"ADOS\" v=\"SPXV1\" sid=\"1234\" seq=\"17\">"
+              + "<jupiterActivity><vectorTime local=\"3\" remote=\"5\"/>"
+              + "<o class=\"insertOp\" sl=\"10\" so=\"4\" ld=\"0\" od=\"0\" ol=\"4\" text=\"x\"/>"
+              + "<r i=\"rp\" p=\"src/Main.java\"/></jupiterActivity></payload></ados>")
+          .getBytes(StandardCharsets.UTF_8);
+
+  private AdaptiveCompressor compressor;
+
+  @Before
+  public void setUp() {
+    compressor = new AdaptiveCompressor();
+  }
+
+  @Test
+  public void testRoundTripWithDictionary() throws Exception {
+    byte[] compressed = compressor.compress(StreamMode.TCP, ACTIVITIES);
+
+    assertNotNull(compressed);
+    assertTrue(
+        "dictionary does not improve compression: " + compressed.length,
+        compressed.length < deflateWithoutDictionary(ACTIVITIES).length);
+
+    Inflater inflater = new Inflater();
+
+    inflater.setInput(compressed);
+
+    byte[] inflated = new byte[ACTIVITIES.length * 2];
+
+    int length = inflater.inflate(inflated);
+
+    assertEquals(0, length);
+    assertTrue(inflater.needsDictionary());
+
+    inflater.setDictionary(AdaptiveCompressor.DICTIONARY);
+
+    length = inflater.inflate(inflated);
+
+    assertTrue(inflater.finished());
+    assertArrayEquals(ACTIVITIES, Arrays.copyOf(inflated, length));
+  }
+
+  @Test
+  public void testIncompressiblePayloadsAreSkipped() {
+    byte[] random = new byte[4096];
+
+    new Random(0).nextBytes(random);
+
+    for (int i = 0; i < 50; i++) compressor.compress(StreamMode.IBB, random);
+
+    int compressed = 0;
+
+    for (int i = 0; i < AdaptiveCompressor.PROBE_INTERVAL * 4; i++) {
+      byte[] result = compressor.compress(StreamMode.IBB, random);
+
+      if (result != null) compressed++;
+    }
+
+    assertEquals(0, compressed);
+
+    /* other stream modes are not affected */
+    assertNotNull(compressor.compress(StreamMode.TCP, ACTIVITIES));
+  }
+
+  @Test
+  public void testLevelAdaptsToTransferSpeed() {
+    byte[] payload = new byte[64 * 1024];
+
+    for (int i = 0; i < payload.length; i++) payload[i] = (byte) ('a' + i % 7 + i / 4096);
+
+    /* a byte takes a second, compression always pays off */
+    compressor.transferred(StreamMode.IBB, 1, 1_000_000_000L);
+
+    /* a gigabyte takes a nanosecond, compression never pays off */
+    compressor.transferred(StreamMode.SOCKS5_DIRECT, 1_000_000_000L, 1);
+
+    for (int i = 0; i < 10; i++) {
+      compressor.compress(StreamMode.IBB, payload);
+      compressor.compress(StreamMode.SOCKS5_DIRECT, payload);
+    }
+
+    assertEquals(Deflater.BEST_COMPRESSION, compressor.getLevel(StreamMode.IBB));
+    assertEquals(Deflater.BEST_SPEED, compressor.getLevel(StreamMode.SOCKS5_DIRECT));
+  }
+
+  @Test
+  public void testStatisticsAreReported() {
+    final List<String> reports = new ArrayList<String>();
+
+    compressor =
+        new AdaptiveCompressor(
+            (mode, level, sizeUncompressed, sizeCompressed, nanos) ->
+                reports.add(mode + " " + level + " " + sizeUncompressed + " " + sizeCompressed));
+
+    byte[] compressed = compressor.compress(StreamMode.TCP, ACTIVITIES);
+
+    assertEquals(
+        Collections.singletonList("TCP 6 " + ACTIVITIES.length + " " + compressed.length), reports);
+  }
+
+  private static byte[] deflateWithoutDictionary(byte[] data) {
+    Deflater deflater = new Deflater();
+
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+
+      byte[] buffer = new byte[data.length * 2];
+
+      return Arrays.copyOf(buffer, deflater.deflate(buffer));
+    } finally {
+      deflater.end();
+    }
+  }
+}
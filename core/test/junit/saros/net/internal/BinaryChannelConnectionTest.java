@@ -4,19 +4,25 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
-import saros.net.internal.BinaryChannelConnection.IDPool;
 import saros.net.stream.ByteStream;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.JID;
@@ -235,6 +241,49 @@ public class BinaryChannelConnectionTest {
     assertArrayEquals("fragmentation error", bytesToSend, receivedBytes);
   }
 
+  @Test
+  public void testOversizedPayloadIsRejected() throws Exception {
+
+    final CountDownLatch closed = new CountDownLatch(1);
+
+    BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            bobStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener() {
+              @Override
+              public void connectionClosed(
+                  String connectionIdentifier, IByteStreamConnection connection) {
+                closed.countDown();
+              }
+            });
+
+    bob.setBinaryXMPPExtensionReceiver((e) -> receivedBytes = e.getPayload());
+    bob.initialize();
+
+    // a hand crafted greeting followed by a transfer description announcing a 2 GB payload
+    DataOutputStream out = new DataOutputStream(aliceStream.getOutputStream());
+
+    out.write(0x01);
+    out.write(3);
+    out.write(0xFA);
+    out.writeInt(0);
+    out.writeInt(Integer.MAX_VALUE);
+    out.write(0);
+    out.writeShort(0);
+    out.write(0);
+    out.flush();
+
+    try {
+      assertTrue("connection was not closed", closed.await(10000, TimeUnit.MILLISECONDS));
+    } finally {
+      bob.close();
+    }
+  }
+
   @Test
   @Ignore(
       "this test consumes much CPU resources and should only executed manually when making changes")
@@ -303,19 +352,229 @@ public class BinaryChannelConnectionTest {
   }
 
   @Test
-  public void testIDPool() {
+  public void testConcurrentSenders() throws Exception {
 
-    IDPool pool = new IDPool();
+    final int senders = 100;
 
-    for (int i = 0; i < 32; i++) assertEquals(i, pool.nextID());
+    final CountDownLatch received = new CountDownLatch(senders);
 
-    assertEquals(-1, pool.nextID());
+    final List<byte[]> receivedPayloads = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            aliceStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
 
-    pool.freeID(31);
-    pool.freeID(0);
+    BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            bobStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
+
+    bob.setBinaryXMPPExtensionReceiver(
+        (e) -> {
+          receivedPayloads.add(e.getPayload());
+          received.countDown();
+        });
+
+    alice.initialize();
+    bob.initialize();
+
+    final TransferDescription description = TransferDescription.newDescription();
+
+    description.setNamespace("foo-namespace");
+    description.setElementName("bar");
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+    final List<Thread> threads = new ArrayList<Thread>();
+
+    try {
+      for (int i = 0; i < senders; i++) {
+        final byte[] bytesToSend = new byte[(i % 4) * 20000 + 1];
+
+        Arrays.fill(bytesToSend, (byte) i);
+
+        Thread thread =
+            new Thread(
+                () -> {
+                  try {
+                    start.await();
+                    alice.send(description, bytesToSend);
+                  } catch (Exception e) {
+                    errors.add(e);
+                  }
+                });
+
+        thread.start();
+        threads.add(thread);
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads) thread.join(10000);
+
+      received.await(10000, TimeUnit.MILLISECONDS);
+    } finally {
+      alice.close();
+      bob.close();
+    }
+
+    assertEquals("sending failed: " + errors, 0, errors.size());
+    assertEquals(senders, receivedPayloads.size());
+
+    Set<Integer> receivedIds = new HashSet<Integer>();
+
+    for (byte[] payload : receivedPayloads) {
+      int id = payload[0] & 0xFF;
+
+      assertEquals("fragmentation error", (id % 4) * 20000 + 1, payload.length);
+
+      for (byte b : payload) assertEquals("fragmentation error", (byte) id, b);
+
+      receivedIds.add(id);
+    }
+
+    assertEquals(senders, receivedIds.size());
+  }
+
+  @Test(timeout = 30000)
+  public void testSmallPacketIsNotStalledByLargePacket() throws Exception {
+
+    final CountDownLatch readingAllowed = new CountDownLatch(1);
+
+    final CountDownLatch received = new CountDownLatch(2);
+
+    final List<byte[]> receivedPayloads = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    final InputStream bobIn = bobStream.getInputStream();
+
+    // bob does not read anything until allowed to
+    final InputStream gatedBobIn =
+        new FilterInputStream(bobIn) {
+          @Override
+          public int read() throws IOException {
+            awaitReading();
+            return super.read();
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            awaitReading();
+            return super.read(b, off, len);
+          }
+
+          private void awaitReading() throws InterruptedIOException {
+            try {
+              readingAllowed.await();
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+          }
+        };
+
+    final ByteStream gatedBobStream =
+        new PipedBytestreamSession(null, null) {
+          @Override
+          public InputStream getInputStream() throws IOException {
+            return gatedBobIn;
+          }
+
+          @Override
+          public OutputStream getOutputStream() throws IOException {
+            return bobStream.getOutputStream();
+          }
+
+          @Override
+          public void close() throws IOException {
+            readingAllowed.countDown();
+            bobStream.close();
+          }
+        };
+
+    BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            aliceStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
+
+    BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            gatedBobStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
+
+    bob.setBinaryXMPPExtensionReceiver(
+        (e) -> {
+          receivedPayloads.add(e.getPayload());
+          received.countDown();
+        });
+
+    alice.initialize();
+    bob.initialize();
+
+    final TransferDescription description = TransferDescription.newDescription();
+
+    description.setNamespace("foo-namespace");
+    description.setElementName("bar");
+
+    // larger than the buffer of the pipe
+    final byte[] largeBytesToSend = new byte[4 * PIPE_BUFFER_SIZE];
+
+    Arrays.fill(largeBytesToSend, (byte) 1);
+
+    final byte[] smallBytesToSend = new byte[] {2};
+
+    Thread largeSender =
+        new Thread(
+            () -> {
+              try {
+                alice.send(description, largeBytesToSend);
+              } catch (IOException e) {
+                // handled by the assertions below
+              }
+            });
+
+    try {
+      largeSender.start();
+
+      // give the large packet a head start
+      Thread.sleep(200);
+
+      assertEquals(
+          "stalled packet is not reported as queued",
+          1,
+          alice.getQueueDepth(description.getTrafficClass()));
+
+      // must not block although the remote side does not read the large packet
+      alice.send(description, smallBytesToSend);
+
+      readingAllowed.countDown();
+
+      received.await(10000, TimeUnit.MILLISECONDS);
+      largeSender.join(10000);
+
+      assertEquals(0, alice.getQueueDepth(description.getTrafficClass()));
+    } finally {
+      alice.close();
+      bob.close();
+    }
 
-    assertEquals(0, pool.nextID());
-    assertEquals(31, pool.nextID());
-    assertEquals(-1, pool.nextID());
+    assertEquals(2, receivedPayloads.size());
+    assertArrayEquals(smallBytesToSend, receivedPayloads.get(0));
+    assertArrayEquals(largeBytesToSend, receivedPayloads.get(1));
   }
 }
@@ -0,0 +1,115 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import saros.net.TrafficClass;
+
+public class PrioritySendSchedulerTest {
+
+  private PrioritySendScheduler<String> scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new PrioritySendScheduler<String>();
+  }
+
+  @Test
+  public void testStrictPriority() {
+    scheduler.add(TrafficClass.BULK, "bulk");
+    scheduler.add(TrafficClass.CONTROL, "control");
+    scheduler.add(TrafficClass.AWARENESS, "awareness");
+    scheduler.add(TrafficClass.EDIT, "edit-0");
+    scheduler.add(TrafficClass.EDIT, "edit-1");
+
+    assertEquals(2, scheduler.size(TrafficClass.EDIT));
+    assertEquals(1, scheduler.size(TrafficClass.BULK));
+
+    assertEquals("edit-0", poll());
+    assertEquals("edit-1", poll());
+    assertEquals("awareness", poll());
+    assertEquals("control", poll());
+    assertEquals("bulk", poll());
+    assertNull(poll());
+
+    assertEquals(0, scheduler.size(TrafficClass.EDIT));
+    assertEquals(0, scheduler.size(TrafficClass.BULK));
+  }
+
+  @Test
+  public void testItemsThatAreNotReadyAreSkipped() {
+    scheduler.add(TrafficClass.EDIT, "blocked");
+    scheduler.add(TrafficClass.EDIT, "edit");
+    scheduler.add(TrafficClass.BULK, "bulk");
+
+    assertEquals("edit", scheduler.poll((item) -> !item.equals("blocked")));
+    assertEquals("bulk", scheduler.poll((item) -> !item.equals("blocked")));
+    assertNull(scheduler.poll((item) -> !item.equals("blocked")));
+
+    assertEquals("blocked", poll());
+  }
+
+  @Test
+  public void testStarvationProtection() {
+    scheduler.add(TrafficClass.BULK, "bulk");
+
+    int served = 0;
+
+    while (true) {
+      // a higher lane that always has items
+      scheduler.add(TrafficClass.EDIT, "edit");
+
+      String item = poll();
+
+      if (item.equals("bulk")) break;
+
+      served++;
+    }
+
+    assertEquals(PrioritySendScheduler.STARVATION_LIMIT, served);
+
+    // the lane is served with strict priority again
+    scheduler.add(TrafficClass.BULK, "bulk");
+
+    assertEquals("edit", poll());
+  }
+
+  @Test
+  public void testLongestWaitingLaneIsServedFirst() {
+    scheduler.add(TrafficClass.BULK, "bulk");
+
+    for (int i = 0; i < PrioritySendScheduler.STARVATION_LIMIT / 2; i++) {
+      scheduler.add(TrafficClass.EDIT, "edit");
+      assertEquals("edit", poll());
+    }
+
+    scheduler.add(TrafficClass.CONTROL, "control");
+
+    String item;
+
+    do {
+      scheduler.add(TrafficClass.EDIT, "edit");
+      item = poll();
+    } while (item.equals("edit"));
+
+    assertEquals("bulk", item);
+
+    // the control lane keeps the number of times it was skipped so far
+    int served = 0;
+
+    do {
+      scheduler.add(TrafficClass.EDIT, "edit");
+      item = poll();
+      served++;
+    } while (item.equals("edit"));
+
+    assertEquals("control", item);
+    assertEquals(PrioritySendScheduler.STARVATION_LIMIT / 2 + 1, served);
+  }
+
+  private String poll() {
+    return scheduler.poll((item) -> true);
+  }
+}
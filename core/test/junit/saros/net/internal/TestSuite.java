@@ -5,9 +5,12 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  AdaptiveCompressorTest.class,
   BinaryChannelConnectionTest.class,
   ConnectionPoolTest.class,
-  DataTransferManagerTest.class
+  DataTransferManagerTest.class,
+  PrioritySendSchedulerTest.class,
+  XMPPReceiverTest.class
 })
 public class TestSuite {
   // the class remains completely empty,
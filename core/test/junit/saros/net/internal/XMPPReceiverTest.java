@@ -0,0 +1,94 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.easymock.EasyMock;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.communication.extensions.BinaryActivitiesExtension;
+import saros.communication.extensions.PingExtension;
+import saros.net.DispatchThreadContext;
+import saros.net.PacketCollector;
+import saros.net.xmpp.XMPPConnectionService;
+
+public class XMPPReceiverTest {
+
+  private static final long TIMEOUT = 10000;
+
+  private DispatchThreadContext dispatchThreadContext;
+
+  private XMPPReceiver receiver;
+
+  @Before
+  public void setUp() {
+    dispatchThreadContext = new DispatchThreadContext();
+
+    XMPPConnectionService connectionService = EasyMock.createNiceMock(XMPPConnectionService.class);
+    DataTransferManager dataTransferManager = EasyMock.createNiceMock(DataTransferManager.class);
+
+    EasyMock.replay(connectionService, dataTransferManager);
+
+    receiver = new XMPPReceiver(dispatchThreadContext, connectionService, dataTransferManager);
+  }
+
+  @After
+  public void tearDown() {
+    dispatchThreadContext.dispose();
+  }
+
+  @Test
+  public void testPacketsAreRoutedBySessionAndExtension() {
+    PacketCollector sessionA =
+        receiver.createCollector(BinaryActivitiesExtension.PROVIDER.getPacketFilter("A"));
+    PacketCollector sessionB =
+        receiver.createCollector(BinaryActivitiesExtension.PROVIDER.getPacketFilter("B"));
+    PacketCollector ping = receiver.createCollector(PingExtension.PROVIDER.getPacketFilter("A"));
+    PacketCollector all = receiver.createCollector((packet) -> true);
+
+    Packet packet = createPacket("A");
+
+    receiver.processPacket(packet);
+
+    assertSame(packet, sessionA.nextResult(TIMEOUT));
+    assertSame(packet, all.nextResult(TIMEOUT));
+
+    /* packets are dispatched one after another, so the first packet was fully dispatched */
+    Message marker = new Message();
+    marker.setFrom("alice@example.com/Saros");
+
+    receiver.processPacket(marker);
+
+    assertNotNull(all.nextResult(TIMEOUT));
+    assertFalse(sessionB.hasReceived());
+    assertFalse(ping.hasReceived());
+  }
+
+  @Test
+  public void testRemovedListenersDoNotReceivePackets() {
+    PacketCollector removed =
+        receiver.createCollector(BinaryActivitiesExtension.PROVIDER.getPacketFilter("A"));
+    PacketCollector remaining =
+        receiver.createCollector(BinaryActivitiesExtension.PROVIDER.getPacketFilter("A"));
+
+    removed.cancel();
+
+    Packet packet = createPacket("A");
+
+    receiver.processPacket(packet);
+
+    assertSame(packet, remaining.nextResult(TIMEOUT));
+    assertFalse(removed.hasReceived());
+  }
+
+  private static Packet createPacket(String sessionID) {
+    Message message = new Message();
+    message.setFrom("alice@example.com/Saros");
+    message.addExtension(new BinaryActivitiesExtension(sessionID, new byte[0], 0, 0));
+    return message;
+  }
+}
@@ -6,8 +6,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.easymock.EasyMock;
@@ -37,6 +39,8 @@ import saros.activities.TextSelectionActivity;
 import saros.activities.ViewportActivity;
 import saros.concurrent.management.ConcurrentDocumentClient;
 import saros.concurrent.management.ConcurrentDocumentServer;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextSelection;
 import saros.filesystem.IFile;
 import saros.filesystem.IFolder;
 import saros.filesystem.IReferencePoint;
@@ -60,6 +64,8 @@ public class ActivityHandlerTest {
   // Input
   private List<IActivity> activities;
 
+  private ISarosSession sessionMock;
+
   // SessionUsers
   private List<User> participants;
   private List<User> remoteUsers;
@@ -230,6 +236,62 @@ public class ActivityHandlerTest {
     }
   }
 
+  /**
+   * This tests that the host does not wait for pending transformations before handling the next
+   * activities and that the results are still sent in the order the activities were received.
+   */
+  @Test(timeout = 10000)
+  public void ServerOrderedDeliveryTest() {
+
+    setParameters(bob, alice, true);
+
+    final List<IActivity> sent = Collections.synchronizedList(new ArrayList<IActivity>());
+
+    final JupiterActivity jupiterActivity = EasyMock.createNiceMock(JupiterActivity.class);
+    EasyMock.expect(jupiterActivity.getSource()).andStubReturn(alice);
+    EasyMock.replay(jupiterActivity);
+
+    final ChangeColorActivity changeColorActivity =
+        EasyMock.createNiceMock(ChangeColorActivity.class);
+    EasyMock.expect(changeColorActivity.getSource()).andStubReturn(alice);
+    EasyMock.expect(changeColorActivity.getTarget()).andStubReturn(bob);
+    EasyMock.replay(changeColorActivity);
+
+    final CompletableFuture<List<QueueItem>> transformation =
+        new CompletableFuture<List<QueueItem>>();
+
+    final ConcurrentDocumentServer server = EasyMock.createNiceMock(ConcurrentDocumentServer.class);
+    EasyMock.expect(server.transformIncomingAsync(jupiterActivity)).andReturn(transformation);
+    EasyMock.replay(server);
+
+    final ActivityHandler orderedHandler =
+        new ActivityHandler(
+            sessionMock,
+            new IActivityHandlerCallback() {
+              @Override
+              public void send(List<User> recipients, IActivity activity) {
+                sent.add(activity);
+              }
+
+              @Override
+              public void execute(IActivity activity) {
+                // NOP
+              }
+            },
+            server,
+            EasyMock.createNiceMock(ConcurrentDocumentClient.class),
+            synchronizer);
+
+    orderedHandler.handleIncomingActivities(Collections.singletonList(jupiterActivity));
+    orderedHandler.handleIncomingActivities(Collections.singletonList(changeColorActivity));
+
+    assertTrue("activities were sent before the transformation completed", sent.isEmpty());
+
+    transformation.complete(Collections.singletonList(new QueueItem(remoteUsers, jupiterActivity)));
+
+    assertEquals(Arrays.asList(jupiterActivity, changeColorActivity), sent);
+  }
+
   /**
    * This tests if the handleIncomingActivities-method at the client produces the right activities
    * for the localUser.
@@ -268,6 +330,95 @@ public class ActivityHandlerTest {
     }
   }
 
+  /**
+   * This tests that consecutive text edits are combined while the first one is sent immediately,
+   * and that held back text edits are sent before any other activity.
+   */
+  @Test
+  public void TextEditCoalescingTest() throws Exception {
+
+    final List<IActivity> sent = Collections.synchronizedList(new ArrayList<IActivity>());
+
+    ConcurrentDocumentClient client = EasyMock.createNiceMock(ConcurrentDocumentClient.class);
+    EasyMock.expect(client.transformToJupiter(EasyMock.anyObject(IActivity.class)))
+        .andAnswer(
+            new IAnswer<IActivity>() {
+              @Override
+              public IActivity answer() throws Throwable {
+                return (IActivity) EasyMock.getCurrentArguments()[0];
+              }
+            })
+        .anyTimes();
+    EasyMock.replay(client);
+
+    ActivityHandler coalescingHandler =
+        new ActivityHandler(
+            sessionMock,
+            new IActivityHandlerCallback() {
+              @Override
+              public void send(List<User> recipients, IActivity activity) {
+                sent.add(activity);
+              }
+
+              @Override
+              public void execute(IActivity activity) {
+                // NOP
+              }
+            },
+            client,
+            synchronizer);
+
+    coalescingHandler.start();
+
+    IFile file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.replay(file);
+
+    List<IActivity> typing = new ArrayList<IActivity>();
+
+    for (int i = 0; i < 5; i++) {
+      typing.add(
+          TextEditActivity.buildTextEditActivity(
+              alice, new TextPosition(0, i), String.valueOf((char) ('a' + i)), "", file));
+
+      typing.add(
+          new TextSelectionActivity(
+              alice,
+              new TextSelection(new TextPosition(0, i + 1), new TextPosition(0, i + 1)),
+              file));
+    }
+
+    IActivity other = EasyMock.createNiceMock(ChangeColorActivity.class);
+
+    coalescingHandler.handleOutgoingActivities(typing);
+    coalescingHandler.handleOutgoingActivities(Collections.singletonList(other));
+
+    try {
+      assertEquals(5, sent.size());
+
+      assertEquals(typing.get(0), sent.get(0));
+      assertEquals(typing.get(1), sent.get(1));
+      assertEquals(
+          TextEditActivity.buildTextEditActivity(alice, new TextPosition(0, 1), "bcde", "", file),
+          sent.get(2));
+      assertEquals(typing.get(9), sent.get(3));
+      assertEquals(other, sent.get(4));
+
+      // the line is idle again after the coalescing window
+      Thread.sleep(100);
+
+      sent.clear();
+
+      coalescingHandler.handleOutgoingActivities(
+          Collections.singletonList(
+              TextEditActivity.buildTextEditActivity(
+                  alice, new TextPosition(0, 5), "f", "", file)));
+
+      assertEquals(1, sent.size());
+    } finally {
+      coalescingHandler.stop();
+    }
+  }
+
   /**
    * Specifies the roles of participants in the session. Should be called at the start of every test
    * case
@@ -322,7 +473,7 @@ public class ActivityHandlerTest {
     synchronizer = new NonUISynchronizer();
 
     // Create SessionMock
-    ISarosSession sessionMock = EasyMock.createMock(ISarosSession.class);
+    sessionMock = EasyMock.createMock(ISarosSession.class);
     EasyMock.expect(sessionMock.getLocalUser()).andStubReturn(alice);
     EasyMock.expect(sessionMock.getHost()).andStubReturn(alice);
     // read host-Variable at runtime.
@@ -444,8 +595,10 @@ public class ActivityHandlerTest {
     for (IActivity activity : activities) {
       // just return activities as the server doesn't change the type of
       // activities
-      EasyMock.expect(server.transformIncoming(activity))
-          .andReturn(Collections.singletonList(new QueueItem(participants, activity)));
+      EasyMock.expect(server.transformIncomingAsync(activity))
+          .andReturn(
+              CompletableFuture.completedFuture(
+                  Collections.singletonList(new QueueItem(participants, activity))));
     }
 
     EasyMock.replay(server);
@@ -2,6 +2,7 @@ package saros.session.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -19,13 +20,19 @@ import org.junit.Before;
 import org.junit.Test;
 import saros.activities.IActivity;
 import saros.activities.NOPActivity;
+import saros.activities.codec.BinaryActivityCodec;
+import saros.communication.extensions.BinaryActivitiesExtension;
 import saros.net.IReceiver;
 import saros.net.ITransmitter;
+import saros.net.TrafficClass;
 import saros.net.xmpp.JID;
+import saros.preferences.IPreferenceStore;
+import saros.session.ActivityCodecHook;
 import saros.session.ISarosSession;
 import saros.session.User;
 import saros.test.fakes.net.FakeConnectionFactory;
 import saros.test.fakes.net.FakeConnectionFactory.FakeConnectionFactoryResult;
+import saros.test.util.MemoryPreferenceStore;
 
 public class ActivitySequencerTest {
 
@@ -142,7 +149,8 @@ public class ActivitySequencerTest {
       brokenTransmitter.send(
           EasyMock.anyObject(String.class),
           EasyMock.anyObject(JID.class),
-          EasyMock.anyObject(PacketExtension.class));
+          EasyMock.anyObject(PacketExtension.class),
+          EasyMock.anyObject(TrafficClass.class));
     } catch (IOException e) {
       // cannot happen in recording mode
     }
@@ -273,6 +281,66 @@ public class ActivitySequencerTest {
         bobReceivedActivitiesBuffer.size());
   }
 
+  @Test(timeout = 30000)
+  public void testBroadcastedActivitiesAreEncodedOnce() throws IOException {
+    final JID carlJID = new JID("carl@test/Saros");
+
+    final User bob = new User(BOB_JID, false, false, createBinaryCodecPreferences());
+    final User carl = new User(carlJID, false, false, createBinaryCodecPreferences());
+
+    final List<PacketExtension> sentExtensions = Collections.synchronizedList(new ArrayList<>());
+    final Capture<PacketExtension> capture = Capture.newInstance();
+
+    ITransmitter transmitter = EasyMock.createNiceMock(ITransmitter.class);
+
+    transmitter.send(
+        EasyMock.anyObject(String.class),
+        EasyMock.anyObject(JID.class),
+        EasyMock.capture(capture),
+        EasyMock.anyObject(TrafficClass.class));
+
+    EasyMock.expectLastCall().andAnswer(() -> sentExtensions.add(capture.getValue())).anyTimes();
+
+    EasyMock.replay(transmitter);
+
+    aliceSequencer = new ActivitySequencer(sessionStubAlice, transmitter, aliceReceiver, null);
+
+    aliceSequencer.start();
+
+    aliceSequencer.registerUser(bob);
+    aliceSequencer.registerUser(carl);
+
+    aliceSequencer.sendActivity(Collections.singletonList(bob), new NOPActivity(aliceUser, bob, 0));
+
+    aliceSequencer.flush(bob);
+
+    sentExtensions.clear();
+
+    aliceSequencer.sendActivity(Arrays.asList(bob, carl), new NOPActivity(aliceUser, bob, 1));
+
+    aliceSequencer.flush(bob);
+    aliceSequencer.flush(carl);
+
+    assertEquals(2, sentExtensions.size());
+
+    BinaryActivitiesExtension first = (BinaryActivitiesExtension) sentExtensions.get(0);
+    BinaryActivitiesExtension second = (BinaryActivitiesExtension) sentExtensions.get(1);
+
+    assertSame("activities were encoded twice", first.getPayload(), second.getPayload());
+
+    List<Integer> sequenceNumbers =
+        Arrays.asList(first.getSequenceNumber(), second.getSequenceNumber());
+
+    assertTrue("wrong sequence numbers: " + sequenceNumbers, sequenceNumbers.contains(0));
+    assertTrue("wrong sequence numbers: " + sequenceNumbers, sequenceNumbers.contains(1));
+  }
+
+  private static IPreferenceStore createBinaryCodecPreferences() {
+    IPreferenceStore preferences = new MemoryPreferenceStore();
+    preferences.setValue(ActivityCodecHook.KEY_CODEC_VERSION, BinaryActivityCodec.VERSION);
+    return preferences;
+  }
+
   private static ISarosSession createSessionMock(
       final User host,
       final User client,
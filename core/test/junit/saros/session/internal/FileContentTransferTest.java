@@ -0,0 +1,98 @@
+package saros.session.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.FileActivity;
+import saros.activities.IActivity;
+import saros.filesystem.IFile;
+import saros.session.User;
+
+public class FileContentTransferTest {
+
+  private FileContentTransfer transfer;
+
+  private User source;
+
+  private IFile file;
+
+  @Before
+  public void setUp() {
+    transfer = new FileContentTransfer(null, "session");
+    transfer.start();
+
+    source = EasyMock.createNiceMock(User.class);
+    file = EasyMock.createNiceMock(IFile.class);
+    EasyMock.replay(source, file);
+  }
+
+  @After
+  public void tearDown() {
+    transfer.stop();
+  }
+
+  @Test
+  public void testContentIsDeletedOnceExecuted() throws IOException {
+    Path content = transfer.createContentFile();
+
+    transfer.release(createActivity(content));
+
+    assertFalse("content was not deleted after execution", Files.exists(content));
+  }
+
+  @Test
+  public void testContentIsKeptWhileForwarded() throws IOException {
+    Path content = transfer.createContentFile();
+    FileActivity activity = createActivity(content);
+
+    transfer.retain(activity);
+    transfer.release(activity);
+
+    assertTrue("content was deleted before it was forwarded", Files.exists(content));
+  }
+
+  @Test
+  public void testContentIsDeletedOnceExecutedAndForwarded() throws Exception {
+    Path content = transfer.createContentFile();
+    FileActivity activity = createActivity(content);
+
+    transfer.retain(activity);
+    transfer.release(activity);
+    transfer.releaseWhenSent(Collections.<IActivity>singletonList(activity));
+
+    long timeout = System.currentTimeMillis() + 10000;
+
+    while (Files.exists(content) && System.currentTimeMillis() < timeout) Thread.sleep(10);
+
+    assertFalse("content was not deleted after it was forwarded", Files.exists(content));
+  }
+
+  @Test
+  public void testUnreferencedContentIsDeletedOnStop() throws IOException {
+    Path content = transfer.createContentFile();
+
+    transfer.stop();
+
+    assertFalse("content was not deleted on stop", Files.exists(content));
+  }
+
+  private FileActivity createActivity(Path content) {
+    return new FileActivity(
+        source,
+        FileActivity.Type.CREATED,
+        FileActivity.Purpose.ACTIVITY,
+        file,
+        null,
+        null,
+        content,
+        "UTF-8");
+  }
+}
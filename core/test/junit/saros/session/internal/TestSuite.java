@@ -8,6 +8,7 @@ import org.junit.runners.Suite;
   ActivityHandlerTest.class,
   ActivityQueuerTest.class,
   ActivitySequencerTest.class,
+  FileContentTransferTest.class,
   SharedReferencePointMapperTest.class,
   UserInformationHandlerTest.class
 })
@@ -5,10 +5,10 @@ import saros.filesystem.EclipseWorkspaceImpl;
 import saros.filesystem.IWorkspace;
 import saros.filesystem.checksum.EclipseAbsolutePathResolver;
 import saros.filesystem.checksum.FileContentNotifierBridge;
-import saros.filesystem.checksum.FileSystemChecksumCache;
 import saros.filesystem.checksum.IAbsolutePathResolver;
 import saros.filesystem.checksum.IChecksumCache;
 import saros.filesystem.checksum.IFileContentChangedNotifier;
+import saros.filesystem.checksum.PersistentChecksumCache;
 import saros.repackaged.picocontainer.MutablePicoContainer;
 import saros.resource_change_handlers.FileActivityConsumer;
 import saros.resource_change_handlers.FolderActivityConsumer;
@@ -35,7 +35,7 @@ public class SarosEclipseSessionContextFactory extends SarosCoreSessionContextFa
     // Checksum cache support
     container.addComponent(IFileContentChangedNotifier.class, FileContentNotifierBridge.class);
     container.addComponent(IAbsolutePathResolver.class, EclipseAbsolutePathResolver.class);
-    container.addComponent(IChecksumCache.class, FileSystemChecksumCache.class);
+    container.addComponent(IChecksumCache.class, PersistentChecksumCache.class);
     container.addComponent(
         IWorkspace.class, new EclipseWorkspaceImpl(ResourcesPlugin.getWorkspace()));
   }
@@ -5,9 +5,11 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.Optional;
 import org.apache.log4j.Logger;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -147,4 +149,13 @@ public class EclipseFile extends AbstractEclipseResource implements IFile {
 
     return 0;
   }
+
+  @Override
+  public Optional<Path> getLocalPath() {
+    IPath location = getDelegate().getLocation();
+
+    if (location == null) return Optional.empty();
+
+    return Optional.of(location.toFile().toPath());
+  }
 }
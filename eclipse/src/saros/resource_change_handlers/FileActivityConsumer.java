@@ -1,10 +1,10 @@
 package saros.resource_change_handlers;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
-import java.util.Arrays;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
@@ -144,7 +144,7 @@ public class FileActivityConsumer extends AbstractActivityConsumer implements St
 
     FileUtils.move(fileDestination.getFullPath(), fileToMove);
 
-    if (activity.getContent() == null) return;
+    if (!activity.hasContent()) return;
 
     handleFileCreation(activity);
   }
@@ -168,18 +168,33 @@ public class FileActivityConsumer extends AbstractActivityConsumer implements St
     final IFile file = ResourceConverter.getDelegate(sarosFile);
 
     final String encoding = activity.getEncoding();
-    final byte[] newContent = activity.getContent();
 
-    byte[] actualContent = null;
-
-    if (file.exists()) actualContent = FileUtils.getLocalFileContent(file);
-
-    if (!Arrays.equals(newContent, actualContent)) {
-      FileUtils.writeFile(new ByteArrayInputStream(newContent), file);
+    if (!file.exists() || !hasSameContent(file, activity)) {
+      try (InputStream newContent = activity.getContentStream()) {
+        FileUtils.writeFile(newContent, file);
+      }
     } else {
       log.debug("FileActivity " + activity + " dropped (same content)");
     }
 
     if (encoding != null) sarosFile.setCharset(encoding);
   }
+
+  /**
+   * Compares the content of the given file with the content carried by the given activity. Both
+   * contents are streamed, so large files are never held in memory as a whole.
+   */
+  private static boolean hasSameContent(final IFile file, final FileActivity activity)
+      throws IOException {
+
+    try (InputStream newContent = activity.getContentStream();
+        InputStream actualContent = file.getContents()) {
+
+      return newContent != null && IOUtils.contentEquals(newContent, actualContent);
+
+    } catch (CoreException e) {
+      log.warn("could not get content of file " + file.getFullPath());
+      return false;
+    }
+  }
 }
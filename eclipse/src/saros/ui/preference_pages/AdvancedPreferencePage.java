@@ -71,6 +71,12 @@ public class AdvancedPreferencePage extends FieldEditorPreferencePage
             PreferenceConstants.INSTANT_SESSION_START_PREFERRED,
             Messages.AdvancedPreferencePage_instant_session_start_preferred,
             getFieldEditorParent()));
+
+    addField(
+        new BooleanFieldEditor(
+            PreferenceConstants.DELTA_TRANSFER_PREFERRED,
+            Messages.AdvancedPreferencePage_delta_transfer_preferred,
+            getFieldEditorParent()));
   }
 
   @Override
@@ -635,6 +635,7 @@ public class AddReferencePointsToSessionWizard extends Wizard {
             FileListFactory.createFileList(
                 referencePoint,
                 checksumCache,
+                negotiation.getChecksumAlgorithm(),
                 ProgressMonitorAdapterFactory.convert(
                     subMonitor.newChild(1, SubMonitor.SUPPRESS_ALL_LABELS)));
       } catch (IOException e) {
@@ -649,9 +650,15 @@ public class AddReferencePointsToSessionWizard extends Wizard {
                 IStatus.ERROR, Saros.PLUGIN_ID, "failed to compute local file list", e));
       }
 
-      ResourceNegotiationData data = negotiation.getResourceNegotiationData(referencePointId);
+      FileListDiff diff;
 
-      FileListDiff diff = FileListDiff.diff(localFileList, data.getFileList());
+      try {
+        diff = negotiation.computeDiff(referencePointId, localFileList);
+      } catch (IOException e) {
+        throw new CoreException(
+            new org.eclipse.core.runtime.Status(
+                IStatus.ERROR, Saros.PLUGIN_ID, "failed to obtain remote file list", e));
+      }
 
       if (!diff.getRemovedFolders().isEmpty()
           || !diff.getRemovedFiles().isEmpty()
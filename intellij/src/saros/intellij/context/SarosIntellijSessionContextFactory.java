@@ -1,8 +1,9 @@
 package saros.intellij.context;
 
 import saros.filesystem.IWorkspace;
+import saros.filesystem.checksum.IAbsolutePathResolver;
 import saros.filesystem.checksum.IChecksumCache;
-import saros.filesystem.checksum.NullChecksumCache;
+import saros.filesystem.checksum.PersistentChecksumCache;
 import saros.intellij.editor.LocalEditorHandler;
 import saros.intellij.editor.LocalEditorManipulator;
 import saros.intellij.editor.SelectedEditorStateSnapshotFactory;
@@ -10,6 +11,7 @@ import saros.intellij.editor.annotations.AnnotationManager;
 import saros.intellij.eventhandler.ApplicationEventHandlersFactory;
 import saros.intellij.eventhandler.ProjectEventHandlersFactory;
 import saros.intellij.eventhandler.project.ProjectClosedHandler;
+import saros.intellij.filesystem.IntellijAbsolutePathResolver;
 import saros.intellij.filesystem.IntellijWorkspace;
 import saros.intellij.filesystem.SharedResourcesManager;
 import saros.intellij.followmode.FollowModeNotificationDispatcher;
@@ -40,7 +42,8 @@ public class SarosIntellijSessionContextFactory extends SarosCoreSessionContextF
     container.addComponent(AnnotationManager.class);
 
     // Checksum cache support
-    container.addComponent(IChecksumCache.class, NullChecksumCache.class);
+    container.addComponent(IAbsolutePathResolver.class, IntellijAbsolutePathResolver.class);
+    container.addComponent(IChecksumCache.class, PersistentChecksumCache.class);
     container.addComponent(IWorkspace.class, IntellijWorkspace.class);
 
     // Other
@@ -4,8 +4,10 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -217,12 +219,12 @@ public class LocalEditorManipulator {
    * <p><b>NOTE:</b> This method should only be used as part of the recovery process.
    *
    * @param file the file to recover
-   * @param content the new content of the file
+   * @param content stream providing the new content of the file, it is not closed by this method
    * @param encoding the encoding of the content
    * @param source the user that send the recovery action
    * @see Document
    */
-  public void handleContentRecovery(IFile file, byte[] content, String encoding, User source) {
+  public void handleContentRecovery(IFile file, InputStream content, String encoding, User source) {
     VirtualFile virtualFile = VirtualFileConverter.convertToVirtualFile(file);
     if (virtualFile == null) {
       log.warn(
@@ -249,13 +251,13 @@ public class LocalEditorManipulator {
 
     annotationManager.removeAnnotations(file);
 
-    String text;
+    Charset charset;
     try {
-      text = new String(content, encoding);
-    } catch (UnsupportedEncodingException e) {
+      charset = Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
       log.warn("Could not decode text using given encoding. Using default instead.", e);
 
-      text = new String(content);
+      charset = Charset.defaultCharset();
 
       String qualifiedResource =
           file.getReferencePoint().getName() + " - " + file.getReferencePointRelativePath();
@@ -269,6 +271,16 @@ public class LocalEditorManipulator {
           Messages.LocalEditorManipulator_incompatible_encoding_title);
     }
 
+    String text;
+    try {
+      text = IOUtils.toString(content, charset.name());
+    } catch (IOException e) {
+      log.warn(
+          "Could not recover file content of " + file + " as the content could not be read.", e);
+
+      return;
+    }
+
     boolean wasReadOnly = !document.isWritable();
     boolean wasDocumentListenerEnabled = manager.isDocumentModificationHandlerEnabled();
 
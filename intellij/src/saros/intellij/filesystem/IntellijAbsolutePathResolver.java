@@ -0,0 +1,26 @@
+package saros.intellij.filesystem;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import java.nio.file.Paths;
+import saros.filesystem.IFile;
+import saros.filesystem.checksum.IAbsolutePathResolver;
+
+/**
+ * IntelliJ implementation of the {@link IAbsolutePathResolver} interface returning the path of the
+ * virtual file represented by the given file.
+ *
+ * @see VirtualFile#getPath()
+ */
+public class IntellijAbsolutePathResolver implements IAbsolutePathResolver {
+
+  @Override
+  public String getAbsolutePath(IFile file) {
+    if (!(file instanceof IntellijFile)) return null;
+
+    VirtualFile virtualFile = ((IntellijFile) file).getVirtualFile();
+
+    if (virtualFile == null || !virtualFile.isInLocalFileSystem()) return null;
+
+    return Paths.get(virtualFile.getPath()).toString();
+  }
+}
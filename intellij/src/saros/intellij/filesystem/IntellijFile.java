@@ -11,6 +11,8 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -219,4 +221,15 @@ public class IntellijFile extends AbstractIntellijResource implements IFile {
 
     return virtualFile.getLength();
   }
+
+  @Override
+  public Optional<Path> getLocalPath() {
+    VirtualFile virtualFile = getVirtualFile();
+
+    if (!existsInternal(virtualFile) || !virtualFile.isInLocalFileSystem()) {
+      return Optional.empty();
+    }
+
+    return Optional.of(Paths.get(virtualFile.getPath()));
+  }
 }
@@ -1,7 +1,6 @@
 package saros.intellij.filesystem;
 
 import com.intellij.openapi.application.ModalityState;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.IllegalCharsetNameException;
@@ -157,8 +156,10 @@ public class SharedResourcesManager implements Startable {
     try {
       if (type == FileActivity.Type.CREATED) {
         if (file.exists()) {
-          localEditorManipulator.handleContentRecovery(
-              file, activity.getContent(), activity.getEncoding(), activity.getSource());
+          try (InputStream contents = activity.getContentStream()) {
+            localEditorManipulator.handleContentRecovery(
+                file, contents, activity.getEncoding(), activity.getSource());
+          }
 
         } else {
           handleFileCreation(activity);
@@ -227,21 +228,20 @@ public class SharedResourcesManager implements Startable {
 
       localEditorHandler.saveDocument(oldFile);
 
-      byte[] activityContent = activity.getContent();
-
-      InputStream contents;
       String charset;
 
-      if (activityContent != null) {
-        contents = new ByteArrayInputStream(activityContent);
+      if (activity.hasContent()) {
         charset = activity.getEncoding();
 
       } else {
-        contents = oldFile.getContents();
         charset = oldFile.getCharset();
       }
 
-      newFile.create(contents);
+      try (InputStream contents =
+          activity.hasContent() ? activity.getContentStream() : oldFile.getContents()) {
+        newFile.create(contents);
+      }
+
       newFile.setCharset(charset);
 
       if (fileOpen) {
@@ -304,9 +304,7 @@ public class SharedResourcesManager implements Startable {
       return;
     }
 
-    InputStream contents = new ByteArrayInputStream(activity.getContent());
-
-    try {
+    try (InputStream contents = activity.getContentStream()) {
       setFilesystemModificationHandlerEnabled(false);
 
       file.create(contents);
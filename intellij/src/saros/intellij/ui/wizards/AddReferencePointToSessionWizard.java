@@ -671,16 +671,14 @@ public class AddReferencePointToSessionWizard extends Wizard {
       IReferencePoint referencePoint = entry.getValue();
 
       try {
-        final ResourceNegotiationData data =
-            negotiation.getResourceNegotiationData(referencePointID);
-
         FileList localFileList =
             FileListFactory.createFileList(
                 referencePoint,
                 checksumCache,
+                negotiation.getChecksumAlgorithm(),
                 new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SETTASKNAME));
 
-        final FileListDiff diff = FileListDiff.diff(localFileList, data.getFileList());
+        final FileListDiff diff = negotiation.computeDiff(referencePointID, localFileList);
 
         if (!diff.getRemovedFolders().isEmpty()
             || !diff.getRemovedFiles().isEmpty()
@@ -10,6 +10,12 @@ public class ServerConfig {
   private static final String PASSWORD_KEY = "saros.server.password";
   private static final String WORKSPACE_PATH_KEY = "saros.server.workspace";
   private static final String INTERACTIVE_KEY = "saros.server.interactive";
+  private static final String EDITOR_FLUSH_INTERVAL_KEY = "saros.server.editor.flushinterval";
+  private static final String EDITOR_JOURNAL_KEY = "saros.server.editor.journal";
+  private static final String EDITOR_CACHE_SIZE_KEY = "saros.server.editor.cachesize";
+
+  private static final long DEFAULT_EDITOR_FLUSH_INTERVAL = 2000;
+  private static final long DEFAULT_EDITOR_CACHE_SIZE = 64 * 1024 * 1024;
 
   /**
    * Returns the JID that the Saros server should use to connect to the XMPP network.
@@ -52,4 +58,48 @@ public class ServerConfig {
         || value.equalsIgnoreCase("yes")
         || value.equalsIgnoreCase("y");
   }
+
+  /**
+   * Returns the interval in milliseconds in which modified editors are written to disk.
+   *
+   * @return the flush interval in milliseconds, defaults to 2000 if not specified or invalid
+   */
+  public static long getEditorFlushInterval() {
+    return getPositiveLong(EDITOR_FLUSH_INTERVAL_KEY, DEFAULT_EDITOR_FLUSH_INTERVAL);
+  }
+
+  /**
+   * Returns the amount of memory in bytes the server should use at most to keep the contents of
+   * files in memory which are not opened by any remote user.
+   *
+   * @return the editor cache size in bytes, defaults to 64 MiB if not specified or invalid
+   */
+  public static long getEditorCacheSize() {
+    return getPositiveLong(EDITOR_CACHE_SIZE_KEY, DEFAULT_EDITOR_CACHE_SIZE);
+  }
+
+  /**
+   * Returns the path of the journal file that records editor changes which are not yet written to
+   * disk. May be <code>null</code>, which means the journal should be placed in the workspace
+   * directory.
+   *
+   * @return the path of the journal file to use, or <code>null</code> if the default location
+   *     should be used
+   */
+  public static String getEditorJournalPath() {
+    return System.getProperty(EDITOR_JOURNAL_KEY);
+  }
+
+  private static long getPositiveLong(String key, long defaultValue) {
+    String value = System.getProperty(key);
+
+    if (value == null) return defaultValue;
+
+    try {
+      long result = Long.parseLong(value);
+      return result > 0 ? result : defaultValue;
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
 }
@@ -18,6 +18,7 @@ import saros.server.console.InviteCommand;
 import saros.server.console.ServerConsole;
 import saros.server.console.ShareCommand;
 import saros.server.dummies.NullRemoteProgressIndicatorFactory;
+import saros.server.editor.EditorJournal;
 import saros.server.filesystem.ServerWorkspaceImpl;
 import saros.server.net.ServerFeatureAdvertiser;
 import saros.server.net.SubscriptionAuthorizer;
@@ -74,6 +75,7 @@ public class ServerContextFactory extends AbstractContextFactory {
     c.addComponent(NegotiationHandler.class);
     c.addComponent(JoinSessionRequestHandler.class);
     c.addComponent(ServerFeatureAdvertiser.class);
+    c.addComponent(EditorJournal.class);
     if (ServerConfig.isInteractive()) {
       c.addComponent(new ServerConsole(System.in, System.out));
       c.addComponent(InviteCommand.class);
@@ -4,7 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.io.IOUtils;
 import saros.activities.TextEditActivity;
-import saros.editor.text.TextPositionUtils;
+import saros.editor.text.TextPosition;
 import saros.filesystem.IFile;
 import saros.util.LineSeparatorNormalizationUtil;
 
@@ -12,9 +12,20 @@ import saros.util.LineSeparatorNormalizationUtil;
 public class Editor {
 
   private IFile file;
-  private GapBuffer content;
+  private Rope content;
 
-  public Editor(IFile file) throws IOException {
+  private final EditorJournal journal;
+  private boolean dirty;
+  private boolean closed;
+
+  /**
+   * Creates an editor for the given file and reads its content.
+   *
+   * @param file the file to open
+   * @param journal the journal to record applied edits in, may be <code>null</code>
+   * @throws IOException if reading the file fails
+   */
+  public Editor(IFile file, EditorJournal journal) throws IOException {
     String charset = file.getCharset();
 
     if (charset == null) {
@@ -23,9 +34,10 @@ public class Editor {
     }
 
     this.file = file;
+    this.journal = journal;
 
     try (InputStream input = file.getContents()) {
-      content = new GapBuffer(IOUtils.toString(input, charset));
+      content = new Rope(IOUtils.toString(input, charset));
     }
   }
 
@@ -34,20 +46,53 @@ public class Editor {
    *
    * @return associated file
    */
-  public IFile getFile() {
+  public synchronized IFile getFile() {
     return file;
   }
 
+  /**
+   * Associates this editor with another file, e.g. after the file was moved. The editor should not
+   * contain unsaved changes.
+   *
+   * @param file the new file
+   */
+  synchronized void setFile(IFile file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns whether the editor's content contains changes that are not yet written to disk.
+   *
+   * @return <code>true</code> if the content was changed since the last {@link #save}
+   */
+  public synchronized boolean isDirty() {
+    return dirty;
+  }
+
   /**
    * Returns the editor's text content. Depending on whether any text edits have been applied, the
    * content may differ from that of the associated file on disk.
    *
    * @return editor's content
    */
-  public String getContent() {
+  public synchronized String getContent() {
     return content.toString();
   }
 
+  /**
+   * Returns the editor's text content with normalized line separators.
+   *
+   * @return editor's normalized content
+   * @see LineSeparatorNormalizationUtil
+   */
+  public synchronized String getNormalizedContent() {
+    String lineSeparator = content.guessLineSeparator();
+
+    if (lineSeparator.isEmpty()) return content.toString();
+
+    return LineSeparatorNormalizationUtil.normalize(content.toString(), lineSeparator);
+  }
+
   /**
    * Applies an editing operation to the editor's content. For performance reasons, the change is
    * not automatically saved to disk; this allows multiple edits to be collected and then written in
@@ -55,18 +100,21 @@ public class Editor {
    *
    * @param edit the text edit operation to apply
    */
-  public void applyTextEdit(TextEditActivity edit) {
-    String contentString = content.toString();
-
-    String lineSeparator = TextPositionUtils.guessLineSeparator(contentString);
+  public synchronized void applyTextEdit(TextEditActivity edit) {
+    String lineSeparator = content.guessLineSeparator();
 
     // Use system default line separator if text does not contain any line separator yet.
     if (lineSeparator.isEmpty()) {
       lineSeparator = System.lineSeparator();
     }
 
+    TextPosition startPosition = edit.getStartPosition();
+
     int startOffset =
-        TextPositionUtils.calculateOffset(contentString, edit.getStartPosition(), lineSeparator);
+        content.getLineOffset(startPosition.getLineNumber()) + startPosition.getInLineOffset();
+
+    int deletedLength = 0;
+    String denormalizedNewText = "";
 
     if (edit.getReplacedText().length() > 0) {
       String replacedText = edit.getReplacedText();
@@ -74,16 +122,21 @@ public class Editor {
       String denormalizedReplacedText =
           LineSeparatorNormalizationUtil.revertNormalization(replacedText, lineSeparator);
 
-      content.delete(startOffset, denormalizedReplacedText.length());
+      deletedLength = denormalizedReplacedText.length();
+      content.delete(startOffset, deletedLength);
     }
     if (edit.getNewText().length() > 0) {
       String newText = edit.getNewText();
 
-      String denormalizedNewText =
+      denormalizedNewText =
           LineSeparatorNormalizationUtil.revertNormalization(newText, lineSeparator);
 
       content.insert(startOffset, denormalizedNewText);
     }
+
+    dirty = true;
+
+    if (journal != null) journal.recordEdit(file, startOffset, deletedLength, denormalizedNewText);
   }
 
   /**
@@ -93,7 +146,47 @@ public class Editor {
    *
    * @throws IOException if writing the file fails
    */
-  public void save() throws IOException {
+  public synchronized void save() throws IOException {
     getFile().setContents(IOUtils.toInputStream(content.toString(), file.getCharset()));
+
+    dirty = false;
+
+    if (journal != null) journal.recordClean(file);
+  }
+
+  /**
+   * Drops the changes that are not yet written to disk, e.g. because the file was deleted. The
+   * editor must not be used afterwards.
+   */
+  public synchronized void discard() {
+    if (dirty && journal != null) journal.recordClean(file);
+
+    dirty = false;
+    closed = true;
+  }
+
+  /**
+   * Marks the editor as closed after its content was saved. The editor must not be used afterwards.
+   */
+  public synchronized void close() {
+    closed = true;
+  }
+
+  /**
+   * Returns whether the editor was closed or discarded.
+   *
+   * @return <code>true</code> if the editor must no longer be used
+   */
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Returns the number of characters of the editor's content.
+   *
+   * @return the length of the content
+   */
+  public synchronized int length() {
+    return content.length();
   }
 }
@@ -0,0 +1,251 @@
+package saros.server.editor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import saros.filesystem.IFile;
+
+/**
+ * Cache of the {@linkplain Editor editors} opened by the {@link ServerEditorManager}.
+ *
+ * <p>The size of the cache is bounded by the estimated memory used by the editor contents. If the
+ * budget is exceeded, the least recently used editors are evicted unless they are pinned, e.g.
+ * because a remote user has the file open. Pinned editors and the editor that is currently accessed
+ * are never evicted, so the budget may be exceeded if they alone are larger than the budget.
+ *
+ * <p>All methods are thread safe. Concurrent access to different editors does not block; callers
+ * have to synchronize on an editor themselves when accessing its content.
+ */
+class EditorCache {
+
+  /** Estimated memory used per character of an editor's content. */
+  private static final int BYTES_PER_CHAR = 2;
+
+  /** Interface for loading an editor that is not cached. */
+  interface Loader {
+    Editor load(IFile file) throws IOException;
+  }
+
+  private static final class Entry {
+    private final Editor editor;
+    private volatile long lastAccess;
+
+    // guarded by this
+    private long weight;
+    private boolean removed;
+
+    private Entry(Editor editor) {
+      this.editor = editor;
+    }
+  }
+
+  private final ConcurrentHashMap<IFile, Entry> entries = new ConcurrentHashMap<>();
+
+  private final long maximumWeight;
+  private final Supplier<Set<IFile>> pinnedFiles;
+  private final Consumer<Editor> evictionListener;
+
+  private final AtomicLong accessCounter = new AtomicLong();
+  private final AtomicLong totalWeight = new AtomicLong();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumWeight the memory budget in bytes
+   * @param pinnedFiles supplies the files whose editors must not be evicted
+   * @param evictionListener called with every editor that is evicted from the cache
+   */
+  EditorCache(
+      long maximumWeight, Supplier<Set<IFile>> pinnedFiles, Consumer<Editor> evictionListener) {
+    this.maximumWeight = maximumWeight;
+    this.pinnedFiles = pinnedFiles;
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * Returns the cached editor of the given file or loads it.
+   *
+   * @param file the file
+   * @param loader the loader used if no editor is cached for the file
+   * @return the editor of the file
+   * @throws IOException if loading the editor fails
+   */
+  Editor get(IFile file, Loader loader) throws IOException {
+    Entry entry = entries.get(file);
+
+    if (entry != null) {
+      hitCount.incrementAndGet();
+      touch(entry);
+      return entry.editor;
+    }
+
+    missCount.incrementAndGet();
+
+    try {
+      entry =
+          entries.computeIfAbsent(
+              file,
+              key -> {
+                try {
+                  return new Entry(loader.load(key));
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    touch(entry);
+    updateWeight(file);
+
+    return entry.editor;
+  }
+
+  /**
+   * Returns the cached editor of the given file without loading it.
+   *
+   * @param file the file
+   * @return the editor or <code>null</code> if the editor is not cached
+   */
+  Editor getIfPresent(IFile file) {
+    Entry entry = entries.get(file);
+    return entry == null ? null : entry.editor;
+  }
+
+  /**
+   * Adds the given editor to the cache, replacing the editor cached for the file.
+   *
+   * @param file the file
+   * @param editor the editor of the file
+   */
+  void put(IFile file, Editor editor) {
+    Entry entry = new Entry(editor);
+    touch(entry);
+
+    Entry previous = entries.put(file, entry);
+
+    if (previous != null) discard(previous);
+
+    updateWeight(file);
+  }
+
+  /**
+   * Removes the editor of the given file from the cache. The eviction listener is not called.
+   *
+   * @param file the file
+   * @return the removed editor or <code>null</code> if the editor was not cached
+   */
+  Editor remove(IFile file) {
+    Entry entry = entries.remove(file);
+
+    if (entry == null) return null;
+
+    discard(entry);
+    return entry.editor;
+  }
+
+  /**
+   * Recalculates the weight of the editor of the given file, e.g. after its content was changed,
+   * and evicts other editors if the memory budget is exceeded.
+   *
+   * @param file the file
+   */
+  void updateWeight(IFile file) {
+    Entry entry = entries.get(file);
+
+    if (entry != null) {
+      long weight = (long) entry.editor.length() * BYTES_PER_CHAR;
+
+      synchronized (entry) {
+        if (!entry.removed) {
+          totalWeight.addAndGet(weight - entry.weight);
+          entry.weight = weight;
+        }
+      }
+    }
+
+    if (totalWeight.get() > maximumWeight) evict(file);
+  }
+
+  /** Returns a view of the files whose editors are cached. */
+  Set<IFile> keySet() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  /** Returns a view of the cached editors. */
+  Iterable<Editor> editors() {
+    return () -> entries.values().stream().map(entry -> entry.editor).iterator();
+  }
+
+  /** Returns the number of lookups that returned a cached editor. */
+  long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of lookups that had to load an editor. */
+  long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of editors that were evicted to stay within the memory budget. */
+  long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the estimated memory in bytes used by the cached editors. */
+  long getWeight() {
+    return totalWeight.get();
+  }
+
+  private void discard(Entry entry) {
+    synchronized (entry) {
+      entry.removed = true;
+      totalWeight.addAndGet(-entry.weight);
+    }
+  }
+
+  private void touch(Entry entry) {
+    entry.lastAccess = accessCounter.incrementAndGet();
+  }
+
+  /**
+   * Evicts the least recently used editors until the memory budget is no longer exceeded.
+   *
+   * @param accessedFile the file that is currently accessed, its editor is not evicted
+   */
+  private synchronized void evict(IFile accessedFile) {
+    Set<IFile> pinned = pinnedFiles.get();
+
+    while (totalWeight.get() > maximumWeight) {
+      Map.Entry<IFile, Entry> eldest = null;
+
+      for (Map.Entry<IFile, Entry> candidate : entries.entrySet()) {
+        IFile file = candidate.getKey();
+
+        if (file.equals(accessedFile) || pinned.contains(file)) continue;
+
+        if (eldest == null || candidate.getValue().lastAccess < eldest.getValue().lastAccess)
+          eldest = candidate;
+      }
+
+      if (eldest == null) return;
+
+      if (!entries.remove(eldest.getKey(), eldest.getValue())) continue;
+
+      discard(eldest.getValue());
+      evictionCount.incrementAndGet();
+      evictionListener.accept(eldest.getValue().editor);
+    }
+  }
+}
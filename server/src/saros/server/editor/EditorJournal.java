@@ -0,0 +1,342 @@
+package saros.server.editor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import saros.filesystem.IFile;
+import saros.filesystem.IWorkspace;
+import saros.repackaged.picocontainer.Startable;
+import saros.server.ServerConfig;
+import saros.server.filesystem.ServerFileImpl;
+import saros.server.filesystem.ServerWorkspaceImpl;
+import saros.util.PathUtils;
+
+/**
+ * Append-only journal of the text edits applied to {@linkplain Editor editors} that are not yet
+ * written to disk.
+ *
+ * <p>Every applied edit is appended to the journal. Once an editor is saved or discarded a marker
+ * is appended that invalidates all previous edits of its file. On startup the edits of all files
+ * that were not saved are replayed onto the files on disk, so the server does not lose changes if
+ * it was terminated before the {@link ServerEditorManager} wrote them.
+ *
+ * <p>To keep the journal from growing for the whole session, the position of the first edit that is
+ * not yet invalidated is tracked for every file. {@link #compact()} drops all records before the
+ * earliest of these positions.
+ *
+ * <p>The journal is flushed to the operating system after every record but not forced to the
+ * storage device.
+ */
+public class EditorJournal implements Startable {
+
+  private static final Logger log = Logger.getLogger(EditorJournal.class);
+
+  private static final String DEFAULT_FILE_NAME = ".saros-editor-journal";
+
+  private static final String SEGMENT_SUFFIX = ".compact";
+
+  private static final int RECORD_EDIT = 1;
+  private static final int RECORD_CLEAN = 2;
+
+  private static final class Edit {
+    private final int offset;
+    private final int length;
+    private final String text;
+
+    private Edit(int offset, int length, String text) {
+      this.offset = offset;
+      this.length = length;
+      this.text = text;
+    }
+  }
+
+  private static final class FileEdits {
+    private final String charset;
+    private final List<Edit> edits = new ArrayList<>();
+
+    private FileEdits(String charset) {
+      this.charset = charset;
+    }
+  }
+
+  private final ServerWorkspaceImpl workspace;
+  private final Path journalPath;
+
+  private FileChannel channel;
+  private DataOutputStream out;
+
+  /** position of the first edit of every file that was not invalidated yet */
+  private final Map<String, Long> pendingPositions = new HashMap<>();
+
+  public EditorJournal(IWorkspace workspace) {
+    this.workspace = (ServerWorkspaceImpl) workspace;
+
+    String pathString = ServerConfig.getEditorJournalPath();
+
+    if (pathString != null) {
+      journalPath = Paths.get(pathString).toAbsolutePath();
+    } else {
+      journalPath = this.workspace.getLocation().resolve(DEFAULT_FILE_NAME);
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    try {
+      if (Files.exists(journalPath)) replay();
+
+      open();
+
+      channel.truncate(0);
+    } catch (IOException e) {
+      log.error(
+          "could not open editor journal " + journalPath + ", editor changes are not journaled", e);
+      close();
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    close();
+  }
+
+  /**
+   * Records an edit applied to the content of the given file.
+   *
+   * @param file the file whose editor content was changed
+   * @param offset the offset of the edit
+   * @param length the number of deleted characters
+   * @param text the inserted text
+   */
+  public synchronized void recordEdit(IFile file, int offset, int length, String text) {
+    if (out == null) return;
+
+    String path = toPathString(file);
+
+    try {
+      long position = channel.position();
+
+      out.writeByte(RECORD_EDIT);
+      out.writeUTF(path);
+      out.writeUTF(file.getCharset());
+      out.writeInt(offset);
+      out.writeInt(length);
+
+      byte[] data = text.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(data.length);
+      out.write(data);
+      out.flush();
+
+      pendingPositions.putIfAbsent(path, position);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Records that all previous edits of the given file must no longer be replayed, either because
+   * the editor content was written to disk or because it was discarded.
+   *
+   * @param file the file
+   */
+  public synchronized void recordClean(IFile file) {
+    if (out == null) return;
+
+    String path = toPathString(file);
+
+    if (!pendingPositions.containsKey(path)) return;
+
+    try {
+      out.writeByte(RECORD_CLEAN);
+      out.writeUTF(path);
+      out.flush();
+
+      pendingPositions.remove(path);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Drops all records that precede the first edit which was not invalidated yet. The remaining
+   * records are copied to a new journal segment that replaces the current one, unless there are
+   * fewer records to drop than to keep.
+   */
+  public synchronized void compact() {
+    if (out == null) return;
+
+    try {
+      long end = channel.position();
+
+      if (pendingPositions.isEmpty()) {
+        if (end > 0) channel.truncate(0);
+
+        return;
+      }
+
+      long start = Collections.min(pendingPositions.values());
+
+      if (start < end - start) return;
+
+      Path segment = journalPath.resolveSibling(journalPath.getFileName() + SEGMENT_SUFFIX);
+
+      try (FileChannel target =
+          FileChannel.open(
+              segment,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+
+        for (long position = start; position < end; )
+          position += channel.transferTo(position, end - position, target);
+      }
+
+      // the journal must be closed before it can be replaced on every platform
+      out.close();
+      out = null;
+      channel = null;
+
+      Files.move(segment, journalPath, StandardCopyOption.ATOMIC_MOVE);
+
+      open();
+
+      pendingPositions.replaceAll((path, position) -> position - start);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void open() throws IOException {
+    channel =
+        FileChannel.open(
+            journalPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    channel.position(channel.size());
+
+    out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+  }
+
+  private void replay() {
+    Map<String, FileEdits> pending = new LinkedHashMap<>();
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+
+      while (true) {
+        int type = in.read();
+
+        if (type == -1) break;
+
+        String path = in.readUTF();
+
+        if (type == RECORD_CLEAN) {
+          pending.remove(path);
+          continue;
+        }
+
+        if (type != RECORD_EDIT) {
+          log.warn("editor journal " + journalPath + " is corrupted, ignoring remaining records");
+          break;
+        }
+
+        String charset = in.readUTF();
+        int offset = in.readInt();
+        int length = in.readInt();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+
+        FileEdits fileEdits = pending.get(path);
+
+        if (fileEdits == null) {
+          fileEdits = new FileEdits(charset);
+          pending.put(path, fileEdits);
+        }
+
+        fileEdits.edits.add(new Edit(offset, length, new String(data, StandardCharsets.UTF_8)));
+      }
+    } catch (EOFException e) {
+      log.warn("editor journal " + journalPath + " ends with an incomplete record");
+    } catch (IOException e) {
+      log.warn("editor journal " + journalPath + " could not be read completely", e);
+    }
+
+    for (Map.Entry<String, FileEdits> entry : pending.entrySet()) {
+      replay(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void replay(String pathString, FileEdits fileEdits) {
+    IFile file = new ServerFileImpl(workspace, PathUtils.fromPortableString(pathString));
+
+    try {
+      if (!file.exists()) {
+        log.warn("cannot restore unsaved editor changes of " + file + ", file does not exist");
+        return;
+      }
+
+      file.setCharset(fileEdits.charset);
+
+      Rope content;
+
+      try (InputStream input = file.getContents()) {
+        content = new Rope(IOUtils.toString(input, fileEdits.charset));
+      }
+
+      for (Edit edit : fileEdits.edits) {
+        content.delete(edit.offset, edit.length);
+        content.insert(edit.offset, edit.text);
+      }
+
+      file.setContents(IOUtils.toInputStream(content.toString(), fileEdits.charset));
+
+      log.info("restored " + fileEdits.edits.size() + " unsaved editor change(s) of " + file);
+    } catch (IOException | RuntimeException e) {
+      log.error("could not restore unsaved editor changes of " + file, e);
+    }
+  }
+
+  private void fail(IOException e) {
+    log.error("writing to editor journal " + journalPath + " failed, journaling is disabled", e);
+    close();
+  }
+
+  private void close() {
+    try {
+      if (out != null) out.close();
+      else if (channel != null) channel.close();
+    } catch (IOException e) {
+      log.warn("could not close editor journal " + journalPath, e);
+    }
+
+    out = null;
+    channel = null;
+
+    pendingPositions.clear();
+  }
+
+  private static String toPathString(IFile file) {
+    return PathUtils.toPortableString(((ServerFileImpl) file).getFullPath());
+  }
+}
@@ -0,0 +1,393 @@
+package saros.server.editor;
+
+import java.util.Random;
+import saros.editor.text.TextPositionUtils;
+
+/**
+ * Rope implementation used by {@link Editor} for performant text edits.
+ *
+ * <p>The text is stored as a sequence of chunks in a randomized balanced search tree (treap). Every
+ * node keeps the length and the number of line breaks of its subtree, so mapping a line number to
+ * an offset as well as inserting and deleting text takes logarithmic time in the number of chunks
+ * instead of linear time in the size of the text. The complete text is only materialized by {@link
+ * #toString()}.
+ *
+ * <p>Line breaks are counted for both the Windows and the Unix line separator. Which of them is
+ * used for line lookups is decided the same way as by {@link
+ * TextPositionUtils#guessLineSeparator(String)}.
+ */
+public class Rope {
+
+  /** Maximum number of characters stored in a single chunk. */
+  private static final int MAX_CHUNK_LENGTH = 1024;
+
+  /** Chunk length used when splitting larger texts, leaves room for subsequent inserts. */
+  private static final int INITIAL_CHUNK_LENGTH = MAX_CHUNK_LENGTH / 2;
+
+  private static final int NO_CHAR = -1;
+
+  private static final class Node {
+    private String chunk;
+    private final int priority;
+
+    private Node left;
+    private Node right;
+
+    // statistics of the chunk
+    private int chunkLineFeeds;
+    private int chunkCrlfs;
+
+    // statistics of the subtree
+    private int length;
+    private int lineFeeds;
+    private int crlfs;
+    private int first;
+    private int last;
+
+    private Node(String chunk, int priority) {
+      this.priority = priority;
+      setChunk(chunk);
+    }
+
+    private void setChunk(String chunk) {
+      this.chunk = chunk;
+
+      chunkLineFeeds = 0;
+      chunkCrlfs = 0;
+
+      for (int i = 0; i < chunk.length(); i++) {
+        if (chunk.charAt(i) != '\n') continue;
+
+        chunkLineFeeds++;
+
+        if (i > 0 && chunk.charAt(i - 1) == '\r') chunkCrlfs++;
+      }
+
+      update();
+    }
+
+    private void update() {
+      length = length(left) + chunk.length() + length(right);
+      lineFeeds = lineFeeds(left) + chunkLineFeeds + lineFeeds(right);
+
+      int crlfCount = left == null ? 0 : left.crlfs;
+      int lastChar = left == null ? NO_CHAR : left.last;
+
+      // chunks are never empty
+      if (lastChar == '\r' && chunk.charAt(0) == '\n') crlfCount++;
+
+      crlfCount += chunkCrlfs;
+      lastChar = chunk.charAt(chunk.length() - 1);
+
+      if (right != null) {
+        if (lastChar == '\r' && right.first == '\n') crlfCount++;
+
+        crlfCount += right.crlfs;
+        lastChar = right.last;
+      }
+
+      crlfs = crlfCount;
+      first = left == null ? chunk.charAt(0) : left.first;
+      last = lastChar;
+    }
+  }
+
+  private final Random random = new Random();
+
+  private Node root;
+
+  public Rope(String content) {
+    root = createTree(content);
+  }
+
+  /**
+   * Returns the number of characters of the text.
+   *
+   * @return the length of the text
+   */
+  public int length() {
+    return length(root);
+  }
+
+  /**
+   * Returns the line separator used in the text.
+   *
+   * @return the Windows line separator if the text contains it, otherwise the Unix line separator
+   *     if the text contains it, otherwise an empty string
+   * @see TextPositionUtils#guessLineSeparator(String)
+   */
+  public String guessLineSeparator() {
+    if (root == null) return "";
+
+    if (root.crlfs > 0) return TextPositionUtils.WINDOWS_LINE_SEPARATOR;
+
+    if (root.lineFeeds > 0) return TextPositionUtils.UNIX_LINE_SEPARATOR;
+
+    return "";
+  }
+
+  /**
+   * Returns the offset of the first character of the given line. Only line separators matching
+   * {@link #guessLineSeparator()} are considered.
+   *
+   * @param lineNumber the line number
+   * @return the offset of the given line
+   * @throws IllegalArgumentException if the line number is negative
+   * @throws IllegalStateException if the text contains fewer lines than the given line number
+   */
+  public int getLineOffset(int lineNumber) {
+    if (lineNumber < 0) throw new IllegalArgumentException("line number must not be negative");
+
+    if (lineNumber == 0) return 0;
+
+    final boolean crlf = root != null && root.crlfs > 0;
+
+    int remaining = lineNumber;
+    int base = 0;
+    int previous = NO_CHAR;
+
+    Node node = root;
+
+    while (node != null) {
+      int leftCount = count(node.left, previous, crlf);
+
+      if (remaining <= leftCount) {
+        node = node.left;
+        continue;
+      }
+
+      remaining -= leftCount;
+
+      if (node.left != null) {
+        base += node.left.length;
+        previous = node.left.last;
+      }
+
+      String chunk = node.chunk;
+
+      for (int i = 0; i < chunk.length(); i++) {
+        if (chunk.charAt(i) != '\n') continue;
+
+        int before = i > 0 ? chunk.charAt(i - 1) : previous;
+
+        if (crlf && before != '\r') continue;
+
+        if (--remaining == 0) return base + i + 1;
+      }
+
+      base += chunk.length();
+      previous = chunk.charAt(chunk.length() - 1);
+      node = node.right;
+    }
+
+    throw new IllegalStateException(
+        "The text contains fewer lines than specified by the line number: " + lineNumber);
+  }
+
+  /**
+   * Inserts the given text at the given offset.
+   *
+   * @param offset the offset to insert the text at
+   * @param text the text to insert
+   * @throws IndexOutOfBoundsException if the offset is not within the text
+   */
+  public void insert(int offset, String text) {
+    if (offset < 0 || offset > length())
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length());
+
+    if (text.isEmpty()) return;
+
+    if (text.length() < MAX_CHUNK_LENGTH && insertIntoChunk(root, offset, text)) return;
+
+    Node[] parts = split(root, offset);
+    root = merge(merge(parts[0], createTree(text)), parts[1]);
+  }
+
+  /**
+   * Deletes the given number of characters starting at the given offset.
+   *
+   * @param offset the offset of the first character to delete
+   * @param length the number of characters to delete
+   * @throws IndexOutOfBoundsException if the range is not within the text
+   */
+  public void delete(int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > length())
+      throw new IndexOutOfBoundsException(
+          "offset: " + offset + ", delete length: " + length + ", length: " + length());
+
+    if (length == 0) return;
+
+    if (deleteFromChunk(root, offset, length)) return;
+
+    Node[] head = split(root, offset);
+    Node[] tail = split(head[1], length);
+    root = merge(head[0], tail[1]);
+  }
+
+  /** Returns the text. This is an operation that is linear to the length of the text. */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(length());
+    append(root, builder);
+    return builder.toString();
+  }
+
+  private static void append(Node node, StringBuilder builder) {
+    while (node != null) {
+      append(node.left, builder);
+      builder.append(node.chunk);
+      node = node.right;
+    }
+  }
+
+  /**
+   * Inserts the text into the chunk containing the offset if the chunk has enough space left.
+   *
+   * @return <code>true</code> if the text was inserted, <code>false</code> otherwise
+   */
+  private static boolean insertIntoChunk(Node node, int offset, String text) {
+    if (node == null) return false;
+
+    int leftLength = length(node.left);
+    int chunkLength = node.chunk.length();
+
+    boolean inserted;
+
+    if (offset < leftLength) {
+      inserted = insertIntoChunk(node.left, offset, text);
+    } else if (offset > leftLength + chunkLength) {
+      inserted = insertIntoChunk(node.right, offset - leftLength - chunkLength, text);
+    } else if (chunkLength + text.length() <= MAX_CHUNK_LENGTH) {
+      int index = offset - leftLength;
+      node.setChunk(node.chunk.substring(0, index) + text + node.chunk.substring(index));
+      return true;
+    } else {
+      return false;
+    }
+
+    if (inserted) node.update();
+
+    return inserted;
+  }
+
+  /**
+   * Deletes the range from the chunk containing it if the range does not span multiple chunks and
+   * does not cover the complete chunk.
+   *
+   * @return <code>true</code> if the range was deleted, <code>false</code> otherwise
+   */
+  private static boolean deleteFromChunk(Node node, int offset, int length) {
+    if (node == null) return false;
+
+    int leftLength = length(node.left);
+    int chunkLength = node.chunk.length();
+
+    boolean deleted;
+
+    if (offset < leftLength) {
+      if (offset + length > leftLength) return false;
+
+      deleted = deleteFromChunk(node.left, offset, length);
+    } else if (offset >= leftLength + chunkLength) {
+      deleted = deleteFromChunk(node.right, offset - leftLength - chunkLength, length);
+    } else {
+      int index = offset - leftLength;
+
+      if (index + length > chunkLength || length == chunkLength) return false;
+
+      node.setChunk(node.chunk.substring(0, index) + node.chunk.substring(index + length));
+      return true;
+    }
+
+    if (deleted) node.update();
+
+    return deleted;
+  }
+
+  /**
+   * Splits the tree at the given offset. A chunk containing the offset is split into two chunks.
+   *
+   * @return an array containing the tree with the characters before the offset and the tree with
+   *     the remaining characters
+   */
+  private Node[] split(Node node, int offset) {
+    if (node == null) return new Node[] {null, null};
+
+    int leftLength = length(node.left);
+    int chunkLength = node.chunk.length();
+
+    if (offset <= leftLength) {
+      Node[] parts = split(node.left, offset);
+      node.left = parts[1];
+      node.update();
+      return new Node[] {parts[0], node};
+    }
+
+    if (offset >= leftLength + chunkLength) {
+      Node[] parts = split(node.right, offset - leftLength - chunkLength);
+      node.right = parts[0];
+      node.update();
+      return new Node[] {node, parts[1]};
+    }
+
+    int index = offset - leftLength;
+
+    Node tail = new Node(node.chunk.substring(index), random.nextInt());
+    Node right = merge(tail, node.right);
+
+    node.right = null;
+    node.setChunk(node.chunk.substring(0, index));
+
+    return new Node[] {node, right};
+  }
+
+  /** Merges two trees, all characters of the first tree are placed before those of the second. */
+  private static Node merge(Node first, Node second) {
+    if (first == null) return second;
+
+    if (second == null) return first;
+
+    if (first.priority > second.priority) {
+      first.right = merge(first.right, second);
+      first.update();
+      return first;
+    }
+
+    second.left = merge(first, second.left);
+    second.update();
+    return second;
+  }
+
+  private Node createTree(String text) {
+    Node tree = null;
+
+    for (int start = 0; start < text.length(); start += INITIAL_CHUNK_LENGTH) {
+      int end = Math.min(text.length(), start + INITIAL_CHUNK_LENGTH);
+      tree = merge(tree, new Node(text.substring(start, end), random.nextInt()));
+    }
+
+    return tree;
+  }
+
+  /**
+   * Returns the number of line breaks in the given subtree.
+   *
+   * @param previous the character preceding the subtree
+   * @param crlf whether to count Windows or Unix line separators
+   */
+  private static int count(Node node, int previous, boolean crlf) {
+    if (node == null) return 0;
+
+    if (!crlf) return node.lineFeeds;
+
+    return node.crlfs + (previous == '\r' && node.first == '\n' ? 1 : 0);
+  }
+
+  private static int length(Node node) {
+    return node == null ? 0 : node.length;
+  }
+
+  private static int lineFeeds(Node node) {
+    return node == null ? 0 : node.lineFeeds;
+  }
+}
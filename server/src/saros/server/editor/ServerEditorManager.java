@@ -2,35 +2,98 @@ package saros.server.editor;
 
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import org.apache.commons.collections4.map.LRUMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import saros.activities.TextEditActivity;
 import saros.editor.IEditorManager;
 import saros.editor.ISharedEditorListener;
+import saros.editor.remote.UserEditorStateManager;
 import saros.editor.text.LineRange;
-import saros.editor.text.TextPositionUtils;
 import saros.editor.text.TextSelection;
 import saros.filesystem.IFile;
 import saros.filesystem.IFolder;
 import saros.filesystem.IReferencePoint;
+import saros.repackaged.picocontainer.Startable;
+import saros.server.ServerConfig;
 import saros.server.filesystem.ServerFileImpl;
 import saros.server.filesystem.ServerFolderImpl;
 import saros.session.User;
-import saros.util.LineSeparatorNormalizationUtil;
+import saros.util.NamedThreadFactory;
+import saros.util.ThreadUtils;
 
-/** Server implementation of the {@link IEditorManager} interface */
-public class ServerEditorManager implements IEditorManager {
+/**
+ * Server implementation of the {@link IEditorManager} interface.
+ *
+ * <p>Open editors are kept in an {@link EditorCache} bounded by {@link
+ * ServerConfig#getEditorCacheSize()}. Editors of files that remote users have open are never
+ * evicted.
+ *
+ * <p>Text edits are not written to disk immediately. Modified editors are saved periodically (see
+ * {@link ServerConfig#getEditorFlushInterval()}), when they are evicted from the editor cache, when
+ * the file is affected by a file activity, and when the session ends. Edits that are not yet saved
+ * are recorded in the {@link EditorJournal}, which is compacted after the editors are saved.
+ */
+public class ServerEditorManager implements IEditorManager, Startable {
 
   private static final Logger log = Logger.getLogger(ServerEditorManager.class);
 
-  private Map<IFile, Editor> openEditors = Collections.synchronizedMap(new LRUMap<>(10));
-  private List<ISharedEditorListener> listeners = new CopyOnWriteArrayList<>();
+  private final EditorJournal journal;
+
+  private final EditorCache openEditors;
+  private final List<ISharedEditorListener> listeners = new CopyOnWriteArrayList<>();
+
+  private ScheduledExecutorService flushExecutor;
+
+  public ServerEditorManager(EditorJournal journal, UserEditorStateManager userEditorStateManager) {
+    this.journal = journal;
+    this.openEditors =
+        new EditorCache(
+            ServerConfig.getEditorCacheSize(),
+            userEditorStateManager::getOpenEditors,
+            this::saveAndClose);
+  }
+
+  @Override
+  public void start() {
+    long interval = ServerConfig.getEditorFlushInterval();
+
+    flushExecutor =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("editor-flusher", false));
+
+    flushExecutor.scheduleWithFixedDelay(
+        ThreadUtils.wrapSafe(log, this::flush), interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    flushExecutor.shutdown();
+
+    try {
+      if (!flushExecutor.awaitTermination(10, TimeUnit.SECONDS))
+        log.warn("editor flusher did not terminate in time");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    flush();
+
+    log.debug(
+        "editor cache statistics: hits="
+            + openEditors.getHitCount()
+            + ", misses="
+            + openEditors.getMissCount()
+            + ", evictions="
+            + openEditors.getEvictionCount()
+            + ", size="
+            + openEditors.getWeight()
+            + " bytes");
+  }
 
   @Override
   public void openEditor(IFile file, boolean activate) {
@@ -57,22 +120,37 @@ public class ServerEditorManager implements IEditorManager {
 
   @Override
   public String getNormalizedContent(IFile file) {
-    String content = getContent(file);
-
-    if (content == null) {
+    try {
+      return getOrCreateEditor(file).getNormalizedContent();
+    } catch (IOException e) {
       return null;
     }
-
-    String lineSeparator = TextPositionUtils.guessLineSeparator(content);
-
-    return LineSeparatorNormalizationUtil.normalize(content, lineSeparator);
   }
 
   @Override
   public void saveEditors(IReferencePoint referencePoint) {
-    // do nothing?
-    // we do not keep dirty editors,
-    // because the LRUMap might close Editors at any time
+    for (Editor editor : openEditors.editors()) {
+      if (referencePoint == null || referencePoint.equals(editor.getFile().getReferencePoint()))
+        save(editor);
+    }
+
+    journal.compact();
+  }
+
+  /**
+   * Writes the content of the editor of the given file to disk if it contains unsaved changes.
+   *
+   * @param file the file
+   */
+  public void saveEditor(IFile file) {
+    Editor editor = openEditors.getIfPresent(file);
+
+    if (editor != null) save(editor);
+  }
+
+  /** Writes the content of all editors containing unsaved changes to disk. */
+  public void flush() {
+    saveEditors(null);
   }
 
   @Override
@@ -96,24 +174,23 @@ public class ServerEditorManager implements IEditorManager {
   }
 
   /**
-   * Get an existing or create a new Editor for a given file. May remove the least recently used
-   * Editor to free memory.
+   * Get an existing or create a new Editor for a given file. May evict the least recently used
+   * Editors to free memory.
    *
    * @param file of the file to open
    * @return Editor of the file
    * @throws IOException
    */
   private Editor getOrCreateEditor(IFile file) throws IOException {
-    Editor editor = openEditors.get(file);
-    if (editor == null) {
-      if (!file.exists()) {
-        throw new NoSuchFileException(file.toString());
-      }
+    return openEditors.get(
+        file,
+        key -> {
+          if (!key.exists()) {
+            throw new NoSuchFileException(key.toString());
+          }
 
-      editor = new Editor(file);
-      openEditors.put(file, editor);
-    }
-    return editor;
+          return new Editor(key, journal);
+        });
   }
 
   /**
@@ -124,9 +201,20 @@ public class ServerEditorManager implements IEditorManager {
   public void applyTextEdit(TextEditActivity activity) {
     IFile file = activity.getResource();
     try {
-      Editor editor = getOrCreateEditor(file);
-      editor.applyTextEdit(activity);
-      editor.save();
+      while (true) {
+        Editor editor = getOrCreateEditor(file);
+
+        synchronized (editor) {
+          // the editor was evicted in the meantime, use a new one
+          if (editor.isClosed()) continue;
+
+          editor.applyTextEdit(activity);
+          break;
+        }
+      }
+
+      openEditors.updateWeight(file);
+
       for (ISharedEditorListener listener : listeners) {
         listener.textEdited(activity);
       }
@@ -136,41 +224,78 @@ public class ServerEditorManager implements IEditorManager {
   }
 
   /**
-   * Updates the mapping of an open editor to a new file.
+   * Updates the mapping of an open editor to a new file. The content of the editor has to be saved
+   * before the file is moved.
    *
    * @param oldFile the old file
    * @param newFile the new file
+   * @see #saveEditor(IFile)
    */
   public void updateMapping(IFile oldFile, IFile newFile) {
     Editor oldEditor = openEditors.remove(oldFile);
+
+    if (oldEditor == null) return;
+
+    oldEditor.setFile(newFile);
     openEditors.put(newFile, oldEditor);
   }
 
   @Override
   public void closeEditor(IFile file) {
-    openEditors.remove(file);
+    Editor editor = openEditors.remove(file);
+
+    if (editor != null) saveAndClose(editor);
   }
 
   /**
-   * Close all editors of files in a specific folder. Helpful if a folder gets deleted.
+   * Closes the editor of the given file without saving its content, e.g. because the file was
+   * deleted or its content was replaced.
+   *
+   * @param file the file
+   */
+  public void discardEditor(IFile file) {
+    Editor editor = openEditors.remove(file);
+
+    if (editor != null) editor.discard();
+  }
+
+  /**
+   * Closes all editors of files in a specific folder without saving their content. Helpful if a
+   * folder gets deleted.
    *
    * @param folder the folder
    */
   public void closeEditorsInFolder(IFolder folder) {
-    synchronized (openEditors) {
-      ServerFolderImpl serverFolder = (ServerFolderImpl) folder;
+    ServerFolderImpl serverFolder = (ServerFolderImpl) folder;
 
-      Set<IFile> keys = openEditors.keySet();
-      Set<IFile> invalidKeys = new HashSet<>();
-      for (IFile file : keys) {
-        ServerFileImpl serverFile = (ServerFileImpl) file;
+    Set<IFile> invalidKeys = new HashSet<>();
+    for (IFile file : openEditors.keySet()) {
+      ServerFileImpl serverFile = (ServerFileImpl) file;
 
-        if (serverFile.getFullPath().startsWith(serverFolder.getFullPath())) {
-          invalidKeys.add(file);
-        }
+      if (serverFile.getFullPath().startsWith(serverFolder.getFullPath())) {
+        invalidKeys.add(file);
       }
-      for (IFile file : invalidKeys) {
-        closeEditor(file);
+    }
+    for (IFile file : invalidKeys) {
+      discardEditor(file);
+    }
+  }
+
+  private void saveAndClose(Editor editor) {
+    synchronized (editor) {
+      save(editor);
+      editor.close();
+    }
+  }
+
+  private void save(Editor editor) {
+    synchronized (editor) {
+      if (!editor.isDirty()) return;
+
+      try {
+        editor.save();
+      } catch (IOException e) {
+        log.error("Could not save editor of " + editor.getFile(), e);
       }
     }
   }
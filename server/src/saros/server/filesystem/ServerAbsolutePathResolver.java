@@ -0,0 +1,20 @@
+package saros.server.filesystem;
+
+import saros.filesystem.IFile;
+import saros.filesystem.checksum.IAbsolutePathResolver;
+
+/**
+ * Server implementation of the {@link IAbsolutePathResolver} interface returning the location of
+ * the given file in the server workspace.
+ *
+ * @see ServerResourceImpl#getLocation()
+ */
+public class ServerAbsolutePathResolver implements IAbsolutePathResolver {
+
+  @Override
+  public String getAbsolutePath(IFile file) {
+    if (!(file instanceof ServerResourceImpl)) return null;
+
+    return ((ServerResourceImpl) file).getLocation().toAbsolutePath().toString();
+  }
+}
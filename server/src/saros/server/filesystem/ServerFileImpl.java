@@ -12,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Optional;
 import org.apache.log4j.Logger;
 import saros.filesystem.IFile;
 
@@ -86,6 +87,11 @@ public class ServerFileImpl extends ServerResourceImpl implements IFile {
     return Files.newInputStream(getLocation());
   }
 
+  @Override
+  public Optional<Path> getLocalPath() {
+    return Optional.of(getLocation());
+  }
+
   @Override
   public void setContents(InputStream input) throws IOException {
 
@@ -1,6 +1,5 @@
 package saros.server.session;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.IllegalCharsetNameException;
@@ -25,7 +24,7 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
    * Creates a FileActivityExecutor.
    *
    * @param session the current session
-   * @param editorManager the editor manager to update the file mapping on a file move
+   * @param editorManager the editor manager to update the editors affected by file activities
    */
   public FileActivityExecutor(ISarosSession session, ServerEditorManager editorManager) {
 
@@ -69,7 +68,13 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
       throws IOException, IllegalCharsetNameException, UnsupportedCharsetException {
 
     IFile file = activity.getResource();
-    file.create(new ByteArrayInputStream(activity.getContent()));
+
+    // the content is replaced, unsaved editor changes are obsolete
+    editorManager.discardEditor(file);
+
+    try (InputStream contents = activity.getContentStream()) {
+      file.create(contents);
+    }
 
     String charset = activity.getEncoding();
 
@@ -95,21 +100,21 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
       return;
     }
 
-    byte[] activityContent = activity.getContent();
+    editorManager.saveEditor(oldFile);
 
-    InputStream contents;
     String charset;
 
-    if (activityContent != null) {
-      contents = new ByteArrayInputStream(activityContent);
+    if (activity.hasContent()) {
       charset = activity.getEncoding();
-
     } else {
-      contents = oldFile.getContents();
       charset = oldFile.getCharset();
     }
 
-    newFile.create(contents);
+    try (InputStream contents =
+        activity.hasContent() ? activity.getContentStream() : oldFile.getContents()) {
+      newFile.create(contents);
+    }
+
     newFile.setCharset(charset);
 
     oldFile.delete();
@@ -120,7 +125,7 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
 
   private void executeFileRemoval(FileActivity activity) throws IOException {
     IFile file = activity.getResource();
-    editorManager.closeEditor(file);
+    editorManager.discardEditor(file);
     file.delete();
   }
 }
@@ -67,7 +67,7 @@ public class FolderActivityExecutor extends AbstractActivityConsumer implements
   private void executeFolderRemoval(FolderDeletedActivity activity) throws IOException {
 
     IFolder folder = activity.getResource();
-    folder.delete();
     editorManager.closeEditorsInFolder(folder);
+    folder.delete();
   }
 }
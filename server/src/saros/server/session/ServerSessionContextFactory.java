@@ -1,9 +1,11 @@
 package saros.server.session;
 
+import saros.filesystem.checksum.IAbsolutePathResolver;
 import saros.filesystem.checksum.IChecksumCache;
-import saros.filesystem.checksum.NullChecksumCache;
+import saros.filesystem.checksum.PersistentChecksumCache;
 import saros.repackaged.picocontainer.MutablePicoContainer;
 import saros.server.editor.ServerEditorManager;
+import saros.server.filesystem.ServerAbsolutePathResolver;
 import saros.session.ISarosSession;
 import saros.session.ISarosSessionContextFactory;
 import saros.session.SarosCoreSessionContextFactory;
@@ -19,6 +21,7 @@ public class ServerSessionContextFactory extends SarosCoreSessionContextFactory
     container.addComponent(TextEditActivityExecutor.class);
 
     // Checksum cache support
-    container.addComponent(IChecksumCache.class, NullChecksumCache.class);
+    container.addComponent(IAbsolutePathResolver.class, ServerAbsolutePathResolver.class);
+    container.addComponent(IChecksumCache.class, PersistentChecksumCache.class);
   }
 }
@@ -0,0 +1,112 @@
+package saros.server.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+import saros.filesystem.IFile;
+
+public class EditorCacheTest {
+
+  private final Set<IFile> pinned = new HashSet<>();
+  private final List<Editor> evicted = new ArrayList<>();
+
+  private EditorCache cache;
+
+  @Before
+  public void setUp() {
+    // room for two editors with 10 characters each
+    cache = new EditorCache(40, () -> pinned, evicted::add);
+  }
+
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    IFile a = createFile("0123456789");
+
+    Editor editor = cache.get(a, EditorCacheTest::load);
+
+    assertSame(editor, cache.get(a, EditorCacheTest::load));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(20, cache.getWeight());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws IOException {
+    IFile a = createFile("0123456789");
+    IFile b = createFile("0123456789");
+    IFile c = createFile("0123456789");
+
+    Editor editorA = cache.get(a, EditorCacheTest::load);
+    cache.get(b, EditorCacheTest::load);
+    cache.get(a, EditorCacheTest::load);
+    cache.get(c, EditorCacheTest::load);
+
+    assertEquals(new HashSet<>(Arrays.asList(a, c)), cache.keySet());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(40, cache.getWeight());
+    assertTrue(evicted.size() == 1 && evicted.get(0) != editorA);
+  }
+
+  @Test
+  public void testPinnedEditorsAreNotEvicted() throws IOException {
+    IFile a = createFile("0123456789");
+    IFile b = createFile("0123456789");
+    IFile c = createFile("0123456789");
+
+    pinned.add(a);
+    pinned.add(b);
+
+    cache.get(a, EditorCacheTest::load);
+    cache.get(b, EditorCacheTest::load);
+    cache.get(c, EditorCacheTest::load);
+
+    assertEquals(3, cache.keySet().size());
+    assertEquals(Collections.emptyList(), evicted);
+
+    pinned.clear();
+
+    cache.updateWeight(c);
+
+    assertEquals(new HashSet<>(Arrays.asList(b, c)), cache.keySet());
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testRemove() throws IOException {
+    IFile a = createFile("0123456789");
+
+    Editor editor = cache.get(a, EditorCacheTest::load);
+
+    assertSame(editor, cache.remove(a));
+    assertEquals(0, cache.getWeight());
+    assertEquals(Collections.emptySet(), cache.keySet());
+  }
+
+  private static Editor load(IFile file) throws IOException {
+    return new Editor(file, null);
+  }
+
+  private static IFile createFile(String content) throws IOException {
+    IFile file = EasyMock.createNiceMock(IFile.class);
+
+    EasyMock.expect(file.getCharset()).andStubReturn("UTF-8");
+    EasyMock.expect(file.getContents())
+        .andStubAnswer(() -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+    EasyMock.replay(file);
+    return file;
+  }
+}
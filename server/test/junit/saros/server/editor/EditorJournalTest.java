@@ -0,0 +1,151 @@
+package saros.server.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.filesystem.IFile;
+import saros.server.filesystem.ServerFileImpl;
+import saros.server.filesystem.ServerWorkspaceImpl;
+
+public class EditorJournalTest {
+
+  private ServerWorkspaceImpl workspace;
+
+  @Before
+  public void setUp() throws Exception {
+    workspace = new ServerWorkspaceImpl(Files.createTempDirectory("saros-test-workspace"));
+  }
+
+  @After
+  public void cleanUp() {
+    FileUtils.deleteQuietly(workspace.getLocation().toFile());
+  }
+
+  @Test
+  public void replayUnsavedEdits() throws Exception {
+    createFile("project/a", "Hello World");
+    createFile("project/b", "foo");
+
+    IFile a = new ServerFileImpl(workspace, Paths.get("project/a"));
+    IFile b = new ServerFileImpl(workspace, Paths.get("project/b"));
+
+    EditorJournal journal = new EditorJournal(workspace);
+    journal.start();
+
+    journal.recordEdit(a, 5, 0, ",");
+    journal.recordEdit(b, 0, 3, "bar");
+    journal.recordEdit(a, 7, 5, "Saros");
+    journal.recordClean(b);
+
+    // simulate a crash, the journal is not reset
+    journal.stop();
+
+    assertFileHasContent("project/a", "Hello World");
+    assertFileHasContent("project/b", "foo");
+
+    EditorJournal restartedJournal = new EditorJournal(workspace);
+    restartedJournal.start();
+
+    assertFileHasContent("project/a", "Hello, Saros");
+    assertFileHasContent("project/b", "foo");
+
+    restartedJournal.stop();
+
+    // edits must only be replayed once
+    EditorJournal secondRestartedJournal = new EditorJournal(workspace);
+    secondRestartedJournal.start();
+    secondRestartedJournal.stop();
+
+    assertFileHasContent("project/a", "Hello, Saros");
+  }
+
+  @Test
+  public void noReplayAfterCompaction() throws Exception {
+    createFile("project/a", "Hello World");
+
+    IFile a = new ServerFileImpl(workspace, Paths.get("project/a"));
+
+    EditorJournal journal = new EditorJournal(workspace);
+    journal.start();
+
+    journal.recordEdit(a, 0, 5, "Bye");
+    journal.recordClean(a);
+    journal.compact();
+    journal.stop();
+
+    assertEquals(0, Files.size(getJournalPath()));
+
+    EditorJournal restartedJournal = new EditorJournal(workspace);
+    restartedJournal.start();
+    restartedJournal.stop();
+
+    assertFileHasContent("project/a", "Hello World");
+  }
+
+  @Test
+  public void compactionKeepsUnsavedEdits() throws Exception {
+    createFile("project/a", "0");
+    createFile("project/b", "b");
+
+    IFile a = new ServerFileImpl(workspace, Paths.get("project/a"));
+    IFile b = new ServerFileImpl(workspace, Paths.get("project/b"));
+
+    EditorJournal journal = new EditorJournal(workspace);
+    journal.start();
+
+    long maxSize = 0;
+
+    // simulate continuous typing in one file while the editors are flushed regularly
+    for (int i = 1; i <= 1000; i++) {
+      journal.recordEdit(a, 0, 1, Integer.toString(i % 10));
+
+      if (i % 10 == 0) {
+        createFile("project/a", Integer.toString(i % 10));
+        journal.recordClean(a);
+        journal.recordEdit(a, 0, 1, "x");
+        journal.compact();
+
+        maxSize = Math.max(maxSize, Files.size(getJournalPath()));
+      }
+    }
+
+    journal.recordEdit(b, 1, 0, "ar");
+    journal.compact();
+
+    // simulate a crash
+    journal.stop();
+
+    assertTrue("journal was not compacted: " + maxSize + " bytes", maxSize < 1000);
+
+    EditorJournal restartedJournal = new EditorJournal(workspace);
+    restartedJournal.start();
+    restartedJournal.stop();
+
+    assertFileHasContent("project/a", "x");
+    assertFileHasContent("project/b", "bar");
+  }
+
+  private Path getJournalPath() {
+    return workspace.getLocation().resolve(".saros-editor-journal");
+  }
+
+  private void createFile(String path, String content) throws IOException {
+    Path location = workspace.getLocation().resolve(path);
+    Files.createDirectories(location.getParent());
+    Files.write(location, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void assertFileHasContent(String path, String expectedContent) throws IOException {
+    Path location = workspace.getLocation().resolve(path);
+    assertEquals(expectedContent, new String(Files.readAllBytes(location), StandardCharsets.UTF_8));
+  }
+}
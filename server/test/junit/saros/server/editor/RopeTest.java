@@ -0,0 +1,115 @@
+package saros.server.editor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import saros.editor.text.TextPosition;
+import saros.editor.text.TextPositionUtils;
+
+public class RopeTest {
+
+  @Test
+  public void testInsertAndDelete() {
+    Rope rope = new Rope("Hello World");
+
+    rope.insert(5, ",");
+    rope.insert(rope.length(), "!");
+    rope.delete(0, 1);
+    rope.insert(0, "h");
+
+    assertEquals("hello, World!", rope.toString());
+    assertEquals(13, rope.length());
+  }
+
+  @Test
+  public void testGuessLineSeparator() {
+    assertEquals("", new Rope("").guessLineSeparator());
+    assertEquals("", new Rope("foo").guessLineSeparator());
+    assertEquals("\n", new Rope("foo\nbar").guessLineSeparator());
+    assertEquals("\r\n", new Rope("foo\nbar\r\nbaz").guessLineSeparator());
+  }
+
+  @Test
+  public void testLineSeparatorAcrossChunks() {
+    Rope rope = new Rope(StringUtils.repeat('a', 600) + "\r");
+
+    rope.insert(rope.length(), StringUtils.repeat('b', 1023));
+    rope.insert(601, "\n");
+
+    assertEquals("\r\n", rope.guessLineSeparator());
+    assertEquals(602, rope.getLineOffset(1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testLineOffsetBeyondText() {
+    new Rope("foo\nbar").getLineOffset(2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testDeleteBeyondText() {
+    new Rope("foo").delete(1, 3);
+  }
+
+  @Test
+  public void testRandomEdits() {
+    Random random = new Random(42);
+
+    String[] separators = {"\n", "\r\n"};
+    String separator = separators[random.nextInt(separators.length)];
+
+    StringBuilder expected = new StringBuilder();
+
+    for (int i = 0; i < 5000; i++) expected.append(randomText(random, separator, 1));
+
+    Rope rope = new Rope(expected.toString());
+
+    for (int i = 0; i < 2000; i++) {
+      if (random.nextBoolean() || expected.length() == 0) {
+        int offset = random.nextInt(expected.length() + 1);
+        String text = randomText(random, separator, random.nextInt(10) == 0 ? 3000 : 5);
+
+        expected.insert(offset, text);
+        rope.insert(offset, text);
+      } else {
+        int offset = random.nextInt(expected.length());
+        int length = random.nextInt(Math.min(expected.length() - offset, 2000) + 1);
+
+        expected.delete(offset, offset + length);
+        rope.delete(offset, length);
+      }
+
+      if (i % 100 != 0) continue;
+
+      String text = expected.toString();
+
+      assertEquals(text, rope.toString());
+
+      String lineSeparator = TextPositionUtils.guessLineSeparator(text);
+
+      assertEquals(lineSeparator, rope.guessLineSeparator());
+
+      if (lineSeparator.isEmpty()) continue;
+
+      int lines = StringUtils.countMatches(text, lineSeparator);
+
+      for (int line = 0; line <= lines; line += 1 + lines / 50) {
+        assertEquals(
+            TextPositionUtils.calculateOffset(text, new TextPosition(line, 0), lineSeparator),
+            rope.getLineOffset(line));
+      }
+    }
+  }
+
+  private static String randomText(Random random, String separator, int length) {
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < length; i++) {
+      if (random.nextInt(8) == 0) text.append(separator);
+      else text.append((char) ('a' + random.nextInt(26)));
+    }
+
+    return text.toString();
+  }
+}
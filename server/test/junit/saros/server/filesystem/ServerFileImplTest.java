@@ -13,6 +13,7 @@ import static saros.server.filesystem.FileSystemTestUtils.path;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.util.Optional;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.ReaderInputStream;
@@ -106,6 +107,11 @@ public class ServerFileImplTest extends EasyMockSupport {
     file.getContents();
   }
 
+  @Test
+  public void getLocalPath() throws Exception {
+    assertEquals(Optional.of(workspace.getLocation().resolve("project/file")), file.getLocalPath());
+  }
+
   @Test
   public void setContents() throws Exception {
     createFile(workspace, "project/file", "old content");
@@ -7,7 +7,7 @@ plugins {
  *       because the osgi bundle names had to match the project names.
  */
 val prefix = "saros."
-listOf("core", "eclipse", "intellij", "server", "lsp", "stf", "stf.test").forEach { dir ->
+listOf("core", "eclipse", "intellij", "server", "lsp", "stf", "stf.test", "benchmarks").forEach { dir ->
     val projectName = prefix + dir
     include(projectName)
     project(":$projectName").projectDir = file(dir)